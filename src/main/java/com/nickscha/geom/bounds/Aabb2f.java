@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.bounds;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * Axis aligned bounding rectangle of 2 element floats (final::immutable)
+ * <p>
+ * The 2 dimensional counterpart of {@link Aabb3f}. A box where any minimal
+ * component is greater than the maximal one is considered empty, see
+ * {@link #EMPTY}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ * @see Aabb3f
+ */
+public final class Aabb2f {
+
+    /**
+     * Defines how much fields are stored in this class which will be used for
+     * optimal binary serialization
+     */
+    public static final int FIELDS = 4;
+
+    /**
+     * Defines how much bytes will be needed to store this type as binary
+     */
+    public static final byte BYTES = 16;
+
+    /**
+     * Represents the empty box which contains nothing (min = +infinity, max =
+     * -infinity).
+     */
+    public static final Aabb2f EMPTY = new Aabb2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+            Float.NEGATIVE_INFINITY);
+
+    private final float minX, minY;
+    private final float maxX, maxY;
+
+    /**
+     * Creates a new box for the specified corners.
+     *
+     * @param minX the minimal x component
+     * @param minY the minimal y component
+     * @param maxX the maximal x component
+     * @param maxY the maximal y component
+     */
+    public Aabb2f(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Creates a new box for the specified corners.
+     *
+     * @param min the minimal corner
+     * @param max the maximal corner
+     * @throws NullPointerException if any passed vector is null
+     */
+    public Aabb2f(Vec2f min, Vec2f max) {
+        this(min.getX(), min.getY(), max.getX(), max.getY());
+    }
+
+    public static Aabb2f of(float minX, float minY, float maxX, float maxY) {
+        return new Aabb2f(minX, minY, maxX, maxY);
+    }
+
+    public static Aabb2f of(Vec2f min, Vec2f max) {
+        return new Aabb2f(min, max);
+    }
+
+    /**
+     * Creates a degenerated box which only contains the specified point.
+     *
+     * @param point the point
+     * @return the new box
+     */
+    public static Aabb2f of(Vec2f point) {
+        return new Aabb2f(point, point);
+    }
+
+    /**
+     * Computes the bounds of all points stored interleaved (x,y,x,y,...) in the
+     * specified array.
+     *
+     * @param xy the interleaved point buffer
+     * @return the bounds of all points or {@link #EMPTY} if there are none
+     */
+    public static Aabb2f fromPoints(float[] xy) {
+        return fromPoints(xy, 0, xy.length / 2);
+    }
+
+    /**
+     * Computes the bounds of <code>count</code> points stored interleaved
+     * (x,y,x,y,...) in the specified array starting at point
+     * <code>offset</code>.
+     *
+     * @param xy the interleaved point buffer
+     * @param offset the index of the first point (not the array index)
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     */
+    public static Aabb2f fromPoints(float[] xy, int offset, int count) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+        final int end = (offset + count) * 2;
+        for (int i = offset * 2; i < end; i += 2) {
+            final float x = xy[i], y = xy[i + 1];
+            minX = x < minX ? x : minX;
+            minY = y < minY ? y : minY;
+            maxX = x > maxX ? x : maxX;
+            maxY = y > maxY ? y : maxY;
+        }
+        return new Aabb2f(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Computes the bounds of <code>count</code> points stored as structure of
+     * arrays (one array per axis) starting at index <code>offset</code>.
+     *
+     * @param xs the x components
+     * @param ys the y components
+     * @param offset the index of the first point
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     */
+    public static Aabb2f fromPoints(float[] xs, float[] ys, int offset, int count) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final float x = xs[i];
+            minX = x < minX ? x : minX;
+            maxX = x > maxX ? x : maxX;
+        }
+        for (int i = offset; i < end; i++) {
+            final float y = ys[i];
+            minY = y < minY ? y : minY;
+            maxY = y > maxY ? y : maxY;
+        }
+        return new Aabb2f(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Computes the bounds of the interleaved points as a parallel reduction on
+     * the common {@link ForkJoinPool}.
+     *
+     * @param xy the interleaved point buffer
+     * @param offset the index of the first point (not the array index)
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     * @see #fromPoints(float[], int, int)
+     */
+    public static Aabb2f fromPointsParallel(float[] xy, int offset, int count) {
+        return ForkJoinPool.commonPool().invoke(new BoundsTask(xy, null, offset, count));
+    }
+
+    /**
+     * Computes the bounds of the SoA points as a parallel reduction on the
+     * common {@link ForkJoinPool}.
+     *
+     * @param xs the x components
+     * @param ys the y components
+     * @param offset the index of the first point
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     * @see #fromPoints(float[], float[], int, int)
+     */
+    public static Aabb2f fromPointsParallel(float[] xs, float[] ys, int offset, int count) {
+        return ForkJoinPool.commonPool().invoke(new BoundsTask(xs, ys, offset, count));
+    }
+
+    /**
+     * Checks if this box contains nothing.
+     *
+     * @return true if any minimal component is greater than its maximal one
+     */
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY;
+    }
+
+    /**
+     * Checks if the specified point is inside or on the border of this box.
+     *
+     * @param x the x component of the point
+     * @param y the y component of the point
+     * @return true if the point is contained
+     */
+    public boolean contains(float x, float y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    /**
+     * Checks if the specified point is inside or on the border of this box.
+     *
+     * @param point the point to check
+     * @return true if the point is contained
+     * @throws NullPointerException if the passed vector is null
+     */
+    public boolean contains(Vec2f point) {
+        return contains(point.getX(), point.getY());
+    }
+
+    /**
+     * Checks if the specified box is completely inside this box. The empty box
+     * is contained in every box.
+     *
+     * @param other the other box
+     * @return true if the other box is contained
+     * @throws NullPointerException if the passed box is null
+     */
+    public boolean contains(Aabb2f other) {
+        return other.isEmpty() || (other.minX >= minX && other.maxX <= maxX && other.minY >= minY && other.maxY <= maxY);
+    }
+
+    /**
+     * Checks if this and the specified box share at least one point.
+     *
+     * @param other the other box
+     * @return true if both boxes overlap
+     * @throws NullPointerException if the passed box is null
+     */
+    public boolean overlaps(Aabb2f other) {
+        return minX <= other.maxX && maxX >= other.minX && minY <= other.maxY && maxY >= other.minY;
+    }
+
+    /**
+     * Returns the smallest box containing this and the specified box.
+     *
+     * @param other the other box
+     * @return the new union box
+     * @throws NullPointerException if the passed box is null
+     */
+    public Aabb2f union(Aabb2f other) {
+        return new Aabb2f(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.max(maxX, other.maxX),
+                Math.max(maxY, other.maxY));
+    }
+
+    /**
+     * Returns the smallest box containing this box and the specified point.
+     *
+     * @param point the point
+     * @return the new union box
+     * @throws NullPointerException if the passed vector is null
+     */
+    public Aabb2f union(Vec2f point) {
+        return union(point.getX(), point.getY());
+    }
+
+    /**
+     * Returns the smallest box containing this box and the specified point.
+     *
+     * @param x the x component of the point
+     * @param y the y component of the point
+     * @return the new union box
+     */
+    public Aabb2f union(float x, float y) {
+        return new Aabb2f(Math.min(minX, x), Math.min(minY, y), Math.max(maxX, x), Math.max(maxY, y));
+    }
+
+    /**
+     * Returns the box shared by this and the specified box.
+     *
+     * @param other the other box
+     * @return the intersection box or {@link #EMPTY} if both do not overlap
+     * @throws NullPointerException if the passed box is null
+     */
+    public Aabb2f intersection(Aabb2f other) {
+        if (!overlaps(other)) {
+            return EMPTY;
+        }
+        return new Aabb2f(Math.max(minX, other.minX), Math.max(minY, other.minY), Math.min(maxX, other.maxX),
+                Math.min(maxY, other.maxY));
+    }
+
+    /**
+     * Grows the box on every side by the specified amount.
+     *
+     * @param amt the amount to grow (negative values shrink the box)
+     * @return the new box
+     */
+    public Aabb2f expand(float amt) {
+        return new Aabb2f(minX - amt, minY - amt, maxX + amt, maxY + amt);
+    }
+
+    /**
+     * Transforms this box lying in the z = 0 plane by the specified affine
+     * matrix and returns the smallest axis aligned box containing the x and y
+     * components of the transformed box.
+     *
+     * @param matrix the transformation (the projective row is ignored)
+     * @return the new transformed box
+     * @throws NullPointerException if the passed matrix is null
+     * @see Aabb3f#transform(Mat4f)
+     */
+    public Aabb2f transform(Mat4f matrix) {
+        if (isEmpty()) {
+            return EMPTY;
+        }
+        float loX = matrix.get(0, 3), hiX = loX;
+        float loY = matrix.get(1, 3), hiY = loY;
+
+        float a = matrix.get(0, 0) * minX, b = matrix.get(0, 0) * maxX;
+        loX += a < b ? a : b;
+        hiX += a < b ? b : a;
+        a = matrix.get(0, 1) * minY;
+        b = matrix.get(0, 1) * maxY;
+        loX += a < b ? a : b;
+        hiX += a < b ? b : a;
+
+        a = matrix.get(1, 0) * minX;
+        b = matrix.get(1, 0) * maxX;
+        loY += a < b ? a : b;
+        hiY += a < b ? b : a;
+        a = matrix.get(1, 1) * minY;
+        b = matrix.get(1, 1) * maxY;
+        loY += a < b ? a : b;
+        hiY += a < b ? b : a;
+
+        return new Aabb2f(loX, loY, hiX, hiY);
+    }
+
+    /**
+     * @return the center point of this box
+     */
+    public Vec2f center() {
+        return new Vec2f((minX + maxX) * 0.5f, (minY + maxY) * 0.5f);
+    }
+
+    /**
+     * @return the size of this box on each axis
+     */
+    public Vec2f extent() {
+        return new Vec2f(maxX - minX, maxY - minY);
+    }
+
+    /**
+     * @return the area of this box or zero if it is empty
+     */
+    public float area() {
+        if (isEmpty()) {
+            return 0;
+        }
+        return (maxX - minX) * (maxY - minY);
+    }
+
+    /**
+     * @return the minimal corner of this box
+     */
+    public Vec2f getMin() {
+        return new Vec2f(minX, minY);
+    }
+
+    /**
+     * @return the maximal corner of this box
+     */
+    public Vec2f getMax() {
+        return new Vec2f(maxX, maxY);
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Float.floatToIntBits(minX);
+        result = prime * result + Float.floatToIntBits(minY);
+        result = prime * result + Float.floatToIntBits(maxX);
+        result = prime * result + Float.floatToIntBits(maxY);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof Aabb2f) {
+            Aabb2f o = (Aabb2f) obj;
+            return minX == o.minX && minY == o.minY && maxX == o.maxX && maxY == o.maxY;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Aabb2f [minX=" + minX + ", minY=" + minY + ", maxX=" + maxX + ", maxY=" + maxY + "]";
+    }
+
+    /**
+     * Splits a point range in halves until it is below
+     * {@link Aabb3f#PARALLEL_THRESHOLD} and unions the partial bounds. When
+     * only the first array is set the points are read interleaved.
+     */
+    private static final class BoundsTask extends RecursiveTask<Aabb2f> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] xs, ys;
+        private final int offset, count;
+
+        BoundsTask(float[] xs, float[] ys, int offset, int count) {
+            this.xs = xs;
+            this.ys = ys;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        protected Aabb2f compute() {
+            if (count <= Aabb3f.PARALLEL_THRESHOLD) {
+                return ys == null ? fromPoints(xs, offset, count) : fromPoints(xs, ys, offset, count);
+            }
+            final int half = count >>> 1;
+            final BoundsTask left = new BoundsTask(xs, ys, offset, half);
+            final BoundsTask right = new BoundsTask(xs, ys, offset + half, count - half);
+            left.fork();
+            final Aabb2f r = right.compute();
+            return left.join().union(r);
+        }
+    }
+}
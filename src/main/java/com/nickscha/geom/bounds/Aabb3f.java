@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.bounds;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Axis aligned bounding box of 3 element floats (final::immutable)
+ * <p>
+ * The box is stored as its minimal and maximal corner. A box where any minimal
+ * component is greater than the maximal one is considered empty, see
+ * {@link #EMPTY}. Combining the empty box with any other box or point results
+ * in the other box or point.
+ * </p>
+ * <b>Bulk bounds</b>
+ * <p>
+ * Bounds of large point sets should be computed with the
+ * <code>fromPoints</code> builders which read flat (x,y,z interleaved) or SoA
+ * (one array per axis) float buffers directly without allocating a vector per
+ * point. The <code>fromPointsParallel</code> variants split the buffer into
+ * ranges and reduce the partial boxes on the common {@link ForkJoinPool}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Aabb3f {
+
+    /**
+     * Defines how much fields are stored in this class which will be used for
+     * optimal binary serialization
+     */
+    public static final int FIELDS = 6;
+
+    /**
+     * Defines how much bytes will be needed to store this type as binary
+     */
+    public static final byte BYTES = 24;
+
+    /**
+     * Represents the empty box which contains nothing (min = +infinity, max =
+     * -infinity).
+     */
+    public static final Aabb3f EMPTY = new Aabb3f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+
+    /**
+     * Amount of points below which a parallel bounds computation is not split
+     * any further.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private final float minX, minY, minZ;
+    private final float maxX, maxY, maxZ;
+
+    /**
+     * Creates a new box for the specified corners.
+     *
+     * @param minX the minimal x component
+     * @param minY the minimal y component
+     * @param minZ the minimal z component
+     * @param maxX the maximal x component
+     * @param maxY the maximal y component
+     * @param maxZ the maximal z component
+     */
+    public Aabb3f(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Creates a new box for the specified corners.
+     *
+     * @param min the minimal corner
+     * @param max the maximal corner
+     * @throws NullPointerException if any passed vector is null
+     */
+    public Aabb3f(Vec3f min, Vec3f max) {
+        this(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    public static Aabb3f of(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return new Aabb3f(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    public static Aabb3f of(Vec3f min, Vec3f max) {
+        return new Aabb3f(min, max);
+    }
+
+    /**
+     * Creates a degenerated box which only contains the specified point.
+     *
+     * @param point the point
+     * @return the new box
+     */
+    public static Aabb3f of(Vec3f point) {
+        return new Aabb3f(point, point);
+    }
+
+    /**
+     * Creates a box by its center and half extent.
+     *
+     * @param center the center of the box
+     * @param halfExtent the half size of the box on each axis
+     * @return the new box
+     */
+    public static Aabb3f ofCenter(Vec3f center, Vec3f halfExtent) {
+        return new Aabb3f(center.sub(halfExtent), center.add(halfExtent));
+    }
+
+    /**
+     * Computes the bounds of all points stored interleaved (x,y,z,x,y,z,...) in
+     * the specified array.
+     *
+     * @param xyz the interleaved point buffer
+     * @return the bounds of all points or {@link #EMPTY} if there are none
+     */
+    public static Aabb3f fromPoints(float[] xyz) {
+        return fromPoints(xyz, 0, xyz.length / 3);
+    }
+
+    /**
+     * Computes the bounds of <code>count</code> points stored interleaved
+     * (x,y,z,x,y,z,...) in the specified array starting at point
+     * <code>offset</code>.
+     *
+     * @param xyz the interleaved point buffer
+     * @param offset the index of the first point (not the array index)
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     */
+    public static Aabb3f fromPoints(float[] xyz, int offset, int count) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        final int end = (offset + count) * 3;
+        for (int i = offset * 3; i < end; i += 3) {
+            final float x = xyz[i], y = xyz[i + 1], z = xyz[i + 2];
+            minX = x < minX ? x : minX;
+            minY = y < minY ? y : minY;
+            minZ = z < minZ ? z : minZ;
+            maxX = x > maxX ? x : maxX;
+            maxY = y > maxY ? y : maxY;
+            maxZ = z > maxZ ? z : maxZ;
+        }
+        return new Aabb3f(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Computes the bounds of <code>count</code> points stored as structure of
+     * arrays (one array per axis) starting at index <code>offset</code>.
+     *
+     * @param xs the x components
+     * @param ys the y components
+     * @param zs the z components
+     * @param offset the index of the first point
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     */
+    public static Aabb3f fromPoints(float[] xs, float[] ys, float[] zs, int offset, int count) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        // one pass per axis keeps each loop a plain min/max reduction over a
+        // single array which the JIT is able to vectorize
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final float x = xs[i];
+            minX = x < minX ? x : minX;
+            maxX = x > maxX ? x : maxX;
+        }
+        for (int i = offset; i < end; i++) {
+            final float y = ys[i];
+            minY = y < minY ? y : minY;
+            maxY = y > maxY ? y : maxY;
+        }
+        for (int i = offset; i < end; i++) {
+            final float z = zs[i];
+            minZ = z < minZ ? z : minZ;
+            maxZ = z > maxZ ? z : maxZ;
+        }
+        return new Aabb3f(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Computes the bounds of all interleaved points as a parallel reduction on
+     * the common {@link ForkJoinPool}.
+     *
+     * @param xyz the interleaved point buffer
+     * @return the bounds of all points or {@link #EMPTY} if there are none
+     * @see #fromPoints(float[])
+     */
+    public static Aabb3f fromPointsParallel(float[] xyz) {
+        return fromPointsParallel(xyz, 0, xyz.length / 3);
+    }
+
+    /**
+     * Computes the bounds of the interleaved points as a parallel reduction on
+     * the common {@link ForkJoinPool}.
+     *
+     * @param xyz the interleaved point buffer
+     * @param offset the index of the first point (not the array index)
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     * @see #fromPoints(float[], int, int)
+     */
+    public static Aabb3f fromPointsParallel(float[] xyz, int offset, int count) {
+        return ForkJoinPool.commonPool().invoke(new BoundsTask(xyz, null, null, offset, count));
+    }
+
+    /**
+     * Computes the bounds of the SoA points as a parallel reduction on the
+     * common {@link ForkJoinPool}.
+     *
+     * @param xs the x components
+     * @param ys the y components
+     * @param zs the z components
+     * @param offset the index of the first point
+     * @param count the amount of points
+     * @return the bounds of the points or {@link #EMPTY} if count is zero
+     * @see #fromPoints(float[], float[], float[], int, int)
+     */
+    public static Aabb3f fromPointsParallel(float[] xs, float[] ys, float[] zs, int offset, int count) {
+        return ForkJoinPool.commonPool().invoke(new BoundsTask(xs, ys, zs, offset, count));
+    }
+
+    /**
+     * Checks if this box contains nothing.
+     *
+     * @return true if any minimal component is greater than its maximal one
+     */
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    /**
+     * Checks if the specified point is inside or on the border of this box.
+     *
+     * @param x the x component of the point
+     * @param y the y component of the point
+     * @param z the z component of the point
+     * @return true if the point is contained
+     */
+    public boolean contains(float x, float y, float z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Checks if the specified point is inside or on the border of this box.
+     *
+     * @param point the point to check
+     * @return true if the point is contained
+     * @throws NullPointerException if the passed vector is null
+     */
+    public boolean contains(Vec3f point) {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Checks if the specified box is completely inside this box. The empty box
+     * is contained in every box.
+     *
+     * @param other the other box
+     * @return true if the other box is contained
+     * @throws NullPointerException if the passed box is null
+     */
+    public boolean contains(Aabb3f other) {
+        return other.isEmpty() || (other.minX >= minX && other.maxX <= maxX && other.minY >= minY && other.maxY <= maxY
+                && other.minZ >= minZ && other.maxZ <= maxZ);
+    }
+
+    /**
+     * Checks if this and the specified box share at least one point.
+     *
+     * @param other the other box
+     * @return true if both boxes overlap
+     * @throws NullPointerException if the passed box is null
+     */
+    public boolean overlaps(Aabb3f other) {
+        return minX <= other.maxX && maxX >= other.minX && minY <= other.maxY && maxY >= other.minY && minZ <= other.maxZ
+                && maxZ >= other.minZ;
+    }
+
+    /**
+     * Returns the smallest box containing this and the specified box.
+     *
+     * @param other the other box
+     * @return the new union box
+     * @throws NullPointerException if the passed box is null
+     */
+    public Aabb3f union(Aabb3f other) {
+        return new Aabb3f(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    /**
+     * Returns the smallest box containing this box and the specified point.
+     *
+     * @param point the point
+     * @return the new union box
+     * @throws NullPointerException if the passed vector is null
+     */
+    public Aabb3f union(Vec3f point) {
+        return union(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Returns the smallest box containing this box and the specified point.
+     *
+     * @param x the x component of the point
+     * @param y the y component of the point
+     * @param z the z component of the point
+     * @return the new union box
+     */
+    public Aabb3f union(float x, float y, float z) {
+        return new Aabb3f(Math.min(minX, x), Math.min(minY, y), Math.min(minZ, z), Math.max(maxX, x), Math.max(maxY, y),
+                Math.max(maxZ, z));
+    }
+
+    /**
+     * Returns the box shared by this and the specified box.
+     *
+     * @param other the other box
+     * @return the intersection box or {@link #EMPTY} if both do not overlap
+     * @throws NullPointerException if the passed box is null
+     */
+    public Aabb3f intersection(Aabb3f other) {
+        if (!overlaps(other)) {
+            return EMPTY;
+        }
+        return new Aabb3f(Math.max(minX, other.minX), Math.max(minY, other.minY), Math.max(minZ, other.minZ),
+                Math.min(maxX, other.maxX), Math.min(maxY, other.maxY), Math.min(maxZ, other.maxZ));
+    }
+
+    /**
+     * Grows the box on every side by the specified amount.
+     *
+     * @param amt the amount to grow (negative values shrink the box)
+     * @return the new box
+     */
+    public Aabb3f expand(float amt) {
+        return new Aabb3f(minX - amt, minY - amt, minZ - amt, maxX + amt, maxY + amt, maxZ + amt);
+    }
+
+    /**
+     * Transforms this box by the specified affine matrix and returns the
+     * smallest axis aligned box containing the transformed box.
+     * <p>
+     * Instead of transforming all eight corners this uses the method of Jim
+     * Arvo (Graphics Gems, 1990): For each row of the matrix the products of
+     * the row elements with the minimal and maximal components are computed and
+     * the smaller one is added to the new minimum, the greater one to the new
+     * maximum.
+     * </p>
+     *
+     * @param matrix the transformation (the projective row is ignored)
+     * @return the new transformed box
+     * @throws NullPointerException if the passed matrix is null
+     */
+    public Aabb3f transform(Mat4f matrix) {
+        if (isEmpty()) {
+            return EMPTY;
+        }
+        final float[] res = new float[FIELDS];
+        for (int i = 0; i < 3; i++) {
+            float lo = matrix.get(i, 3);
+            float hi = lo;
+
+            float a = matrix.get(i, 0) * minX, b = matrix.get(i, 0) * maxX;
+            lo += a < b ? a : b;
+            hi += a < b ? b : a;
+
+            a = matrix.get(i, 1) * minY;
+            b = matrix.get(i, 1) * maxY;
+            lo += a < b ? a : b;
+            hi += a < b ? b : a;
+
+            a = matrix.get(i, 2) * minZ;
+            b = matrix.get(i, 2) * maxZ;
+            lo += a < b ? a : b;
+            hi += a < b ? b : a;
+
+            res[i] = lo;
+            res[i + 3] = hi;
+        }
+        return new Aabb3f(res[0], res[1], res[2], res[3], res[4], res[5]);
+    }
+
+    /**
+     * @return the center point of this box
+     */
+    public Vec3f center() {
+        return new Vec3f((minX + maxX) * 0.5f, (minY + maxY) * 0.5f, (minZ + maxZ) * 0.5f);
+    }
+
+    /**
+     * @return the size of this box on each axis
+     */
+    public Vec3f extent() {
+        return new Vec3f(maxX - minX, maxY - minY, maxZ - minZ);
+    }
+
+    /**
+     * @return the half size of this box on each axis
+     */
+    public Vec3f halfExtent() {
+        return new Vec3f((maxX - minX) * 0.5f, (maxY - minY) * 0.5f, (maxZ - minZ) * 0.5f);
+    }
+
+    /**
+     * @return the surface area of this box or zero if it is empty
+     */
+    public float surfaceArea() {
+        if (isEmpty()) {
+            return 0;
+        }
+        final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * @return the volume of this box or zero if it is empty
+     */
+    public float volume() {
+        if (isEmpty()) {
+            return 0;
+        }
+        return (maxX - minX) * (maxY - minY) * (maxZ - minZ);
+    }
+
+    /**
+     * @return the minimal corner of this box
+     */
+    public Vec3f getMin() {
+        return new Vec3f(minX, minY, minZ);
+    }
+
+    /**
+     * @return the maximal corner of this box
+     */
+    public Vec3f getMax() {
+        return new Vec3f(maxX, maxY, maxZ);
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public float getMinZ() {
+        return minZ;
+    }
+
+    public float getMaxX() {
+        return maxX;
+    }
+
+    public float getMaxY() {
+        return maxY;
+    }
+
+    public float getMaxZ() {
+        return maxZ;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Float.floatToIntBits(minX);
+        result = prime * result + Float.floatToIntBits(minY);
+        result = prime * result + Float.floatToIntBits(minZ);
+        result = prime * result + Float.floatToIntBits(maxX);
+        result = prime * result + Float.floatToIntBits(maxY);
+        result = prime * result + Float.floatToIntBits(maxZ);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof Aabb3f) {
+            Aabb3f o = (Aabb3f) obj;
+            return minX == o.minX && minY == o.minY && minZ == o.minZ && maxX == o.maxX && maxY == o.maxY && maxZ == o.maxZ;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Aabb3f [minX=" + minX + ", minY=" + minY + ", minZ=" + minZ + ", maxX=" + maxX + ", maxY=" + maxY
+                + ", maxZ=" + maxZ + "]";
+    }
+
+    /**
+     * Splits a point range in halves until it is below
+     * {@link Aabb3f#PARALLEL_THRESHOLD} and unions the partial bounds. When
+     * only the first array is set the points are read interleaved.
+     */
+    private static final class BoundsTask extends RecursiveTask<Aabb3f> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] xs, ys, zs;
+        private final int offset, count;
+
+        BoundsTask(float[] xs, float[] ys, float[] zs, int offset, int count) {
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        protected Aabb3f compute() {
+            if (count <= PARALLEL_THRESHOLD) {
+                return ys == null ? fromPoints(xs, offset, count) : fromPoints(xs, ys, zs, offset, count);
+            }
+            final int half = count >>> 1;
+            final BoundsTask left = new BoundsTask(xs, ys, zs, offset, half);
+            final BoundsTask right = new BoundsTask(xs, ys, zs, offset + half, count - half);
+            left.fork();
+            final Aabb3f r = right.compute();
+            return left.join().union(r);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.bounds;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec4f;
+
+/**
+ * View frustum of 6 float planes (final::immutable)
+ * <p>
+ * The planes are extracted from a (model-)view-projection matrix using the
+ * method of Gribb and Hartmann: every clipping plane is the sum or difference
+ * of the last row and one of the other rows of the matrix. The planes are
+ * normalized and point inside the frustum, so a point p is inside if
+ * <code>a*p.x + b*p.y + c*p.z + d >= 0</code> holds for all six planes. If the
+ * matrix is a projection matrix only, the planes are in view space. For a
+ * view-projection matrix they are in world space.
+ * </p>
+ * <b>Bulk culling</b>
+ * <p>
+ * The <code>cull</code> methods test many boxes or spheres at once. Bounds are
+ * passed as structure of arrays (one float array per component) and the result
+ * is written as a bitset into a <code>long[]</code> where bit <code>i</code>
+ * (word <code>i &gt;&gt; 6</code>) is set if object <code>i</code> is visible.
+ * The array is compatible with {@link java.util.BitSet#valueOf(long[])}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Frustumf {
+
+    /**
+     * Defines how much planes are stored in this class
+     */
+    public static final int PLANES = 6;
+
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int BOTTOM = 2;
+    public static final int TOP = 3;
+    public static final int NEAR = 4;
+    public static final int FAR = 5;
+
+    /**
+     * Classification result if a volume is completely outside
+     */
+    public static final int OUTSIDE = 0;
+
+    /**
+     * Classification result if a volume intersects at least one plane
+     */
+    public static final int INTERSECTING = 1;
+
+    /**
+     * Classification result if a volume is completely inside
+     */
+    public static final int INSIDE = 2;
+
+    /**
+     * Amount of objects processed per bitset word
+     */
+    private static final int BLOCK = 64;
+
+    /**
+     * plane equations stored as structure of arrays
+     */
+    private final float[] a, b, c, d;
+
+    private Frustumf(float[] a, float[] b, float[] c, float[] d) {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+    }
+
+    /**
+     * Extracts the frustum planes of the specified matrix.
+     *
+     * @param matrix the projection, view-projection or model-view-projection
+     *            matrix
+     * @return the new frustum
+     * @throws NullPointerException if the passed matrix is null
+     */
+    public static Frustumf of(Mat4f matrix) {
+        final float[] a = new float[PLANES], b = new float[PLANES], c = new float[PLANES], d = new float[PLANES];
+        for (int i = 0; i < 3; i++) {
+            // row 3 + row i and row 3 - row i
+            final int lo = i * 2, hi = i * 2 + 1;
+            a[lo] = matrix.get(3, 0) + matrix.get(i, 0);
+            b[lo] = matrix.get(3, 1) + matrix.get(i, 1);
+            c[lo] = matrix.get(3, 2) + matrix.get(i, 2);
+            d[lo] = matrix.get(3, 3) + matrix.get(i, 3);
+            a[hi] = matrix.get(3, 0) - matrix.get(i, 0);
+            b[hi] = matrix.get(3, 1) - matrix.get(i, 1);
+            c[hi] = matrix.get(3, 2) - matrix.get(i, 2);
+            d[hi] = matrix.get(3, 3) - matrix.get(i, 3);
+        }
+        for (int p = 0; p < PLANES; p++) {
+            final float length = (float) Math.sqrt(a[p] * a[p] + b[p] * b[p] + c[p] * c[p]);
+            if (length != 0.0f) {
+                a[p] /= length;
+                b[p] /= length;
+                c[p] /= length;
+                d[p] /= length;
+            }
+        }
+        return new Frustumf(a, b, c, d);
+    }
+
+    /**
+     * Checks if the specified point is inside the frustum.
+     *
+     * @param x the x component of the point
+     * @param y the y component of the point
+     * @param z the z component of the point
+     * @return true if the point is on the inner side of all planes
+     */
+    public boolean contains(float x, float y, float z) {
+        for (int p = 0; p < PLANES; p++) {
+            if (a[p] * x + b[p] * y + c[p] * z + d[p] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the specified point is inside the frustum.
+     *
+     * @param point the point
+     * @return true if the point is on the inner side of all planes
+     * @throws NullPointerException if the passed vector is null
+     */
+    public boolean contains(Vec3f point) {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Conservative visibility check of a box. Only the corner of the box
+     * furthest along each plane normal (the positive vertex) is tested, so a
+     * box is reported visible unless it is completely behind one plane.
+     *
+     * @param minX the minimal x component of the box
+     * @param minY the minimal y component of the box
+     * @param minZ the minimal z component of the box
+     * @param maxX the maximal x component of the box
+     * @param maxY the maximal y component of the box
+     * @param maxZ the maximal z component of the box
+     * @return true if the box is potentially visible
+     */
+    public boolean isVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int p = 0; p < PLANES; p++) {
+            if (positiveDistance(p, minX, minY, minZ, maxX, maxY, maxZ) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Conservative visibility check of a box.
+     *
+     * @param box the box
+     * @return true if the box is potentially visible
+     * @throws NullPointerException if the passed box is null
+     * @see #isVisible(float, float, float, float, float, float)
+     */
+    public boolean isVisible(Aabb3f box) {
+        return isVisible(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * Conservative visibility check of a sphere.
+     *
+     * @param x the x component of the center
+     * @param y the y component of the center
+     * @param z the z component of the center
+     * @param radius the radius of the sphere
+     * @return true if the sphere is potentially visible
+     */
+    public boolean isSphereVisible(float x, float y, float z, float radius) {
+        for (int p = 0; p < PLANES; p++) {
+            if (a[p] * x + b[p] * y + c[p] * z + d[p] + radius < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Classifies the specified box against the frustum.
+     *
+     * @param box the box
+     * @return {@link #OUTSIDE}, {@link #INTERSECTING} or {@link #INSIDE}
+     * @throws NullPointerException if the passed box is null
+     */
+    public int classify(Aabb3f box) {
+        final float minX = box.getMinX(), minY = box.getMinY(), minZ = box.getMinZ();
+        final float maxX = box.getMaxX(), maxY = box.getMaxY(), maxZ = box.getMaxZ();
+
+        int result = INSIDE;
+        for (int p = 0; p < PLANES; p++) {
+            if (positiveDistance(p, minX, minY, minZ, maxX, maxY, maxZ) < 0) {
+                return OUTSIDE;
+            }
+            // the negative vertex is the positive one mirrored at the center
+            final float negative = a[p] * (a[p] > 0 ? minX : maxX) + b[p] * (b[p] > 0 ? minY : maxY)
+                    + c[p] * (c[p] > 0 ? minZ : maxZ) + d[p];
+            if (negative < 0) {
+                result = INTERSECTING;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Culls <code>count</code> boxes starting at <code>offset</code> and writes
+     * the visibility into the specified bitset.
+     * <p>
+     * The test runs plane by plane over a block of 64 boxes. Since the positive
+     * vertex only depends on the sign of the plane normal the min or max array
+     * is selected once per plane and the inner loop is a plain multiply-add
+     * over contiguous arrays without branches.
+     * </p>
+     *
+     * @param minX the minimal x components
+     * @param minY the minimal y components
+     * @param minZ the minimal z components
+     * @param maxX the maximal x components
+     * @param maxY the maximal y components
+     * @param maxZ the maximal z components
+     * @param offset the index of the first box
+     * @param count the amount of boxes
+     * @param visible the bitset to write (bit i is box i), bits outside of the
+     *            range are kept
+     * @return the amount of visible boxes
+     */
+    public int cull(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count,
+            long[] visible) {
+        final float[] dist = new float[BLOCK];
+        final int end = offset + count;
+        int visibleCount = 0;
+
+        for (int start = offset; start < end;) {
+            final int wordEnd = Math.min(end, ((start >> 6) + 1) << 6);
+            final int n = wordEnd - start;
+            Arrays.fill(dist, 0, n, Float.POSITIVE_INFINITY);
+
+            for (int p = 0; p < PLANES; p++) {
+                final float pa = a[p], pb = b[p], pc = c[p], pd = d[p];
+                final float[] px = pa > 0 ? maxX : minX;
+                final float[] py = pb > 0 ? maxY : minY;
+                final float[] pz = pc > 0 ? maxZ : minZ;
+                for (int j = 0; j < n; j++) {
+                    final int i = start + j;
+                    final float s = pa * px[i] + pb * py[i] + pc * pz[i] + pd;
+                    dist[j] = s < dist[j] ? s : dist[j];
+                }
+            }
+            visibleCount += writeBits(dist, start, n, visible);
+            start = wordEnd;
+        }
+        return visibleCount;
+    }
+
+    /**
+     * Culls <code>count</code> boxes starting at <code>offset</code> and writes
+     * the visibility into the specified bitset using plane coherency.
+     * <p>
+     * For every box the plane which rejected it in the previous call is stored
+     * in <code>planeCache</code> and tested first. For coherent camera motion
+     * most invisible boxes are rejected by a single plane test. The cache
+     * should be zero initialized and reused between frames.
+     * </p>
+     *
+     * @param minX the minimal x components
+     * @param minY the minimal y components
+     * @param minZ the minimal z components
+     * @param maxX the maximal x components
+     * @param maxY the maximal y components
+     * @param maxZ the maximal z components
+     * @param offset the index of the first box
+     * @param count the amount of boxes
+     * @param planeCache the last rejecting plane per box (indexed like the
+     *            boxes)
+     * @param visible the bitset to write (bit i is box i), bits outside of the
+     *            range are kept
+     * @return the amount of visible boxes
+     */
+    public int cull(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count,
+            byte[] planeCache, long[] visible) {
+        final int end = offset + count;
+        int visibleCount = 0;
+
+        for (int i = offset; i < end; i++) {
+            final float x0 = minX[i], y0 = minY[i], z0 = minZ[i], x1 = maxX[i], y1 = maxY[i], z1 = maxZ[i];
+            final int first = planeCache[i];
+            boolean inside = positiveDistance(first, x0, y0, z0, x1, y1, z1) >= 0;
+            for (int p = 0; inside && p < PLANES; p++) {
+                if (p != first && positiveDistance(p, x0, y0, z0, x1, y1, z1) < 0) {
+                    planeCache[i] = (byte) p;
+                    inside = false;
+                }
+            }
+            if (inside) {
+                visible[i >> 6] |= 1L << i;
+                visibleCount++;
+            } else {
+                visible[i >> 6] &= ~(1L << i);
+            }
+        }
+        return visibleCount;
+    }
+
+    /**
+     * Culls <code>count</code> spheres starting at <code>offset</code> and
+     * writes the visibility into the specified bitset.
+     *
+     * @param x the x components of the centers
+     * @param y the y components of the centers
+     * @param z the z components of the centers
+     * @param radius the radii
+     * @param offset the index of the first sphere
+     * @param count the amount of spheres
+     * @param visible the bitset to write (bit i is sphere i), bits outside of
+     *            the range are kept
+     * @return the amount of visible spheres
+     * @see #cull(float[], float[], float[], float[], float[], float[], int, int,
+     *      long[])
+     */
+    public int cullSpheres(float[] x, float[] y, float[] z, float[] radius, int offset, int count, long[] visible) {
+        final float[] dist = new float[BLOCK];
+        final int end = offset + count;
+        int visibleCount = 0;
+
+        for (int start = offset; start < end;) {
+            final int wordEnd = Math.min(end, ((start >> 6) + 1) << 6);
+            final int n = wordEnd - start;
+            Arrays.fill(dist, 0, n, Float.POSITIVE_INFINITY);
+
+            for (int p = 0; p < PLANES; p++) {
+                final float pa = a[p], pb = b[p], pc = c[p], pd = d[p];
+                for (int j = 0; j < n; j++) {
+                    final int i = start + j;
+                    final float s = pa * x[i] + pb * y[i] + pc * z[i] + pd + radius[i];
+                    dist[j] = s < dist[j] ? s : dist[j];
+                }
+            }
+            visibleCount += writeBits(dist, start, n, visible);
+            start = wordEnd;
+        }
+        return visibleCount;
+    }
+
+    /**
+     * Returns the plane equation (a,b,c,d) of the specified plane as vector.
+     *
+     * @param plane the plane index, for example {@link #NEAR}
+     * @return the normalized plane equation pointing inside
+     */
+    public Vec4f getPlane(int plane) {
+        return new Vec4f(a[plane], b[plane], c[plane], d[plane]);
+    }
+
+    /**
+     * Signed distance of the box corner furthest along the plane normal.
+     */
+    private float positiveDistance(int p, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        final float pa = a[p], pb = b[p], pc = c[p];
+        return pa * (pa > 0 ? maxX : minX) + pb * (pb > 0 ? maxY : minY) + pc * (pc > 0 ? maxZ : minZ) + d[p];
+    }
+
+    /**
+     * Sets the bits of all objects of one word range which are in front of all
+     * planes and clears the others.
+     */
+    private static int writeBits(float[] dist, int start, int n, long[] visible) {
+        long bits = 0;
+        for (int j = 0; j < n; j++) {
+            if (dist[j] >= 0) {
+                bits |= 1L << j;
+            }
+        }
+        final int shift = start & 63;
+        final long range = (n == BLOCK ? -1L : ((1L << n) - 1)) << shift;
+        final int word = start >> 6;
+        visible[word] = (visible[word] & ~range) | (bits << shift);
+        return Long.bitCount(bits);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Arrays.hashCode(a);
+        result = prime * result + Arrays.hashCode(b);
+        result = prime * result + Arrays.hashCode(c);
+        result = prime * result + Arrays.hashCode(d);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof Frustumf) {
+            Frustumf o = (Frustumf) obj;
+            return Arrays.equals(a, o.a) && Arrays.equals(b, o.b) && Arrays.equals(c, o.c) && Arrays.equals(d, o.d);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final String[] names = { "left", "right", "bottom", "top", "near", "far" };
+        final StringBuilder builder = new StringBuilder("Frustumf [");
+        for (int p = 0; p < PLANES; p++) {
+            builder.append(p == 0 ? "" : ", ").append(names[p]).append("=(").append(a[p]).append('/').append(b[p])
+                    .append('/').append(c[p]).append('/').append(d[p]).append(')');
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.codec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * IEEE 754 half precision (binary16) conversion
+ * <p>
+ * Half floats have 1 sign, 5 exponent and 10 mantissa bits and are stored in
+ * the bits of a <code>short</code>. Conversion to half rounds to nearest even,
+ * values above the half range become infinity and values below the smallest
+ * subnormal become signed zero. Infinities are kept and NaN stays NaN. Texture
+ * coordinates in <code>[0, 1]</code> keep a precision of at least
+ * <code>2^-11</code>, which is well below a texel of a 2048 texture.
+ * </p>
+ * <p>
+ * On Java 20 and later the conversions call
+ * <code>Float.floatToFloat16</code> and <code>Float.float16ToFloat</code>
+ * through constant method handles, which the JIT inlines and compiles to the
+ * hardware conversion instructions. On older runtimes the same rounding is
+ * done with integer arithmetic. Both give identical results, except for the
+ * payload bits of NaN.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class HalfFloat {
+
+    /**
+     * Largest finite half float value
+     */
+    public static final float MAX_VALUE = 65504f;
+
+    // null before Java 20
+    private static final MethodHandle FLOAT_TO_HALF = lookup("floatToFloat16", short.class, float.class);
+    private static final MethodHandle HALF_TO_FLOAT = lookup("float16ToFloat", float.class, short.class);
+
+    private HalfFloat() {
+    }
+
+    private static MethodHandle lookup(String name, Class<?> returnType, Class<?> parameterType) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Float.class, name, MethodType.methodType(returnType, parameterType));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param value the value
+     * @return the bits of the nearest half float
+     */
+    public static short toHalf(float value) {
+        if (FLOAT_TO_HALF != null) {
+            try {
+                return (short) FLOAT_TO_HALF.invokeExact(value);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return toHalfBits(value);
+    }
+
+    static short toHalfBits(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int sign = bits >>> 16 & 0x8000;
+        final int abs = bits & 0x7FFFFFFF;
+        if (abs >= 0x7F800000) {
+            // infinity or NaN, NaN keeps its upper payload and stays NaN
+            return (short) (sign | 0x7C00 | (abs > 0x7F800000 ? 0x200 | abs >>> 13 & 0x3FF : 0));
+        }
+        if (abs >= 0x477FF000) {
+            // rounds to a value beyond MAX_VALUE
+            return (short) (sign | 0x7C00);
+        }
+        if (abs < 0x38800000) {
+            // half subnormal, 2^-25 and below round to zero
+            if (abs <= 0x33000000) {
+                return (short) sign;
+            }
+            final int mantissa = abs & 0x7FFFFF | 0x800000;
+            final int shift = 126 - (abs >>> 23);
+            int half = mantissa >>> shift;
+            final int rest = mantissa & (1 << shift) - 1, tie = 1 << shift - 1;
+            if (rest > tie || rest == tie && (half & 1) != 0) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        // rebias the exponent from 127 to 15, a mantissa carry correctly
+        // increments the exponent
+        int half = abs - 0x38000000 >>> 13;
+        final int rest = abs & 0x1FFF;
+        if (rest > 0x1000 || rest == 0x1000 && (half & 1) != 0) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * @param half the bits of a half float
+     * @return the value
+     */
+    public static float toFloat(short half) {
+        if (HALF_TO_FLOAT != null) {
+            try {
+                return (float) HALF_TO_FLOAT.invokeExact(half);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return toFloatBits(half);
+    }
+
+    static float toFloatBits(short half) {
+        final int sign = (half & 0x8000) << 16;
+        final int exponent = half >>> 10 & 0x1F;
+        final int mantissa = half & 0x3FF;
+        if (exponent == 0) {
+            final float value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | mantissa << 13);
+        }
+        return Float.intBitsToFloat(sign | exponent + 112 << 23 | mantissa << 13);
+    }
+
+    /**
+     * Converts values to half floats.
+     *
+     * @param values the values
+     * @param offset the first value
+     * @param count the amount of values
+     * @param result receives the half of value <code>offset + i</code> at
+     *            index <code>i</code>
+     * @return the passed result array
+     */
+    public static short[] encode(float[] values, int offset, int count, short[] result) {
+        for (int i = 0; i < count; i++) {
+            result[i] = toHalf(values[offset + i]);
+        }
+        return result;
+    }
+
+    /**
+     * Converts values to half floats.
+     *
+     * @param values the values, for example texture coordinates (u,v
+     *            interleaved)
+     * @return the half floats
+     */
+    public static short[] encode(float[] values) {
+        return encode(values, 0, values.length, new short[values.length]);
+    }
+
+    /**
+     * Converts half floats to values.
+     *
+     * @param halves the half floats
+     * @param offset the first half float
+     * @param count the amount of half floats
+     * @param result receives the value of half <code>offset + i</code> at
+     *            index <code>i</code>
+     * @return the passed result array
+     */
+    public static float[] decode(short[] halves, int offset, int count, float[] result) {
+        for (int i = 0; i < count; i++) {
+            result[i] = toFloat(halves[offset + i]);
+        }
+        return result;
+    }
+
+    /**
+     * Converts half floats to values.
+     *
+     * @param halves the half floats
+     * @return the values
+     */
+    public static float[] decode(short[] halves) {
+        return decode(halves, 0, halves.length, new float[halves.length]);
+    }
+
+    /**
+     * Packs a texture coordinate into two half floats.
+     *
+     * @param uv the texture coordinate
+     * @return u in the lower and v in the upper 16 bits
+     */
+    public static int pack(Vec2f uv) {
+        return toHalf(uv.getX()) & 0xFFFF | toHalf(uv.getY()) << 16;
+    }
+
+    /**
+     * @param packed two half floats as returned by {@link #pack(Vec2f)}
+     * @return the texture coordinate
+     */
+    public static Vec2f unpack(int packed) {
+        return Vec2f.of(toFloat((short) packed), toFloat((short) (packed >>> 16)));
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.codec;
+
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Octahedral encoding of unit vectors
+ * <p>
+ * A unit vector is projected onto the octahedron <code>|x|+|y|+|z| = 1</code>,
+ * the lower half is folded over the upper half and the resulting square is
+ * stored as two signed normalized values (Cigolle et al., "A Survey of
+ * Efficient Representations for Independent Unit Vectors", 2014). The
+ * angular error is about one degree with 2x8 bits and about 0.004 degrees
+ * with 2x16 bits, compared to 12 bytes for three floats. Input vectors need not be
+ * normalized, the zero vector encodes as <code>+z</code>. Decoded vectors are
+ * normalized.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class OctahedralCodec {
+
+    private static final int MAX_8 = 0x7F;
+    private static final int MAX_16 = 0x7FFF;
+
+    private OctahedralCodec() {
+    }
+
+    /**
+     * Encodes interleaved vectors to two bytes each.
+     *
+     * @param xyz the vectors (x,y,z interleaved)
+     * @param offset the first vector
+     * @param count the amount of vectors
+     * @param result receives the vector <code>offset + i</code> at index
+     *            <code>i * 2</code>
+     * @return the passed result array
+     */
+    public static byte[] encode8(float[] xyz, int offset, int count, byte[] result) {
+        final float[] uv = new float[2];
+        for (int i = 0, p = offset * 3; i < count * 2; i += 2, p += 3) {
+            project(xyz[p], xyz[p + 1], xyz[p + 2], uv);
+            result[i] = (byte) Math.round(uv[0] * MAX_8);
+            result[i + 1] = (byte) Math.round(uv[1] * MAX_8);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes interleaved vectors to two bytes each.
+     *
+     * @param xyz the vectors (x,y,z interleaved)
+     * @return the encoded vectors
+     */
+    public static byte[] encode8(float[] xyz) {
+        final int count = xyz.length / 3;
+        return encode8(xyz, 0, count, new byte[count * 2]);
+    }
+
+    /**
+     * Encodes interleaved vectors to two shorts each.
+     *
+     * @param xyz the vectors (x,y,z interleaved)
+     * @param offset the first vector
+     * @param count the amount of vectors
+     * @param result receives the vector <code>offset + i</code> at index
+     *            <code>i * 2</code>
+     * @return the passed result array
+     */
+    public static short[] encode16(float[] xyz, int offset, int count, short[] result) {
+        final float[] uv = new float[2];
+        for (int i = 0, p = offset * 3; i < count * 2; i += 2, p += 3) {
+            project(xyz[p], xyz[p + 1], xyz[p + 2], uv);
+            result[i] = (short) Math.round(uv[0] * MAX_16);
+            result[i + 1] = (short) Math.round(uv[1] * MAX_16);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes interleaved vectors to two shorts each.
+     *
+     * @param xyz the vectors (x,y,z interleaved)
+     * @return the encoded vectors
+     */
+    public static short[] encode16(float[] xyz) {
+        final int count = xyz.length / 3;
+        return encode16(xyz, 0, count, new short[count * 2]);
+    }
+
+    /**
+     * Decodes vectors encoded with two bytes each.
+     *
+     * @param encoded the encoded vectors
+     * @param offset the first vector
+     * @param count the amount of vectors
+     * @param result receives the unit vector <code>offset + i</code> at index
+     *            <code>i * 3</code>
+     * @return the passed result array
+     */
+    public static float[] decode8(byte[] encoded, int offset, int count, float[] result) {
+        for (int i = 0, e = offset * 2; i < count * 3; i += 3, e += 2) {
+            unproject(encoded[e] * (1f / MAX_8), encoded[e + 1] * (1f / MAX_8), result, i);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes vectors encoded with two bytes each.
+     *
+     * @param encoded the encoded vectors
+     * @return the unit vectors (x,y,z interleaved)
+     */
+    public static float[] decode8(byte[] encoded) {
+        final int count = encoded.length / 2;
+        return decode8(encoded, 0, count, new float[count * 3]);
+    }
+
+    /**
+     * Decodes vectors encoded with two shorts each.
+     *
+     * @param encoded the encoded vectors
+     * @param offset the first vector
+     * @param count the amount of vectors
+     * @param result receives the unit vector <code>offset + i</code> at index
+     *            <code>i * 3</code>
+     * @return the passed result array
+     */
+    public static float[] decode16(short[] encoded, int offset, int count, float[] result) {
+        for (int i = 0, e = offset * 2; i < count * 3; i += 3, e += 2) {
+            unproject(encoded[e] * (1f / MAX_16), encoded[e + 1] * (1f / MAX_16), result, i);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes vectors encoded with two shorts each.
+     *
+     * @param encoded the encoded vectors
+     * @return the unit vectors (x,y,z interleaved)
+     */
+    public static float[] decode16(short[] encoded) {
+        final int count = encoded.length / 2;
+        return decode16(encoded, 0, count, new float[count * 3]);
+    }
+
+    /**
+     * Encodes a vector to two shorts.
+     *
+     * @param vector the vector
+     * @return the first short in the lower and the second in the upper 16 bits
+     */
+    public static int encode16(Vec3f vector) {
+        final float[] uv = project(vector.getX(), vector.getY(), vector.getZ(), new float[2]);
+        return Math.round(uv[0] * MAX_16) & 0xFFFF | Math.round(uv[1] * MAX_16) << 16;
+    }
+
+    /**
+     * @param packed a vector as returned by {@link #encode16(Vec3f)}
+     * @return the unit vector
+     */
+    public static Vec3f decode16(int packed) {
+        final float[] xyz = unproject((short) packed * (1f / MAX_16), (short) (packed >>> 16) * (1f / MAX_16), new float[3], 0);
+        return Vec3f.of(xyz[0], xyz[1], xyz[2]);
+    }
+
+    private static float[] project(float x, float y, float z, float[] uv) {
+        final float l1 = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (!(l1 > 0 && l1 < Float.POSITIVE_INFINITY)) {
+            uv[0] = 0;
+            uv[1] = 0;
+            return uv;
+        }
+        float u = x / l1, v = y / l1;
+        if (z < 0) {
+            final float fu = (1 - Math.abs(v)) * (u >= 0 ? 1 : -1);
+            v = (1 - Math.abs(u)) * (v >= 0 ? 1 : -1);
+            u = fu;
+        }
+        uv[0] = u;
+        uv[1] = v;
+        return uv;
+    }
+
+    private static float[] unproject(float u, float v, float[] result, int at) {
+        // the most negative byte and short map below -1
+        u = Math.max(u, -1);
+        v = Math.max(v, -1);
+        final float z = 1 - Math.abs(u) - Math.abs(v);
+        if (z < 0) {
+            final float fu = (1 - Math.abs(v)) * (u >= 0 ? 1 : -1);
+            v = (1 - Math.abs(u)) * (v >= 0 ? 1 : -1);
+            u = fu;
+        }
+        final float inv = 1 / (float) Math.sqrt(u * u + v * v + z * z);
+        result[at] = u * inv;
+        result[at + 1] = v * inv;
+        result[at + 2] = z * inv;
+        return result;
+    }
+
+}
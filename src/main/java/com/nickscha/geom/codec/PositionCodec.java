@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.codec;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Positions quantized to 16 bits per axis relative to a bounding box
+ * <p>
+ * Every axis of the box is divided into 65535 steps and a position is stored
+ * as the nearest step, three unsigned values in the bits of a
+ * <code>short</code>. This halves the 12 bytes of a {@link Vec3f} to 6. The
+ * error per axis is about half a step, see {@link #getMaxError(Aabb3f)}.
+ * Positions outside the box are clamped to it, NaN maps to the minimum. The
+ * same box must be used to decode.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class PositionCodec {
+
+    /**
+     * Largest quantized value per axis
+     */
+    public static final int STEPS = 0xFFFF;
+
+    private PositionCodec() {
+    }
+
+    /**
+     * Quantizes interleaved positions.
+     *
+     * @param xyz the positions (x,y,z interleaved)
+     * @param offset the first position
+     * @param count the amount of positions
+     * @param bounds the box to quantize to
+     * @param result receives the position <code>offset + i</code> at index
+     *            <code>i * 3</code>
+     * @return the passed result array
+     */
+    public static short[] encode(float[] xyz, int offset, int count, Aabb3f bounds, short[] result) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final float sx = scale(minX, bounds.getMaxX()), sy = scale(minY, bounds.getMaxY()), sz = scale(minZ, bounds.getMaxZ());
+        for (int i = 0, p = offset * 3; i < count * 3; i += 3, p += 3) {
+            result[i] = quantize(xyz[p], minX, sx);
+            result[i + 1] = quantize(xyz[p + 1], minY, sy);
+            result[i + 2] = quantize(xyz[p + 2], minZ, sz);
+        }
+        return result;
+    }
+
+    /**
+     * Quantizes interleaved positions to their own bounds.
+     *
+     * @param xyz the positions (x,y,z interleaved)
+     * @param bounds the box to quantize to, usually
+     *            {@link Aabb3f#fromPoints(float[])} of the positions
+     * @return the quantized positions
+     */
+    public static short[] encode(float[] xyz, Aabb3f bounds) {
+        final int count = xyz.length / 3;
+        return encode(xyz, 0, count, bounds, new short[count * 3]);
+    }
+
+    /**
+     * Restores interleaved positions.
+     *
+     * @param quantized the quantized positions
+     * @param offset the first position
+     * @param count the amount of positions
+     * @param bounds the box the positions were quantized to
+     * @param result receives the position <code>offset + i</code> at index
+     *            <code>i * 3</code>
+     * @return the passed result array
+     */
+    public static float[] decode(short[] quantized, int offset, int count, Aabb3f bounds, float[] result) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final float dx = step(minX, bounds.getMaxX()), dy = step(minY, bounds.getMaxY()), dz = step(minZ, bounds.getMaxZ());
+        for (int i = 0, q = offset * 3; i < count * 3; i += 3, q += 3) {
+            result[i] = minX + (quantized[q] & 0xFFFF) * dx;
+            result[i + 1] = minY + (quantized[q + 1] & 0xFFFF) * dy;
+            result[i + 2] = minZ + (quantized[q + 2] & 0xFFFF) * dz;
+        }
+        return result;
+    }
+
+    /**
+     * Restores interleaved positions.
+     *
+     * @param quantized the quantized positions
+     * @param bounds the box the positions were quantized to
+     * @return the positions
+     */
+    public static float[] decode(short[] quantized, Aabb3f bounds) {
+        final int count = quantized.length / 3;
+        return decode(quantized, 0, count, bounds, new float[count * 3]);
+    }
+
+    /**
+     * Restores a single position.
+     *
+     * @param quantized the quantized positions
+     * @param index the position
+     * @param bounds the box the positions were quantized to
+     * @return the position
+     */
+    public static Vec3f decode(short[] quantized, int index, Aabb3f bounds) {
+        final int q = index * 3;
+        return Vec3f.of(bounds.getMinX() + (quantized[q] & 0xFFFF) * step(bounds.getMinX(), bounds.getMaxX()),
+                bounds.getMinY() + (quantized[q + 1] & 0xFFFF) * step(bounds.getMinY(), bounds.getMaxY()),
+                bounds.getMinZ() + (quantized[q + 2] & 0xFFFF) * step(bounds.getMinZ(), bounds.getMaxZ()));
+    }
+
+    /**
+     * @param bounds the box
+     * @return the largest error per axis of positions inside the box
+     */
+    public static Vec3f getMaxError(Aabb3f bounds) {
+        return Vec3f.of(step(bounds.getMinX(), bounds.getMaxX()) * 0.5f, step(bounds.getMinY(), bounds.getMaxY()) * 0.5f,
+                step(bounds.getMinZ(), bounds.getMaxZ()) * 0.5f);
+    }
+
+    private static short quantize(float value, float min, float scale) {
+        final float q = (value - min) * scale + 0.5f;
+        // also maps NaN to zero
+        return (short) (q >= STEPS ? STEPS : q > 0 ? (int) q : 0);
+    }
+
+    private static float scale(float min, float max) {
+        final float extent = max - min;
+        return extent > 0 && extent < Float.POSITIVE_INFINITY ? STEPS / extent : 0;
+    }
+
+    private static float step(float min, float max) {
+        final float extent = max - min;
+        return extent > 0 && extent < Float.POSITIVE_INFINITY ? extent / STEPS : 0;
+    }
+
+}
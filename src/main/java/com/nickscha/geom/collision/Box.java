@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Box centered at the origin of its local space (final::immutable)
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Box implements ConvexShape {
+
+    private final float halfX;
+    private final float halfY;
+    private final float halfZ;
+
+    /**
+     * @param halfX half the extent along x
+     * @param halfY half the extent along y
+     * @param halfZ half the extent along z
+     * @throws IllegalArgumentException if a value is negative or NaN
+     */
+    public Box(float halfX, float halfY, float halfZ) {
+        if (!(halfX >= 0) || !(halfY >= 0) || !(halfZ >= 0)) {
+            throw new IllegalArgumentException("Extents must not be negative: " + halfX + ", " + halfY + ", " + halfZ);
+        }
+        this.halfX = halfX;
+        this.halfY = halfY;
+        this.halfZ = halfZ;
+    }
+
+    /**
+     * @param halfExtent half the extent per axis
+     * @throws IllegalArgumentException if a value is negative or NaN
+     */
+    public Box(Vec3f halfExtent) {
+        this(halfExtent.getX(), halfExtent.getY(), halfExtent.getZ());
+    }
+
+    @Override
+    public void support(float dx, float dy, float dz, float[] out) {
+        out[0] = dx < 0 ? -halfX : halfX;
+        out[1] = dy < 0 ? -halfY : halfY;
+        out[2] = dz < 0 ? -halfZ : halfZ;
+    }
+
+    @Override
+    public float getMargin() {
+        return 0;
+    }
+
+    /**
+     * @return half the extent per axis
+     */
+    public Vec3f getHalfExtent() {
+        return Vec3f.of(halfX, halfY, halfZ);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * Float.floatToIntBits(halfX) + Float.floatToIntBits(halfY)) * 31 + Float.floatToIntBits(halfZ);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Box)) {
+            return false;
+        }
+        final Box other = (Box) obj;
+        return Float.floatToIntBits(halfX) == Float.floatToIntBits(other.halfX)
+                && Float.floatToIntBits(halfY) == Float.floatToIntBits(other.halfY)
+                && Float.floatToIntBits(halfZ) == Float.floatToIntBits(other.halfZ);
+    }
+
+    @Override
+    public String toString() {
+        return "Box [halfX=" + halfX + ", halfY=" + halfY + ", halfZ=" + halfZ + "]";
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+/**
+ * Capsule along the local y axis (final::immutable)
+ * <p>
+ * The core is the segment from <code>(0, -halfHeight, 0)</code> to
+ * <code>(0, halfHeight, 0)</code>, the radius is the margin.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Capsule implements ConvexShape {
+
+    private final float radius;
+    private final float halfHeight;
+
+    /**
+     * @param radius the radius
+     * @param halfHeight half the length of the core segment
+     * @throws IllegalArgumentException if a value is negative or NaN
+     */
+    public Capsule(float radius, float halfHeight) {
+        if (!(radius >= 0) || !(halfHeight >= 0)) {
+            throw new IllegalArgumentException("Dimensions must not be negative: " + radius + ", " + halfHeight);
+        }
+        this.radius = radius;
+        this.halfHeight = halfHeight;
+    }
+
+    @Override
+    public void support(float dx, float dy, float dz, float[] out) {
+        out[0] = 0;
+        out[1] = dy < 0 ? -halfHeight : halfHeight;
+        out[2] = 0;
+    }
+
+    @Override
+    public float getMargin() {
+        return radius;
+    }
+
+    /**
+     * @return the radius
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return half the length of the core segment
+     */
+    public float getHalfHeight() {
+        return halfHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Float.floatToIntBits(radius) + Float.floatToIntBits(halfHeight);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Capsule)) {
+            return false;
+        }
+        final Capsule other = (Capsule) obj;
+        return Float.floatToIntBits(radius) == Float.floatToIntBits(other.radius)
+                && Float.floatToIntBits(halfHeight) == Float.floatToIntBits(other.halfHeight);
+    }
+
+    @Override
+    public String toString() {
+        return "Capsule [radius=" + radius + ", halfHeight=" + halfHeight + "]";
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+/**
+ * Convex shape described by its support function
+ * <p>
+ * A shape is split into a core and a margin: the shape is the core inflated
+ * by a sphere of the margin radius. Spheres and capsules are a point and a
+ * segment with their radius as margin, which lets {@link Gjk} handle them
+ * exactly and keeps the core queries away from the degenerate touching case.
+ * Shapes are defined in their local space and placed by a pose at query time.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public interface ConvexShape {
+
+    /**
+     * Computes the point of the core farthest in the specified direction. The
+     * direction is not normalized and may be zero.
+     *
+     * @param dx the x component of the local direction
+     * @param dy the y component of the local direction
+     * @param dz the z component of the local direction
+     * @param out receives the local support point at index 0 to 2
+     */
+    void support(float dx, float dy, float dz, float[] out);
+
+    /**
+     * @return the radius the core is inflated by
+     */
+    float getMargin();
+
+}
@@ -0,0 +1,943 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+import com.nickscha.geom.quat.Quatf;
+import com.nickscha.geom.transform.Transf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Narrowphase queries between two posed convex shapes (final::mutable)
+ * <p>
+ * The distance between two shapes is the distance of their Minkowski
+ * difference to the origin, which the Gilbert-Johnson-Keerthi algorithm finds
+ * by growing and reducing a simplex of support points. Overlapping shapes are
+ * passed to the expanding polytope algorithm (EPA), which grows a polytope
+ * from the final simplex until it finds the face closest to the origin: its
+ * distance is the penetration depth and its normal the direction of minimal
+ * translation.
+ * </p>
+ * <p>
+ * Both algorithms run on the cores of the shapes (see
+ * {@link ConvexShape#getMargin()}) and the margins are added to the result.
+ * This is exact: inflating a convex set moves its whole boundary outward by
+ * the margin, so the distance shrinks and the depth grows by the sum of the
+ * margins along the same normal. Spheres and capsules therefore never need a
+ * polytope approximation of their curved surface.
+ * </p>
+ * <p>
+ * <b>Warm starting:</b> Every query takes an optional {@link GjkCache} of the
+ * pair. The query starts from the simplex stored by the previous query of the
+ * same pair and stores its final simplex for the next one.
+ * </p>
+ * <p>
+ * <b>Allocation:</b> A solver keeps all state of a query in preallocated
+ * arrays and does not allocate. Results are read with the getters after the
+ * query. A solver is not thread safe, use one per thread. The
+ * {@link Transf} overloads compute the world pose through the transform, which
+ * allocates inside {@link Transf}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Gjk {
+
+    /**
+     * Maximum amount of GJK iterations per query
+     */
+    static final int MAX_ITERATIONS = 64;
+
+    /**
+     * Maximum amount of EPA iterations per query
+     */
+    static final int EPA_MAX_ITERATIONS = 64;
+
+    private static final int MAX_VERTICES = EPA_MAX_ITERATIONS + 4;
+    private static final int MAX_FACES = MAX_VERTICES * 4;
+    private static final int MAX_EDGES = MAX_FACES;
+
+    /**
+     * Relative improvement below which an iteration counts as converged
+     */
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Squared tolerance relative to the squared size of the shapes
+     */
+    private static final double TOLERANCE_SQUARED = 1e-12;
+
+    private static final int SEPARATED = 0;
+    private static final int CONVERGED = 1;
+    private static final int OVERLAP = 2;
+
+    private static final int[] TETRAHEDRON = { 0, 1, 2, 3, 0, 3, 1, 2, 0, 2, 3, 1, 1, 3, 2, 0 };
+
+    private ConvexShape shapeA;
+    private ConvexShape shapeB;
+    private final double[] poseA = new double[7];
+    private final double[] poseB = new double[7];
+    private final float[] local = new float[3];
+    private final double[] rotated = new double[3];
+
+    // simplex in slots 0 to 3, the polytope of EPA continues after them
+    private final double[] w = new double[MAX_VERTICES * 3];
+    private final double[] a = new double[MAX_VERTICES * 3];
+    private final double[] b = new double[MAX_VERTICES * 3];
+    private final double[] dir = new double[12];
+    private final double[] lambda = new double[4];
+    private int count;
+    private double vx, vy, vz;
+    private double scale;
+    private long supports;
+
+    // reduction of the simplex
+    private final int[] keep = new int[4];
+    private final double[] keepLambda = new double[4];
+    private final int[] candidate = new int[3];
+    private final double[] candidateLambda = new double[3];
+    private final double[] temp = new double[48];
+
+    // polytope
+    private final int[] faceVertices = new int[MAX_FACES * 3];
+    private final double[] faceNormals = new double[MAX_FACES * 3];
+    private final double[] faceDistances = new double[MAX_FACES];
+    private final boolean[] faceAlive = new boolean[MAX_FACES];
+    private int faceCount;
+    private final int[] edges = new int[MAX_EDGES * 2];
+    private int edgeCount;
+
+    // result
+    private double distance;
+    private final double[] normal = new double[3];
+    private final double[] pointA = new double[3];
+    private final double[] pointB = new double[3];
+
+    /**
+     * Computes the signed distance between two shapes. Positive values are
+     * the gap between separated shapes, negative values the penetration depth
+     * of overlapping shapes.
+     *
+     * @param a the first shape
+     * @param positionA the position of the first shape
+     * @param rotationA the rotation of the first shape
+     * @param b the second shape
+     * @param positionB the position of the second shape
+     * @param rotationB the rotation of the second shape
+     * @param cache the cache of the pair or null to start from scratch
+     * @return the signed distance
+     * @throws NullPointerException if any argument but the cache is null
+     */
+    public float distance(ConvexShape a, Vec3f positionA, Quatf rotationA, ConvexShape b, Vec3f positionB, Quatf rotationB,
+            GjkCache cache) {
+        pose(a, positionA, rotationA, b, positionB, rotationB);
+        return query(cache);
+    }
+
+    /**
+     * Computes the signed distance between two shapes placed by the world
+     * position and rotation of transforms. The scale of the transforms is
+     * ignored.
+     *
+     * @param a the first shape
+     * @param transformA the transform of the first shape
+     * @param b the second shape
+     * @param transformB the transform of the second shape
+     * @param cache the cache of the pair or null to start from scratch
+     * @return the signed distance
+     * @throws NullPointerException if any argument but the cache is null
+     * @see #distance(ConvexShape, Vec3f, Quatf, ConvexShape, Vec3f, Quatf,
+     *      GjkCache)
+     */
+    public float distance(ConvexShape a, Transf transformA, ConvexShape b, Transf transformB, GjkCache cache) {
+        pose(a, transformA.getTransformedPos(), transformA.getTransformedRot(), b, transformB.getTransformedPos(),
+                transformB.getTransformedRot());
+        return query(cache);
+    }
+
+    /**
+     * Tests whether two shapes overlap or touch. This stops as soon as a
+     * separating axis is found and does not compute the penetration, the
+     * other results are undefined afterwards.
+     *
+     * @param a the first shape
+     * @param positionA the position of the first shape
+     * @param rotationA the rotation of the first shape
+     * @param b the second shape
+     * @param positionB the position of the second shape
+     * @param rotationB the rotation of the second shape
+     * @param cache the cache of the pair or null to start from scratch
+     * @return true if the shapes intersect
+     * @throws NullPointerException if any argument but the cache is null
+     */
+    public boolean intersects(ConvexShape a, Vec3f positionA, Quatf rotationA, ConvexShape b, Vec3f positionB,
+            Quatf rotationB, GjkCache cache) {
+        pose(a, positionA, rotationA, b, positionB, rotationB);
+        return test(cache);
+    }
+
+    /**
+     * Tests whether two shapes placed by the world position and rotation of
+     * transforms overlap or touch. The scale of the transforms is ignored.
+     *
+     * @param a the first shape
+     * @param transformA the transform of the first shape
+     * @param b the second shape
+     * @param transformB the transform of the second shape
+     * @param cache the cache of the pair or null to start from scratch
+     * @return true if the shapes intersect
+     * @throws NullPointerException if any argument but the cache is null
+     * @see #intersects(ConvexShape, Vec3f, Quatf, ConvexShape, Vec3f, Quatf,
+     *      GjkCache)
+     */
+    public boolean intersects(ConvexShape a, Transf transformA, ConvexShape b, Transf transformB, GjkCache cache) {
+        pose(a, transformA.getTransformedPos(), transformA.getTransformedRot(), b, transformB.getTransformedPos(),
+                transformB.getTransformedRot());
+        return test(cache);
+    }
+
+    private void pose(ConvexShape a, Vec3f positionA, Quatf rotationA, ConvexShape b, Vec3f positionB, Quatf rotationB) {
+        if (a == null || b == null) {
+            throw new NullPointerException("shape");
+        }
+        shapeA = a;
+        shapeB = b;
+        pose(poseA, positionA, rotationA);
+        pose(poseB, positionB, rotationB);
+    }
+
+    private static void pose(double[] pose, Vec3f position, Quatf rotation) {
+        pose[0] = position.getX();
+        pose[1] = position.getY();
+        pose[2] = position.getZ();
+        final double x = rotation.getX(), y = rotation.getY(), z = rotation.getZ(), w = rotation.getW();
+        final double length = Math.sqrt(x * x + y * y + z * z + w * w);
+        if (length > 0) {
+            pose[3] = x / length;
+            pose[4] = y / length;
+            pose[5] = z / length;
+            pose[6] = w / length;
+        } else {
+            pose[3] = pose[4] = pose[5] = 0;
+            pose[6] = 1;
+        }
+    }
+
+    private float query(GjkCache cache) {
+        if (run(cache, false, 0) == OVERLAP) {
+            epa();
+        } else {
+            separated();
+        }
+        store(cache);
+        inflate(shapeA.getMargin(), shapeB.getMargin());
+        return (float) distance;
+    }
+
+    private boolean test(GjkCache cache) {
+        final double margin = (double) shapeA.getMargin() + shapeB.getMargin();
+        final int status = run(cache, true, margin);
+        store(cache);
+        return status == OVERLAP || status == CONVERGED && vx * vx + vy * vy + vz * vz <= margin * margin;
+    }
+
+    private void store(GjkCache cache) {
+        if (cache != null) {
+            cache.count = count;
+            for (int i = 0; i < count * 3; i++) {
+                cache.directions[i] = (float) dir[i];
+            }
+        }
+    }
+
+    /**
+     * Runs GJK on the current supports.
+     *
+     * @param early whether to stop once the distance is known to exceed the
+     *            margin
+     */
+    private int run(GjkCache cache, boolean early, double margin) {
+        scale = 0;
+        count = 0;
+        if (cache != null && cache.count > 0) {
+            final float[] d = cache.directions;
+            for (int i = 0; i < cache.count; i++) {
+                support(i, d[i * 3], d[i * 3 + 1], d[i * 3 + 2]);
+            }
+            count = cache.count;
+        } else {
+            double dx = poseA[0] - poseB[0], dy = poseA[1] - poseB[1], dz = poseA[2] - poseB[2];
+            if (dx == 0 && dy == 0 && dz == 0) {
+                dx = 1;
+            }
+            support(0, dx, dy, dz);
+            count = 1;
+        }
+        if (solve()) {
+            return OVERLAP;
+        }
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            final double vv = vx * vx + vy * vy + vz * vz;
+            if (vv <= TOLERANCE_SQUARED * scale) {
+                return OVERLAP;
+            }
+            support(count, -vx, -vy, -vz);
+            final int o = count * 3;
+            final double vw = vx * w[o] + vy * w[o + 1] + vz * w[o + 2];
+            if (early && vw > 0 && vw * vw > margin * margin * vv) {
+                return SEPARATED;
+            }
+            if (vv - vw <= TOLERANCE * vv) {
+                return CONVERGED;
+            }
+            for (int i = 0; i < o; i += 3) {
+                if (w[i] == w[o] && w[i + 1] == w[o + 1] && w[i + 2] == w[o + 2]) {
+                    return CONVERGED;
+                }
+            }
+            count++;
+            if (solve()) {
+                return OVERLAP;
+            }
+            if (vx * vx + vy * vy + vz * vz >= vv) {
+                return CONVERGED;
+            }
+        }
+        return CONVERGED;
+    }
+
+    /**
+     * Computes the support point of the Minkowski difference in a world
+     * direction and stores it in the specified slot.
+     */
+    private void support(int slot, double dx, double dy, double dz) {
+        final int o = slot * 3;
+        if (slot < 4) {
+            dir[o] = dx;
+            dir[o + 1] = dy;
+            dir[o + 2] = dz;
+        }
+        support(shapeA, poseA, dx, dy, dz, a, o);
+        support(shapeB, poseB, -dx, -dy, -dz, b, o);
+        w[o] = a[o] - b[o];
+        w[o + 1] = a[o + 1] - b[o + 1];
+        w[o + 2] = a[o + 2] - b[o + 2];
+        scale = Math.max(scale, w[o] * w[o] + w[o + 1] * w[o + 1] + w[o + 2] * w[o + 2]);
+        supports++;
+    }
+
+    private void support(ConvexShape shape, double[] pose, double dx, double dy, double dz, double[] out, int o) {
+        rotate(pose, -1, dx, dy, dz, rotated);
+        shape.support((float) rotated[0], (float) rotated[1], (float) rotated[2], local);
+        rotate(pose, 1, local[0], local[1], local[2], rotated);
+        out[o] = rotated[0] + pose[0];
+        out[o + 1] = rotated[1] + pose[1];
+        out[o + 2] = rotated[2] + pose[2];
+    }
+
+    /**
+     * Rotates a vector by the rotation of a pose, or by its inverse for a
+     * negative sign.
+     */
+    private static void rotate(double[] pose, double sign, double x, double y, double z, double[] out) {
+        final double qx = pose[3] * sign, qy = pose[4] * sign, qz = pose[5] * sign, qw = pose[6];
+        final double tx = 2 * (qy * z - qz * y), ty = 2 * (qz * x - qx * z), tz = 2 * (qx * y - qy * x);
+        out[0] = x + qw * tx + qy * tz - qz * ty;
+        out[1] = y + qw * ty + qz * tx - qx * tz;
+        out[2] = z + qw * tz + qx * ty - qy * tx;
+    }
+
+    /**
+     * Reduces the simplex to the smallest subset containing the point closest
+     * to the origin and updates that point.
+     *
+     * @return true if the simplex is a tetrahedron containing the origin
+     */
+    private boolean solve() {
+        final int kept;
+        switch (count) {
+        case 1:
+            keep[0] = 0;
+            keepLambda[0] = 1;
+            kept = 1;
+            break;
+        case 2:
+            kept = segment(0, 1, keep, keepLambda);
+            break;
+        case 3:
+            kept = triangle(0, 1, 2, keep, keepLambda);
+            break;
+        default:
+            kept = tetrahedron();
+            if (kept == 4) {
+                vx = vy = vz = 0;
+                return true;
+            }
+        }
+        final double[] t = temp;
+        for (int i = 0; i < kept; i++) {
+            final int o = keep[i] * 3;
+            for (int k = 0; k < 3; k++) {
+                t[i * 12 + k] = w[o + k];
+                t[i * 12 + 3 + k] = a[o + k];
+                t[i * 12 + 6 + k] = b[o + k];
+                t[i * 12 + 9 + k] = dir[o + k];
+            }
+        }
+        vx = vy = vz = 0;
+        for (int i = 0; i < kept; i++) {
+            final int o = i * 3;
+            for (int k = 0; k < 3; k++) {
+                w[o + k] = t[i * 12 + k];
+                a[o + k] = t[i * 12 + 3 + k];
+                b[o + k] = t[i * 12 + 6 + k];
+                dir[o + k] = t[i * 12 + 9 + k];
+            }
+            final double l = lambda[i] = keepLambda[i];
+            vx += l * w[o];
+            vy += l * w[o + 1];
+            vz += l * w[o + 2];
+        }
+        count = kept;
+        return false;
+    }
+
+    private int segment(int i, int j, int[] indices, double[] weights) {
+        final int p = i * 3, q = j * 3;
+        final double ex = w[q] - w[p], ey = w[q + 1] - w[p + 1], ez = w[q + 2] - w[p + 2];
+        final double length = ex * ex + ey * ey + ez * ez;
+        final double t = -(w[p] * ex + w[p + 1] * ey + w[p + 2] * ez);
+        if (t <= 0 || !(length > 0)) {
+            indices[0] = i;
+            weights[0] = 1;
+            return 1;
+        }
+        if (t >= length) {
+            indices[0] = j;
+            weights[0] = 1;
+            return 1;
+        }
+        indices[0] = i;
+        indices[1] = j;
+        weights[1] = t / length;
+        weights[0] = 1 - weights[1];
+        return 2;
+    }
+
+    /**
+     * Closest point of a triangle to the origin by its Voronoi regions
+     * (Ericson, Real-Time Collision Detection, 5.1.5).
+     */
+    private int triangle(int i, int j, int k, int[] indices, double[] weights) {
+        final int p = i * 3, q = j * 3, r = k * 3;
+        final double ax = w[p], ay = w[p + 1], az = w[p + 2];
+        final double bx = w[q], by = w[q + 1], bz = w[q + 2];
+        final double cx = w[r], cy = w[r + 1], cz = w[r + 2];
+        final double abx = bx - ax, aby = by - ay, abz = bz - az;
+        final double acx = cx - ax, acy = cy - ay, acz = cz - az;
+
+        final double d1 = -(abx * ax + aby * ay + abz * az), d2 = -(acx * ax + acy * ay + acz * az);
+        if (d1 <= 0 && d2 <= 0) {
+            return vertex(i, indices, weights);
+        }
+        final double d3 = -(abx * bx + aby * by + abz * bz), d4 = -(acx * bx + acy * by + acz * bz);
+        if (d3 >= 0 && d4 <= d3) {
+            return vertex(j, indices, weights);
+        }
+        final double vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            return edge(i, j, d1 / (d1 - d3), indices, weights);
+        }
+        final double d5 = -(abx * cx + aby * cy + abz * cz), d6 = -(acx * cx + acy * cy + acz * cz);
+        if (d6 >= 0 && d5 <= d6) {
+            return vertex(k, indices, weights);
+        }
+        final double vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            return edge(i, k, d2 / (d2 - d6), indices, weights);
+        }
+        final double va = d3 * d6 - d5 * d4;
+        if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0) {
+            return edge(j, k, (d4 - d3) / (d4 - d3 + (d5 - d6)), indices, weights);
+        }
+        final double sum = va + vb + vc;
+        if (!(sum > 0)) {
+            // degenerate triangle, the origin projects onto its line
+            return segment(i, j, indices, weights);
+        }
+        indices[0] = i;
+        indices[1] = j;
+        indices[2] = k;
+        weights[1] = vb / sum;
+        weights[2] = vc / sum;
+        weights[0] = 1 - weights[1] - weights[2];
+        return 3;
+    }
+
+    private static int vertex(int i, int[] indices, double[] weights) {
+        indices[0] = i;
+        weights[0] = 1;
+        return 1;
+    }
+
+    private static int edge(int i, int j, double t, int[] indices, double[] weights) {
+        indices[0] = i;
+        indices[1] = j;
+        weights[0] = 1 - t;
+        weights[1] = t;
+        return 2;
+    }
+
+    /**
+     * Finds the closest point on the faces of the tetrahedron that face the
+     * origin.
+     *
+     * @return the amount of kept vertices or 4 if the origin is inside
+     */
+    private int tetrahedron() {
+        int kept = 4;
+        double best = Double.POSITIVE_INFINITY;
+        for (int f = 0; f < 16; f += 4) {
+            final int i = TETRAHEDRON[f], j = TETRAHEDRON[f + 1], k = TETRAHEDRON[f + 2], l = TETRAHEDRON[f + 3];
+            if (!outside(i, j, k, l)) {
+                continue;
+            }
+            final int n = triangle(i, j, k, candidate, candidateLambda);
+            double px = 0, py = 0, pz = 0;
+            for (int m = 0; m < n; m++) {
+                final int o = candidate[m] * 3;
+                px += candidateLambda[m] * w[o];
+                py += candidateLambda[m] * w[o + 1];
+                pz += candidateLambda[m] * w[o + 2];
+            }
+            final double d = px * px + py * py + pz * pz;
+            if (d < best) {
+                best = d;
+                kept = n;
+                System.arraycopy(candidate, 0, keep, 0, n);
+                System.arraycopy(candidateLambda, 0, keepLambda, 0, n);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return true if the origin is not strictly on the side of the opposite
+     *         vertex, which includes flat tetrahedra
+     */
+    private boolean outside(int i, int j, int k, int l) {
+        final int p = i * 3, q = j * 3, r = k * 3, s = l * 3;
+        final double abx = w[q] - w[p], aby = w[q + 1] - w[p + 1], abz = w[q + 2] - w[p + 2];
+        final double acx = w[r] - w[p], acy = w[r + 1] - w[p + 1], acz = w[r + 2] - w[p + 2];
+        final double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        final double origin = -(nx * w[p] + ny * w[p + 1] + nz * w[p + 2]);
+        final double opposite = nx * (w[s] - w[p]) + ny * (w[s + 1] - w[p + 1]) + nz * (w[s + 2] - w[p + 2]);
+        return origin * opposite <= 0;
+    }
+
+    private void separated() {
+        double ax = 0, ay = 0, az = 0, bx = 0, by = 0, bz = 0;
+        for (int i = 0; i < count; i++) {
+            final int o = i * 3;
+            final double l = lambda[i];
+            ax += l * a[o];
+            ay += l * a[o + 1];
+            az += l * a[o + 2];
+            bx += l * b[o];
+            by += l * b[o + 1];
+            bz += l * b[o + 2];
+        }
+        final double d = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        final double nx = -vx / d, ny = -vy / d, nz = -vz / d;
+        result(d, nx, ny, nz, ax, ay, az, bx, by, bz);
+    }
+
+    /**
+     * Moves the result of the cores onto the inflated shapes.
+     */
+    private void inflate(double marginA, double marginB) {
+        distance -= marginA + marginB;
+        for (int k = 0; k < 3; k++) {
+            pointA[k] += normal[k] * marginA;
+            pointB[k] -= normal[k] * marginB;
+        }
+    }
+
+    private void result(double distance, double nx, double ny, double nz, double ax, double ay, double az, double bx, double by,
+            double bz) {
+        this.distance = distance;
+        normal[0] = nx;
+        normal[1] = ny;
+        normal[2] = nz;
+        pointA[0] = ax;
+        pointA[1] = ay;
+        pointA[2] = az;
+        pointB[0] = bx;
+        pointB[1] = by;
+        pointB[2] = bz;
+    }
+
+    /**
+     * Expands the simplex containing the origin to the closest face of the
+     * Minkowski difference.
+     */
+    private void epa() {
+        if (!expandSimplex()) {
+            // the cores are flat and touch
+            touching();
+            return;
+        }
+        faceCount = 0;
+        for (int f = 0; f < 16; f += 4) {
+            int i = TETRAHEDRON[f], j = TETRAHEDRON[f + 1], k = TETRAHEDRON[f + 2];
+            final int l = TETRAHEDRON[f + 3];
+            if (side(i, j, k, l) > 0) {
+                final int t = j;
+                j = k;
+                k = t;
+            }
+            addFace(i, j, k);
+        }
+        final double tolerance = TOLERANCE * Math.sqrt(scale);
+        int vertices = 4;
+        int best = closestFace();
+        int bi = faceVertices[best * 3], bj = faceVertices[best * 3 + 1], bk = faceVertices[best * 3 + 2];
+        double bd = faceDistances[best];
+        double bnx = faceNormals[best * 3], bny = faceNormals[best * 3 + 1], bnz = faceNormals[best * 3 + 2];
+        // the support along any normal bounds the depth from above, the
+        // smallest one is the answer if the expansion stalls before the bounds
+        // meet
+        int ui = bi, uj = bj, uk = bk;
+        double ud = Double.POSITIVE_INFINITY, unx = bnx, uny = bny, unz = bnz;
+        boolean converged = false;
+        while (vertices < MAX_VERTICES) {
+            support(vertices, bnx, bny, bnz);
+            final int o = vertices * 3;
+            final double h = bnx * w[o] + bny * w[o + 1] + bnz * w[o + 2];
+            if (h < ud) {
+                ui = bi;
+                uj = bj;
+                uk = bk;
+                ud = h;
+                unx = bnx;
+                uny = bny;
+                unz = bnz;
+            }
+            if (h - bd <= tolerance) {
+                converged = true;
+                break;
+            }
+            edgeCount = 0;
+            boolean removed = false, overflow = false;
+            for (int f = 0; f < faceCount; f++) {
+                if (!faceAlive[f]) {
+                    continue;
+                }
+                // faces within the tolerance of the new vertex are replaced as
+                // well, keeping a nearly coplanar face would fold the polytope
+                final int p = faceVertices[f * 3] * 3;
+                if (faceNormals[f * 3] * (w[o] - w[p]) + faceNormals[f * 3 + 1] * (w[o + 1] - w[p + 1])
+                        + faceNormals[f * 3 + 2] * (w[o + 2] - w[p + 2]) > -tolerance) {
+                    faceAlive[f] = false;
+                    removed = true;
+                    overflow |= !addEdge(faceVertices[f * 3], faceVertices[f * 3 + 1]);
+                    overflow |= !addEdge(faceVertices[f * 3 + 1], faceVertices[f * 3 + 2]);
+                    overflow |= !addEdge(faceVertices[f * 3 + 2], faceVertices[f * 3]);
+                }
+            }
+            if (!removed || overflow) {
+                break;
+            }
+            for (int e = 0; e < edgeCount; e++) {
+                if (!addFace(edges[e * 2], edges[e * 2 + 1], vertices)) {
+                    overflow = true;
+                }
+            }
+            vertices++;
+            best = closestFace();
+            // a face behind the origin means rounding broke the convexity of
+            // the polytope
+            if (overflow || best < 0 || faceDistances[best] < -tolerance) {
+                break;
+            }
+            bi = faceVertices[best * 3];
+            bj = faceVertices[best * 3 + 1];
+            bk = faceVertices[best * 3 + 2];
+            bd = faceDistances[best];
+            bnx = faceNormals[best * 3];
+            bny = faceNormals[best * 3 + 1];
+            bnz = faceNormals[best * 3 + 2];
+        }
+        if (converged) {
+            penetration(bi, bj, bk, bd, bnx, bny, bnz);
+        } else {
+            penetration(ui, uj, uk, ud, unx, uny, unz);
+        }
+    }
+
+    /**
+     * Completes a simplex that touches the origin to a tetrahedron.
+     *
+     * @return false if the Minkowski difference is flat
+     */
+    private boolean expandSimplex() {
+        final double epsilon = TOLERANCE_SQUARED * Math.max(scale, Double.MIN_NORMAL);
+        if (count == 1) {
+            for (int axis = 0; axis < 6 && count == 1; axis++) {
+                final double sign = axis < 3 ? 1 : -1;
+                support(1, axis % 3 == 0 ? sign : 0, axis % 3 == 1 ? sign : 0, axis % 3 == 2 ? sign : 0);
+                final double ex = w[3] - w[0], ey = w[4] - w[1], ez = w[5] - w[2];
+                if (ex * ex + ey * ey + ez * ez > epsilon) {
+                    count = 2;
+                }
+            }
+            if (count == 1) {
+                return false;
+            }
+        }
+        if (count == 2) {
+            final double ex = w[3] - w[0], ey = w[4] - w[1], ez = w[5] - w[2];
+            final double ax = Math.abs(ex), ay = Math.abs(ey), az = Math.abs(ez);
+            // cross with the axis the edge is least aligned with
+            final double ux, uy, uz;
+            if (ax <= ay && ax <= az) {
+                ux = 0;
+                uy = ez;
+                uz = -ey;
+            } else if (ay <= az) {
+                ux = -ez;
+                uy = 0;
+                uz = ex;
+            } else {
+                ux = ey;
+                uy = -ex;
+                uz = 0;
+            }
+            final double vx = ey * uz - ez * uy, vy = ez * ux - ex * uz, vz = ex * uy - ey * ux;
+            for (int attempt = 0; attempt < 4 && count == 2; attempt++) {
+                final double sign = (attempt & 1) == 0 ? 1 : -1;
+                if (attempt < 2) {
+                    support(2, ux * sign, uy * sign, uz * sign);
+                } else {
+                    support(2, vx * sign, vy * sign, vz * sign);
+                }
+                if (normalSquared(0, 1, 2) > epsilon * scale) {
+                    count = 3;
+                }
+            }
+            if (count == 2) {
+                return false;
+            }
+        }
+        if (count == 3) {
+            final double nx = (w[4] - w[1]) * (w[8] - w[2]) - (w[5] - w[2]) * (w[7] - w[1]);
+            final double ny = (w[5] - w[2]) * (w[6] - w[0]) - (w[3] - w[0]) * (w[8] - w[2]);
+            final double nz = (w[3] - w[0]) * (w[7] - w[1]) - (w[4] - w[1]) * (w[6] - w[0]);
+            final double nn = nx * nx + ny * ny + nz * nz;
+            for (int attempt = 0; attempt < 2 && count == 3; attempt++) {
+                final double sign = attempt == 0 ? 1 : -1;
+                support(3, nx * sign, ny * sign, nz * sign);
+                final double h = nx * (w[9] - w[0]) + ny * (w[10] - w[1]) + nz * (w[11] - w[2]);
+                if (h * h > epsilon * nn) {
+                    count = 4;
+                }
+            }
+            if (count == 3) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double normalSquared(int i, int j, int k) {
+        final int p = i * 3, q = j * 3, r = k * 3;
+        final double abx = w[q] - w[p], aby = w[q + 1] - w[p + 1], abz = w[q + 2] - w[p + 2];
+        final double acx = w[r] - w[p], acy = w[r + 1] - w[p + 1], acz = w[r + 2] - w[p + 2];
+        final double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        return nx * nx + ny * ny + nz * nz;
+    }
+
+    /**
+     * @return the side of vertex l relative to the plane of the counter
+     *         clockwise triangle i, j, k
+     */
+    private double side(int i, int j, int k, int l) {
+        final int p = i * 3, q = j * 3, r = k * 3, s = l * 3;
+        final double abx = w[q] - w[p], aby = w[q + 1] - w[p + 1], abz = w[q + 2] - w[p + 2];
+        final double acx = w[r] - w[p], acy = w[r + 1] - w[p + 1], acz = w[r + 2] - w[p + 2];
+        final double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        return nx * (w[s] - w[p]) + ny * (w[s + 1] - w[p + 1]) + nz * (w[s + 2] - w[p + 2]);
+    }
+
+    private boolean addFace(int i, int j, int k) {
+        int f = 0;
+        while (f < faceCount && faceAlive[f]) {
+            f++;
+        }
+        if (f == MAX_FACES) {
+            return false;
+        }
+        if (f == faceCount) {
+            faceCount++;
+        }
+        final int p = i * 3, q = j * 3, r = k * 3;
+        final double abx = w[q] - w[p], aby = w[q + 1] - w[p + 1], abz = w[q + 2] - w[p + 2];
+        final double acx = w[r] - w[p], acy = w[r + 1] - w[p + 1], acz = w[r + 2] - w[p + 2];
+        double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        faceAlive[f] = true;
+        faceVertices[f * 3] = i;
+        faceVertices[f * 3 + 1] = j;
+        faceVertices[f * 3 + 2] = k;
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            faceDistances[f] = nx * w[p] + ny * w[p + 1] + nz * w[p + 2];
+        } else {
+            // a sliver never becomes the closest face
+            faceDistances[f] = Double.POSITIVE_INFINITY;
+        }
+        faceNormals[f * 3] = nx;
+        faceNormals[f * 3 + 1] = ny;
+        faceNormals[f * 3 + 2] = nz;
+        return true;
+    }
+
+    /**
+     * Adds an edge of a removed face to the horizon, an edge shared with
+     * another removed face cancels out.
+     */
+    private boolean addEdge(int i, int j) {
+        for (int e = 0; e < edgeCount; e++) {
+            if (edges[e * 2] == j && edges[e * 2 + 1] == i) {
+                edgeCount--;
+                edges[e * 2] = edges[edgeCount * 2];
+                edges[e * 2 + 1] = edges[edgeCount * 2 + 1];
+                return true;
+            }
+        }
+        if (edgeCount == MAX_EDGES) {
+            return false;
+        }
+        edges[edgeCount * 2] = i;
+        edges[edgeCount * 2 + 1] = j;
+        edgeCount++;
+        return true;
+    }
+
+    private int closestFace() {
+        int best = -1;
+        double min = Double.POSITIVE_INFINITY;
+        for (int f = 0; f < faceCount; f++) {
+            if (faceAlive[f] && faceDistances[f] < min) {
+                min = faceDistances[f];
+                best = f;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stores the penetration of a face, the witness points are interpolated at
+     * the projection of the origin.
+     */
+    private void penetration(int i, int j, int k, double depth, double nx, double ny, double nz) {
+        final int p = i * 3, q = j * 3, r = k * 3;
+        final double e0x = w[q] - w[p], e0y = w[q + 1] - w[p + 1], e0z = w[q + 2] - w[p + 2];
+        final double e1x = w[r] - w[p], e1y = w[r + 1] - w[p + 1], e1z = w[r + 2] - w[p + 2];
+        final double e2x = nx * depth - w[p], e2y = ny * depth - w[p + 1], e2z = nz * depth - w[p + 2];
+        final double d00 = e0x * e0x + e0y * e0y + e0z * e0z, d01 = e0x * e1x + e0y * e1y + e0z * e1z;
+        final double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+        final double d20 = e2x * e0x + e2y * e0y + e2z * e0z, d21 = e2x * e1x + e2y * e1y + e2z * e1z;
+        final double denominator = d00 * d11 - d01 * d01;
+        double v = 0, u = 0;
+        if (denominator > 0) {
+            v = (d11 * d20 - d01 * d21) / denominator;
+            u = (d00 * d21 - d01 * d20) / denominator;
+        }
+        final double t = 1 - v - u;
+        result(-Math.max(depth, 0), nx, ny, nz, t * a[p] + v * a[q] + u * a[r], t * a[p + 1] + v * a[q + 1] + u * a[r + 1],
+                t * a[p + 2] + v * a[q + 2] + u * a[r + 2], t * b[p] + v * b[q] + u * b[r],
+                t * b[p + 1] + v * b[q + 1] + u * b[r + 1], t * b[p + 2] + v * b[q + 2] + u * b[r + 2]);
+    }
+
+    private void touching() {
+        double nx = poseB[0] - poseA[0], ny = poseB[1] - poseA[1], nz = poseB[2] - poseA[2];
+        final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length > 0) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        } else {
+            nx = 1;
+        }
+        result(0, nx, ny, nz, a[0], a[1], a[2], b[0], b[1], b[2]);
+    }
+
+    /**
+     * @return the signed distance of the last distance query
+     */
+    public float getDistance() {
+        return (float) distance;
+    }
+
+    /**
+     * The normal points from the first shape towards the second: moving the
+     * second shape along it increases the distance.
+     *
+     * @param out receives the unit normal of the last distance query at index
+     *            0 to 2
+     * @return the passed array
+     */
+    public float[] getNormal(float[] out) {
+        return copy(normal, out);
+    }
+
+    /**
+     * @param out receives the point of the first shape closest to (or deepest
+     *            in) the second at index 0 to 2
+     * @return the passed array
+     */
+    public float[] getPointA(float[] out) {
+        return copy(pointA, out);
+    }
+
+    /**
+     * @param out receives the point of the second shape closest to (or
+     *            deepest in) the first at index 0 to 2
+     * @return the passed array
+     */
+    public float[] getPointB(float[] out) {
+        return copy(pointB, out);
+    }
+
+    private static float[] copy(double[] value, float[] out) {
+        out[0] = (float) value[0];
+        out[1] = (float) value[1];
+        out[2] = (float) value[2];
+        return out;
+    }
+
+    /**
+     * @return the total amount of support points computed by this solver
+     */
+    public long getSupportCount() {
+        return supports;
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+/**
+ * Simplex of the previous query of one shape pair (final::mutable)
+ * <p>
+ * {@link Gjk} stores the search directions of the final simplex here and
+ * starts the next query of the same pair from the support points in these
+ * directions. For coherent motion that simplex is already close to the
+ * result, so most queries finish after one or two new support points instead
+ * of building the simplex from scratch. Keep one cache per pair, for example
+ * in the pair list of the broadphase.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class GjkCache {
+
+    final float[] directions = new float[12];
+    int count;
+
+    /**
+     * Forgets the stored simplex, the next query starts from scratch.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * @return the amount of stored simplex vertices, zero if empty
+     */
+    public int getSimplexSize() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "GjkCache [simplexSize=" + count + "]";
+    }
+
+}
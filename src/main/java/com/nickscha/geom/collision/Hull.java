@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.hull.ConvexHull3;
+
+/**
+ * Convex polyhedron given by its vertices (final::immutable)
+ * <p>
+ * The support function scans the vertices, which are kept as one
+ * interleaved float array. Interior points do not change the shape but cost
+ * time, {@link #of(float[])} removes them with {@link ConvexHull3}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Hull implements ConvexShape {
+
+    private final float[] vertices;
+
+    private Hull(float[] vertices) {
+        this.vertices = vertices;
+    }
+
+    /**
+     * Creates a hull of the convex hull of the specified points. Points that
+     * do not span a volume are used as they are.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @return the new shape
+     * @throws IllegalArgumentException if there are no points
+     */
+    public static Hull of(float[] xyz) {
+        if (xyz.length < 3) {
+            throw new IllegalArgumentException("A hull needs at least one point");
+        }
+        int[] indices;
+        try {
+            indices = ConvexHull3.of(xyz).getVertices();
+        } catch (IllegalArgumentException degenerate) {
+            return new Hull(Arrays.copyOf(xyz, xyz.length - xyz.length % 3));
+        }
+        final float[] vertices = new float[indices.length * 3];
+        for (int i = 0; i < indices.length; i++) {
+            System.arraycopy(xyz, indices[i] * 3, vertices, i * 3, 3);
+        }
+        return new Hull(vertices);
+    }
+
+    /**
+     * Creates a hull of points that are already the vertices of a convex
+     * polyhedron.
+     *
+     * @param xyz the vertices (x,y,z interleaved), the array is copied
+     * @return the new shape
+     * @throws IllegalArgumentException if there are no points
+     */
+    public static Hull ofVertices(float[] xyz) {
+        if (xyz.length < 3) {
+            throw new IllegalArgumentException("A hull needs at least one point");
+        }
+        return new Hull(Arrays.copyOf(xyz, xyz.length - xyz.length % 3));
+    }
+
+    @Override
+    public void support(float dx, float dy, float dz, float[] out) {
+        final float[] v = vertices;
+        int best = 0;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < v.length; i += 3) {
+            final float d = v[i] * dx + v[i + 1] * dy + v[i + 2] * dz;
+            if (d > max) {
+                max = d;
+                best = i;
+            }
+        }
+        out[0] = v[best];
+        out[1] = v[best + 1];
+        out[2] = v[best + 2];
+    }
+
+    @Override
+    public float getMargin() {
+        return 0;
+    }
+
+    /**
+     * @return the amount of vertices
+     */
+    public int getVertexCount() {
+        return vertices.length / 3;
+    }
+
+    /**
+     * @return the vertices (x,y,z interleaved)
+     */
+    public float[] getVertices() {
+        return vertices.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vertices);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Hull && Arrays.equals(vertices, ((Hull) obj).vertices);
+    }
+
+    @Override
+    public String toString() {
+        return "Hull [vertices=" + getVertexCount() + "]";
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.collision;
+
+/**
+ * Sphere centered at the origin of its local space (final::immutable)
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Sphere implements ConvexShape {
+
+    private final float radius;
+
+    /**
+     * @param radius the radius
+     * @throws IllegalArgumentException if the radius is negative or NaN
+     */
+    public Sphere(float radius) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        this.radius = radius;
+    }
+
+    @Override
+    public void support(float dx, float dy, float dz, float[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = 0;
+    }
+
+    @Override
+    public float getMargin() {
+        return radius;
+    }
+
+    /**
+     * @return the radius
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    @Override
+    public int hashCode() {
+        return Float.floatToIntBits(radius);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Sphere && Float.floatToIntBits(radius) == Float.floatToIntBits(((Sphere) obj).radius);
+    }
+
+    @Override
+    public String toString() {
+        return "Sphere [radius=" + radius + "]";
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.hull;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.spatial.RadixSort;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * Two dimensional convex hull (final::immutable)
+ * <p>
+ * The hull is computed with Andrew's monotone chain algorithm. The points are
+ * ordered by x and then y with two passes of the stable {@link RadixSort} over
+ * the float bits, which avoids boxing a comparator sort. The result is the
+ * counter clockwise polygon of input indices starting at the point with the
+ * smallest x (and smallest y among those). Points on hull edges are not part
+ * of the result and coincident input points give a single vertex.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class ConvexHull2 {
+
+    private final float[] xy;
+    private final int[] vertices;
+
+    private ConvexHull2(float[] xy, int[] vertices) {
+        this.xy = xy;
+        this.vertices = vertices;
+    }
+
+    /**
+     * Computes the hull of interleaved points.
+     *
+     * @param xy the points (x,y interleaved)
+     * @return the hull
+     */
+    public static ConvexHull2 of(float[] xy) {
+        final int n = xy.length / 2;
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = sortable(xy[i * 2 + 1]);
+        }
+        final int[] byY = RadixSort.sort(keys, n);
+        for (int i = 0; i < n; i++) {
+            keys[i] = sortable(xy[byY[i] * 2]);
+        }
+        final int[] byX = RadixSort.sort(keys, n);
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = byY[byX[i]];
+        }
+        if (n > 0 && sortable(xy[order[0] * 2]) == sortable(xy[order[n - 1] * 2])
+                && sortable(xy[order[0] * 2 + 1]) == sortable(xy[order[n - 1] * 2 + 1])) {
+            // the smallest and the largest point coincide, so do all points
+            return new ConvexHull2(xy.clone(), new int[] { order[0] });
+        }
+
+        final int[] hull = new int[n * 2];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            size = add(xy, hull, size, 2, order[i]);
+        }
+        final int lower = size + 1;
+        for (int i = n - 2; i >= 0; i--) {
+            size = add(xy, hull, size, lower, order[i]);
+        }
+        // the last point closes the loop
+        return new ConvexHull2(xy.clone(), Arrays.copyOf(hull, Math.max(size - 1, Math.min(n, 1))));
+    }
+
+    /**
+     * Computes the hull of points.
+     *
+     * @param points the points
+     * @return the hull
+     * @throws NullPointerException if any point is null
+     */
+    public static ConvexHull2 of(Vec2f[] points) {
+        final float[] xy = new float[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            xy[i * 2] = points[i].getX();
+            xy[i * 2 + 1] = points[i].getY();
+        }
+        return of(xy);
+    }
+
+    /**
+     * Pushes a point onto the chain after removing all points that would not
+     * make a strict left turn.
+     */
+    private static int add(float[] xy, int[] hull, int size, int min, int point) {
+        while (size >= min && cross(xy, hull[size - 2], hull[size - 1], point) <= 0) {
+            size--;
+        }
+        hull[size] = point;
+        return size + 1;
+    }
+
+    private static double cross(float[] xy, int o, int a, int b) {
+        final double ox = xy[o * 2], oy = xy[o * 2 + 1];
+        return (xy[a * 2] - ox) * (xy[b * 2 + 1] - oy) - (xy[a * 2 + 1] - oy) * (xy[b * 2] - ox);
+    }
+
+    /**
+     * Maps a float to an unsigned key with the same order.
+     */
+    private static long sortable(float value) {
+        final int bits = Float.floatToIntBits(value + 0.0f);
+        return (bits ^ (bits >> 31 & 0x7FFFFFFF) ^ 0x80000000) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return the input indices of the hull vertices in counter clockwise
+     *         order
+     */
+    public int[] getVertices() {
+        return vertices.clone();
+    }
+
+    /**
+     * @return the amount of hull vertices
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * @return the area enclosed by the hull
+     */
+    public double area() {
+        double area = 0;
+        for (int i = 0, j = vertices.length - 1; i < vertices.length; j = i++) {
+            final int a = vertices[j], b = vertices[i];
+            area += (double) xy[a * 2] * xy[b * 2 + 1] - (double) xy[b * 2] * xy[a * 2 + 1];
+        }
+        return area * 0.5;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(xy) + Arrays.hashCode(vertices);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ConvexHull2 other = (ConvexHull2) obj;
+        return Arrays.equals(xy, other.xy) && Arrays.equals(vertices, other.vertices);
+    }
+
+    @Override
+    public String toString() {
+        return "ConvexHull2 [vertices=" + Arrays.toString(vertices) + "]";
+    }
+
+}
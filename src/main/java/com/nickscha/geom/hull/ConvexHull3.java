@@ -0,0 +1,566 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.hull;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Three dimensional convex hull (final::immutable)
+ * <p>
+ * The hull is computed with the quickhull algorithm in double precision and
+ * returned as triangles whose indices refer to the input points. Triangles are
+ * counter clockwise seen from outside. Points closer to a face than a tolerance
+ * derived from the magnitude of the input are treated as inside, which keeps
+ * nearly coplanar input from producing inverted or overlapping faces. Coplanar
+ * hull faces are returned triangulated.
+ * </p>
+ * <b>Memory layout</b>
+ * <p>
+ * During construction faces live in flat arrays: three vertex indices, three
+ * neighbour faces (across the edges v0-v1, v1-v2 and v2-v0) and a plane per
+ * face. Every face keeps its outside points as linked list through a single
+ * int array. The initial assignment of the points to the faces of the starting
+ * tetrahedron runs in parallel.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class ConvexHull3 {
+
+    /**
+     * Amount of points above which the initial partitioning runs in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private final int[] triangles;
+    private final int[] vertices;
+
+    private ConvexHull3(int[] triangles, int[] vertices) {
+        this.triangles = triangles;
+        this.vertices = vertices;
+    }
+
+    /**
+     * Computes the hull of interleaved points.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @return the hull
+     * @throws IllegalArgumentException if the points do not span a volume
+     */
+    public static ConvexHull3 of(float[] xyz) {
+        final double[] points = new double[xyz.length - xyz.length % 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = xyz[i];
+        }
+        return new Builder(points).build();
+    }
+
+    /**
+     * Computes the hull of interleaved points.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @return the hull
+     * @throws IllegalArgumentException if the points do not span a volume
+     */
+    public static ConvexHull3 of(double[] xyz) {
+        return new Builder(xyz).build();
+    }
+
+    /**
+     * Computes the hull of points.
+     *
+     * @param points the points
+     * @return the hull
+     * @throws IllegalArgumentException if the points do not span a volume
+     * @throws NullPointerException if any point is null
+     */
+    public static ConvexHull3 of(Vec3f[] points) {
+        final double[] xyz = new double[points.length * 3];
+        for (int i = 0; i < points.length; i++) {
+            xyz[i * 3] = points[i].getX();
+            xyz[i * 3 + 1] = points[i].getY();
+            xyz[i * 3 + 2] = points[i].getZ();
+        }
+        return new Builder(xyz).build();
+    }
+
+    /**
+     * Computes the hull of points.
+     *
+     * @param points the points
+     * @return the hull
+     * @throws IllegalArgumentException if the points do not span a volume
+     * @throws NullPointerException if any point is null
+     */
+    public static ConvexHull3 of(Vec3d[] points) {
+        final double[] xyz = new double[points.length * 3];
+        for (int i = 0; i < points.length; i++) {
+            xyz[i * 3] = points[i].getX();
+            xyz[i * 3 + 1] = points[i].getY();
+            xyz[i * 3 + 2] = points[i].getZ();
+        }
+        return new Builder(xyz).build();
+    }
+
+    /**
+     * @return three input point indices per triangle, counter clockwise seen
+     *         from outside
+     */
+    public int[] getTriangles() {
+        return triangles.clone();
+    }
+
+    /**
+     * @return the ascending input indices of all hull vertices
+     */
+    public int[] getVertices() {
+        return vertices.clone();
+    }
+
+    /**
+     * @return the amount of triangles
+     */
+    public int getFaceCount() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * @return the amount of hull vertices
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(triangles) + Arrays.hashCode(vertices);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ConvexHull3 other = (ConvexHull3) obj;
+        return Arrays.equals(triangles, other.triangles) && Arrays.equals(vertices, other.vertices);
+    }
+
+    @Override
+    public String toString() {
+        return "ConvexHull3 [faces=" + getFaceCount() + ", vertices=" + vertices.length + "]";
+    }
+
+    /**
+     * Quickhull state. Faces are only ever appended, deleted faces are marked
+     * and skipped.
+     */
+    private static final class Builder {
+
+        private static final byte ALIVE = 0;
+        private static final byte DELETED = 1;
+        private static final int NONE = -1;
+
+        private final double[] p;
+        private final int n;
+        private final double tolerance;
+
+        private int faces;
+        private int[] faceVertex = new int[3 * 64];
+        private int[] faceNeighbor = new int[3 * 64];
+        private double[] facePlane = new double[4 * 64];
+        private byte[] faceMark = new byte[64];
+        private int[] faceHead = new int[64];
+        private int[] faceFurthest = new int[64];
+        private double[] faceFurthestDistance = new double[64];
+
+        /**
+         * next point in the outside list of a face
+         */
+        private final int[] next;
+
+        private int[] pending = new int[64];
+        private int pendingSize;
+        private int[] visible = new int[64];
+        private int visibleSize;
+        private int[] horizon = new int[128];
+        private int horizonSize;
+        private int[] stack = new int[64 * 3];
+
+        Builder(double[] xyz) {
+            this.p = xyz;
+            this.n = xyz.length / 3;
+            this.next = new int[n];
+            double max = 0;
+            for (int k = 0; k < 3; k++) {
+                double axis = 0;
+                for (int i = 0; i < n; i++) {
+                    axis = Math.max(axis, Math.abs(p[i * 3 + k]));
+                }
+                max += axis;
+            }
+            this.tolerance = 3 * Math.ulp(1.0) * max;
+        }
+
+        ConvexHull3 build() {
+            final int[] simplex = simplex();
+            final int a = simplex[0], b = simplex[1], c = simplex[2], d = simplex[3];
+            // base face with its normal pointing away from d, then one face per base edge
+            createFace(a, b, c);
+            createFace(b, a, d);
+            createFace(c, b, d);
+            createFace(a, c, d);
+            for (int f = 0; f < 4; f++) {
+                for (int e = 0; e < 3; e++) {
+                    for (int g = 0; g < 4; g++) {
+                        final int j = edgeIndex(g, vertex(f, e + 1), vertex(f, e));
+                        if (g != f && j != NONE) {
+                            faceNeighbor[f * 3 + e] = g;
+                        }
+                    }
+                }
+            }
+            partition(simplex);
+
+            while (pendingSize > 0) {
+                final int face = pending[--pendingSize];
+                if (faceMark[face] == ALIVE && faceHead[face] != NONE) {
+                    addPoint(face, faceFurthest[face]);
+                }
+            }
+            return result();
+        }
+
+        private int[] simplex() {
+            if (n < 4) {
+                throw new IllegalArgumentException("At least four points are required: " + n);
+            }
+            final int[] min = new int[3], max = new int[3];
+            for (int i = 1; i < n; i++) {
+                for (int k = 0; k < 3; k++) {
+                    if (p[i * 3 + k] < p[min[k] * 3 + k]) {
+                        min[k] = i;
+                    }
+                    if (p[i * 3 + k] > p[max[k] * 3 + k]) {
+                        max[k] = i;
+                    }
+                }
+            }
+            int axis = 0;
+            for (int k = 1; k < 3; k++) {
+                if (p[max[k] * 3 + k] - p[min[k] * 3 + k] > p[max[axis] * 3 + axis] - p[min[axis] * 3 + axis]) {
+                    axis = k;
+                }
+            }
+            final int a = min[axis], b = max[axis];
+            if (p[b * 3 + axis] - p[a * 3 + axis] <= tolerance) {
+                throw new IllegalArgumentException("Points are coincident");
+            }
+
+            // farthest point from the line a-b
+            final double ux = p[b * 3] - p[a * 3], uy = p[b * 3 + 1] - p[a * 3 + 1], uz = p[b * 3 + 2] - p[a * 3 + 2];
+            int c = NONE;
+            double best = 0;
+            for (int i = 0; i < n; i++) {
+                final double vx = p[i * 3] - p[a * 3], vy = p[i * 3 + 1] - p[a * 3 + 1], vz = p[i * 3 + 2] - p[a * 3 + 2];
+                final double cx = uy * vz - uz * vy, cy = uz * vx - ux * vz, cz = ux * vy - uy * vx;
+                final double length = cx * cx + cy * cy + cz * cz;
+                if (length > best) {
+                    best = length;
+                    c = i;
+                }
+            }
+            if (c == NONE || Math.sqrt(best) / Math.sqrt(ux * ux + uy * uy + uz * uz) <= tolerance) {
+                throw new IllegalArgumentException("Points are colinear");
+            }
+
+            // farthest point from the plane a-b-c
+            final double wx = p[c * 3] - p[a * 3], wy = p[c * 3 + 1] - p[a * 3 + 1], wz = p[c * 3 + 2] - p[a * 3 + 2];
+            double nx = uy * wz - uz * wy, ny = uz * wx - ux * wz, nz = ux * wy - uy * wx;
+            final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            final double offset = nx * p[a * 3] + ny * p[a * 3 + 1] + nz * p[a * 3 + 2];
+            int d = NONE;
+            best = 0;
+            for (int i = 0; i < n; i++) {
+                final double distance = Math.abs(nx * p[i * 3] + ny * p[i * 3 + 1] + nz * p[i * 3 + 2] - offset);
+                if (distance > best) {
+                    best = distance;
+                    d = i;
+                }
+            }
+            if (d == NONE || best <= tolerance) {
+                throw new IllegalArgumentException("Points are coplanar");
+            }
+            if (nx * p[d * 3] + ny * p[d * 3 + 1] + nz * p[d * 3 + 2] - offset > 0) {
+                return new int[] { a, c, b, d };
+            }
+            return new int[] { a, b, c, d };
+        }
+
+        private int vertex(int face, int edge) {
+            return faceVertex[face * 3 + edge % 3];
+        }
+
+        /**
+         * @return the edge of a face that runs from u to v or NONE
+         */
+        private int edgeIndex(int face, int u, int v) {
+            for (int e = 0; e < 3; e++) {
+                if (faceVertex[face * 3 + e] == u && faceVertex[face * 3 + (e + 1) % 3] == v) {
+                    return e;
+                }
+            }
+            return NONE;
+        }
+
+        private double distance(int face, int point) {
+            return facePlane[face * 4] * p[point * 3] + facePlane[face * 4 + 1] * p[point * 3 + 1]
+                    + facePlane[face * 4 + 2] * p[point * 3 + 2] - facePlane[face * 4 + 3];
+        }
+
+        private int createFace(int a, int b, int c) {
+            final int face = faces++;
+            if (face == faceMark.length) {
+                final int capacity = face * 2;
+                faceVertex = Arrays.copyOf(faceVertex, capacity * 3);
+                faceNeighbor = Arrays.copyOf(faceNeighbor, capacity * 3);
+                facePlane = Arrays.copyOf(facePlane, capacity * 4);
+                faceMark = Arrays.copyOf(faceMark, capacity);
+                faceHead = Arrays.copyOf(faceHead, capacity);
+                faceFurthest = Arrays.copyOf(faceFurthest, capacity);
+                faceFurthestDistance = Arrays.copyOf(faceFurthestDistance, capacity);
+            }
+            faceVertex[face * 3] = a;
+            faceVertex[face * 3 + 1] = b;
+            faceVertex[face * 3 + 2] = c;
+            faceMark[face] = ALIVE;
+            faceHead[face] = NONE;
+            faceFurthest[face] = NONE;
+            faceFurthestDistance[face] = 0;
+
+            final double ux = p[b * 3] - p[a * 3], uy = p[b * 3 + 1] - p[a * 3 + 1], uz = p[b * 3 + 2] - p[a * 3 + 2];
+            final double vx = p[c * 3] - p[a * 3], vy = p[c * 3 + 1] - p[a * 3 + 1], vz = p[c * 3 + 2] - p[a * 3 + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0) {
+                nx /= length;
+                ny /= length;
+                nz /= length;
+            }
+            facePlane[face * 4] = nx;
+            facePlane[face * 4 + 1] = ny;
+            facePlane[face * 4 + 2] = nz;
+            // the centroid gives a more accurate offset than a single vertex
+            facePlane[face * 4 + 3] = (nx * (p[a * 3] + p[b * 3] + p[c * 3]) + ny * (p[a * 3 + 1] + p[b * 3 + 1] + p[c * 3 + 1])
+                    + nz * (p[a * 3 + 2] + p[b * 3 + 2] + p[c * 3 + 2])) / 3;
+            return face;
+        }
+
+        private void assign(int point, int face, double distance) {
+            next[point] = faceHead[face];
+            faceHead[face] = point;
+            if (distance > faceFurthestDistance[face]) {
+                faceFurthestDistance[face] = distance;
+                faceFurthest[face] = point;
+            }
+        }
+
+        private void push(int face) {
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, pendingSize * 2);
+            }
+            pending[pendingSize++] = face;
+        }
+
+        /**
+         * Assigns every point to the face of the tetrahedron it is farthest
+         * outside of. The distances are computed in parallel.
+         */
+        private void partition(int[] simplex) {
+            final int[] face = new int[n];
+            final double[] distance = new double[n];
+            final IntStream points = IntStream.range(0, n);
+            (n > PARALLEL_THRESHOLD ? points.parallel() : points).forEach(i -> {
+                int best = NONE;
+                double max = tolerance;
+                for (int f = 0; f < 4; f++) {
+                    final double d = distance(f, i);
+                    if (d > max) {
+                        max = d;
+                        best = f;
+                    }
+                }
+                face[i] = best;
+                distance[i] = max;
+            });
+            for (int s : simplex) {
+                face[s] = NONE;
+            }
+            for (int i = 0; i < n; i++) {
+                if (face[i] != NONE) {
+                    assign(i, face[i], distance[i]);
+                }
+            }
+            for (int f = 0; f < 4; f++) {
+                if (faceHead[f] != NONE) {
+                    push(f);
+                }
+            }
+        }
+
+        private void addPoint(int face, int eye) {
+            computeHorizon(face, eye);
+
+            // one new face per horizon edge, the horizon is a closed loop
+            final int first = faces;
+            for (int k = 0; k < horizonSize; k++) {
+                final int f = horizon[k * 2], e = horizon[k * 2 + 1];
+                final int a = vertex(f, e), b = vertex(f, e + 1);
+                final int created = createFace(a, b, eye);
+                final int opposite = faceNeighbor[f * 3 + e];
+                faceNeighbor[opposite * 3 + edgeIndex(opposite, b, a)] = created;
+                faceNeighbor[created * 3] = opposite;
+                faceNeighbor[created * 3 + 1] = first + (k + 1) % horizonSize;
+                faceNeighbor[created * 3 + 2] = first + (k + horizonSize - 1) % horizonSize;
+            }
+
+            // reassign the points of the deleted faces
+            for (int v = 0; v < visibleSize; v++) {
+                for (int point = faceHead[visible[v]]; point != NONE;) {
+                    final int following = next[point];
+                    if (point != eye) {
+                        int best = NONE;
+                        double max = tolerance;
+                        for (int f = first; f < faces; f++) {
+                            final double d = distance(f, point);
+                            if (d > max) {
+                                max = d;
+                                best = f;
+                            }
+                        }
+                        if (best != NONE) {
+                            assign(point, best, max);
+                        }
+                    }
+                    point = following;
+                }
+            }
+            for (int f = first; f < faces; f++) {
+                if (faceHead[f] != NONE) {
+                    push(f);
+                }
+            }
+        }
+
+        /**
+         * Deletes all faces visible from the eye point and collects the
+         * horizon edges (face, edge) in counter clockwise order. The depth
+         * first search runs on an explicit stack of (face, first edge, edges
+         * done, edge count).
+         */
+        private void computeHorizon(int face, int eye) {
+            visibleSize = 0;
+            horizonSize = 0;
+            faceMark[face] = DELETED;
+            addVisible(face);
+            int sp = 0;
+            stack[sp++] = face;
+            stack[sp++] = 0;
+            stack[sp++] = 0;
+            stack[sp++] = 3;
+            while (sp > 0) {
+                final int f = stack[sp - 4], start = stack[sp - 3], done = stack[sp - 2], count = stack[sp - 1];
+                if (done == count) {
+                    sp -= 4;
+                    continue;
+                }
+                stack[sp - 2]++;
+                final int e = (start + done) % 3;
+                final int neighbor = faceNeighbor[f * 3 + e];
+                if (faceMark[neighbor] == DELETED) {
+                    continue;
+                }
+                if (distance(neighbor, eye) > tolerance) {
+                    faceMark[neighbor] = DELETED;
+                    addVisible(neighbor);
+                    if (sp + 4 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    // continue behind the edge we came through
+                    stack[sp++] = neighbor;
+                    stack[sp++] = edgeIndex(neighbor, vertex(f, e + 1), vertex(f, e)) + 1;
+                    stack[sp++] = 0;
+                    stack[sp++] = 2;
+                } else {
+                    if (horizonSize * 2 + 2 > horizon.length) {
+                        horizon = Arrays.copyOf(horizon, horizon.length * 2);
+                    }
+                    horizon[horizonSize * 2] = f;
+                    horizon[horizonSize * 2 + 1] = e;
+                    horizonSize++;
+                }
+            }
+        }
+
+        private void addVisible(int face) {
+            if (visibleSize == visible.length) {
+                visible = Arrays.copyOf(visible, visibleSize * 2);
+            }
+            visible[visibleSize++] = face;
+        }
+
+        private ConvexHull3 result() {
+            int alive = 0;
+            for (int f = 0; f < faces; f++) {
+                alive += faceMark[f] == ALIVE ? 1 : 0;
+            }
+            final int[] triangles = new int[alive * 3];
+            final boolean[] used = new boolean[n];
+            int t = 0;
+            for (int f = 0; f < faces; f++) {
+                if (faceMark[f] == ALIVE) {
+                    for (int k = 0; k < 3; k++) {
+                        triangles[t++] = faceVertex[f * 3 + k];
+                        used[faceVertex[f * 3 + k]] = true;
+                    }
+                }
+            }
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                count += used[i] ? 1 : 0;
+            }
+            final int[] vertices = new int[count];
+            for (int i = 0, v = 0; i < n; i++) {
+                if (used[i]) {
+                    vertices[v++] = i;
+                }
+            }
+            return new ConvexHull3(triangles, vertices);
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Number parser over ASCII bytes (final::mutable)
+ * <p>
+ * Parses whitespace separated numbers straight from a byte array without
+ * creating strings. A decimal is accumulated into a 64 bit integer mantissa
+ * and a power of ten; if the mantissa has at most 53 bits and the exponent is
+ * within the exactly representable powers <code>10^&plusmn;22</code>, a single
+ * double multiplication or division gives the correctly rounded double. This
+ * covers practically all numbers written by mesh and scan exporters. Rounding
+ * that double to float rounds twice, which only differs from rounding the
+ * decimal once if the double lies exactly halfway between two floats. Such
+ * rare values, longer and more extreme numbers fall back to
+ * {@link Float#parseFloat(String)}, so every result is correctly rounded.
+ * </p>
+ * <p>
+ * Spaces, tabs and carriage returns separate values, line feeds end lines.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class AsciiParser {
+
+    private static final double[] POWERS = new double[23];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    /**
+     * Creates a parser over a range of bytes.
+     *
+     * @param data the bytes
+     * @param from the first byte
+     * @param to the end of the range (exclusive)
+     * @throws IndexOutOfBoundsException if the range exceeds the bytes
+     */
+    public AsciiParser(byte[] data, int from, int to) {
+        if (from < 0 || to > data.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + data.length);
+        }
+        this.data = data;
+        this.position = from;
+        this.end = to;
+    }
+
+    /**
+     * Parses a single float.
+     *
+     * @param data the bytes
+     * @param from the first byte
+     * @param to the end of the number (exclusive)
+     * @return the value
+     * @throws NumberFormatException if the range does not start with a
+     *             number
+     */
+    public static float parseFloat(byte[] data, int from, int to) {
+        return new AsciiParser(data, from, to).nextFloat();
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Skips spaces, tabs and carriage returns.
+     */
+    public void skipSpaces() {
+        while (position < end && isSpace(data[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * Moves behind the next line feed.
+     */
+    public void nextLine() {
+        while (position < end && data[position++] != '\n') {
+            // skip
+        }
+    }
+
+    /**
+     * Skips spaces and checks for the end of the line.
+     *
+     * @return true if the line or the input ends
+     */
+    public boolean isLineEnd() {
+        skipSpaces();
+        return position == end || data[position] == '\n';
+    }
+
+    /**
+     * @return true if there are bytes left
+     */
+    public boolean hasRemaining() {
+        return position < end;
+    }
+
+    /**
+     * @return the current byte or -1 at the end of the input
+     */
+    public int peek() {
+        return position < end ? data[position] : -1;
+    }
+
+    /**
+     * Skips spaces and tests whether the next word matches a keyword.
+     * Consumes the keyword if it does.
+     *
+     * @param keyword the ASCII keyword
+     * @return true if the keyword followed by a separator or line end was
+     *         found
+     */
+    public boolean nextKeyword(String keyword) {
+        skipSpaces();
+        final int length = keyword.length();
+        if (end - position < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[position + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        if (position + length < end) {
+            final byte next = data[position + length];
+            if (!isSpace(next) && next != '\n') {
+                return false;
+            }
+        }
+        position += length;
+        return true;
+    }
+
+    /**
+     * Skips spaces and reads the next word.
+     *
+     * @return the word, empty at the end of the line
+     */
+    public String nextWord() {
+        skipSpaces();
+        final int start = position;
+        while (position < end && !isSpace(data[position]) && data[position] != '\n') {
+            position++;
+        }
+        return new String(data, start, position - start, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Skips a byte if it is the specified one.
+     *
+     * @param b the byte
+     * @return true if the byte was skipped
+     */
+    public boolean skip(char b) {
+        if (position < end && data[position] == b) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips spaces and parses an integer.
+     *
+     * @return the value
+     * @throws NumberFormatException if there is no integer or it overflows
+     */
+    public int nextInt() {
+        skipSpaces();
+        int p = position;
+        boolean negative = false;
+        if (p < end && (data[p] == '-' || data[p] == '+')) {
+            negative = data[p++] == '-';
+        }
+        final int start = p;
+        long value = 0;
+        while (p < end) {
+            final int digit = data[p] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (value > 1L << 31) {
+                throw new NumberFormatException("Integer overflow at byte " + position);
+            }
+            p++;
+        }
+        if (p == start) {
+            throw error();
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer overflow at byte " + position);
+        }
+        position = p;
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Skips spaces and parses a decimal float, including <code>nan</code> and
+     * <code>inf</code>.
+     *
+     * @return the value
+     * @throws NumberFormatException if there is no number
+     */
+    public float nextFloat() {
+        skipSpaces();
+        final int start = position;
+        int p = position;
+        boolean negative = false;
+        if (p < end && (data[p] == '-' || data[p] == '+')) {
+            negative = data[p++] == '-';
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean truncated = false;
+        final int integerStart = p;
+        while (p < end) {
+            final int digit = data[p] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (digits < 18) {
+                mantissa = mantissa * 10 + digit;
+                digits += mantissa != 0 ? 1 : 0;
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+            p++;
+        }
+        boolean any = p > integerStart;
+        if (p < end && data[p] == '.') {
+            final int fractionStart = ++p;
+            while (p < end) {
+                final int digit = data[p] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    digits += mantissa != 0 ? 1 : 0;
+                    exponent--;
+                } else {
+                    truncated |= digit != 0;
+                }
+                p++;
+            }
+            any |= p > fractionStart;
+        }
+        if (!any) {
+            return special(p, negative);
+        }
+        if (p < end && (data[p] | 0x20) == 'e') {
+            int q = p + 1;
+            boolean negativeExponent = false;
+            if (q < end && (data[q] == '-' || data[q] == '+')) {
+                negativeExponent = data[q++] == '-';
+            }
+            final int exponentStart = q;
+            int value = 0;
+            while (q < end) {
+                final int digit = data[q] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = Math.min(value * 10 + digit, 100000);
+                q++;
+            }
+            if (q > exponentStart) {
+                exponent += negativeExponent ? -value : value;
+                p = q;
+            }
+        }
+        position = p;
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (!truncated && mantissa < 1L << 53 && exponent >= -22 && exponent <= 22) {
+            final double value = exponent < 0 ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+            final float rounded = (float) value;
+            if (rounded == value || !isMidpoint(value, rounded)) {
+                return negative ? -rounded : rounded;
+            }
+        }
+        return Float.parseFloat(new String(data, start, p - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return true if the double lies exactly halfway between the float and
+     *         its neighbour towards the double
+     */
+    private static boolean isMidpoint(double value, float rounded) {
+        final float neighbour = Math.nextAfter(rounded, value);
+        // adjacent floats sum up exactly in double precision
+        return ((double) rounded + neighbour) * 0.5 == value;
+    }
+
+    private float special(int p, boolean negative) {
+        if (matches(p, "nan")) {
+            position = p + 3;
+            return Float.NaN;
+        }
+        if (matches(p, "inf")) {
+            position = matches(p, "infinity") ? p + 8 : p + 3;
+            return negative ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+        }
+        throw error();
+    }
+
+    private boolean matches(int p, String word) {
+        if (end - p < word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if ((data[p + i] | 0x20) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private NumberFormatException error() {
+        final int to = Math.min(end, position + 16);
+        return new NumberFormatException("No number at byte " + position + ": \""
+                + new String(data, position, to - position, StandardCharsets.US_ASCII) + "\"");
+    }
+
+    /**
+     * @return the position of the next byte
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the end of the range (exclusive)
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "AsciiParser [position=" + position + ", end=" + end + "]";
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive floats (final::mutable)
+ * <p>
+ * Readers append to these buffers instead of allocating an object per value.
+ * The backing array grows by half its size when full and is exposed by
+ * {@link #getArray()}, so large results are handed on without copying.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class FloatArray {
+
+    private float[] data;
+    private int size;
+
+    /**
+     * Creates an empty array.
+     */
+    public FloatArray() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty array.
+     *
+     * @param capacity the initial capacity
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public FloatArray(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        data = new float[capacity];
+    }
+
+    /**
+     * Wraps values without copying them.
+     *
+     * @param values the values
+     * @return the array of all values
+     */
+    public static FloatArray wrap(float[] values) {
+        final FloatArray result = new FloatArray(0);
+        result.data = values;
+        result.size = values.length;
+        return result;
+    }
+
+    /**
+     * Ensures that the specified amount of values fits without growing.
+     *
+     * @param capacity the minimal capacity
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            final long grown = data.length + (data.length >> 1) + 16L;
+            data = Arrays.copyOf(data, (int) Math.min(Math.max(grown, capacity), Integer.MAX_VALUE - 8));
+        }
+    }
+
+    /**
+     * @param value the value to append
+     */
+    public void add(float value) {
+        if (size == data.length) {
+            ensureCapacity(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * @param a the first value to append
+     * @param b the second value to append
+     */
+    public void add(float a, float b) {
+        if (size + 2 > data.length) {
+            ensureCapacity(size + 2);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        size += 2;
+    }
+
+    /**
+     * @param a the first value to append
+     * @param b the second value to append
+     * @param c the third value to append
+     */
+    public void add(float a, float b, float c) {
+        if (size + 3 > data.length) {
+            ensureCapacity(size + 3);
+        }
+        data[size] = a;
+        data[size + 1] = b;
+        data[size + 2] = c;
+        size += 3;
+    }
+
+    /**
+     * @param values the values to append
+     */
+    public void addAll(FloatArray values) {
+        ensureCapacity(size + values.size);
+        System.arraycopy(values.data, 0, data, size, values.size);
+        size += values.size;
+    }
+
+    /**
+     * @param index the index
+     * @return the value at the index
+     * @throws IndexOutOfBoundsException if the index is not below the size
+     */
+    public float get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return data[index];
+    }
+
+    /**
+     * @param index the index
+     * @param value the new value
+     * @throws IndexOutOfBoundsException if the index is not below the size
+     */
+    public void set(int index, float value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        data[index] = value;
+    }
+
+    /**
+     * Changes the size, new values are zero.
+     *
+     * @param size the new size
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public void resize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        ensureCapacity(size);
+        if (size > this.size) {
+            Arrays.fill(data, this.size, size, 0);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the amount of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the backing array, which may be longer than the size
+     */
+    public float[] getArray() {
+        return data;
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + Float.hashCode(data[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final FloatArray other = (FloatArray) obj;
+        return size == other.size && Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "FloatArray [size=" + size + "]";
+    }
+
+}
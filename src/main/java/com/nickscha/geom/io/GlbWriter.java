@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.quat.Quatf;
+import com.nickscha.geom.transform.Transf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Writer of binary glTF 2.0 (GLB) files (final::mutable)
+ * <p>
+ * Triangle meshes and point clouds are added as interleaved primitive arrays
+ * and are referenced by nodes with a translation, rotation and scale or a
+ * matrix. The arrays are kept by reference until the file is written, they
+ * must not change in between. All arrays end up in a single little endian
+ * binary chunk: each one is copied with a bulk put into a little endian view
+ * of the buffer, no per vertex objects are created. Position accessors carry
+ * the min and max the specification requires, index accessors carry them as
+ * well.
+ * </p>
+ * <p>
+ * Indices are written as unsigned shorts if every vertex fits, otherwise as
+ * unsigned ints. Nodes without a parent are the roots of the single scene, a
+ * writer without nodes writes no scene.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class GlbWriter {
+
+    private static final int MAGIC = 0x46546C67;
+    private static final int VERSION = 2;
+    private static final int CHUNK_JSON = 0x4E4F534A;
+    private static final int CHUNK_BIN = 0x004E4942;
+
+    private static final int ARRAY_BUFFER = 34962;
+    private static final int ELEMENT_ARRAY_BUFFER = 34963;
+    private static final int UNSIGNED_SHORT = 5123;
+    private static final int UNSIGNED_INT = 5125;
+    private static final int FLOAT = 5126;
+
+    private static final int POINTS = 0;
+    private static final int TRIANGLES = 4;
+
+    /**
+     * Amount of floats per node of {@link #addNodes(int[], float[])}
+     */
+    public static final int TRS_STRIDE = 10;
+
+    private final List<float[]> positions = new ArrayList<>();
+    private final List<float[]> normals = new ArrayList<>();
+    private final List<int[]> indices = new ArrayList<>();
+    private final IntArray modes = new IntArray();
+
+    private final IntArray nodeMeshes = new IntArray();
+    private final IntArray nodeParents = new IntArray();
+    // translation, rotation, scale or a column major matrix
+    private final List<float[]> nodeTransforms = new ArrayList<>();
+
+    /**
+     * Adds a triangle mesh.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param normals the vertex normals (x,y,z interleaved) or null
+         * @param indices the triangle indices or null for a non indexed mesh
+     * @return the mesh index
+     * @throws IllegalArgumentException if the arrays do not describe the same
+     *             vertices, a position is not finite, an index is out of range
+     *             or a non indexed mesh is not made of whole triangles
+     */
+    public int addMesh(float[] positions, float[] normals, int[] indices) {
+        if (indices == null && positions.length % 9 != 0) {
+            throw new IllegalArgumentException("positions: " + positions.length + ", not whole triangles");
+        }
+        return addMesh(positions, normals, indices, TRIANGLES);
+    }
+
+    /**
+     * Adds a point cloud.
+     *
+     * @param positions the point positions (x,y,z interleaved)
+     * @param normals the point normals (x,y,z interleaved) or null
+     * @return the mesh index
+     * @throws IllegalArgumentException if the arrays do not describe the same
+     *             points or a position is not finite
+     */
+    public int addPoints(float[] positions, float[] normals) {
+        return addMesh(positions, normals, null, POINTS);
+    }
+
+    private int addMesh(float[] positions, float[] normals, int[] indices, int mode) {
+        if (positions.length % 3 != 0 || positions.length == 0) {
+            throw new IllegalArgumentException("positions: " + positions.length);
+        }
+        if (normals != null && normals.length != positions.length) {
+            throw new IllegalArgumentException("normals: " + normals.length + ", positions: " + positions.length);
+        }
+        if (indices != null && (indices.length % 3 != 0 || indices.length == 0)) {
+            throw new IllegalArgumentException("indices: " + indices.length);
+        }
+        finite("position", positions);
+        if (indices != null) {
+            final int vertexCount = positions.length / 3;
+            for (int i : indices) {
+                if (i < 0 || i >= vertexCount) {
+                    throw new IllegalArgumentException("index: " + i + ", vertices: " + vertexCount);
+                }
+            }
+        }
+        this.positions.add(positions);
+        this.normals.add(normals);
+        this.indices.add(indices);
+        this.modes.add(mode);
+        return this.positions.size() - 1;
+    }
+
+    /**
+     * Adds a mesh read by one of the readers, ignoring all attributes but the
+     * positions and normals. A mesh without faces, such as a point cloud, is
+     * added as points.
+     *
+     * @param mesh the mesh
+     * @return the mesh index
+     * @throws IllegalArgumentException as {@link #addMesh(float[], float[], int[])}
+     */
+    public int addMesh(MeshData mesh) {
+        final FloatArray n = mesh.getNormals();
+        final IntArray indices = mesh.getIndices();
+        final float[] normals = n.size() == mesh.getPositions().size() ? n.toArray() : null;
+        if (indices.isEmpty()) {
+            return addPoints(mesh.getPositions().toArray(), normals);
+        }
+        return addMesh(mesh.getPositions().toArray(), normals, indices.toArray(), TRIANGLES);
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param mesh the mesh index or -1 for a node without mesh
+     * @param translation the translation
+     * @param rotation the rotation
+     * @param scale the scale
+     * @return the node index
+     * @throws IndexOutOfBoundsException if the mesh does not exist
+     * @throws IllegalArgumentException if a value is not finite
+     */
+    public int addNode(int mesh, Vec3f translation, Quatf rotation, Vec3f scale) {
+        return addNode(mesh, new float[] { translation.getX(), translation.getY(), translation.getZ(), rotation.getX(),
+                rotation.getY(), rotation.getZ(), rotation.getW(), scale.getX(), scale.getY(), scale.getZ() });
+    }
+
+    /**
+     * Adds a node with the local translation, rotation and scale of a
+     * transform. The parent of the transform is not followed, use
+     * {@link #setParent(int, int)}.
+     *
+     * @param mesh the mesh index or -1 for a node without mesh
+     * @param transform the transform
+     * @return the node index
+     * @throws IndexOutOfBoundsException if the mesh does not exist
+     * @throws IllegalArgumentException if a value is not finite
+     */
+    public int addNode(int mesh, Transf transform) {
+        return addNode(mesh, transform.getPos(), transform.getRot(), transform.getScale());
+    }
+
+    /**
+     * Adds a node with a matrix.
+     *
+     * @param mesh the mesh index or -1 for a node without mesh
+     * @param matrix the matrix (row major, translation in the last column)
+     * @return the node index
+     * @throws IndexOutOfBoundsException if the mesh does not exist
+     * @throws IllegalArgumentException if a value is not finite
+     */
+    public int addNode(int mesh, Mat4f matrix) {
+        final float[] m = new float[16];
+        for (int column = 0; column < 4; column++) {
+            for (int row = 0; row < 4; row++) {
+                m[column * 4 + row] = matrix.get(row, column);
+            }
+        }
+        return addNode(mesh, m);
+    }
+
+    /**
+     * Adds nodes from packed transforms: translation (x,y,z), rotation
+     * (x,y,z,w) and scale (x,y,z), {@link #TRS_STRIDE} floats per node.
+     *
+     * @param meshes the mesh index of every node or -1 for a node without mesh
+     * @param trs the packed transforms
+     * @return the index of the first added node
+     * @throws IllegalArgumentException if the transform count does not match
+     *             or a value is not finite
+     * @throws IndexOutOfBoundsException if a mesh does not exist
+     */
+    public int addNodes(int[] meshes, float[] trs) {
+        if (trs.length != meshes.length * TRS_STRIDE) {
+            throw new IllegalArgumentException("trs: " + trs.length + ", nodes: " + meshes.length);
+        }
+        // all or nothing, no node is added if a later one is invalid
+        finite("transform", trs);
+        for (int mesh : meshes) {
+            if (mesh < -1 || mesh >= positions.size()) {
+                throw new IndexOutOfBoundsException("mesh: " + mesh + ", meshes: " + positions.size());
+            }
+        }
+        final int first = nodeMeshes.size();
+        for (int i = 0; i < meshes.length; i++) {
+            addNode(meshes[i], Arrays.copyOfRange(trs, i * TRS_STRIDE, (i + 1) * TRS_STRIDE));
+        }
+        return first;
+    }
+
+    private int addNode(int mesh, float[] transform) {
+        if (mesh < -1 || mesh >= positions.size()) {
+            throw new IndexOutOfBoundsException("mesh: " + mesh + ", meshes: " + positions.size());
+        }
+        // JSON has no literals for NaN and infinity
+        finite("transform", transform);
+        nodeMeshes.add(mesh);
+        nodeParents.add(-1);
+        nodeTransforms.add(transform);
+        return nodeMeshes.size() - 1;
+    }
+
+    /**
+     * Makes a node the child of another node.
+     *
+     * @param node the child node
+     * @param parent the parent node or -1 to make the node a root
+     * @return this writer
+     * @throws IndexOutOfBoundsException if a node does not exist
+     * @throws IllegalArgumentException if the parent is a descendant of the
+     *             node
+     */
+    public GlbWriter setParent(int node, int parent) {
+        if (node < 0 || node >= nodeMeshes.size() || parent < -1 || parent >= nodeMeshes.size()) {
+            throw new IndexOutOfBoundsException("node: " + node + ", parent: " + parent + ", nodes: " + nodeMeshes.size());
+        }
+        for (int p = parent; p != -1; p = nodeParents.get(p)) {
+            if (p == node) {
+                throw new IllegalArgumentException("cycle: " + node + " -> " + parent);
+            }
+        }
+        nodeParents.set(node, parent);
+        return this;
+    }
+
+    /**
+     * @return the amount of meshes
+     */
+    public int getMeshCount() {
+        return positions.size();
+    }
+
+    /**
+     * @return the amount of nodes
+     */
+    public int getNodeCount() {
+        return nodeMeshes.size();
+    }
+
+    /**
+     * Writes the file.
+     *
+     * @param path the file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        final ByteBuffer buffer = encode();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the file to a stream. The stream is not closed.
+     *
+     * @param out the stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        final ByteBuffer buffer = encode();
+        out.write(buffer.array(), 0, buffer.limit());
+    }
+
+    /**
+     * @return the file contents
+     */
+    public byte[] toByteArray() {
+        return encode().array();
+    }
+
+    private ByteBuffer encode() {
+        final StringBuilder views = new StringBuilder(), accessors = new StringBuilder(), meshes = new StringBuilder();
+        final int meshCount = positions.size();
+        final int[] offsets = new int[meshCount * 3];
+        int length = 0, view = 0;
+        for (int m = 0; m < meshCount; m++) {
+            final float[] p = positions.get(m), n = normals.get(m);
+            final int[] idx = indices.get(m);
+            final int vertexCount = p.length / 3;
+
+            offsets[m * 3] = length;
+            length = view(views, length, p.length * 4, ARRAY_BUFFER);
+            accessor(accessors, view++, FLOAT, vertexCount, "VEC3", bounds(p));
+            meshes.append(meshes.length() == 0 ? "" : ",").append("{\"primitives\":[{\"attributes\":{\"POSITION\":")
+                    .append(view - 1);
+            if (n != null) {
+                offsets[m * 3 + 1] = length;
+                length = view(views, length, n.length * 4, ARRAY_BUFFER);
+                accessor(accessors, view++, FLOAT, vertexCount, "VEC3", null);
+                meshes.append(",\"NORMAL\":").append(view - 1);
+            }
+            meshes.append('}');
+            if (idx != null) {
+                final boolean small = vertexCount <= 0xFFFF;
+                offsets[m * 3 + 2] = length;
+                length = view(views, length, idx.length * (small ? 2 : 4), ELEMENT_ARRAY_BUFFER);
+                int min = Integer.MAX_VALUE, max = 0;
+                for (int i : idx) {
+                    min = Math.min(min, i);
+                    max = Math.max(max, i);
+                }
+                accessor(accessors, view++, small ? UNSIGNED_SHORT : UNSIGNED_INT, idx.length, "SCALAR",
+                        new double[] { min, max });
+                meshes.append(",\"indices\":").append(view - 1);
+            }
+            meshes.append(",\"mode\":").append(modes.get(m)).append("}]}");
+        }
+
+        final StringBuilder json = new StringBuilder(256 + views.length() + accessors.length() + meshes.length());
+        json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"geom\"}");
+        nodes(json);
+        if (meshCount > 0) {
+            json.append(",\"meshes\":[").append(meshes).append("],\"accessors\":[").append(accessors)
+                    .append("],\"bufferViews\":[").append(views).append("],\"buffers\":[{\"byteLength\":").append(length)
+                    .append("}]");
+        }
+        json.append('}');
+
+        final byte[] text = json.toString().getBytes(StandardCharsets.UTF_8);
+        final int jsonLength = pad(text.length);
+        final int binLength = meshCount > 0 ? pad(length) : 0;
+        final int total = 12 + 8 + jsonLength + (binLength > 0 ? 8 + binLength : 0);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(total).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(total);
+        buffer.putInt(jsonLength).putInt(CHUNK_JSON).put(text);
+        while (buffer.position() < 20 + jsonLength) {
+            buffer.put((byte) ' ');
+        }
+        if (binLength > 0) {
+            buffer.putInt(binLength).putInt(CHUNK_BIN);
+            final int bin = buffer.position();
+            for (int m = 0; m < meshCount; m++) {
+                ((ByteBuffer) buffer.position(bin + offsets[m * 3])).asFloatBuffer().put(positions.get(m));
+                if (normals.get(m) != null) {
+                    ((ByteBuffer) buffer.position(bin + offsets[m * 3 + 1])).asFloatBuffer().put(normals.get(m));
+                }
+                final int[] idx = indices.get(m);
+                if (idx != null) {
+                    buffer.position(bin + offsets[m * 3 + 2]);
+                    if (positions.get(m).length / 3 <= 0xFFFF) {
+                        final short[] shorts = new short[idx.length];
+                        for (int i = 0; i < idx.length; i++) {
+                            shorts[i] = (short) idx[i];
+                        }
+                        buffer.asShortBuffer().put(shorts);
+                    } else {
+                        buffer.asIntBuffer().put(idx);
+                    }
+                }
+            }
+        }
+        buffer.position(0);
+        return buffer;
+    }
+
+    private void nodes(StringBuilder json) {
+        final int count = nodeMeshes.size();
+        // a scene needs at least one node, as parents are acyclic any node
+        // leads to a root
+        if (count == 0) {
+            return;
+        }
+        json.append(",\"scene\":0,\"scenes\":[{\"nodes\":[");
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            if (nodeParents.get(i) == -1) {
+                json.append(first ? "" : ",").append(i);
+                first = false;
+            }
+        }
+        json.append("]}]");
+        // children in ascending order as linked lists
+        final int[] firstChild = new int[count], nextSibling = new int[count];
+        Arrays.fill(firstChild, -1);
+        for (int i = count - 1; i >= 0; i--) {
+            final int parent = nodeParents.get(i);
+            if (parent != -1) {
+                nextSibling[i] = firstChild[parent];
+                firstChild[parent] = i;
+            }
+        }
+        json.append(",\"nodes\":[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "{" : ",{");
+            final float[] t = nodeTransforms.get(i);
+            if (t.length == 16) {
+                array(json, "matrix", t, 0, 16);
+            } else {
+                array(json, "translation", t, 0, 3);
+                array(json.append(','), "rotation", t, 3, 4);
+                array(json.append(','), "scale", t, 7, 3);
+            }
+            if (nodeMeshes.get(i) != -1) {
+                json.append(",\"mesh\":").append(nodeMeshes.get(i));
+            }
+            for (int c = firstChild[i]; c != -1; c = nextSibling[c]) {
+                json.append(c == firstChild[i] ? ",\"children\":[" : ",").append(c);
+            }
+            json.append(firstChild[i] != -1 ? "]}" : "}");
+        }
+        json.append(']');
+    }
+
+    private static void finite(String name, float[] values) {
+        for (float v : values) {
+            if (Float.isNaN(v) || Float.isInfinite(v)) {
+                throw new IllegalArgumentException(name + ": " + v);
+            }
+        }
+    }
+
+    private static void array(StringBuilder json, String name, float[] values, int from, int count) {
+        json.append('"').append(name).append("\":[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append(values[from + i]);
+        }
+        json.append(']');
+    }
+
+    /**
+     * Appends a tightly packed buffer view aligned to four bytes.
+     *
+     * @return the end of the view
+     */
+    private static int view(StringBuilder views, int offset, int length, int target) {
+        views.append(views.length() == 0 ? "" : ",").append("{\"buffer\":0,\"byteOffset\":").append(offset)
+                .append(",\"byteLength\":").append(length).append(",\"target\":").append(target).append('}');
+        return pad(offset + length);
+    }
+
+    /**
+     * @param bounds min and max per component or null
+     */
+    private static void accessor(StringBuilder accessors, int view, int componentType, int count, String type,
+            double[] bounds) {
+        accessors.append(accessors.length() == 0 ? "" : ",").append("{\"bufferView\":").append(view)
+                .append(",\"componentType\":").append(componentType).append(",\"count\":").append(count)
+                .append(",\"type\":\"").append(type).append('"');
+        if (bounds != null) {
+            final int half = bounds.length / 2;
+            final boolean integer = componentType != FLOAT;
+            accessors.append(",\"min\":[");
+            for (int i = 0; i < half; i++) {
+                number(accessors.append(i == 0 ? "" : ","), bounds[i], integer);
+            }
+            accessors.append("],\"max\":[");
+            for (int i = 0; i < half; i++) {
+                number(accessors.append(i == 0 ? "" : ","), bounds[half + i], integer);
+            }
+            accessors.append(']');
+        }
+        accessors.append('}');
+    }
+
+    private static void number(StringBuilder json, double value, boolean integer) {
+        if (integer) {
+            json.append((long) value);
+        } else {
+            json.append((float) value);
+        }
+    }
+
+    /**
+     * @return min x, y, z and max x, y, z
+     */
+    private static double[] bounds(float[] p) {
+        final double[] b = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE,
+                -Float.MAX_VALUE };
+        for (int i = 0; i < p.length; i += 3) {
+            for (int c = 0; c < 3; c++) {
+                b[c] = Math.min(b[c], p[i + c]);
+                b[c + 3] = Math.max(b[c + 3], p[i + c]);
+            }
+        }
+        return b;
+    }
+
+    private static int pad(int length) {
+        return length + 3 & ~3;
+    }
+
+}
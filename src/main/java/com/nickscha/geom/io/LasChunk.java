@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import com.nickscha.geom.vec.Vec3d;
+
+/**
+ * Consecutive points of a LAS file (final::immutable)
+ * <p>
+ * Positions are decoded from the scaled integer coordinates into doubles in
+ * the layout of {@link Vec3d} (x,y,z interleaved). The arrays are owned by
+ * the chunk and returned without copying.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class LasChunk {
+
+    private final long offset;
+    private final double[] positions;
+    private final int[] intensities;
+    private final byte[] classifications;
+
+    LasChunk(long offset, double[] positions, int[] intensities, byte[] classifications) {
+        this.offset = offset;
+        this.positions = positions;
+        this.intensities = intensities;
+        this.classifications = classifications;
+    }
+
+    /**
+     * @return the index of the first point in the file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public int getCount() {
+        return intensities.length;
+    }
+
+    /**
+     * @return the positions (x,y,z interleaved)
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @param index the point within the chunk
+     * @return the position of the point
+     * @throws IndexOutOfBoundsException if the index is not a point of the
+     *             chunk
+     */
+    public Vec3d getPosition(int index) {
+        if (index < 0 || index >= intensities.length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", count: " + intensities.length);
+        }
+        return Vec3d.of(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    /**
+     * @return the unsigned 16 bit intensities
+     */
+    public int[] getIntensities() {
+        return intensities;
+    }
+
+    /**
+     * @return the classifications
+     */
+    public byte[] getClassifications() {
+        return classifications;
+    }
+
+    @Override
+    public String toString() {
+        return "LasChunk [offset=" + offset + ", count=" + getCount() + "]";
+    }
+
+}
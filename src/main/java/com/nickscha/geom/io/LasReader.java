@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.nickscha.geom.bounds.Aabb3d;
+
+/**
+ * Reader of uncompressed LAS point clouds (final::immutable)
+ * <p>
+ * Supports the LAS versions 1.0 to 1.4 and the point data formats 0 to 10.
+ * The file is memory mapped and points are decoded on demand in chunks of a
+ * fixed amount of points, see {@link LasChunk}. Coordinates are stored as 32
+ * bit integers and decoded as <code>integer * scale + offset</code> of the
+ * header. Compressed (LAZ) files are rejected.
+ * </p>
+ * <b>Streaming</b>
+ * <p>
+ * {@link #chunks(boolean)} returns a stream over a {@link Spliterator} of the
+ * chunks, which splits the range of chunks in halves for parallel streams.
+ * Only the chunks currently processed are in memory, so the heap used does
+ * not depend on the file size. The mapping itself is backed by the page cache
+ * of the operating system.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class LasReader implements Closeable {
+
+    /**
+     * Default amount of points per chunk
+     */
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int MIN_HEADER_SIZE = 227;
+    private static final int[] MIN_RECORD_LENGTH = { 20, 28, 26, 34, 57, 63, 30, 36, 38, 59, 67 };
+
+    private final MappedFile file;
+    private final int versionMinor;
+    private final int pointFormat;
+    private final int recordLength;
+    private final long pointOffset;
+    private final long pointCount;
+    private final double scaleX, scaleY, scaleZ;
+    private final double offsetX, offsetY, offsetZ;
+    private final Aabb3d bounds;
+
+    private LasReader(MappedFile file) throws IOException {
+        this.file = file;
+        if (file.size() < MIN_HEADER_SIZE || file.getInt(0) != ('L' | 'A' << 8 | 'S' << 16 | 'F' << 24)) {
+            throw new IOException("Not a LAS file");
+        }
+        final int versionMajor = file.getByte(24);
+        versionMinor = file.getByte(25);
+        if (versionMajor != 1 || versionMinor > 4) {
+            throw new IOException("Unsupported LAS version " + versionMajor + "." + versionMinor);
+        }
+        final int headerSize = file.getShort(94) & 0xFFFF;
+        pointOffset = file.getInt(96) & 0xFFFFFFFFL;
+        final int format = file.getByte(104) & 0xFF;
+        if ((format & 0xC0) != 0) {
+            throw new IOException("Compressed LAS (LAZ) is not supported");
+        }
+        pointFormat = format;
+        if (pointFormat >= MIN_RECORD_LENGTH.length) {
+            throw new IOException("Unsupported LAS point format " + pointFormat);
+        }
+        recordLength = file.getShort(105) & 0xFFFF;
+        if (recordLength < MIN_RECORD_LENGTH[pointFormat]) {
+            throw new IOException("LAS record length " + recordLength + " too short for format " + pointFormat);
+        }
+        final long legacyCount = file.getInt(107) & 0xFFFFFFFFL;
+        final long count = versionMinor >= 4 && headerSize >= 255 ? file.getLong(247) : 0;
+        pointCount = count != 0 ? count : legacyCount;
+        scaleX = file.getDouble(131);
+        scaleY = file.getDouble(139);
+        scaleZ = file.getDouble(147);
+        offsetX = file.getDouble(155);
+        offsetY = file.getDouble(163);
+        offsetZ = file.getDouble(171);
+        bounds = Aabb3d.of(file.getDouble(187), file.getDouble(203), file.getDouble(219), file.getDouble(179),
+                file.getDouble(195), file.getDouble(211));
+        if (pointCount < 0 || pointOffset + pointCount * recordLength > file.size()) {
+            throw new IOException("LAS file too short for " + pointCount + " points: " + file.size() + " bytes");
+        }
+    }
+
+    /**
+     * Opens and maps a file.
+     *
+     * @param path the file
+     * @return the reader, which must be closed
+     * @throws IOException if the file cannot be read or is not an
+     *             uncompressed LAS file
+     */
+    public static LasReader open(Path path) throws IOException {
+        final MappedFile file = new MappedFile(path, ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new LasReader(file);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes points into caller owned arrays.
+     *
+     * @param first the first point
+     * @param count the amount of points
+     * @param positions receives the positions (x,y,z interleaved), may be
+     *            null
+     * @param intensities receives the intensities, may be null
+     * @param classifications receives the classifications, may be null
+     * @throws IndexOutOfBoundsException if the points are not in the file or
+     *             the arrays are too short
+     */
+    public void read(long first, int count, double[] positions, int[] intensities, byte[] classifications) {
+        if (first < 0 || count < 0 || first + count > pointCount) {
+            throw new IndexOutOfBoundsException("first: " + first + ", count: " + count + ", points: " + pointCount);
+        }
+        // the classification moved with the extended formats
+        final int classification = pointFormat >= 6 ? 16 : 15;
+        final int classificationMask = pointFormat >= 6 ? 0xFF : 0x1F;
+        long p = pointOffset + first * recordLength;
+        for (int i = 0; i < count; i++, p += recordLength) {
+            if (positions != null) {
+                positions[i * 3] = file.getInt(p) * scaleX + offsetX;
+                positions[i * 3 + 1] = file.getInt(p + 4) * scaleY + offsetY;
+                positions[i * 3 + 2] = file.getInt(p + 8) * scaleZ + offsetZ;
+            }
+            if (intensities != null) {
+                intensities[i] = file.getShort(p + 12) & 0xFFFF;
+            }
+            if (classifications != null) {
+                classifications[i] = (byte) (file.getByte(p + classification) & classificationMask);
+            }
+        }
+    }
+
+    /**
+     * Decodes points into a new chunk.
+     *
+     * @param first the first point
+     * @param count the amount of points
+     * @return the chunk
+     * @throws IndexOutOfBoundsException if the points are not in the file
+     */
+    public LasChunk read(long first, int count) {
+        final double[] positions = new double[count * 3];
+        final int[] intensities = new int[count];
+        final byte[] classifications = new byte[count];
+        read(first, count, positions, intensities, classifications);
+        return new LasChunk(first, positions, intensities, classifications);
+    }
+
+    /**
+     * @return a spliterator over chunks of {@value #CHUNK_SIZE} points
+     */
+    public Spliterator<LasChunk> spliterator() {
+        return spliterator(CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize the amount of points per chunk
+     * @return a spliterator over chunks of the specified size, the last may
+     *         be smaller
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public Spliterator<LasChunk> spliterator(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        return new ChunkSpliterator(chunkSize, 0, (pointCount + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * @param parallel true for a parallel stream
+     * @return a stream of chunks of {@value #CHUNK_SIZE} points in file order
+     */
+    public Stream<LasChunk> chunks(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * @param chunkSize the amount of points per chunk
+     * @param parallel true for a parallel stream
+     * @return a stream of chunks of the specified size in file order
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public Stream<LasChunk> chunks(int chunkSize, boolean parallel) {
+        return StreamSupport.stream(spliterator(chunkSize), parallel);
+    }
+
+    /**
+     * Chunks in the range [from, to).
+     */
+    private final class ChunkSpliterator implements Spliterator<LasChunk> {
+
+        private final int chunkSize;
+        private long from;
+        private final long to;
+
+        ChunkSpliterator(int chunkSize, long from, long to) {
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super LasChunk> action) {
+            if (from >= to) {
+                return false;
+            }
+            final long first = from++ * chunkSize;
+            action.accept(read(first, (int) Math.min(chunkSize, pointCount - first)));
+            return true;
+        }
+
+        @Override
+        public Spliterator<LasChunk> trySplit() {
+            final long middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            final Spliterator<LasChunk> prefix = new ChunkSpliterator(chunkSize, from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return the point data format, 0 to 10
+     */
+    public int getPointFormat() {
+        return pointFormat;
+    }
+
+    /**
+     * @return the size of a point record in bytes
+     */
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * @return the minor version, the major version is always 1
+     */
+    public int getVersionMinor() {
+        return versionMinor;
+    }
+
+    /**
+     * @return the bounds of all points stored in the header
+     */
+    public Aabb3d getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return "LasReader [version=1." + versionMinor + ", format=" + pointFormat + ", points=" + pointCount + "]";
+    }
+
+}
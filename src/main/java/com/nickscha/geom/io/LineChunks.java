@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Splitting of text files into chunks of whole lines
+ * <p>
+ * Large text files are parsed in parallel chunks. The chunk boundaries are
+ * placed behind the first line feed after every multiple of the chunk size,
+ * so no line is split. Chunks are read with positional reads, which are safe
+ * to run concurrently on one channel.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+final class LineChunks {
+
+    private static final int SCAN_SIZE = 4096;
+
+    private LineChunks() {
+    }
+
+    /**
+     * @return the boundaries of the chunks, starting with from and ending
+     *         with to
+     */
+    static long[] split(FileChannel channel, long from, long to, int chunkSize) throws IOException {
+        long[] boundaries = new long[16];
+        int count = 0;
+        boundaries[count++] = from;
+        final ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long position = from + chunkSize;
+        while (position < to) {
+            // find the next line feed
+            long boundary = to;
+            scan: for (long p = position; p < to; p += SCAN_SIZE) {
+                buffer.clear();
+                buffer.limit((int) Math.min(SCAN_SIZE, to - p));
+                readFully(channel, buffer, p);
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        boundary = p + i + 1;
+                        break scan;
+                    }
+                }
+            }
+            if (boundary >= to) {
+                break;
+            }
+            if (count == boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count++] = boundary;
+            position = boundary + chunkSize;
+        }
+        if (count == boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, count + 1);
+        }
+        boundaries[count++] = to;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Reads a range of the channel into a new array.
+     */
+    static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        final byte[] data = new byte[Math.toIntExact(to - from)];
+        readFully(channel, ByteBuffer.wrap(data), from);
+        return data;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, p);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at byte " + p);
+            }
+            p += read;
+        }
+    }
+
+}
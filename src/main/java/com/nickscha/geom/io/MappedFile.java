@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only memory mapping of a whole file (final::immutable)
+ * <p>
+ * A single mapping is limited to 2 GB, so the file is mapped in segments of
+ * {@value #SEGMENT_BITS} bits. Every segment overlaps the next by
+ * {@value #OVERLAP} bytes, so a value starting in a segment is always read
+ * from that segment alone. All reads are absolute and may run on any amount
+ * of threads.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+final class MappedFile implements Closeable {
+
+    static final int SEGMENT_BITS = 30;
+
+    static final int OVERLAP = 64;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    MappedFile(Path path, ByteOrder order) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                final long start = (long) i << SEGMENT_BITS;
+                final long length = Math.min(size - start, (1L << SEGMENT_BITS) + OVERLAP);
+                segments[i] = channel.map(MapMode.READ_ONLY, start, length);
+                segments[i].order(order);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte getByte(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    short getShort(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getShort((int) (position & SEGMENT_MASK));
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    float getFloat(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getFloat((int) (position & SEGMENT_MASK));
+    }
+
+    double getDouble(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getDouble((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Copies bytes into an array.
+     */
+    void get(long position, byte[] destination, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            destination[offset + i] = getByte(position + i);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+/**
+ * Vertex and index buffers of a loaded mesh (final::mutable)
+ * <p>
+ * Attributes are interleaved per vertex: positions and normals x,y,z,
+ * texture coordinates u,v and colors r,g,b,a in <code>[0, 1]</code>. Absent
+ * attributes are empty. Triangles are three indices each into the positions.
+ * </p>
+ * <p>
+ * Formats that index attributes separately, such as Wavefront OBJ, fill the
+ * texture coordinate and normal index buffers with one entry per position
+ * index, -1 where a corner has no such attribute. Otherwise these buffers are
+ * empty and all attributes share the position indices.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class MeshData {
+
+    private final FloatArray positions;
+    private final FloatArray normals;
+    private final FloatArray uvs;
+    private final FloatArray colors;
+    private final IntArray indices;
+    private final IntArray uvIndices;
+    private final IntArray normalIndices;
+
+    MeshData(FloatArray positions, FloatArray normals, FloatArray uvs, FloatArray colors, IntArray indices,
+            IntArray uvIndices, IntArray normalIndices) {
+        this.positions = positions;
+        this.normals = normals;
+        this.uvs = uvs;
+        this.colors = colors;
+        this.indices = indices;
+        this.uvIndices = uvIndices;
+        this.normalIndices = normalIndices;
+    }
+
+    /**
+     * @return the positions (x,y,z interleaved)
+     */
+    public FloatArray getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the normals (x,y,z interleaved), possibly empty
+     */
+    public FloatArray getNormals() {
+        return normals;
+    }
+
+    /**
+     * @return the texture coordinates (u,v interleaved), possibly empty
+     */
+    public FloatArray getUvs() {
+        return uvs;
+    }
+
+    /**
+     * @return the colors (r,g,b,a interleaved), possibly empty
+     */
+    public FloatArray getColors() {
+        return colors;
+    }
+
+    /**
+     * @return the position indices, three per triangle
+     */
+    public IntArray getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return the texture coordinate index of every corner, empty if the
+     *         texture coordinates share the position indices
+     */
+    public IntArray getUvIndices() {
+        return uvIndices;
+    }
+
+    /**
+     * @return the normal index of every corner, empty if the normals share
+     *         the position indices
+     */
+    public IntArray getNormalIndices() {
+        return normalIndices;
+    }
+
+    /**
+     * @return the amount of positions
+     */
+    public int getVertexCount() {
+        return positions.size() / 3;
+    }
+
+    /**
+     * @return the amount of triangles
+     */
+    public int getTriangleCount() {
+        return indices.size() / 3;
+    }
+
+    @Override
+    public String toString() {
+        return "MeshData [vertices=" + getVertexCount() + ", triangles=" + getTriangleCount() + ", normals="
+                + !normals.isEmpty() + ", uvs=" + !uvs.isEmpty() + ", colors=" + !colors.isEmpty() + "]";
+    }
+
+}
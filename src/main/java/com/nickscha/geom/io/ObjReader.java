@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Reader of Wavefront OBJ meshes
+ * <p>
+ * Reads positions (<code>v</code>), texture coordinates (<code>vt</code>),
+ * normals (<code>vn</code>) and faces (<code>f</code>) into primitive
+ * buffers; polygons are triangulated as fans and all other statements are
+ * ignored. Numbers are parsed by {@link AsciiParser} directly from the bytes
+ * of the file.
+ * </p>
+ * <p>
+ * Files are split into chunks of whole lines that are parsed in parallel on
+ * the specified pool and concatenated in file order. Negative face indices
+ * are relative to the attributes read so far; they are resolved when the
+ * chunks are joined, so the result does not depend on the chunking. The
+ * texture coordinate and normal indices are kept separately, see
+ * {@link MeshData}.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class ObjReader {
+
+    /**
+     * Size of the chunks parsed in parallel
+     */
+    static final int CHUNK_SIZE = 1 << 22;
+
+    private ObjReader() {
+    }
+
+    /**
+     * Reads a file on the calling thread.
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static MeshData read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    /**
+     * Reads a file on the specified pool.
+     *
+     * @param path the file
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static MeshData read(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long[] boundaries = LineChunks.split(channel, 0, channel.size(), CHUNK_SIZE);
+            final Chunk[] chunks = new Chunk[boundaries.length - 1];
+            final IntStream range = IntStream.range(0, chunks.length);
+            try {
+                if (pool == null || chunks.length == 1) {
+                    range.forEach(i -> chunks[i] = parse(channel, boundaries[i], boundaries[i + 1]));
+                } else {
+                    pool.submit(() -> range.parallel()
+                            .forEach(i -> chunks[i] = parse(channel, boundaries[i], boundaries[i + 1]))).join();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return join(chunks);
+        }
+    }
+
+    /**
+     * Reads a mesh from memory.
+     *
+     * @param data the contents of an OBJ file
+     * @return the mesh
+     * @throws IOException if the data is malformed
+     */
+    public static MeshData read(byte[] data) throws IOException {
+        try {
+            return join(new Chunk[] { parse(data, 0) });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Chunk parse(FileChannel channel, long from, long to) {
+        try {
+            return parse(LineChunks.read(channel, from, to), from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Attributes and corners of a chunk. Relative indices are stored relative
+     * to the first attribute of the chunk and listed for the join.
+     */
+    private static final class Chunk {
+
+        final FloatArray positions = new FloatArray();
+        final FloatArray uvs = new FloatArray();
+        final FloatArray normals = new FloatArray();
+        final IntArray indices = new IntArray();
+        final IntArray uvIndices = new IntArray();
+        final IntArray normalIndices = new IntArray();
+        final IntArray relative = new IntArray(0);
+        final IntArray relativeUvs = new IntArray(0);
+        final IntArray relativeNormals = new IntArray(0);
+        boolean anyUvs;
+        boolean anyNormals;
+
+    }
+
+    private static Chunk parse(byte[] data, long offset) {
+        final Chunk chunk = new Chunk();
+        final AsciiParser parser = new AsciiParser(data, 0, data.length);
+        int[] face = new int[12];
+        try {
+            while (parser.hasRemaining()) {
+                if (parser.nextKeyword("v")) {
+                    chunk.positions.add(parser.nextFloat(), parser.nextFloat(), parser.nextFloat());
+                } else if (parser.nextKeyword("vt")) {
+                    final float u = parser.nextFloat();
+                    chunk.uvs.add(u, parser.isLineEnd() ? 0 : parser.nextFloat());
+                } else if (parser.nextKeyword("vn")) {
+                    chunk.normals.add(parser.nextFloat(), parser.nextFloat(), parser.nextFloat());
+                } else if (parser.nextKeyword("f")) {
+                    int corners = 0;
+                    while (!parser.isLineEnd()) {
+                        if (corners * 3 == face.length) {
+                            face = Arrays.copyOf(face, face.length * 2);
+                        }
+                        face[corners * 3] = parser.nextInt();
+                        face[corners * 3 + 1] = 0;
+                        face[corners * 3 + 2] = 0;
+                        if (parser.skip('/')) {
+                            if (parser.peek() != '/') {
+                                face[corners * 3 + 1] = parser.nextInt();
+                            }
+                            if (parser.skip('/')) {
+                                face[corners * 3 + 2] = parser.nextInt();
+                            }
+                        }
+                        corners++;
+                    }
+                    for (int i = 1; i + 1 < corners; i++) {
+                        corner(chunk, face, 0);
+                        corner(chunk, face, i * 3);
+                        corner(chunk, face, i * 3 + 3);
+                    }
+                }
+                parser.nextLine();
+            }
+        } catch (NumberFormatException e) {
+            throw new UncheckedIOException(new IOException("Malformed OBJ at byte " + (offset + parser.getPosition()), e));
+        }
+        return chunk;
+    }
+
+    private static void corner(Chunk chunk, int[] face, int o) {
+        chunk.indices.add(index(face[o], chunk.positions.size() / 3, chunk.relative, chunk.indices.size()));
+        final int uv = face[o + 1], normal = face[o + 2];
+        chunk.anyUvs |= uv != 0;
+        chunk.anyNormals |= normal != 0;
+        chunk.uvIndices.add(uv == 0 ? -1 : index(uv, chunk.uvs.size() / 2, chunk.relativeUvs, chunk.uvIndices.size()));
+        chunk.normalIndices.add(normal == 0 ? -1
+                : index(normal, chunk.normals.size() / 3, chunk.relativeNormals, chunk.normalIndices.size()));
+    }
+
+    /**
+     * Converts a one based or negative relative index, relative ones are
+     * recorded for the join.
+     */
+    private static int index(int value, int count, IntArray relative, int slot) {
+        if (value == 0) {
+            throw new NumberFormatException("Index zero");
+        }
+        if (value > 0) {
+            return value - 1;
+        }
+        relative.add(slot);
+        return count + value;
+    }
+
+    private static MeshData join(Chunk[] chunks) throws IOException {
+        final FloatArray positions = new FloatArray(0), uvs = new FloatArray(0), normals = new FloatArray(0);
+        final IntArray indices = new IntArray(0), uvIndices = new IntArray(0), normalIndices = new IntArray(0);
+        int positionCount = 0, uvCount = 0, normalCount = 0, cornerCount = 0;
+        boolean anyUvs = false, anyNormals = false;
+        for (Chunk chunk : chunks) {
+            positionCount += chunk.positions.size();
+            uvCount += chunk.uvs.size();
+            normalCount += chunk.normals.size();
+            cornerCount += chunk.indices.size();
+            anyUvs |= chunk.anyUvs;
+            anyNormals |= chunk.anyNormals;
+        }
+        positions.ensureCapacity(positionCount);
+        uvs.ensureCapacity(uvCount);
+        normals.ensureCapacity(normalCount);
+        indices.ensureCapacity(cornerCount);
+        uvIndices.ensureCapacity(anyUvs ? cornerCount : 0);
+        normalIndices.ensureCapacity(anyNormals ? cornerCount : 0);
+        for (Chunk chunk : chunks) {
+            resolve(chunk.indices, chunk.relative, positions.size() / 3);
+            resolve(chunk.uvIndices, chunk.relativeUvs, uvs.size() / 2);
+            resolve(chunk.normalIndices, chunk.relativeNormals, normals.size() / 3);
+            positions.addAll(chunk.positions);
+            uvs.addAll(chunk.uvs);
+            normals.addAll(chunk.normals);
+            indices.addAll(chunk.indices);
+            if (anyUvs) {
+                uvIndices.addAll(chunk.uvIndices);
+            }
+            if (anyNormals) {
+                normalIndices.addAll(chunk.normalIndices);
+            }
+        }
+        check(indices, 0, positions.size() / 3, "position");
+        check(uvIndices, -1, uvs.size() / 2, "texture coordinate");
+        check(normalIndices, -1, normals.size() / 3, "normal");
+        return new MeshData(positions, normals, uvs, new FloatArray(0), indices, uvIndices, normalIndices);
+    }
+
+    private static void resolve(IntArray indices, IntArray relative, int base) {
+        final int[] data = indices.getArray(), slots = relative.getArray();
+        for (int i = 0; i < relative.size(); i++) {
+            data[slots[i]] += base;
+        }
+    }
+
+    private static void check(IntArray indices, int min, int count, String attribute) throws IOException {
+        final int[] data = indices.getArray();
+        for (int i = 0; i < indices.size(); i++) {
+            if (data[i] < min || data[i] >= count) {
+                throw new IOException("Invalid " + attribute + " index " + data[i] + " of " + count);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reader of Stanford PLY meshes and point clouds
+ * <p>
+ * Supports the ASCII and both binary encodings. From the <code>vertex</code>
+ * element the properties <code>x y z</code>, <code>nx ny nz</code>,
+ * <code>u v</code> (or <code>s t</code>) and <code>red green blue
+ * alpha</code> are read, integer colors are normalized to
+ * <code>[0, 1]</code>. The <code>vertex_indices</code> list of the
+ * <code>face</code> element is triangulated as a fan. All other elements and
+ * properties are skipped.
+ * </p>
+ * <b>Parallelism</b>
+ * <p>
+ * Binary files are memory mapped. Vertices of a fixed size are decoded in
+ * parallel blocks straight from the mapping, faces are walked sequentially
+ * as their size varies. The body of an ASCII file is split into chunks of
+ * whole lines: a first parallel pass counts the lines of every chunk, which
+ * tells every chunk which element its lines belong to, a second parallel pass
+ * parses the chunks. Vertices are written to their final place, faces are
+ * concatenated in file order.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class PlyReader {
+
+    /**
+     * Size of the ASCII chunks parsed in parallel
+     */
+    static final int CHUNK_SIZE = 1 << 22;
+
+    /**
+     * Amount of binary vertices decoded per parallel block
+     */
+    static final int BLOCK_SIZE = 1 << 14;
+
+    private static final int HEADER_LIMIT = 1 << 16;
+
+    private static final int ASCII = 0;
+    private static final int BINARY_LITTLE_ENDIAN = 1;
+    private static final int BINARY_BIG_ENDIAN = 2;
+
+    // targets of vertex properties
+    private static final int SKIP = -1;
+    private static final int POSITION = 0;
+    private static final int NORMAL = 3;
+    private static final int UV = 6;
+    private static final int COLOR = 8;
+
+    private PlyReader() {
+    }
+
+    private enum Type {
+        INT8(1, 127), UINT8(1, 255), INT16(2, 32767), UINT16(2, 65535), INT32(4, Integer.MAX_VALUE),
+        UINT32(4, 4294967295.0), FLOAT32(4, 1), FLOAT64(8, 1);
+
+        final int size;
+        /**
+         * Value of full intensity of a color
+         */
+        final double max;
+
+        Type(int size, double max) {
+            this.size = size;
+            this.max = max;
+        }
+
+        static Type of(String name) throws IOException {
+            switch (name) {
+            case "char":
+            case "int8":
+                return INT8;
+            case "uchar":
+            case "uint8":
+                return UINT8;
+            case "short":
+            case "int16":
+                return INT16;
+            case "ushort":
+            case "uint16":
+                return UINT16;
+            case "int":
+            case "int32":
+                return INT32;
+            case "uint":
+            case "uint32":
+                return UINT32;
+            case "float":
+            case "float32":
+                return FLOAT32;
+            case "double":
+            case "float64":
+                return FLOAT64;
+            default:
+                throw new IOException("Unknown PLY type: " + name);
+            }
+        }
+
+        double read(MappedFile file, long position) {
+            switch (this) {
+            case INT8:
+                return file.getByte(position);
+            case UINT8:
+                return file.getByte(position) & 0xFF;
+            case INT16:
+                return file.getShort(position);
+            case UINT16:
+                return file.getShort(position) & 0xFFFF;
+            case INT32:
+                return file.getInt(position);
+            case UINT32:
+                return file.getInt(position) & 0xFFFFFFFFL;
+            case FLOAT32:
+                return file.getFloat(position);
+            default:
+                return file.getDouble(position);
+            }
+        }
+
+    }
+
+    private static final class Property {
+
+        final String name;
+        final Type type;
+        /**
+         * type of the count of a list or null
+         */
+        final Type countType;
+        int target = SKIP;
+
+        Property(String name, Type type, Type countType) {
+            this.name = name;
+            this.type = type;
+            this.countType = countType;
+        }
+
+    }
+
+    private static final class Element {
+
+        final String name;
+        final int count;
+        final List<Property> properties = new ArrayList<>();
+
+        Element(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        /**
+         * @return the size of every item or -1 if it contains lists
+         */
+        int stride() {
+            int stride = 0;
+            for (Property property : properties) {
+                if (property.countType != null) {
+                    return -1;
+                }
+                stride += property.type.size;
+            }
+            return stride;
+        }
+
+    }
+
+    /**
+     * Output of a read.
+     */
+    private static final class Target {
+
+        final int vertexCount;
+        final float[] positions;
+        final float[] normals;
+        final float[] uvs;
+        final float[] colors;
+
+        Target(Element vertex) {
+            vertexCount = vertex == null ? 0 : vertex.count;
+            boolean normals = false, uvs = false, colors = false, alpha = false;
+            if (vertex != null) {
+                for (Property property : vertex.properties) {
+                    normals |= property.target >= NORMAL && property.target < UV;
+                    uvs |= property.target >= UV && property.target < COLOR;
+                    colors |= property.target >= COLOR;
+                    alpha |= property.target == COLOR + 3;
+                }
+            }
+            positions = new float[vertexCount * 3];
+            this.normals = new float[normals ? vertexCount * 3 : 0];
+            this.uvs = new float[uvs ? vertexCount * 2 : 0];
+            this.colors = new float[colors ? vertexCount * 4 : 0];
+            if (colors && !alpha) {
+                for (int i = 3; i < this.colors.length; i += 4) {
+                    this.colors[i] = 1;
+                }
+            }
+        }
+
+        void set(int vertex, Property property, double value) {
+            final int target = property.target;
+            if (target < NORMAL) {
+                positions[vertex * 3 + target] = (float) value;
+            } else if (target < UV) {
+                normals[vertex * 3 + target - NORMAL] = (float) value;
+            } else if (target < COLOR) {
+                uvs[vertex * 2 + target - UV] = (float) value;
+            } else {
+                colors[vertex * 4 + target - COLOR] = (float) (value / property.type.max);
+            }
+        }
+
+        MeshData build(IntArray indices) throws IOException {
+            final int[] data = indices.getArray();
+            for (int i = 0; i < indices.size(); i++) {
+                if (data[i] < 0 || data[i] >= vertexCount) {
+                    throw new IOException("Invalid vertex index " + data[i] + " of " + vertexCount);
+                }
+            }
+            return new MeshData(FloatArray.wrap(positions), FloatArray.wrap(normals), FloatArray.wrap(uvs),
+                    FloatArray.wrap(colors), indices, new IntArray(0), new IntArray(0));
+        }
+
+    }
+
+    /**
+     * Reads a file on the calling thread.
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static MeshData read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    /**
+     * Reads a file on the specified pool.
+     *
+     * @param path the file
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static MeshData read(Path path, ForkJoinPool pool) throws IOException {
+        final List<Element> elements = new ArrayList<>();
+        final int format;
+        final long bodyStart;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEADER_LIMIT, channel.size()));
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // fill
+            }
+            final byte[] header = buffer.array();
+            final int end = headerEnd(header, buffer.position());
+            bodyStart = end;
+            format = parseHeader(new AsciiParser(header, 0, end), elements);
+            if (format == ASCII) {
+                return readAscii(channel, bodyStart, elements, pool);
+            }
+        }
+        try (MappedFile file = new MappedFile(path,
+                format == BINARY_LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN)) {
+            return readBinary(file, bodyStart, elements, pool);
+        }
+    }
+
+    /**
+     * @return the position behind the line of end_header
+     */
+    private static int headerEnd(byte[] header, int length) throws IOException {
+        final byte[] marker = "end_header".getBytes(StandardCharsets.US_ASCII);
+        search: for (int i = 0; i + marker.length <= length; i++) {
+            if (i > 0 && header[i - 1] != '\n') {
+                continue;
+            }
+            for (int k = 0; k < marker.length; k++) {
+                if (header[i + k] != marker[k]) {
+                    continue search;
+                }
+            }
+            for (int p = i + marker.length; p < length; p++) {
+                if (header[p] == '\n') {
+                    return p + 1;
+                }
+            }
+        }
+        throw new IOException("No PLY header end within " + length + " bytes");
+    }
+
+    private static int parseHeader(AsciiParser parser, List<Element> elements) throws IOException {
+        if (!parser.nextKeyword("ply")) {
+            throw new IOException("Not a PLY file");
+        }
+        int format = -1;
+        Element element = null;
+        try {
+            while (parser.hasRemaining()) {
+                parser.nextLine();
+                final String keyword = parser.nextWord();
+                switch (keyword) {
+                case "format":
+                    final String name = parser.nextWord();
+                    if (name.equals("ascii")) {
+                        format = ASCII;
+                    } else if (name.equals("binary_little_endian")) {
+                        format = BINARY_LITTLE_ENDIAN;
+                    } else if (name.equals("binary_big_endian")) {
+                        format = BINARY_BIG_ENDIAN;
+                    } else {
+                        throw new IOException("Unknown PLY format: " + name);
+                    }
+                    break;
+                case "element":
+                    element = new Element(parser.nextWord(), parser.nextInt());
+                    elements.add(element);
+                    break;
+                case "property":
+                    if (element == null) {
+                        throw new IOException("PLY property outside of an element");
+                    }
+                    final String type = parser.nextWord();
+                    final Property property;
+                    if (type.equals("list")) {
+                        final Type countType = Type.of(parser.nextWord());
+                        final Type itemType = Type.of(parser.nextWord());
+                        property = new Property(parser.nextWord(), itemType, countType);
+                    } else {
+                        property = new Property(parser.nextWord(), Type.of(type), null);
+                    }
+                    if (element.name.equals("vertex") && property.countType == null) {
+                        property.target = vertexTarget(property.name);
+                    }
+                    element.properties.add(property);
+                    break;
+                default:
+                    // comments, obj_info, end_header
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed PLY header", e);
+        }
+        if (format < 0) {
+            throw new IOException("PLY header without format");
+        }
+        return format;
+    }
+
+    private static int vertexTarget(String name) {
+        switch (name) {
+        case "x":
+            return POSITION;
+        case "y":
+            return POSITION + 1;
+        case "z":
+            return POSITION + 2;
+        case "nx":
+            return NORMAL;
+        case "ny":
+            return NORMAL + 1;
+        case "nz":
+            return NORMAL + 2;
+        case "u":
+        case "s":
+        case "texture_u":
+        case "texture_s":
+            return UV;
+        case "v":
+        case "t":
+        case "texture_v":
+        case "texture_t":
+            return UV + 1;
+        case "red":
+            return COLOR;
+        case "green":
+            return COLOR + 1;
+        case "blue":
+            return COLOR + 2;
+        case "alpha":
+            return COLOR + 3;
+        default:
+            return SKIP;
+        }
+    }
+
+    private static boolean isFaceList(Element element, Property property) {
+        return element.name.equals("face") && property.countType != null
+                && (property.name.equals("vertex_indices") || property.name.equals("vertex_index"));
+    }
+
+    private static Element vertexElement(List<Element> elements) {
+        for (Element element : elements) {
+            if (element.name.equals("vertex")) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer action) {
+        if (pool == null || count <= 1) {
+            IntStream.range(0, count).forEach(action);
+        } else {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+        }
+    }
+
+    private static MeshData readBinary(MappedFile file, long bodyStart, List<Element> elements, ForkJoinPool pool)
+            throws IOException {
+        final Target target = new Target(vertexElement(elements));
+        final IntArray indices = new IntArray();
+        long offset = bodyStart;
+        try {
+            for (Element element : elements) {
+                final int stride = element.stride();
+                if (element.name.equals("vertex") && stride >= 0) {
+                    final long base = offset;
+                    final int blocks = (element.count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                    check(file, base + (long) element.count * stride);
+                    run(pool, blocks, b -> {
+                        for (int i = b * BLOCK_SIZE, end = Math.min(element.count, i + BLOCK_SIZE); i < end; i++) {
+                            long p = base + (long) i * stride;
+                            for (Property property : element.properties) {
+                                if (property.target != SKIP) {
+                                    target.set(i, property, property.type.read(file, p));
+                                }
+                                p += property.type.size;
+                            }
+                        }
+                    });
+                    offset += (long) element.count * stride;
+                } else if (stride >= 0 && !element.name.equals("face")) {
+                    offset += (long) element.count * stride;
+                } else {
+                    offset = walk(file, offset, element, target, indices);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("PLY body ends early", e);
+        }
+        return target.build(indices);
+    }
+
+    private static void check(MappedFile file, long end) throws IOException {
+        if (end > file.size()) {
+            throw new IOException("PLY body ends early: " + file.size() + " of " + end + " bytes");
+        }
+    }
+
+    /**
+     * Walks items of varying size sequentially.
+     *
+     * @return the offset behind the element
+     */
+    private static long walk(MappedFile file, long offset, Element element, Target target, IntArray indices)
+            throws IOException {
+        final boolean vertex = element.name.equals("vertex");
+        int[] face = new int[16];
+        for (int i = 0; i < element.count; i++) {
+            for (Property property : element.properties) {
+                check(file, offset + property.type.size + (property.countType == null ? 0 : property.countType.size));
+                if (property.countType == null) {
+                    if (vertex && property.target != SKIP) {
+                        target.set(i, property, property.type.read(file, offset));
+                    }
+                    offset += property.type.size;
+                    continue;
+                }
+                final int count = (int) property.countType.read(file, offset);
+                offset += property.countType.size;
+                check(file, offset + (long) count * property.type.size);
+                if (isFaceList(element, property)) {
+                    if (count > face.length) {
+                        face = new int[count];
+                    }
+                    for (int k = 0; k < count; k++) {
+                        face[k] = (int) property.type.read(file, offset + (long) k * property.type.size);
+                    }
+                    triangulate(face, count, indices);
+                }
+                offset += (long) count * property.type.size;
+            }
+        }
+        return offset;
+    }
+
+    private static void triangulate(int[] face, int count, IntArray indices) {
+        for (int k = 1; k + 1 < count; k++) {
+            indices.add(face[0], face[k], face[k + 1]);
+        }
+    }
+
+    private static MeshData readAscii(FileChannel channel, long bodyStart, List<Element> elements, ForkJoinPool pool)
+            throws IOException {
+        final long[] boundaries = LineChunks.split(channel, bodyStart, channel.size(), CHUNK_SIZE);
+        final int chunks = boundaries.length - 1;
+        final long[] lines = new long[chunks + 1];
+        final IntArray[] faces = new IntArray[chunks];
+        final Target target = new Target(vertexElement(elements));
+        final long[] elementStart = new long[elements.size() + 1];
+        for (int e = 0; e < elements.size(); e++) {
+            elementStart[e + 1] = elementStart[e] + elements.get(e).count;
+        }
+        try {
+            run(pool, chunks, c -> {
+                final byte[] data = read(channel, boundaries[c], boundaries[c + 1]);
+                long count = 0;
+                for (byte b : data) {
+                    count += b == '\n' ? 1 : 0;
+                }
+                lines[c + 1] = count;
+            });
+            for (int c = 0; c < chunks; c++) {
+                lines[c + 1] += lines[c];
+            }
+            run(pool, chunks, c -> {
+                final byte[] data = read(channel, boundaries[c], boundaries[c + 1]);
+                faces[c] = parseAscii(data, boundaries[c], lines[c], elements, elementStart, target);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        final IntArray indices = new IntArray(0);
+        int total = 0;
+        for (IntArray face : faces) {
+            total += face.size();
+        }
+        indices.ensureCapacity(total);
+        for (IntArray face : faces) {
+            indices.addAll(face);
+        }
+        return target.build(indices);
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) {
+        try {
+            return LineChunks.read(channel, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static IntArray parseAscii(byte[] data, long offset, long firstLine, List<Element> elements,
+            long[] elementStart, Target target) {
+        final IntArray indices = new IntArray();
+        final AsciiParser parser = new AsciiParser(data, 0, data.length);
+        int[] face = new int[16];
+        int e = 0;
+        try {
+            for (long line = firstLine; parser.hasRemaining(); line++, parser.nextLine()) {
+                while (e < elements.size() && line >= elementStart[e + 1]) {
+                    e++;
+                }
+                if (e == elements.size()) {
+                    break;
+                }
+                final Element element = elements.get(e);
+                final boolean vertex = element.name.equals("vertex");
+                if (!vertex && !element.name.equals("face")) {
+                    continue;
+                }
+                final int item = (int) (line - elementStart[e]);
+                for (Property property : element.properties) {
+                    if (property.countType == null) {
+                        final float value = parser.nextFloat();
+                        if (vertex && property.target != SKIP) {
+                            target.set(item, property, value);
+                        }
+                        continue;
+                    }
+                    final int count = parser.nextInt();
+                    if (isFaceList(element, property)) {
+                        if (count > face.length) {
+                            face = new int[count];
+                        }
+                        for (int k = 0; k < count; k++) {
+                            face[k] = parser.nextInt();
+                        }
+                        triangulate(face, count, indices);
+                    } else {
+                        for (int k = 0; k < count; k++) {
+                            parser.nextFloat();
+                        }
+                    }
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new UncheckedIOException(new IOException("Malformed PLY at byte " + (offset + parser.getPosition()), ex));
+        }
+        return indices;
+    }
+
+}
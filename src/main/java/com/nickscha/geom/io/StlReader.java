@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reader of binary STL meshes
+ * <p>
+ * A binary STL file is an 80 byte header, the triangle count and 50 bytes per
+ * triangle: the face normal, three corners and a two byte attribute. The file
+ * is memory mapped and decoded in parallel blocks. Vertices are not shared:
+ * every triangle gets three own vertices carrying its face normal, the
+ * indices are consecutive. Use {@link com.nickscha.geom.mesh.VertexWelder} to
+ * merge them.
+ * </p>
+ * <p>
+ * ASCII STL files are rejected.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class StlReader {
+
+    /**
+     * Amount of triangles decoded per parallel block
+     */
+    static final int BLOCK_SIZE = 1 << 14;
+
+    private static final int HEADER_SIZE = 84;
+    private static final int TRIANGLE_SIZE = 50;
+
+    private StlReader() {
+    }
+
+    /**
+     * Reads a file on the calling thread.
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is not a binary STL
+     *             file
+     */
+    public static MeshData read(Path path) throws IOException {
+        return read(path, null);
+    }
+
+    /**
+     * Reads a file on the specified pool.
+     *
+     * @param path the file
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is not a binary STL
+     *             file
+     */
+    public static MeshData read(Path path, ForkJoinPool pool) throws IOException {
+        try (MappedFile file = new MappedFile(path, ByteOrder.LITTLE_ENDIAN)) {
+            if (file.size() < HEADER_SIZE) {
+                throw new IOException("STL file too short: " + file.size() + " bytes");
+            }
+            final long count = file.getInt(80) & 0xFFFFFFFFL;
+            if (file.size() < HEADER_SIZE + count * TRIANGLE_SIZE) {
+                final byte[] start = new byte[5];
+                file.get(0, start, 0, 5);
+                if (new String(start, StandardCharsets.US_ASCII).equals("solid")) {
+                    throw new IOException("ASCII STL is not supported");
+                }
+                throw new IOException("STL file too short for " + count + " triangles: " + file.size() + " bytes");
+            }
+            if (count * 9 > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many STL triangles: " + count);
+            }
+            final int triangles = (int) count;
+            final float[] positions = new float[triangles * 9];
+            final float[] normals = new float[triangles * 9];
+            final int[] indices = new int[triangles * 3];
+            final int blocks = (triangles + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            final IntStream range = IntStream.range(0, blocks);
+            final IntConsumer decode = b -> {
+                for (int t = b * BLOCK_SIZE, end = Math.min(triangles, t + BLOCK_SIZE); t < end; t++) {
+                    final long p = HEADER_SIZE + (long) t * TRIANGLE_SIZE;
+                    final float nx = file.getFloat(p), ny = file.getFloat(p + 4), nz = file.getFloat(p + 8);
+                    for (int k = 0; k < 3; k++) {
+                        final int v = t * 9 + k * 3;
+                        final long q = p + 12 + k * 12;
+                        positions[v] = file.getFloat(q);
+                        positions[v + 1] = file.getFloat(q + 4);
+                        positions[v + 2] = file.getFloat(q + 8);
+                        normals[v] = nx;
+                        normals[v + 1] = ny;
+                        normals[v + 2] = nz;
+                        indices[t * 3 + k] = t * 3 + k;
+                    }
+                }
+            };
+            if (pool == null || blocks <= 1) {
+                range.forEach(decode);
+            } else {
+                pool.submit(() -> range.parallel().forEach(decode)).join();
+            }
+            return new MeshData(FloatArray.wrap(positions), FloatArray.wrap(normals), new FloatArray(0),
+                    new FloatArray(0), IntArray.wrap(indices), new IntArray(0), new IntArray(0));
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package com.nickscha.geom.mat;
 import java.util.Arrays;
 
 import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec4f;
 
 /**
  * @author nickscha
@@ -466,6 +467,21 @@ public final class Mat4f {
                 m[2][0] * r.getX() + m[2][1] * r.getY() + m[2][2] * r.getZ() + m[2][3]);
     }
 
+    /**
+     * Transforms a homogeneous vector, the result is <code>M * r</code>.
+     *
+     * @param r the vector to transform
+     * @return a new transformed vector
+     * @throws NullPointerException if the passed vector is null
+     */
+    public Vec4f transform(Vec4f r) {
+        final float x = r.getX(), y = r.getY(), z = r.getZ(), w = r.getW();
+        return new Vec4f(m[0][0] * x + m[0][1] * y + m[0][2] * z + m[0][3] * w,
+                m[1][0] * x + m[1][1] * y + m[1][2] * z + m[1][3] * w,
+                m[2][0] * x + m[2][1] * y + m[2][2] * z + m[2][3] * w,
+                m[3][0] * x + m[3][1] * y + m[3][2] * z + m[3][3] * w);
+    }
+
     public Mat4f add(Mat4f r) {
         final Mat4f res = new Mat4f();
         for (int i = 0; i < GROUPS; i++) {
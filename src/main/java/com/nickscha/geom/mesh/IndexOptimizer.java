@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.mesh;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.spatial.RadixSort;
+
+/**
+ * Reordering of index and vertex buffers for rendering
+ * <p>
+ * Three passes that are usually applied in this order:
+ * </p>
+ * <ol>
+ * <li>{@link #optimizeVertexCache(int[], int)} reorders triangles so that
+ * vertices are reused while they are still in the post transform cache,
+ * which lowers the amount of vertex shader invocations. It implements Tom
+ * Forsyth's "Linear-Speed Vertex Cache Optimisation" (2006): vertices are
+ * scored by their position in a simulated LRU cache and the amount of their
+ * remaining triangles, and the next triangle is the best scored one among
+ * the triangles of the cached vertices.</li>
+ * <li>{@link #optimizeOverdraw(int[], float[], int, float)} splits the cache
+ * optimized order into clusters and sorts the clusters to draw the ones
+ * facing away from the mesh center first, as in Sander, Nehab and Barczak,
+ * "Fast Triangle Reordering for Vertex Locality and Reduced Overdraw" (2007).
+ * A threshold bounds how much vertex cache efficiency may be traded for
+ * less overdraw.</li>
+ * <li>{@link #optimizeVertexFetch(int[], int)} renumbers vertices in order of
+ * their first use, so that the vertex fetch reads the vertex buffers mostly
+ * sequentially. The remap table is applied to every attribute stream with
+ * {@link #remapVertices(float[], int, int[])}.</li>
+ * </ol>
+ * <p>
+ * All passes work on flat index and attribute arrays and return new arrays.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class IndexOptimizer {
+
+    /**
+     * Size of the simulated LRU cache of the vertex cache optimization
+     */
+    public static final int CACHE_SIZE = 32;
+
+    /**
+     * Size of the FIFO cache of {@link #acmr(int[], int, int)} used to find
+     * cluster boundaries
+     */
+    static final int FIFO_SIZE = 16;
+
+    /**
+     * Minimal amount of triangles of an overdraw cluster
+     */
+    static final int MIN_CLUSTER = 16;
+
+    private static final float CACHE_DECAY = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_SCALE = 2.0f;
+    private static final float VALENCE_POWER = 0.5f;
+    private static final int MAX_VALENCE = 64;
+
+    private static final float[] CACHE_SCORES = new float[CACHE_SIZE + 1];
+    private static final float[] VALENCE_SCORES = new float[MAX_VALENCE + 1];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            CACHE_SCORES[i] = i < 3 ? LAST_TRIANGLE_SCORE
+                    : (float) Math.pow(1 - (i - 3) / (float) (CACHE_SIZE - 3), CACHE_DECAY);
+        }
+        for (int i = 1; i <= MAX_VALENCE; i++) {
+            VALENCE_SCORES[i] = VALENCE_SCALE * (float) Math.pow(i, -VALENCE_POWER);
+        }
+    }
+
+    private IndexOptimizer() {
+    }
+
+    private static float score(int cachePosition, int valence) {
+        if (valence == 0) {
+            return -1;
+        }
+        return (cachePosition < 0 ? 0 : CACHE_SCORES[cachePosition]) + VALENCE_SCORES[Math.min(valence, MAX_VALENCE)];
+    }
+
+    private static void check(int[] indices, int vertexCount) {
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count is not a multiple of three: " + indices.length);
+        }
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", vertices: " + vertexCount);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a corner repeats an earlier corner of its triangle.
+     * Degenerate triangles are adjacent to such a vertex only once.
+     */
+    private static boolean repeated(int[] indices, int i) {
+        final int first = i - i % 3;
+        for (int j = first; j < i; j++) {
+            if (indices[j] == indices[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reorders triangles for the post transform vertex cache.
+     *
+     * @param indices the vertex indices, three per triangle
+     * @param vertexCount the amount of vertices
+     * @return the reordered indices, the vertex order within a triangle is
+     *         kept
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static int[] optimizeVertexCache(int[] indices, int vertexCount) {
+        check(indices, vertexCount);
+        final int triangleCount = indices.length / 3;
+        final int[] result = new int[indices.length];
+        if (triangleCount == 0) {
+            return result;
+        }
+
+        // triangles of every vertex, live ones first
+        final int[] valence = new int[vertexCount];
+        for (int i = 0; i < indices.length; i++) {
+            if (!repeated(indices, i)) {
+                valence[indices[i]]++;
+            }
+        }
+        final int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + valence[v];
+        }
+        final int[] adjacency = new int[indices.length];
+        final int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            if (!repeated(indices, i)) {
+                adjacency[fill[indices[i]]++] = i / 3;
+            }
+        }
+
+        final float[] vertexScore = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScore[v] = score(-1, valence[v]);
+        }
+        final float[] triangleScore = new float[triangleCount];
+        final boolean[] emitted = new boolean[triangleCount];
+        int best = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            for (int k = t * 3; k < t * 3 + 3; k++) {
+                if (!repeated(indices, k)) {
+                    triangleScore[t] += vertexScore[indices[k]];
+                }
+            }
+            if (triangleScore[t] > triangleScore[best]) {
+                best = t;
+            }
+        }
+
+        // the three slots past the cache receive the evicted vertices
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] cacheNext = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int cursor = 0;
+        int emit = 0;
+
+        while (best >= 0) {
+            emitted[best] = true;
+            int n = 0;
+            for (int k = 0; k < 3; k++) {
+                final int v = indices[best * 3 + k];
+                result[emit++] = v;
+                if (repeated(indices, best * 3 + k)) {
+                    continue;
+                }
+                cacheNext[n++] = v;
+                // remove the triangle from the live triangles of the vertex
+                final int begin = offsets[v], end = begin + valence[v];
+                for (int i = begin; i < end; i++) {
+                    if (adjacency[i] == best) {
+                        adjacency[i] = adjacency[end - 1];
+                        adjacency[end - 1] = best;
+                        break;
+                    }
+                }
+                valence[v]--;
+            }
+            for (int i = 0; i < cacheCount; i++) {
+                final int v = cache[i];
+                if (v != indices[best * 3] && v != indices[best * 3 + 1] && v != indices[best * 3 + 2]) {
+                    cacheNext[n++] = v;
+                }
+            }
+            final int[] swap = cache;
+            cache = cacheNext;
+            cacheNext = swap;
+            cacheCount = Math.min(n, CACHE_SIZE);
+
+            best = -1;
+            float bestScore = 0;
+            for (int i = 0; i < n; i++) {
+                final int v = cache[i];
+                final float score = score(i < CACHE_SIZE ? i : -1, valence[v]);
+                final float delta = score - vertexScore[v];
+                vertexScore[v] = score;
+                for (int j = offsets[v], end = j + valence[v]; j < end; j++) {
+                    final int t = adjacency[j];
+                    triangleScore[t] += delta;
+                    if (triangleScore[t] > bestScore) {
+                        bestScore = triangleScore[t];
+                        best = t;
+                    }
+                }
+            }
+            if (best < 0) {
+                // no cached vertex has triangles left, continue in input order
+                while (cursor < triangleCount && emitted[cursor]) {
+                    cursor++;
+                }
+                best = cursor < triangleCount ? cursor : -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reorders clusters of cache optimized triangles to reduce overdraw.
+     *
+     * @param indices the cache optimized vertex indices, three per triangle
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param vertexCount the amount of vertices
+     * @param threshold the allowed increase of the average cache miss ratio,
+     *            1.05 trades up to five percent of vertex cache efficiency
+     * @return the reordered indices
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three or the threshold is less than one
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static int[] optimizeOverdraw(int[] indices, float[] positions, int vertexCount, float threshold) {
+        check(indices, vertexCount);
+        if (!(threshold >= 1)) {
+            throw new IllegalArgumentException("Threshold must be at least one: " + threshold);
+        }
+        final int triangleCount = indices.length / 3;
+        final int[] clusters = clusters(indices, vertexCount, threshold);
+        final int clusterCount = clusters.length - 1;
+        if (clusterCount <= 1) {
+            return indices.clone();
+        }
+
+        // area weighted centroid of the whole mesh
+        double cx = 0, cy = 0, cz = 0, total = 0;
+        final double[] normals = new double[clusterCount * 3];
+        final double[] centroids = new double[clusterCount * 3];
+        for (int c = 0; c < clusterCount; c++) {
+            double nx = 0, ny = 0, nz = 0, x = 0, y = 0, z = 0, area = 0;
+            for (int t = clusters[c]; t < clusters[c + 1]; t++) {
+                final int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, d = indices[t * 3 + 2] * 3;
+                final double ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1],
+                        uz = positions[b + 2] - positions[a + 2];
+                final double vx = positions[d] - positions[a], vy = positions[d + 1] - positions[a + 1],
+                        vz = positions[d + 2] - positions[a + 2];
+                final double fx = uy * vz - uz * vy, fy = uz * vx - ux * vz, fz = ux * vy - uy * vx;
+                final double w = Math.sqrt(fx * fx + fy * fy + fz * fz);
+                nx += fx;
+                ny += fy;
+                nz += fz;
+                x += (positions[a] + positions[b] + positions[d]) * w;
+                y += (positions[a + 1] + positions[b + 1] + positions[d + 1]) * w;
+                z += (positions[a + 2] + positions[b + 2] + positions[d + 2]) * w;
+                area += w;
+            }
+            cx += x;
+            cy += y;
+            cz += z;
+            total += area;
+            final double inverse = area > 0 ? 1 / (area * 3) : 0;
+            centroids[c * 3] = x * inverse;
+            centroids[c * 3 + 1] = y * inverse;
+            centroids[c * 3 + 2] = z * inverse;
+            final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            final double scale = length > 0 ? 1 / length : 0;
+            normals[c * 3] = nx * scale;
+            normals[c * 3 + 1] = ny * scale;
+            normals[c * 3 + 2] = nz * scale;
+        }
+        final double inverse = total > 0 ? 1 / (total * 3) : 0;
+        cx *= inverse;
+        cy *= inverse;
+        cz *= inverse;
+
+        // clusters facing away from the center occlude the others, draw
+        // them first
+        final long[] keys = new long[clusterCount];
+        for (int c = 0; c < clusterCount; c++) {
+            final double dot = (centroids[c * 3] - cx) * normals[c * 3] + (centroids[c * 3 + 1] - cy) * normals[c * 3 + 1]
+                    + (centroids[c * 3 + 2] - cz) * normals[c * 3 + 2];
+            keys[c] = sortable((float) -dot);
+        }
+        final int[] order = RadixSort.sort(keys, clusterCount);
+        final int[] result = new int[triangleCount * 3];
+        int n = 0;
+        for (int c : order) {
+            final int from = clusters[c] * 3, length = (clusters[c + 1] - clusters[c]) * 3;
+            System.arraycopy(indices, from, result, n, length);
+            n += length;
+        }
+        return result;
+    }
+
+    /**
+     * Splits the triangles into clusters. Hard boundaries are triangles whose
+     * vertices all miss the cache. The triangles between them are split
+     * further wherever the miss ratio of the current cluster, drawn with an
+     * empty cache, is within the threshold of the ratio of the whole range.
+     *
+     * @return the first triangle of every cluster followed by the triangle
+     *         count
+     */
+    private static int[] clusters(int[] indices, int vertexCount, float threshold) {
+        final int triangleCount = indices.length / 3;
+        final int[] misses = new int[triangleCount];
+        final int[] timestamps = new int[vertexCount];
+        int time = FIFO_SIZE + 1;
+        for (int t = 0; t < triangleCount; t++) {
+            misses[t] = misses(indices, t, timestamps, time);
+            time += misses[t];
+        }
+        final int[] boundaries = new int[triangleCount + 1];
+        int count = 0;
+        for (int start = 0; start < triangleCount;) {
+            int end = start + 1;
+            int rangeMisses = misses[start];
+            while (end < triangleCount && misses[end] < 3) {
+                rangeMisses += misses[end++];
+            }
+            final float limit = rangeMisses / (float) (end - start) * threshold;
+            boundaries[count++] = start;
+            // flush the cache
+            time += FIFO_SIZE + 1;
+            int clusterMisses = 0;
+            for (int t = start; t < end; t++) {
+                final int m = misses(indices, t, timestamps, time);
+                time += m;
+                clusterMisses += m;
+                final int size = t + 1 - boundaries[count - 1];
+                if (size >= MIN_CLUSTER && end - t - 1 >= MIN_CLUSTER && clusterMisses <= limit * size) {
+                    boundaries[count++] = t + 1;
+                    clusterMisses = 0;
+                    time += FIFO_SIZE + 1;
+                }
+            }
+            start = end;
+        }
+        boundaries[count++] = triangleCount;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Counts the FIFO cache misses of a triangle and updates the timestamps
+     * of the missed vertices.
+     */
+    private static int misses(int[] indices, int t, int[] timestamps, int time) {
+        int misses = 0;
+        for (int k = 0; k < 3; k++) {
+            final int v = indices[t * 3 + k];
+            if (time - timestamps[v] > FIFO_SIZE) {
+                timestamps[v] = time + misses++;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Maps a float to an unsigned key with the same order.
+     */
+    private static long sortable(float value) {
+        final int bits = Float.floatToIntBits(value + 0.0f);
+        return (bits ^ (bits >> 31 & 0x7FFFFFFF) ^ 0x80000000) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Computes the vertex order of first use.
+     *
+     * @param indices the vertex indices
+     * @param vertexCount the amount of vertices
+     * @return the remap table from old to new vertex index, -1 for vertices
+     *         that are not referenced
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static int[] optimizeVertexFetch(int[] indices, int vertexCount) {
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", vertices: " + vertexCount);
+            }
+            if (remap[index] < 0) {
+                remap[index] = next++;
+            }
+        }
+        return remap;
+    }
+
+    /**
+     * Applies a remap table to indices.
+     *
+     * @param indices the vertex indices
+     * @param remap the remap table from old to new vertex index
+     * @return the new indices
+     */
+    public static int[] remapIndices(int[] indices, int[] remap) {
+        final int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = remap[indices[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Applies a remap table to an attribute stream, vertices mapped to -1
+     * are dropped.
+     *
+     * @param values the values, stride values per vertex
+     * @param stride the amount of values per vertex
+     * @param remap the remap table from old to new vertex index
+     * @return the values in the new vertex order
+     */
+    public static float[] remapVertices(float[] values, int stride, int[] remap) {
+        int count = 0;
+        for (int r : remap) {
+            count = Math.max(count, r + 1);
+        }
+        final float[] result = new float[count * stride];
+        for (int v = 0; v < remap.length; v++) {
+            if (remap[v] >= 0) {
+                System.arraycopy(values, v * stride, result, remap[v] * stride, stride);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Simulates a FIFO vertex cache.
+     *
+     * @param indices the vertex indices, three per triangle
+     * @param vertexCount the amount of vertices
+     * @param cacheSize the amount of cached vertices
+     * @return the average amount of cache misses per triangle
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static double acmr(int[] indices, int vertexCount, int cacheSize) {
+        final int[] timestamps = new int[vertexCount];
+        int time = cacheSize + 1;
+        for (int index : indices) {
+            if (time - timestamps[index] > cacheSize) {
+                timestamps[index] = time++;
+            }
+        }
+        final int triangleCount = indices.length / 3;
+        return triangleCount == 0 ? 0 : (time - cacheSize - 1) / (double) triangleCount;
+    }
+
+}
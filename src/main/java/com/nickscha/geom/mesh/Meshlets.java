@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.mesh;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Frustumf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Meshlet clustering of an indexed triangle mesh (final::immutable)
+ * <p>
+ * A meshlet is a small cluster of triangles with its own vertex list, sized
+ * for mesh shaders and cluster culling: by default at most
+ * {@value #MAX_VERTICES} vertices and {@value #MAX_TRIANGLES} triangles.
+ * Meshlets are grown greedily over the triangle adjacency. The next triangle
+ * of a meshlet is the adjacent one that adds the fewest new vertices, ties
+ * are broken by the distance to the center of the meshlet so far. A new
+ * meshlet starts next to the previous one, so consecutive meshlets are
+ * spatially coherent as well.
+ * </p>
+ * <p>
+ * The result is stored in flat arrays: the global vertex indices of all
+ * meshlets, the triangles as three local byte indices each into the vertex
+ * list of their meshlet, and offsets and counts per meshlet.
+ * </p>
+ * <b>Culling</b>
+ * <p>
+ * Every meshlet has a bounding sphere and a normal cone. The cone axis is the
+ * average triangle normal, the cutoff is the sine of the largest angle
+ * between the axis and a triangle normal. All triangles of a meshlet face
+ * away from a camera position <code>c</code> if
+ * <code>dot(center - c, axis) &gt;= cutoff * |center - c| + radius</code>,
+ * see {@link #isBackfacing(int, float, float, float)}. Meshlets whose normals
+ * spread too far get a cutoff of one and are never back facing.
+ * </p>
+ * <b>Parallelism</b>
+ * <p>
+ * Building one mesh is sequential, as the growth is inherently ordered.
+ * {@link #build(float[][], int[][], ForkJoinPool)} builds many meshes in
+ * parallel, one task per mesh.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Meshlets {
+
+    /**
+     * Default maximal amount of vertices per meshlet
+     */
+    public static final int MAX_VERTICES = 64;
+
+    /**
+     * Default maximal amount of triangles per meshlet
+     */
+    public static final int MAX_TRIANGLES = 124;
+
+    /**
+     * Normal cones whose normals deviate more than this cosine from the
+     * axis are never back facing
+     */
+    private static final float CONE_LIMIT = 0.1f;
+
+    private static final int NONE = -1;
+
+    /**
+     * vertex offset, vertex count, triangle offset, triangle count per
+     * meshlet
+     */
+    private final int[] meshlets;
+    private final int[] vertices;
+    private final byte[] triangles;
+
+    /**
+     * center x,y,z, radius, axis x,y,z and cutoff per meshlet
+     */
+    private final float[] bounds;
+
+    private Meshlets(int[] meshlets, int[] vertices, byte[] triangles, float[] bounds) {
+        this.meshlets = meshlets;
+        this.vertices = vertices;
+        this.triangles = triangles;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Checks whether a corner repeats an earlier corner of its triangle.
+     * Degenerate triangles are adjacent to such a vertex only once.
+     */
+    private static boolean repeated(int[] indices, int i) {
+        final int first = i - i % 3;
+        for (int j = first; j < i; j++) {
+            if (indices[j] == indices[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds meshlets of the default size.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the vertex indices, three per triangle
+     * @return the meshlets
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static Meshlets build(float[] positions, int[] indices) {
+        return build(positions, indices, MAX_VERTICES, MAX_TRIANGLES);
+    }
+
+    /**
+     * Builds meshlets of the default size for many meshes in parallel.
+     *
+     * @param positions the vertex positions of every mesh
+     * @param indices the vertex indices of every mesh
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the meshlets of every mesh
+     * @throws IllegalArgumentException if the amount of meshes differs or
+     *             the amount of indices of a mesh is not a multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static Meshlets[] build(float[][] positions, int[][] indices, ForkJoinPool pool) {
+        if (positions.length != indices.length) {
+            throw new IllegalArgumentException("Mesh count differs: " + positions.length + ", " + indices.length);
+        }
+        final Meshlets[] result = new Meshlets[positions.length];
+        if (pool == null) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = build(positions[i], indices[i]);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, result.length).parallel()
+                    .forEach(i -> result[i] = build(positions[i], indices[i]))).join();
+        }
+        return result;
+    }
+
+    /**
+     * Builds meshlets.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the vertex indices, three per triangle
+     * @param maxVertices the maximal amount of vertices per meshlet, in
+     *            <code>[3, 256]</code>
+     * @param maxTriangles the maximal amount of triangles per meshlet, at
+     *            least one
+     * @return the meshlets
+     * @throws IllegalArgumentException if a limit is out of range or the
+     *             amount of indices is not a multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public static Meshlets build(float[] positions, int[] indices, int maxVertices, int maxTriangles) {
+        if (maxVertices < 3 || maxVertices > 256 || maxTriangles < 1) {
+            throw new IllegalArgumentException("Invalid limits: " + maxVertices + " vertices, " + maxTriangles + " triangles");
+        }
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count is not a multiple of three: " + indices.length);
+        }
+        final int vertexCount = positions.length / 3;
+        final int triangleCount = indices.length / 3;
+
+        // live triangles of every vertex
+        final int[] live = new int[vertexCount];
+        for (int i = 0; i < indices.length; i++) {
+            final int index = indices[i];
+            if (index < 0 || index >= vertexCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", vertices: " + vertexCount);
+            }
+            if (!repeated(indices, i)) {
+                live[index]++;
+            }
+        }
+        final int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + live[v];
+        }
+        final int[] adjacency = new int[indices.length];
+        final int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            if (!repeated(indices, i)) {
+                adjacency[fill[indices[i]]++] = i / 3;
+            }
+        }
+
+        final boolean[] emitted = new boolean[triangleCount];
+        // local index of a vertex in the current meshlet or NONE
+        final int[] local = new int[vertexCount];
+        Arrays.fill(local, NONE);
+
+        final Builder builder = new Builder(triangleCount);
+        final int[] current = new int[maxVertices];
+        int vertexUsed = 0, triangleUsed = 0;
+        double sumX = 0, sumY = 0, sumZ = 0;
+        int cursor = 0;
+
+        int next = triangleCount > 0 ? 0 : NONE;
+        while (next != NONE) {
+            final int t = next;
+            int added = 0;
+            for (int k = 0; k < 3; k++) {
+                added += local[indices[t * 3 + k]] == NONE && !repeated(indices, t * 3 + k) ? 1 : 0;
+            }
+            if (vertexUsed + added > maxVertices || triangleUsed == maxTriangles) {
+                builder.finish(current, vertexUsed, positions);
+                for (int i = 0; i < vertexUsed; i++) {
+                    local[current[i]] = NONE;
+                }
+                vertexUsed = 0;
+                triangleUsed = 0;
+                sumX = sumY = sumZ = 0;
+            }
+            emitted[t] = true;
+            for (int k = 0; k < 3; k++) {
+                final int v = indices[t * 3 + k];
+                if (local[v] == NONE) {
+                    local[v] = vertexUsed;
+                    current[vertexUsed++] = v;
+                    sumX += positions[v * 3];
+                    sumY += positions[v * 3 + 1];
+                    sumZ += positions[v * 3 + 2];
+                }
+                builder.corner(local[v]);
+                if (repeated(indices, t * 3 + k)) {
+                    continue;
+                }
+                // remove the triangle from the live triangles of the vertex
+                final int begin = offsets[v], end = begin + live[v];
+                for (int i = begin; i < end; i++) {
+                    if (adjacency[i] == t) {
+                        adjacency[i] = adjacency[end - 1];
+                        adjacency[end - 1] = t;
+                        break;
+                    }
+                }
+                live[v]--;
+            }
+            triangleUsed++;
+
+            // best adjacent triangle: fewest new vertices, then closest
+            next = NONE;
+            int bestAdded = 4;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            final double cx = sumX / vertexUsed, cy = sumY / vertexUsed, cz = sumZ / vertexUsed;
+            for (int i = 0; i < vertexUsed; i++) {
+                final int v = current[i];
+                for (int j = offsets[v], end = j + live[v]; j < end; j++) {
+                    final int c = adjacency[j];
+                    final int a = indices[c * 3], b = indices[c * 3 + 1], d = indices[c * 3 + 2];
+                    final int extra = (local[a] == NONE ? 1 : 0) + (local[b] == NONE && b != a ? 1 : 0)
+                            + (local[d] == NONE && d != a && d != b ? 1 : 0);
+                    if (extra > bestAdded) {
+                        continue;
+                    }
+                    final double x = positions[a * 3] + positions[b * 3] + positions[d * 3] - cx * 3;
+                    final double y = positions[a * 3 + 1] + positions[b * 3 + 1] + positions[d * 3 + 1] - cy * 3;
+                    final double z = positions[a * 3 + 2] + positions[b * 3 + 2] + positions[d * 3 + 2] - cz * 3;
+                    final double distance = x * x + y * y + z * z;
+                    if (extra < bestAdded || distance < bestDistance) {
+                        bestAdded = extra;
+                        bestDistance = distance;
+                        next = c;
+                    }
+                }
+            }
+            if (next == NONE) {
+                while (cursor < triangleCount && emitted[cursor]) {
+                    cursor++;
+                }
+                next = cursor < triangleCount ? cursor : NONE;
+            }
+        }
+        if (triangleUsed > 0) {
+            builder.finish(current, vertexUsed, positions);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Growing output arrays of a build.
+     */
+    private static final class Builder {
+
+        private int[] meshlets = new int[64];
+        private int[] vertices;
+        private final byte[] triangles;
+        private float[] bounds = new float[128];
+        private int meshletCount;
+        private int vertexCount;
+        private int cornerCount;
+
+        Builder(int triangles) {
+            this.triangles = new byte[triangles * 3];
+            vertices = new int[Math.max(16, triangles)];
+        }
+
+        void corner(int local) {
+            triangles[cornerCount++] = (byte) local;
+        }
+
+        void finish(int[] current, int count, float[] positions) {
+            if (meshletCount * 4 == meshlets.length) {
+                meshlets = Arrays.copyOf(meshlets, meshlets.length * 2);
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            if (vertexCount + count > vertices.length) {
+                vertices = Arrays.copyOf(vertices, Math.max(vertices.length * 2, vertexCount + count));
+            }
+            System.arraycopy(current, 0, vertices, vertexCount, count);
+            final int first = meshletCount == 0 ? 0 : meshlets[meshletCount * 4 - 2] + meshlets[meshletCount * 4 - 1];
+            final int m = meshletCount * 4;
+            meshlets[m] = vertexCount;
+            meshlets[m + 1] = count;
+            meshlets[m + 2] = first;
+            meshlets[m + 3] = cornerCount / 3 - first;
+            computeBounds(meshletCount, positions);
+            vertexCount += count;
+            meshletCount++;
+        }
+
+        private void computeBounds(int meshlet, float[] positions) {
+            final int m = meshlet * 4;
+            final int vertexOffset = meshlets[m], count = meshlets[m + 1];
+            // sphere around the center of the bounding box
+            float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+            for (int i = 0; i < count; i++) {
+                final int v = vertices[vertexOffset + i] * 3;
+                minX = Math.min(minX, positions[v]);
+                minY = Math.min(minY, positions[v + 1]);
+                minZ = Math.min(minZ, positions[v + 2]);
+                maxX = Math.max(maxX, positions[v]);
+                maxY = Math.max(maxY, positions[v + 1]);
+                maxZ = Math.max(maxZ, positions[v + 2]);
+            }
+            final float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+            double radius = 0;
+            for (int i = 0; i < count; i++) {
+                final int v = vertices[vertexOffset + i] * 3;
+                final double x = positions[v] - cx, y = positions[v + 1] - cy, z = positions[v + 2] - cz;
+                radius = Math.max(radius, x * x + y * y + z * z);
+            }
+
+            // normal cone
+            final int first = meshlets[m + 2], triangleCount = meshlets[m + 3];
+            final float[] normals = new float[triangleCount * 3];
+            double ax = 0, ay = 0, az = 0;
+            int valid = 0;
+            for (int t = 0; t < triangleCount; t++) {
+                final int o = (first + t) * 3;
+                final int a = vertices[vertexOffset + (triangles[o] & 0xFF)] * 3;
+                final int b = vertices[vertexOffset + (triangles[o + 1] & 0xFF)] * 3;
+                final int c = vertices[vertexOffset + (triangles[o + 2] & 0xFF)] * 3;
+                final double ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1],
+                        uz = positions[b + 2] - positions[a + 2];
+                final double vx = positions[c] - positions[a], vy = positions[c + 1] - positions[a + 1],
+                        vz = positions[c + 2] - positions[a + 2];
+                final double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+                final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if (length > 0) {
+                    normals[valid * 3] = (float) (nx / length);
+                    normals[valid * 3 + 1] = (float) (ny / length);
+                    normals[valid * 3 + 2] = (float) (nz / length);
+                    ax += normals[valid * 3];
+                    ay += normals[valid * 3 + 1];
+                    az += normals[valid * 3 + 2];
+                    valid++;
+                }
+            }
+            final double length = Math.sqrt(ax * ax + ay * ay + az * az);
+            float cutoff = 1;
+            if (length > 0) {
+                ax /= length;
+                ay /= length;
+                az /= length;
+                double min = 1;
+                for (int i = 0; i < valid; i++) {
+                    min = Math.min(min, ax * normals[i * 3] + ay * normals[i * 3 + 1] + az * normals[i * 3 + 2]);
+                }
+                if (min > CONE_LIMIT) {
+                    cutoff = (float) Math.sqrt(1 - min * min);
+                }
+            }
+            final int o = meshlet * 8;
+            bounds[o] = cx;
+            bounds[o + 1] = cy;
+            bounds[o + 2] = cz;
+            bounds[o + 3] = (float) Math.sqrt(radius);
+            bounds[o + 4] = (float) ax;
+            bounds[o + 5] = (float) ay;
+            bounds[o + 6] = (float) az;
+            bounds[o + 7] = cutoff;
+        }
+
+        Meshlets build() {
+            return new Meshlets(Arrays.copyOf(meshlets, meshletCount * 4), Arrays.copyOf(vertices, vertexCount), triangles,
+                    Arrays.copyOf(bounds, meshletCount * 8));
+        }
+
+    }
+
+    /**
+     * Checks whether all triangles of a meshlet face away from a camera.
+     *
+     * @param meshlet the meshlet
+     * @param x the x coordinate of the camera
+     * @param y the y coordinate of the camera
+     * @param z the z coordinate of the camera
+     * @return true if the meshlet can be culled
+     * @throws IndexOutOfBoundsException if the meshlet does not exist
+     */
+    public boolean isBackfacing(int meshlet, float x, float y, float z) {
+        final int o = check(meshlet) * 8;
+        final float dx = bounds[o] - x, dy = bounds[o + 1] - y, dz = bounds[o + 2] - z;
+        final float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return dx * bounds[o + 4] + dy * bounds[o + 5] + dz * bounds[o + 6] >= bounds[o + 7] * distance + bounds[o + 3];
+    }
+
+    /**
+     * Checks whether all triangles of a meshlet face away from a camera.
+     *
+     * @param meshlet the meshlet
+     * @param camera the camera position
+     * @return true if the meshlet can be culled
+     * @throws IndexOutOfBoundsException if the meshlet does not exist
+     * @throws NullPointerException if the camera is null
+     */
+    public boolean isBackfacing(int meshlet, Vec3f camera) {
+        return isBackfacing(meshlet, camera.getX(), camera.getY(), camera.getZ());
+    }
+
+    /**
+     * Checks whether a meshlet is potentially visible: its bounding sphere
+     * intersects the frustum and it does not face away from the camera.
+     *
+     * @param meshlet the meshlet
+     * @param frustum the view frustum
+     * @param camera the camera position
+     * @return true if the meshlet is potentially visible
+     * @throws IndexOutOfBoundsException if the meshlet does not exist
+     * @throws NullPointerException if the frustum or camera is null
+     */
+    public boolean isVisible(int meshlet, Frustumf frustum, Vec3f camera) {
+        final int o = check(meshlet) * 8;
+        return frustum.isSphereVisible(bounds[o], bounds[o + 1], bounds[o + 2], bounds[o + 3])
+                && !isBackfacing(meshlet, camera);
+    }
+
+    private int check(int meshlet) {
+        if (meshlet < 0 || meshlet >= getMeshletCount()) {
+            throw new IndexOutOfBoundsException("meshlet: " + meshlet + ", meshlets: " + getMeshletCount());
+        }
+        return meshlet;
+    }
+
+    /**
+     * @return the amount of meshlets
+     */
+    public int getMeshletCount() {
+        return meshlets.length / 4;
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the offset of its vertices in {@link #getVertices()}
+     */
+    public int getVertexOffset(int meshlet) {
+        return meshlets[check(meshlet) * 4];
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the amount of its vertices
+     */
+    public int getVertexCount(int meshlet) {
+        return meshlets[check(meshlet) * 4 + 1];
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the offset of its first triangle, in triangles, in
+     *         {@link #getTriangles()}
+     */
+    public int getTriangleOffset(int meshlet) {
+        return meshlets[check(meshlet) * 4 + 2];
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the amount of its triangles
+     */
+    public int getTriangleCount(int meshlet) {
+        return meshlets[check(meshlet) * 4 + 3];
+    }
+
+    /**
+     * @return the global vertex indices of all meshlets
+     */
+    public int[] getVertices() {
+        return vertices.clone();
+    }
+
+    /**
+     * @return the local vertex indices of all triangles, three unsigned bytes
+     *         per triangle
+     */
+    public byte[] getTriangles() {
+        return triangles.clone();
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the center of its bounding sphere
+     */
+    public Vec3f getCenter(int meshlet) {
+        final int o = check(meshlet) * 8;
+        return Vec3f.of(bounds[o], bounds[o + 1], bounds[o + 2]);
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the radius of its bounding sphere
+     */
+    public float getRadius(int meshlet) {
+        return bounds[check(meshlet) * 8 + 3];
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the axis of its normal cone
+     */
+    public Vec3f getConeAxis(int meshlet) {
+        final int o = check(meshlet) * 8;
+        return Vec3f.of(bounds[o + 4], bounds[o + 5], bounds[o + 6]);
+    }
+
+    /**
+     * @param meshlet the meshlet
+     * @return the sine of the opening angle of its normal cone, one if the
+     *         meshlet is never back facing
+     */
+    public float getConeCutoff(int meshlet) {
+        return bounds[check(meshlet) * 8 + 7];
+    }
+
+    /**
+     * @return the indices of all meshlet triangles in global vertex indices,
+     *         in meshlet order
+     */
+    public int[] toIndices() {
+        final int[] result = new int[triangles.length];
+        for (int m = 0; m < getMeshletCount(); m++) {
+            final int vertexOffset = meshlets[m * 4];
+            for (int i = meshlets[m * 4 + 2] * 3, end = i + meshlets[m * 4 + 3] * 3; i < end; i++) {
+                result[i] = vertices[vertexOffset + (triangles[i] & 0xFF)];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Meshlets [meshlets=" + getMeshletCount() + ", vertices=" + vertices.length + ", triangles="
+                + triangles.length / 3 + "]";
+    }
+
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.mesh;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.mat.Mat4d;
+import com.nickscha.geom.spatial.RadixSort;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Mesh simplification by quadric error metrics (final::mutable)
+ * <p>
+ * Implements the edge collapse algorithm of Garland and Heckbert
+ * ("Surface Simplification Using Quadric Error Metrics", 1997). Every vertex
+ * carries the sum of the squared distance quadrics of the planes of its
+ * triangles, the error of moving it to <code>p</code> is
+ * <code>p^T Q p</code> with the homogeneous point <code>p</code>. The 4x4
+ * matrix <code>Q</code> is symmetric and stored packed as its upper
+ * triangle, ten doubles per vertex (see {@link #getQuadric(int)}). Open
+ * boundaries get additional perpendicular planes so they keep their
+ * outline.
+ * </p>
+ * <p>
+ * Edges are collapsed in order of their error from a binary heap of
+ * primitive entries. An entry stores the versions of both vertices at the
+ * time it was pushed; entries of vertices that changed since are skipped
+ * when popped instead of being searched and updated in the heap. A collapse
+ * is rejected if it would flip the normal of a surrounding triangle.
+ * </p>
+ * <p>
+ * The simplifier keeps its state between calls, so a chain of levels of
+ * detail is produced by calling {@link #simplify(int, double)} with
+ * decreasing triangle counts and reading the result after each call.
+ * Vertices keep their indices, removed vertices are no longer referenced.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class QuadricSimplifier {
+
+    /**
+     * Weight of the planes perpendicular to boundary edges
+     */
+    static final double BOUNDARY_WEIGHT = 100;
+
+    /**
+     * Minimal cosine between a triangle normal before and after a collapse
+     */
+    private static final double FLIP_THRESHOLD = 0.2;
+
+    private static final int NONE = -1;
+
+    private final int vertexCount;
+    private final double[] positions;
+    private final double[] quadrics;
+    private final int[] versions;
+    private final boolean[] removed;
+
+    private final int[] triangles;
+    private final boolean[] dead;
+    private int triangleCount;
+
+    /**
+     * singly linked lists of the corners of every vertex, a corner is
+     * triangle * 3 + k
+     */
+    private final int[] firstCorner;
+    private final int[] lastCorner;
+    private final int[] nextCorner;
+
+    // heap of edge collapses
+    private double[] heapCost = new double[64];
+    private long[] heapEdge = new long[64];
+    private long[] heapStamp = new long[64];
+    private int heapSize;
+
+    private double maxError;
+    private final double[] target = new double[3];
+
+    /**
+     * Prepares a mesh for simplification.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the vertex indices, three per triangle
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public QuadricSimplifier(float[] positions, int[] indices) {
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count is not a multiple of three: " + indices.length);
+        }
+        vertexCount = positions.length / 3;
+        this.positions = new double[vertexCount * 3];
+        for (int i = 0; i < this.positions.length; i++) {
+            this.positions[i] = positions[i];
+        }
+        quadrics = new double[vertexCount * 10];
+        versions = new int[vertexCount];
+        removed = new boolean[vertexCount];
+        triangles = indices.clone();
+        triangleCount = indices.length / 3;
+        dead = new boolean[triangleCount];
+
+        firstCorner = new int[vertexCount];
+        lastCorner = new int[vertexCount];
+        nextCorner = new int[indices.length];
+        Arrays.fill(firstCorner, NONE);
+        for (int c = indices.length - 1; c >= 0; c--) {
+            final int v = indices[c];
+            if (v < 0 || v >= vertexCount) {
+                throw new IndexOutOfBoundsException("index: " + v + ", vertices: " + vertexCount);
+            }
+            if (firstCorner[v] == NONE) {
+                lastCorner[v] = c;
+            }
+            nextCorner[c] = firstCorner[v];
+            firstCorner[v] = c;
+        }
+        for (int t = 0; t < triangleCount; t++) {
+            addPlaneQuadric(t);
+        }
+        initEdges();
+    }
+
+    /**
+     * Prepares a mesh for simplification.
+     *
+     * @param positions the vertex positions
+     * @param indices the vertex indices, three per triangle
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public QuadricSimplifier(Vec3f[] positions, int[] indices) {
+        this(flatten(positions), indices);
+    }
+
+    private static float[] flatten(Vec3f[] positions) {
+        final float[] xyz = new float[positions.length * 3];
+        for (int i = 0; i < positions.length; i++) {
+            xyz[i * 3] = positions[i].getX();
+            xyz[i * 3 + 1] = positions[i].getY();
+            xyz[i * 3 + 2] = positions[i].getZ();
+        }
+        return xyz;
+    }
+
+    private void addPlaneQuadric(int t) {
+        final int a = triangles[t * 3] * 3, b = triangles[t * 3 + 1] * 3, c = triangles[t * 3 + 2] * 3;
+        final double[] p = positions;
+        final double abx = p[b] - p[a], aby = p[b + 1] - p[a + 1], abz = p[b + 2] - p[a + 2];
+        final double acx = p[c] - p[a], acy = p[c + 1] - p[a + 1], acz = p[c + 2] - p[a + 2];
+        double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (!(length > 0)) {
+            return;
+        }
+        nx /= length;
+        ny /= length;
+        nz /= length;
+        final double d = -(nx * p[a] + ny * p[a + 1] + nz * p[a + 2]);
+        for (int k = 0; k < 3; k++) {
+            addQuadric(triangles[t * 3 + k], nx, ny, nz, d, 1);
+        }
+    }
+
+    /**
+     * Adds the weighted quadric of the plane <code>ax + by + cz + d = 0</code>.
+     */
+    private void addQuadric(int v, double a, double b, double c, double d, double weight) {
+        final double[] q = quadrics;
+        final int o = v * 10;
+        q[o] += weight * a * a;
+        q[o + 1] += weight * a * b;
+        q[o + 2] += weight * a * c;
+        q[o + 3] += weight * a * d;
+        q[o + 4] += weight * b * b;
+        q[o + 5] += weight * b * c;
+        q[o + 6] += weight * b * d;
+        q[o + 7] += weight * c * c;
+        q[o + 8] += weight * c * d;
+        q[o + 9] += weight * d * d;
+    }
+
+    /**
+     * Finds the unique edges by sorting the directed edges of all triangles,
+     * adds the boundary planes and pushes every edge onto the heap.
+     */
+    private void initEdges() {
+        final int corners = triangleCount * 3;
+        final long[] keys = new long[corners];
+        for (int c = 0; c < corners; c++) {
+            final int a = triangles[c], b = triangles[c - c % 3 + (c + 1) % 3];
+            keys[c] = a < b ? (long) a << 32 | b : (long) b << 32 | a;
+        }
+        final int[] order = RadixSort.sort(keys, corners);
+        for (int i = 0; i < corners;) {
+            int j = i + 1;
+            while (j < corners && keys[j] == keys[i]) {
+                j++;
+            }
+            final int a = (int) (keys[i] >>> 32), b = (int) keys[i];
+            if (a != b) {
+                if (j - i == 1) {
+                    addBoundaryQuadric(order[i] / 3, a, b);
+                }
+            }
+            i = j;
+        }
+        for (int i = 0; i < corners;) {
+            int j = i + 1;
+            while (j < corners && keys[j] == keys[i]) {
+                j++;
+            }
+            final int a = (int) (keys[i] >>> 32), b = (int) keys[i];
+            if (a != b) {
+                push(a, b);
+            }
+            i = j;
+        }
+    }
+
+    private void addBoundaryQuadric(int t, int a, int b) {
+        final double[] p = positions;
+        final int i = triangles[t * 3] * 3, j = triangles[t * 3 + 1] * 3, k = triangles[t * 3 + 2] * 3;
+        final double ux = p[j] - p[i], uy = p[j + 1] - p[i + 1], uz = p[j + 2] - p[i + 2];
+        final double vx = p[k] - p[i], vy = p[k + 1] - p[i + 1], vz = p[k + 2] - p[i + 2];
+        final double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+        final double ex = p[b * 3] - p[a * 3], ey = p[b * 3 + 1] - p[a * 3 + 1], ez = p[b * 3 + 2] - p[a * 3 + 2];
+        // plane through the edge perpendicular to the triangle
+        double mx = ey * nz - ez * ny, my = ez * nx - ex * nz, mz = ex * ny - ey * nx;
+        final double length = Math.sqrt(mx * mx + my * my + mz * mz);
+        if (!(length > 0)) {
+            return;
+        }
+        mx /= length;
+        my /= length;
+        mz /= length;
+        final double d = -(mx * p[a * 3] + my * p[a * 3 + 1] + mz * p[a * 3 + 2]);
+        addQuadric(a, mx, my, mz, d, BOUNDARY_WEIGHT);
+        addQuadric(b, mx, my, mz, d, BOUNDARY_WEIGHT);
+    }
+
+    /**
+     * Collapses edges until the triangle count is reached or the next
+     * collapse would exceed the error.
+     *
+     * @param targetTriangles the amount of triangles to reduce to
+     * @param maxError the maximal square root of the quadric error of a
+     *            collapse, use infinity to only stop at the triangle count.
+     *            The quadric error sums the squared distances to all planes
+     *            merged into both vertices, boundary planes weighted by
+     *            100, so it grows with but is not the distance to the
+     *            original surface.
+     * @return the amount of remaining triangles
+     */
+    public int simplify(int targetTriangles, double maxError) {
+        final double limit = maxError * maxError;
+        while (triangleCount > targetTriangles && heapSize > 0) {
+            final double cost = heapCost[0];
+            if (cost > limit) {
+                break;
+            }
+            final long edge = heapEdge[0], stamp = heapStamp[0];
+            pop();
+            final int a = (int) (edge >>> 32), b = (int) edge;
+            if (removed[a] || removed[b] || versions[a] != (int) (stamp >>> 32) || versions[b] != (int) stamp) {
+                continue;
+            }
+            // the position is recomputed, the cost is the one of the entry
+            optimize(a, b);
+            if (flips(a, b) || flips(b, a)) {
+                continue;
+            }
+            collapse(a, b);
+            this.maxError = Math.max(this.maxError, cost);
+        }
+        return triangleCount;
+    }
+
+    /**
+     * Computes the position minimizing the summed quadric of an edge and
+     * returns its error.
+     */
+    private double optimize(int a, int b) {
+        final double[] q = quadrics;
+        final int o = a * 10, p = b * 10;
+        final double q0 = q[o] + q[p], q1 = q[o + 1] + q[p + 1], q2 = q[o + 2] + q[p + 2], q3 = q[o + 3] + q[p + 3];
+        final double q4 = q[o + 4] + q[p + 4], q5 = q[o + 5] + q[p + 5], q6 = q[o + 6] + q[p + 6];
+        final double q7 = q[o + 7] + q[p + 7], q8 = q[o + 8] + q[p + 8], q9 = q[o + 9] + q[p + 9];
+
+        // solve the 3x3 system of the gradient by Cramer's rule
+        final double c0 = q4 * q7 - q5 * q5, c1 = q2 * q5 - q1 * q7, c2 = q1 * q5 - q2 * q4;
+        final double det = q0 * c0 + q1 * c1 + q2 * c2;
+        final double scale = q0 + q4 + q7;
+        if (Math.abs(det) > 1e-9 * scale * scale * scale) {
+            final double inverse = -1 / det;
+            target[0] = (c0 * q3 + c1 * q6 + c2 * q8) * inverse;
+            target[1] = (c1 * q3 + (q0 * q7 - q2 * q2) * q6 + (q1 * q2 - q0 * q5) * q8) * inverse;
+            target[2] = (c2 * q3 + (q1 * q2 - q0 * q5) * q6 + (q0 * q4 - q1 * q1) * q8) * inverse;
+            return Math.max(0, error(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, target[0], target[1], target[2]));
+        }
+        // singular: the best of both ends and the midpoint
+        double best = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < 3; k++) {
+            final double t = k * 0.5;
+            final double x = positions[a * 3] + (positions[b * 3] - positions[a * 3]) * t;
+            final double y = positions[a * 3 + 1] + (positions[b * 3 + 1] - positions[a * 3 + 1]) * t;
+            final double z = positions[a * 3 + 2] + (positions[b * 3 + 2] - positions[a * 3 + 2]) * t;
+            final double e = error(q0, q1, q2, q3, q4, q5, q6, q7, q8, q9, x, y, z);
+            if (e < best) {
+                best = e;
+                target[0] = x;
+                target[1] = y;
+                target[2] = z;
+            }
+        }
+        return Math.max(0, best);
+    }
+
+    private static double error(double q0, double q1, double q2, double q3, double q4, double q5, double q6, double q7,
+            double q8, double q9, double x, double y, double z) {
+        return x * (q0 * x + 2 * (q1 * y + q2 * z + q3)) + y * (q4 * y + 2 * (q5 * z + q6)) + z * (q7 * z + 2 * q8) + q9;
+    }
+
+    /**
+     * @return true if moving vertex a to the target flips or collapses a
+     *         triangle of a that does not contain b
+     */
+    private boolean flips(int a, int b) {
+        final double[] p = positions;
+        for (int c = firstCorner[a]; c != NONE; c = nextCorner[c]) {
+            final int t = c / 3;
+            if (dead[t]) {
+                continue;
+            }
+            final int k = c % 3;
+            final int u = triangles[t * 3 + (k + 1) % 3], w = triangles[t * 3 + (k + 2) % 3];
+            if (u == b || w == b) {
+                continue;
+            }
+            final double ux = p[u * 3] - p[a * 3], uy = p[u * 3 + 1] - p[a * 3 + 1], uz = p[u * 3 + 2] - p[a * 3 + 2];
+            final double wx = p[w * 3] - p[a * 3], wy = p[w * 3 + 1] - p[a * 3 + 1], wz = p[w * 3 + 2] - p[a * 3 + 2];
+            final double nx = uy * wz - uz * wy, ny = uz * wx - ux * wz, nz = ux * wy - uy * wx;
+            final double sx = p[u * 3] - target[0], sy = p[u * 3 + 1] - target[1], sz = p[u * 3 + 2] - target[2];
+            final double tx = p[w * 3] - target[0], ty = p[w * 3 + 1] - target[1], tz = p[w * 3 + 2] - target[2];
+            final double mx = sy * tz - sz * ty, my = sz * tx - sx * tz, mz = sx * ty - sy * tx;
+            final double dot = nx * mx + ny * my + nz * mz;
+            final double lengths = Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz));
+            if (!(dot > FLIP_THRESHOLD * lengths)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges vertex b into vertex a at the target position.
+     */
+    private void collapse(int a, int b) {
+        for (int c = firstCorner[b]; c != NONE; c = nextCorner[c]) {
+            final int t = c / 3;
+            if (dead[t]) {
+                continue;
+            }
+            if (triangles[t * 3] == a || triangles[t * 3 + 1] == a || triangles[t * 3 + 2] == a) {
+                dead[t] = true;
+                triangleCount--;
+            } else {
+                triangles[c] = a;
+            }
+        }
+        if (firstCorner[b] != NONE) {
+            if (firstCorner[a] == NONE) {
+                firstCorner[a] = firstCorner[b];
+            } else {
+                nextCorner[lastCorner[a]] = firstCorner[b];
+            }
+            lastCorner[a] = lastCorner[b];
+        }
+        firstCorner[b] = NONE;
+        for (int k = 0; k < 10; k++) {
+            quadrics[a * 10 + k] += quadrics[b * 10 + k];
+        }
+        positions[a * 3] = target[0];
+        positions[a * 3 + 1] = target[1];
+        positions[a * 3 + 2] = target[2];
+        removed[b] = true;
+        versions[a]++;
+        versions[b]++;
+
+        // both neighbours of every corner, a boundary edge is the next edge of
+        // only one of its corners. The opposite edge is queued as well, its
+        // collapse may have been rejected as flip before the triangle moved.
+        for (int c = firstCorner[a]; c != NONE; c = nextCorner[c]) {
+            final int t = c / 3;
+            if (!dead[t]) {
+                final int k = c % 3;
+                final int next = triangles[t * 3 + (k + 1) % 3], previous = triangles[t * 3 + (k + 2) % 3];
+                push(a, next);
+                push(a, previous);
+                push(next, previous);
+            }
+        }
+    }
+
+    private void push(int a, int b) {
+        final double cost = optimize(a, b);
+        if (heapSize == heapCost.length) {
+            final int capacity = heapSize * 2;
+            heapCost = Arrays.copyOf(heapCost, capacity);
+            heapEdge = Arrays.copyOf(heapEdge, capacity);
+            heapStamp = Arrays.copyOf(heapStamp, capacity);
+        }
+        final long edge = (long) a << 32 | b & 0xFFFFFFFFL;
+        final long stamp = (long) versions[a] << 32 | versions[b] & 0xFFFFFFFFL;
+        int i = heapSize++;
+        while (i > 0) {
+            final int parent = i - 1 >>> 1;
+            if (heapCost[parent] <= cost) {
+                break;
+            }
+            heapCost[i] = heapCost[parent];
+            heapEdge[i] = heapEdge[parent];
+            heapStamp[i] = heapStamp[parent];
+            i = parent;
+        }
+        heapCost[i] = cost;
+        heapEdge[i] = edge;
+        heapStamp[i] = stamp;
+    }
+
+    private void pop() {
+        final int n = --heapSize;
+        final double cost = heapCost[n];
+        final long edge = heapEdge[n], stamp = heapStamp[n];
+        int i = 0;
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && heapCost[child + 1] < heapCost[child]) {
+                child++;
+            }
+            if (heapCost[child] >= cost) {
+                break;
+            }
+            heapCost[i] = heapCost[child];
+            heapEdge[i] = heapEdge[child];
+            heapStamp[i] = heapStamp[child];
+            i = child;
+        }
+        heapCost[i] = cost;
+        heapEdge[i] = edge;
+        heapStamp[i] = stamp;
+    }
+
+    /**
+     * @return the vertex indices of the remaining triangles, three per
+     *         triangle in their original order
+     */
+    public int[] getIndices() {
+        final int[] result = new int[triangleCount * 3];
+        for (int t = 0, n = 0; n < result.length; t++) {
+            if (!dead[t]) {
+                result[n++] = triangles[t * 3];
+                result[n++] = triangles[t * 3 + 1];
+                result[n++] = triangles[t * 3 + 2];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the vertex positions (x,y,z interleaved), collapsed vertices
+     *         are moved to their new position
+     */
+    public float[] getPositions() {
+        final float[] result = new float[vertexCount * 3];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (float) positions[i];
+        }
+        return result;
+    }
+
+    /**
+     * @param vertex a vertex index
+     * @return the error quadric of the vertex as a symmetric matrix
+     * @throws IndexOutOfBoundsException if the index is not a vertex
+     */
+    public Mat4d getQuadric(int vertex) {
+        if (vertex < 0 || vertex >= vertexCount) {
+            throw new IndexOutOfBoundsException("vertex: " + vertex + ", vertices: " + vertexCount);
+        }
+        final double[] q = Arrays.copyOfRange(quadrics, vertex * 10, vertex * 10 + 10);
+        return Mat4d.of(new double[][] { { q[0], q[1], q[2], q[3] }, { q[1], q[4], q[5], q[6] }, { q[2], q[5], q[7], q[8] },
+                { q[3], q[6], q[8], q[9] } });
+    }
+
+    /**
+     * @return the square root of the largest quadric error of a collapse so
+     *         far, see {@link #simplify(int, double)}
+     */
+    public double getError() {
+        return Math.sqrt(maxError);
+    }
+
+    /**
+     * @return the amount of remaining triangles
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * @return the amount of vertices, including removed ones
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QuadricSimplifier [vertices=" + vertexCount + ", triangles=" + triangleCount + "]";
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.mesh;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk vertex normal and tangent generation for an indexed triangle mesh
+ * (final::mutable)
+ * <p>
+ * Positions, normals and texture coordinates are flat interleaved float
+ * arrays, triangles are three vertex indices each. The constructor builds the
+ * list of triangle corners of every vertex once, so regenerating normals and
+ * tangents of a deforming mesh every frame only writes into the scratch
+ * arrays of this instance and the caller's output arrays.
+ * </p>
+ * <b>Parallelism</b>
+ * <p>
+ * Both passes run in chunks on the specified pool. The first pass computes
+ * per triangle values, the second gathers them per vertex over its corner
+ * list in ascending triangle order. No vertex is written by more than one
+ * thread and the summation order does not depend on the chunking, so the
+ * result is bit identical with and without a pool. An instance must not be
+ * used by two threads at once.
+ * </p>
+ * <b>Tangents</b>
+ * <p>
+ * Tangents follow the conventions of MikkTSpace as used by glTF: the per
+ * triangle tangent and bitangent are derived from the texture coordinates,
+ * projected onto the plane of the vertex normal, normalized and accumulated
+ * weighted by the corner angle. The result has four components, the fourth
+ * is the handedness: the bitangent is
+ * <code>cross(normal, tangent) * w</code>. Unlike the reference
+ * implementation, vertices are not split where the tangent frame is
+ * discontinuous; meshes are expected to duplicate vertices along texture
+ * seams and hard edges already, as exported meshes do.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class TangentSpace {
+
+    /**
+     * Weighting of the face normals summed into a vertex normal
+     */
+    public enum Weighting {
+        /**
+         * Every face counts the same
+         */
+        UNIFORM,
+        /**
+         * Faces count by their area
+         */
+        AREA,
+        /**
+         * Faces count by the angle of the corner at the vertex, which does
+         * not depend on the tessellation
+         */
+        ANGLE
+    }
+
+    /**
+     * Amount of triangles or vertices per parallel chunk
+     */
+    static final int CHUNK = 1 << 12;
+
+    private final int[] indices;
+    private final int vertexCount;
+    private final int triangleCount;
+
+    /**
+     * corners of vertex v are corners[cornerStart[v]] to
+     * corners[cornerStart[v + 1]], a corner is triangle * 3 + k
+     */
+    private final int[] cornerStart;
+    private final int[] corners;
+
+    /**
+     * unit normal per triangle
+     */
+    private final float[] faceNormals;
+
+    /**
+     * area per triangle, angle per corner
+     */
+    private final float[] areas;
+    private final float[] angles;
+
+    /**
+     * tangent and bitangent direction per triangle, created on first use
+     */
+    private float[] faceTangents;
+
+    /**
+     * Prepares normal and tangent generation for a triangle mesh.
+     *
+     * @param indices the vertex indices, three per triangle, are copied
+     * @param vertexCount the amount of vertices
+     * @throws IllegalArgumentException if the amount of indices is not a
+     *             multiple of three
+     * @throws IndexOutOfBoundsException if an index is not a vertex
+     */
+    public TangentSpace(int[] indices, int vertexCount) {
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count is not a multiple of three: " + indices.length);
+        }
+        this.indices = indices.clone();
+        this.vertexCount = vertexCount;
+        this.triangleCount = indices.length / 3;
+
+        cornerStart = new int[vertexCount + 1];
+        for (final int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", vertices: " + vertexCount);
+            }
+            cornerStart[index + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            cornerStart[v + 1] += cornerStart[v];
+        }
+        corners = new int[indices.length];
+        final int[] fill = new int[vertexCount];
+        for (int c = 0; c < indices.length; c++) {
+            final int v = indices[c];
+            corners[cornerStart[v] + fill[v]++] = c;
+        }
+        faceNormals = new float[triangleCount * 3];
+        areas = new float[triangleCount];
+        angles = new float[triangleCount * 3];
+    }
+
+    /**
+     * Computes angle weighted vertex normals on the calling thread.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the vertex indices, three per triangle
+     * @return the unit vertex normals (x,y,z interleaved)
+     */
+    public static float[] normals(float[] positions, int[] indices) {
+        return new TangentSpace(indices, positions.length / 3).computeNormals(positions, Weighting.ANGLE, null, null);
+    }
+
+    /**
+     * Computes vertex normals. Vertices without a non degenerate triangle get
+     * a zero normal.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param weighting the weighting of the face normals
+     * @param normals receives the unit vertex normals (x,y,z interleaved) or
+     *            null to allocate a new array
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the normals
+     * @throws IllegalArgumentException if an array is too short
+     */
+    public float[] computeNormals(float[] positions, Weighting weighting, float[] normals, ForkJoinPool pool) {
+        check(positions, 3, "positions");
+        final float[] out = normals != null ? normals : new float[vertexCount * 3];
+        check(out, 3, "normals");
+        run(pool, triangleCount, t -> face(positions, t));
+        run(pool, vertexCount, v -> normal(weighting, out, v));
+        return out;
+    }
+
+    /**
+     * Computes tangents for the specified normals.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param normals the unit vertex normals (x,y,z interleaved)
+     * @param uvs the texture coordinates (u,v interleaved)
+     * @param tangents receives the unit tangents and handedness (x,y,z,w
+     *            interleaved) or null to allocate a new array
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the tangents
+     * @throws IllegalArgumentException if an array is too short
+     */
+    public float[] computeTangents(float[] positions, float[] normals, float[] uvs, float[] tangents, ForkJoinPool pool) {
+        check(positions, 3, "positions");
+        check(normals, 3, "normals");
+        check(uvs, 2, "uvs");
+        final float[] out = tangents != null ? tangents : new float[vertexCount * 4];
+        check(out, 4, "tangents");
+        if (faceTangents == null) {
+            faceTangents = new float[triangleCount * 6];
+        }
+        run(pool, triangleCount, t -> {
+            face(positions, t);
+            faceTangent(positions, uvs, t);
+        });
+        run(pool, vertexCount, v -> tangent(normals, out, v));
+        return out;
+    }
+
+    private void check(float[] array, int stride, String name) {
+        if (array.length < vertexCount * stride) {
+            throw new IllegalArgumentException(
+                    "Array of " + name + " too short: " + array.length + " < " + vertexCount * stride);
+        }
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer action) {
+        if (pool == null || count <= CHUNK) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        } else {
+            final int chunks = (count + CHUNK - 1) / CHUNK;
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                for (int i = chunk * CHUNK, end = Math.min(count, i + CHUNK); i < end; i++) {
+                    action.accept(i);
+                }
+            })).join();
+        }
+    }
+
+    /**
+     * Computes the unit normal, area and corner angles of a triangle.
+     */
+    private void face(float[] p, int t) {
+        final int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, c = indices[t * 3 + 2] * 3;
+        final float abx = p[b] - p[a], aby = p[b + 1] - p[a + 1], abz = p[b + 2] - p[a + 2];
+        final float acx = p[c] - p[a], acy = p[c + 1] - p[a + 1], acz = p[c + 2] - p[a + 2];
+        final float bcx = p[c] - p[b], bcy = p[c + 1] - p[b + 1], bcz = p[c + 2] - p[b + 2];
+        final float nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        final float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        final float inverse = length > 0 ? 1 / length : 0;
+        faceNormals[t * 3] = nx * inverse;
+        faceNormals[t * 3 + 1] = ny * inverse;
+        faceNormals[t * 3 + 2] = nz * inverse;
+        areas[t] = length * 0.5f;
+        // atan2 of the cross product length and the dot product is accurate
+        // for small and obtuse angles alike
+        angles[t * 3] = (float) Math.atan2(length, abx * acx + aby * acy + abz * acz);
+        angles[t * 3 + 1] = (float) Math.atan2(length, -(abx * bcx + aby * bcy + abz * bcz));
+        angles[t * 3 + 2] = (float) Math.atan2(length, acx * bcx + acy * bcy + acz * bcz);
+    }
+
+    private void normal(Weighting weighting, float[] out, int v) {
+        float x = 0, y = 0, z = 0;
+        for (int i = cornerStart[v]; i < cornerStart[v + 1]; i++) {
+            final int corner = corners[i], t = corner / 3;
+            final float w = weighting == Weighting.ANGLE ? angles[corner] : weighting == Weighting.AREA ? areas[t] : 1;
+            x += faceNormals[t * 3] * w;
+            y += faceNormals[t * 3 + 1] * w;
+            z += faceNormals[t * 3 + 2] * w;
+        }
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        final float inverse = length > 0 ? 1 / length : 0;
+        out[v * 3] = x * inverse;
+        out[v * 3 + 1] = y * inverse;
+        out[v * 3 + 2] = z * inverse;
+    }
+
+    /**
+     * Computes the tangent and bitangent direction of a triangle from its
+     * texture coordinates, oriented by the sign of the texture area.
+     */
+    private void faceTangent(float[] p, float[] uv, int t) {
+        final int i0 = indices[t * 3], i1 = indices[t * 3 + 1], i2 = indices[t * 3 + 2];
+        final int a = i0 * 3, b = i1 * 3, c = i2 * 3;
+        final float e1x = p[b] - p[a], e1y = p[b + 1] - p[a + 1], e1z = p[b + 2] - p[a + 2];
+        final float e2x = p[c] - p[a], e2y = p[c + 1] - p[a + 1], e2z = p[c + 2] - p[a + 2];
+        final float du1 = uv[i1 * 2] - uv[i0 * 2], dv1 = uv[i1 * 2 + 1] - uv[i0 * 2 + 1];
+        final float du2 = uv[i2 * 2] - uv[i0 * 2], dv2 = uv[i2 * 2 + 1] - uv[i0 * 2 + 1];
+        final float area = du1 * dv2 - du2 * dv1;
+        final float sign = area > 0 ? 1 : area < 0 ? -1 : 0;
+        final int o = t * 6;
+        faceTangents[o] = (e1x * dv2 - e2x * dv1) * sign;
+        faceTangents[o + 1] = (e1y * dv2 - e2y * dv1) * sign;
+        faceTangents[o + 2] = (e1z * dv2 - e2z * dv1) * sign;
+        faceTangents[o + 3] = (e2x * du1 - e1x * du2) * sign;
+        faceTangents[o + 4] = (e2y * du1 - e1y * du2) * sign;
+        faceTangents[o + 5] = (e2z * du1 - e1z * du2) * sign;
+    }
+
+    private void tangent(float[] normals, float[] out, int v) {
+        final float nx = normals[v * 3], ny = normals[v * 3 + 1], nz = normals[v * 3 + 2];
+        float tx = 0, ty = 0, tz = 0, bx = 0, by = 0, bz = 0;
+        for (int i = cornerStart[v]; i < cornerStart[v + 1]; i++) {
+            final int corner = corners[i], o = corner / 3 * 6;
+            final float w = angles[corner];
+            // project onto the tangent plane of the vertex before normalizing
+            float x = faceTangents[o], y = faceTangents[o + 1], z = faceTangents[o + 2];
+            float d = x * nx + y * ny + z * nz;
+            x -= nx * d;
+            y -= ny * d;
+            z -= nz * d;
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0) {
+                tx += x * w / length;
+                ty += y * w / length;
+                tz += z * w / length;
+            }
+            x = faceTangents[o + 3];
+            y = faceTangents[o + 4];
+            z = faceTangents[o + 5];
+            d = x * nx + y * ny + z * nz;
+            x -= nx * d;
+            y -= ny * d;
+            z -= nz * d;
+            length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0) {
+                bx += x * w / length;
+                by += y * w / length;
+                bz += z * w / length;
+            }
+        }
+        float length = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+        if (!(length > 0)) {
+            // no texture gradient, any direction in the tangent plane
+            if (Math.abs(nx) < 0.9f) {
+                tx = 0;
+                ty = nz;
+                tz = -ny;
+            } else {
+                tx = -nz;
+                ty = 0;
+                tz = nx;
+            }
+            length = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+        }
+        final float inverse = length > 0 ? 1 / length : 0;
+        tx *= inverse;
+        ty *= inverse;
+        tz *= inverse;
+        final float cx = ny * tz - nz * ty, cy = nz * tx - nx * tz, cz = nx * ty - ny * tx;
+        out[v * 4] = tx;
+        out[v * 4 + 1] = ty;
+        out[v * 4 + 2] = tz;
+        out[v * 4 + 3] = cx * bx + cy * by + cz * bz < 0 ? -1 : 1;
+    }
+
+    /**
+     * @return the amount of vertices
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return the amount of triangles
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TangentSpace [vertices=" + vertexCount + ", triangles=" + triangleCount + "]";
+    }
+
+}
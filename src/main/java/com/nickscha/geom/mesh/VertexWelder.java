@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.mesh;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Welding of nearly identical vertices (final::immutable)
+ * <p>
+ * Vertices are interleaved float attributes, the first three of every vertex
+ * are the position. Two vertices are merged if every attribute differs by at
+ * most epsilon. Instead of a map of boxed vectors, which only merges exactly
+ * equal bits, the positions are quantized to cells of twice the epsilon and
+ * inserted into an open addressing table of primitive keys. A vertex within
+ * epsilon of another lies in the same cell or in the neighbour towards the
+ * nearer cell face on every axis, so a lookup probes at most eight cells. The
+ * whole weld runs in expected linear time.
+ * </p>
+ * <p>
+ * Vertices are visited in order and merged into the first earlier unique
+ * vertex within epsilon, whose attributes are kept. Every probed cell is
+ * searched, so the result does not depend on the order of the probes. The result is the remap
+ * table from input to unique vertices, which is applied to index buffers and
+ * further attribute streams.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class VertexWelder {
+
+    private static final int EMPTY = -1;
+
+    private final int[] remap;
+    private final int[] unique;
+
+    private VertexWelder(int[] remap, int[] unique) {
+        this.remap = remap;
+        this.unique = unique;
+    }
+
+    /**
+     * Welds vertices by position.
+     *
+     * @param positions the positions (x,y,z interleaved)
+     * @param epsilon the maximal difference per coordinate, zero merges
+     *            equal positions only
+     * @return the weld
+     * @throws IllegalArgumentException if epsilon is negative or NaN
+     */
+    public static VertexWelder weld(float[] positions, float epsilon) {
+        return weld(positions, 3, epsilon);
+    }
+
+    /**
+     * Welds vertices by position.
+     *
+     * @param positions the positions
+     * @param epsilon the maximal difference per coordinate, zero merges
+     *            equal positions only
+     * @return the weld
+     * @throws IllegalArgumentException if epsilon is negative or NaN
+     * @throws NullPointerException if any position is null
+     */
+    public static VertexWelder weld(Vec3f[] positions, float epsilon) {
+        final float[] xyz = new float[positions.length * 3];
+        for (int i = 0; i < positions.length; i++) {
+            xyz[i * 3] = positions[i].getX();
+            xyz[i * 3 + 1] = positions[i].getY();
+            xyz[i * 3 + 2] = positions[i].getZ();
+        }
+        return weld(xyz, 3, epsilon);
+    }
+
+    /**
+     * Welds vertices of interleaved attributes.
+     *
+     * @param vertices the attributes, stride values per vertex starting with
+     *            the position
+     * @param stride the amount of values per vertex, at least three
+     * @param epsilon the maximal difference per attribute, zero merges equal
+     *            vertices only
+     * @return the weld
+     * @throws IllegalArgumentException if the stride is less than three or
+     *             epsilon is negative or NaN
+     */
+    public static VertexWelder weld(float[] vertices, int stride, float epsilon) {
+        if (stride < 3) {
+            throw new IllegalArgumentException("Stride must be at least three: " + stride);
+        }
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("Invalid epsilon: " + epsilon);
+        }
+        final int n = vertices.length / stride;
+        final int capacity = Integer.highestOneBit(Math.max(n, 1) * 2 - 1) << 1;
+        final int mask = capacity - 1;
+        final long[] keys = new long[capacity];
+        final int[] heads = new int[capacity];
+        Arrays.fill(heads, EMPTY);
+        // unique vertices of the same cell are chained
+        final int[] next = new int[n];
+
+        final int[] remap = new int[n];
+        final int[] unique = new int[n];
+        int count = 0;
+        final double scale = epsilon > 0 ? 0.5 / epsilon : 0;
+        final long[] cell = new long[3];
+        final long[] neighbour = new long[3];
+
+        for (int v = 0; v < n; v++) {
+            final int o = v * stride;
+            int found = EMPTY;
+            if (scale > 0) {
+                for (int k = 0; k < 3; k++) {
+                    final double q = vertices[o + k] * scale;
+                    final double floor = Math.floor(q);
+                    cell[k] = (long) floor;
+                    neighbour[k] = q - floor < 0.5 ? cell[k] - 1 : cell[k] + 1;
+                }
+                for (int probe = 0; probe < 8; probe++) {
+                    final long key = key((probe & 1) == 0 ? cell[0] : neighbour[0],
+                            (probe & 2) == 0 ? cell[1] : neighbour[1], (probe & 4) == 0 ? cell[2] : neighbour[2]);
+                    final int u = find(vertices, stride, epsilon, o, keys, heads, next, unique, mask, key);
+                    if (u != EMPTY && (found == EMPTY || u < found)) {
+                        found = u;
+                    }
+                }
+            } else {
+                found = find(vertices, stride, 0, o, keys, heads, next, unique, mask, exactKey(vertices, o));
+            }
+            if (found != EMPTY) {
+                remap[v] = found;
+                continue;
+            }
+            final long key = scale > 0 ? key(cell[0], cell[1], cell[2]) : exactKey(vertices, o);
+            int slot = slot(key, mask);
+            while (heads[slot] != EMPTY && keys[slot] != key) {
+                slot = slot + 1 & mask;
+            }
+            next[count] = heads[slot];
+            keys[slot] = key;
+            heads[slot] = count;
+            unique[count] = v;
+            remap[v] = count++;
+        }
+        return new VertexWelder(remap, Arrays.copyOf(unique, count));
+    }
+
+    /**
+     * @return the first unique vertex within epsilon in the cell of the key
+     *         or {@link #EMPTY}
+     */
+    private static int find(float[] vertices, int stride, float epsilon, int o, long[] keys, int[] heads, int[] next,
+            int[] unique, int mask, long key) {
+        int slot = slot(key, mask);
+        while (heads[slot] != EMPTY && keys[slot] != key) {
+            slot = slot + 1 & mask;
+        }
+        // chains are pushed to the front, the last match is the first vertex
+        int found = EMPTY;
+        for (int u = heads[slot]; u != EMPTY; u = next[u]) {
+            if (matches(vertices, stride, epsilon, o, unique[u] * stride)) {
+                found = u;
+            }
+        }
+        return found;
+    }
+
+    private static boolean matches(float[] vertices, int stride, float epsilon, int a, int b) {
+        for (int k = 0; k < stride; k++) {
+            if (!(Math.abs(vertices[a + k] - vertices[b + k]) <= epsilon)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long key(long x, long y, long z) {
+        return x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL ^ z * 0x165667B19E3779F9L;
+    }
+
+    private static long exactKey(float[] vertices, int o) {
+        return key(Float.floatToIntBits(vertices[o] + 0.0f), Float.floatToIntBits(vertices[o + 1] + 0.0f),
+                Float.floatToIntBits(vertices[o + 2] + 0.0f));
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) ((key ^ key >>> 29) * 0x9E3779B97F4A7C15L >>> 32) & mask;
+    }
+
+    /**
+     * Gathers an attribute stream of the input vertices for the unique
+     * vertices.
+     *
+     * @param values the values, stride values per input vertex
+     * @param stride the amount of values per vertex
+     * @return the values of the unique vertices
+     */
+    public float[] compact(float[] values, int stride) {
+        final float[] result = new float[unique.length * stride];
+        for (int u = 0; u < unique.length; u++) {
+            System.arraycopy(values, unique[u] * stride, result, u * stride, stride);
+        }
+        return result;
+    }
+
+    /**
+     * Gathers an attribute stream of the input vertices for the unique
+     * vertices.
+     *
+     * @param values the values, stride values per input vertex
+     * @param stride the amount of values per vertex
+     * @return the values of the unique vertices
+     */
+    public int[] compact(int[] values, int stride) {
+        final int[] result = new int[unique.length * stride];
+        for (int u = 0; u < unique.length; u++) {
+            System.arraycopy(values, unique[u] * stride, result, u * stride, stride);
+        }
+        return result;
+    }
+
+    /**
+     * Maps indices of input vertices to unique vertices.
+     *
+     * @param indices the indices of input vertices
+     * @return the indices of unique vertices
+     * @throws IndexOutOfBoundsException if an index is not an input vertex
+     */
+    public int[] remap(int[] indices) {
+        final int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = remap[indices[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Maps triangles of input vertices to unique vertices and drops the
+     * triangles that collapsed to a line or point.
+     *
+     * @param indices the indices of input vertices, three per triangle
+     * @return the indices of unique vertices
+     * @throws IndexOutOfBoundsException if an index is not an input vertex
+     */
+    public int[] remapTriangles(int[] indices) {
+        final int[] result = new int[indices.length - indices.length % 3];
+        int n = 0;
+        for (int i = 0; i < result.length; i += 3) {
+            final int a = remap[indices[i]], b = remap[indices[i + 1]], c = remap[indices[i + 2]];
+            if (a != b && b != c && c != a) {
+                result[n++] = a;
+                result[n++] = b;
+                result[n++] = c;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @return the table mapping every input vertex to its unique vertex
+     */
+    public int[] getRemap() {
+        return remap.clone();
+    }
+
+    /**
+     * @return the input vertex kept for every unique vertex
+     */
+    public int[] getUnique() {
+        return unique.clone();
+    }
+
+    /**
+     * @param vertex an input vertex
+     * @return the unique vertex it was merged into
+     * @throws IndexOutOfBoundsException if the index is not an input vertex
+     */
+    public int getRemapped(int vertex) {
+        return remap[vertex];
+    }
+
+    /**
+     * @return the amount of input vertices
+     */
+    public int getInputCount() {
+        return remap.length;
+    }
+
+    /**
+     * @return the amount of unique vertices
+     */
+    public int getVertexCount() {
+        return unique.length;
+    }
+
+    @Override
+    public String toString() {
+        return "VertexWelder [input=" + remap.length + ", unique=" + unique.length + "]";
+    }
+
+}
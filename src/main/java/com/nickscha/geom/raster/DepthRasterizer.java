@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.raster;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.mat.Mat4f;
+
+/**
+ * Depth only software rasterizer for occlusion culling (final::mutable)
+ * <p>
+ * Occluder triangles are transformed by a view-projection matrix (for example
+ * {@link Mat4f#perspectiveMatrix(float, float, float, float)} multiplied with
+ * a view matrix), clipped against the near plane and rasterized into a low
+ * resolution float depth buffer. Depth is the normalized device depth mapped
+ * to <code>[0, 1]</code>, smaller is closer and the cleared buffer holds
+ * {@value #FAR}. Row zero is the top of the screen. Pixels are covered when
+ * their center lies inside a triangle, both windings are drawn.
+ * </p>
+ * <b>Tiles</b>
+ * <p>
+ * Triangles are set up in parallel blocks and binned into tiles of
+ * {@value #TILE_SIZE}&sup2; pixels. Every tile is rasterized by a single
+ * thread, so no synchronization is needed and the result does not depend on
+ * the pool. Within a tile the three edge functions of a triangle are solved
+ * per row for the covered span, the inner loop over the span is a branch free
+ * depth plane evaluation and minimum over contiguous floats.
+ * </p>
+ * <b>Hierarchical depth</b>
+ * <p>
+ * After every {@link #render(float[], int[], ForkJoinPool)} the pyramid of
+ * farthest depths is rebuilt, level <code>k</code> holds the maximum of a
+ * <code>2^k</code>&sup2; pixel block. {@link #isVisible(float, float, float,
+ * float, float, float)} projects a box, selects the level at which its screen
+ * rectangle spans at most 2x2 texels and compares the nearest depth of the box
+ * against them. The test is conservative at texel granularity: boxes that
+ * cross the near plane are always visible.
+ * </p>
+ * <p>
+ * The rasterizer is not thread safe while rendering, visibility tests only
+ * read and may run concurrently.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class DepthRasterizer {
+
+    /**
+     * Edge length of a tile in pixels
+     */
+    public static final int TILE_SIZE = 16;
+
+    /**
+     * Depth of the cleared buffer
+     */
+    public static final float FAR = 1.0f;
+
+    /**
+     * Amount of vertices or triangles per parallel block of the setup
+     */
+    static final int BLOCK_SIZE = 1 << 10;
+
+    private static final int TILE_BITS = 4;
+
+    /**
+     * Floats per set up triangle: x, y and depth of three vertices
+     */
+    private static final int STRIDE = 9;
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final float[][] levels;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+    private final float[] matrix = new float[16];
+
+    /**
+     * Creates a rasterizer with a cleared depth buffer and the identity as
+     * view-projection.
+     *
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public DepthRasterizer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width: " + width + ", height: " + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) >> TILE_BITS;
+        this.tilesY = (height + TILE_SIZE - 1) >> TILE_BITS;
+
+        int count = 1;
+        for (int w = width, h = height; w > 1 || h > 1; w = (w + 1) >> 1, h = (h + 1) >> 1) {
+            count++;
+        }
+        this.levels = new float[count][];
+        this.levelWidths = new int[count];
+        this.levelHeights = new int[count];
+        for (int level = 0, w = width, h = height; level < count; level++, w = (w + 1) >> 1, h = (h + 1) >> 1) {
+            levels[level] = new float[w * h];
+            levelWidths[level] = w;
+            levelHeights[level] = h;
+        }
+        clear(Mat4f.IDENTITY);
+    }
+
+    /**
+     * Clears the depth buffer and sets the view-projection used by the
+     * following renders and visibility tests.
+     *
+     * @param viewProjection the view-projection matrix
+     * @throws NullPointerException if the matrix is null
+     */
+    public void clear(Mat4f viewProjection) {
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                matrix[row * 4 + col] = viewProjection.get(row, col);
+            }
+        }
+        for (final float[] level : levels) {
+            Arrays.fill(level, FAR);
+        }
+    }
+
+    /**
+     * Rasterizes indexed triangles and rebuilds the depth pyramid.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the triangle indices
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the amount of triangles that reached the screen after clipping
+     * @throws IllegalArgumentException if an index is out of range
+     */
+    public int render(float[] positions, int[] indices, ForkJoinPool pool) {
+        final int vertices = positions.length / 3;
+        for (final int index : indices) {
+            if (index < 0 || index >= vertices) {
+                throw new IllegalArgumentException("index: " + index + ", vertices: " + vertices);
+            }
+        }
+        final int triangles = indices.length / 3;
+
+        final float[] clip = new float[vertices * 4];
+        run(pool, blocks(vertices), block -> {
+            for (int v = block * BLOCK_SIZE, end = Math.min(vertices, v + BLOCK_SIZE); v < end; v++) {
+                transform(positions, v, clip);
+            }
+        });
+
+        // a triangle clipped by the near plane becomes at most two triangles
+        final float[] screen = new float[triangles * 2 * STRIDE];
+        final int[] rects = new int[triangles * 2 * 4];
+        run(pool, blocks(triangles), block -> {
+            final float[] polygon = new float[16];
+            for (int t = block * BLOCK_SIZE, end = Math.min(triangles, t + BLOCK_SIZE); t < end; t++) {
+                setup(clip, indices, t, polygon, screen, rects);
+            }
+        });
+
+        // counting sort of the triangles into tiles
+        final int tiles = tilesX * tilesY;
+        final int[] binStart = new int[tiles + 1];
+        int drawn = 0;
+        for (int s = 0; s < triangles * 2; s++) {
+            final int r = s * 4;
+            if (rects[r] <= rects[r + 2]) {
+                drawn++;
+                for (int ty = rects[r + 1] >> TILE_BITS, ty1 = rects[r + 3] >> TILE_BITS; ty <= ty1; ty++) {
+                    for (int tx = rects[r] >> TILE_BITS, tx1 = rects[r + 2] >> TILE_BITS; tx <= tx1; tx++) {
+                        binStart[ty * tilesX + tx + 1]++;
+                    }
+                }
+            }
+        }
+        for (int tile = 0; tile < tiles; tile++) {
+            binStart[tile + 1] += binStart[tile];
+        }
+        final int[] bins = new int[binStart[tiles]];
+        final int[] fill = Arrays.copyOf(binStart, tiles);
+        for (int s = 0; s < triangles * 2; s++) {
+            final int r = s * 4;
+            if (rects[r] <= rects[r + 2]) {
+                for (int ty = rects[r + 1] >> TILE_BITS, ty1 = rects[r + 3] >> TILE_BITS; ty <= ty1; ty++) {
+                    for (int tx = rects[r] >> TILE_BITS, tx1 = rects[r + 2] >> TILE_BITS; tx <= tx1; tx++) {
+                        bins[fill[ty * tilesX + tx]++] = s;
+                    }
+                }
+            }
+        }
+
+        run(pool, bins.length == 0 ? 0 : tiles, tile -> {
+            for (int i = binStart[tile], end = binStart[tile + 1]; i < end; i++) {
+                rasterize(screen, rects, bins[i], tile);
+            }
+        });
+        buildPyramid();
+        return drawn;
+    }
+
+    private static int blocks(int count) {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer action) {
+        if (pool == null || count <= 1) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+        }
+    }
+
+    private void transform(float[] positions, int vertex, float[] clip) {
+        final float x = positions[vertex * 3], y = positions[vertex * 3 + 1], z = positions[vertex * 3 + 2];
+        final float[] m = matrix;
+        for (int row = 0; row < 4; row++) {
+            clip[vertex * 4 + row] = m[row * 4] * x + m[row * 4 + 1] * y + m[row * 4 + 2] * z + m[row * 4 + 3];
+        }
+    }
+
+    /**
+     * Clips triangle <code>t</code> against the near plane and writes the
+     * screen space triangles to slots <code>2t</code> and
+     * <code>2t + 1</code>. The pixel rectangle of an unused slot is empty.
+     */
+    private void setup(float[] clip, int[] indices, int t, float[] polygon, float[] screen, int[] rects) {
+        final int a = indices[t * 3] * 4, b = indices[t * 3 + 1] * 4, c = indices[t * 3 + 2] * 4;
+        rects[t * 8] = rects[t * 8 + 4] = 1;
+        rects[t * 8 + 2] = rects[t * 8 + 6] = 0;
+
+        // trivial reject against the side and far planes
+        for (int axis = 0; axis < 3; axis++) {
+            final float wa = clip[a + 3], wb = clip[b + 3], wc = clip[c + 3];
+            if (clip[a + axis] > wa && clip[b + axis] > wb && clip[c + axis] > wc) {
+                return;
+            }
+            if (axis < 2 && clip[a + axis] < -wa && clip[b + axis] < -wb && clip[c + axis] < -wc) {
+                return;
+            }
+        }
+
+        // Sutherland-Hodgman against z >= -w, a triangle gains at most one vertex
+        int n = 0;
+        for (int i = 0; i < 3; i++) {
+            final int p = i == 0 ? a : i == 1 ? b : c, q = i == 0 ? b : i == 1 ? c : a;
+            final float dp = clip[p + 2] + clip[p + 3], dq = clip[q + 2] + clip[q + 3];
+            if (dp >= 0) {
+                System.arraycopy(clip, p, polygon, n * 4, 4);
+                n++;
+            }
+            if (dp >= 0 != dq >= 0) {
+                final float s = dp / (dp - dq);
+                for (int k = 0; k < 4; k++) {
+                    polygon[n * 4 + k] = clip[p + k] + (clip[q + k] - clip[p + k]) * s;
+                }
+                n++;
+            }
+        }
+        for (int i = 2; i < n; i++) {
+            project(polygon, 0, i - 1, i, t * 2 + i - 2, screen, rects);
+        }
+    }
+
+    private void project(float[] polygon, int i0, int i1, int i2, int slot, float[] screen, int[] rects) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < 3; k++) {
+            final int p = (k == 0 ? i0 : k == 1 ? i1 : i2) * 4;
+            final float w = polygon[p + 3];
+            if (!(w > 0)) {
+                return;
+            }
+            final float x = (polygon[p] / w * 0.5f + 0.5f) * width;
+            final float y = (0.5f - polygon[p + 1] / w * 0.5f) * height;
+            screen[slot * STRIDE + k * 3] = x;
+            screen[slot * STRIDE + k * 3 + 1] = y;
+            screen[slot * STRIDE + k * 3 + 2] = polygon[p + 2] / w * 0.5f + 0.5f;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        // pixels whose center lies inside the bounds
+        final int r = slot * 4;
+        rects[r] = (int) Math.max(0, Math.ceil(minX - 0.5));
+        rects[r + 1] = (int) Math.max(0, Math.ceil(minY - 0.5));
+        rects[r + 2] = (int) Math.min(width - 1, Math.floor(maxX - 0.5));
+        rects[r + 3] = (int) Math.min(height - 1, Math.floor(maxY - 0.5));
+        if (rects[r + 1] > rects[r + 3]) {
+            rects[r + 2] = rects[r] - 1;
+        }
+    }
+
+    private void rasterize(float[] screen, int[] rects, int slot, int tile) {
+        final int s = slot * STRIDE;
+        double x0 = screen[s], y0 = screen[s + 1], z0 = screen[s + 2];
+        double x1 = screen[s + 3], y1 = screen[s + 4], z1 = screen[s + 5];
+        double x2 = screen[s + 6], y2 = screen[s + 7], z2 = screen[s + 8];
+        double area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (area == 0 || Double.isNaN(area)) {
+            return;
+        }
+        if (area < 0) {
+            double tmp = x1;
+            x1 = x2;
+            x2 = tmp;
+            tmp = y1;
+            y1 = y2;
+            y2 = tmp;
+            tmp = z1;
+            z1 = z2;
+            z2 = tmp;
+            area = -area;
+        }
+        // edge i is positive on the inner side: a * px + b * py + c >= 0
+        final double a0 = y0 - y1, b0 = x1 - x0, c0 = (y1 - y0) * x0 - (x1 - x0) * y0;
+        final double a1 = y1 - y2, b1 = x2 - x1, c1 = (y2 - y1) * x1 - (x2 - x1) * y1;
+        final double a2 = y2 - y0, b2 = x0 - x2, c2 = (y0 - y2) * x2 - (x0 - x2) * y2;
+        final double dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        final double dzdy = ((z2 - z0) * (x1 - x0) - (z1 - z0) * (x2 - x0)) / area;
+
+        final int r = slot * 4;
+        final int tileX = (tile % tilesX) << TILE_BITS, tileY = (tile / tilesX) << TILE_BITS;
+        final int minX = Math.max(rects[r], tileX), maxX = Math.min(rects[r + 2], tileX + TILE_SIZE - 1);
+        final int minY = Math.max(rects[r + 1], tileY), maxY = Math.min(rects[r + 3], tileY + TILE_SIZE - 1);
+        final float[] depth = levels[0];
+        final float dx = (float) dzdx;
+
+        for (int y = minY; y <= maxY; y++) {
+            final double cy = y + 0.5;
+            double from = minX, to = maxX;
+            from = span(a0, b0 * cy + c0, from, to);
+            to = spanEnd(a0, b0 * cy + c0, to);
+            from = span(a1, b1 * cy + c1, from, to);
+            to = spanEnd(a1, b1 * cy + c1, to);
+            from = span(a2, b2 * cy + c2, from, to);
+            to = spanEnd(a2, b2 * cy + c2, to);
+            if (from > to) {
+                continue;
+            }
+            final int start = (int) from, end = (int) to;
+            // depth at pixel x is rowDepth + x * dx
+            final float rowDepth = (float) (z0 + dzdx * (0.5 - x0) + dzdy * (cy - y0));
+            final int offset = y * width;
+            for (int x = start; x <= end; x++) {
+                final float z = rowDepth + x * dx;
+                final float d = depth[offset + x];
+                depth[offset + x] = z < d ? z : d;
+            }
+        }
+    }
+
+    /**
+     * @return the first pixel at or after <code>from</code> whose center is
+     *         on the inner side of the edge, or a value above <code>to</code>
+     *         if there is none
+     */
+    private static double span(double a, double rowValue, double from, double to) {
+        if (a > 0) {
+            return Math.max(from, Math.ceil(-rowValue / a - 0.5));
+        }
+        if (a == 0 && rowValue < 0) {
+            return to + 1;
+        }
+        return from;
+    }
+
+    /**
+     * @return the last pixel at or before <code>to</code> whose center is on
+     *         the inner side of the edge
+     */
+    private static double spanEnd(double a, double rowValue, double to) {
+        return a < 0 ? Math.min(to, Math.floor(-rowValue / a - 0.5)) : to;
+    }
+
+    private void buildPyramid() {
+        for (int level = 1; level < levels.length; level++) {
+            final float[] src = levels[level - 1], dst = levels[level];
+            final int srcWidth = levelWidths[level - 1], srcHeight = levelHeights[level - 1];
+            final int dstWidth = levelWidths[level], dstHeight = levelHeights[level];
+            for (int y = 0; y < dstHeight; y++) {
+                final int row0 = y * 2 * srcWidth, row1 = Math.min(y * 2 + 1, srcHeight - 1) * srcWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    final int x0 = x * 2, x1 = Math.min(x0 + 1, srcWidth - 1);
+                    dst[y * dstWidth + x] = Math.max(Math.max(src[row0 + x0], src[row0 + x1]),
+                            Math.max(src[row1 + x0], src[row1 + x1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests a box against the depth pyramid.
+     *
+     * @param minX the minimal x component
+     * @param minY the minimal y component
+     * @param minZ the minimal z component
+     * @param maxX the maximal x component
+     * @param maxY the maximal y component
+     * @param maxZ the maximal z component
+     * @return false if the box is outside of the screen or behind the
+     *         rendered depth, true otherwise
+     */
+    public boolean isVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        final float[] m = matrix;
+        float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY, nearest = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            final float x = (corner & 1) == 0 ? minX : maxX;
+            final float y = (corner & 2) == 0 ? minY : maxY;
+            final float z = (corner & 4) == 0 ? minZ : maxZ;
+            final float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+            final float cz = m[8] * x + m[9] * y + m[10] * z + m[11];
+            if (!(w > 0) || cz < -w) {
+                // the box crosses the near plane
+                return true;
+            }
+            final float sx = ((m[0] * x + m[1] * y + m[2] * z + m[3]) / w * 0.5f + 0.5f) * width;
+            final float sy = (0.5f - (m[4] * x + m[5] * y + m[6] * z + m[7]) / w * 0.5f) * height;
+            left = Math.min(left, sx);
+            right = Math.max(right, sx);
+            top = Math.min(top, sy);
+            bottom = Math.max(bottom, sy);
+            nearest = Math.min(nearest, cz / w * 0.5f + 0.5f);
+        }
+        if (right < 0 || bottom < 0 || left > width || top > height) {
+            return false;
+        }
+        int x0 = (int) Math.max(0, Math.floor(left)), y0 = (int) Math.max(0, Math.floor(top));
+        int x1 = (int) Math.min(width - 1, Math.floor(right)), y1 = (int) Math.min(height - 1, Math.floor(bottom));
+
+        int level = 0;
+        while (level < levels.length - 1 && (x1 - x0 > 1 || y1 - y0 > 1)) {
+            x0 >>= 1;
+            y0 >>= 1;
+            x1 >>= 1;
+            y1 >>= 1;
+            level++;
+        }
+        final float[] depth = levels[level];
+        final int levelWidth = levelWidths[level];
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                if (nearest <= depth[y * levelWidth + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests a box against the depth pyramid.
+     *
+     * @param box the box
+     * @return false if the box is outside of the screen or behind the
+     *         rendered depth, true otherwise
+     * @throws NullPointerException if the box is null
+     */
+    public boolean isVisible(Aabb3f box) {
+        return isVisible(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * Tests <code>count</code> boxes starting at <code>offset</code> against
+     * the depth pyramid and writes the visibility into the specified bitset.
+     *
+     * @param minX the minimal x components
+     * @param minY the minimal y components
+     * @param minZ the minimal z components
+     * @param maxX the maximal x components
+     * @param maxY the maximal y components
+     * @param maxZ the maximal z components
+     * @param offset the index of the first box
+     * @param count the amount of boxes
+     * @param visible the bitset to write (bit i is box i), bits outside of the
+     *            range are kept
+     * @return the amount of visible boxes
+     */
+    public int cull(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count,
+            long[] visible) {
+        int visibleCount = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            if (isVisible(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+                visible[i >> 6] |= 1L << i;
+                visibleCount++;
+            } else {
+                visible[i >> 6] &= ~(1L << i);
+            }
+        }
+        return visibleCount;
+    }
+
+    /**
+     * @param x the column
+     * @param y the row, zero at the top
+     * @return the depth of the pixel
+     * @throws IndexOutOfBoundsException if the pixel is outside of the buffer
+     */
+    public float getDepth(int x, int y) {
+        return getDepth(0, x, y);
+    }
+
+    /**
+     * @param level the pyramid level, zero is the full resolution
+     * @param x the column of the level
+     * @param y the row of the level, zero at the top
+     * @return the farthest depth of the texel
+     * @throws IndexOutOfBoundsException if the texel is outside of the level
+     */
+    public float getDepth(int level, int x, int y) {
+        if (level < 0 || level >= levels.length || x < 0 || y < 0 || x >= levelWidths[level]
+                || y >= levelHeights[level]) {
+            throw new IndexOutOfBoundsException("level: " + level + ", x: " + x + ", y: " + y);
+        }
+        return levels[level][y * levelWidths[level] + x];
+    }
+
+    /**
+     * @return a copy of the full resolution depth buffer, row by row
+     */
+    public float[] getDepthBuffer() {
+        return levels[0].clone();
+    }
+
+    /**
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the amount of pyramid levels including the full resolution
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    @Override
+    public String toString() {
+        return "DepthRasterizer [width=" + width + ", height=" + height + ", levels=" + levels.length + "]";
+    }
+
+}
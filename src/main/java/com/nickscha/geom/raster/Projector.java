@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.raster;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Bulk world to screen projection (final::immutable)
+ * <p>
+ * A projector holds a precomputed view-projection matrix and a viewport and
+ * transforms interleaved points in one pass to clip space, normalized device
+ * coordinates or pixels. Every pass also writes a visibility bitset: a point
+ * is visible if it lies inside of the clip volume
+ * <code>-w &lt;= x, y, z &lt;= w</code> with <code>w &gt; 0</code>.
+ * </p>
+ * <b>Indexing</b>
+ * <p>
+ * Point <code>i</code> is read from <code>xyz[i * 3]</code>, its result is
+ * written to <code>result[i * stride]</code> and its visibility to bit
+ * <code>i</code> of the bitset, bits outside of
+ * <code>[offset, offset + count)</code> are kept. Normalized device
+ * coordinates and pixels of points with <code>w &lt;= 0</code> are NaN, as
+ * they have no position on the screen.
+ * </p>
+ * <b>Conventions</b>
+ * <p>
+ * Pixels match {@link DepthRasterizer}: row zero is the top of the screen,
+ * pixel <code>(x, y)</code> covers <code>[x, x + 1) * [y, y + 1)</code> and
+ * the depth is the normalized device depth mapped to <code>[0, 1]</code>.
+ * Normalized device coordinates match
+ * {@link Vec3f#screenSpace(Mat4f, Mat4f)}.
+ * </p>
+ * <p>
+ * Above {@value #BLOCK_SIZE} points the work is split into blocks aligned to
+ * 64 points, so no two threads write the same bitset word.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Projector {
+
+    /**
+     * Floats per point of clip space results: x, y, z and w
+     */
+    public static final int CLIP_STRIDE = 4;
+
+    /**
+     * Floats per point of normalized device coordinate results: x, y and z
+     */
+    public static final int NDC_STRIDE = 3;
+
+    /**
+     * Floats per point of pixel results: x, y and depth
+     */
+    public static final int PIXEL_STRIDE = 3;
+
+    /**
+     * Amount of points per parallel block, a multiple of 64
+     */
+    static final int BLOCK_SIZE = 1 << 14;
+
+    private static final int CLIP = 0;
+    private static final int NDC = 1;
+    private static final int PIXEL = 2;
+
+    private final float m00, m01, m02, m03;
+    private final float m10, m11, m12, m13;
+    private final float m20, m21, m22, m23;
+    private final float m30, m31, m32, m33;
+    private final int width;
+    private final int height;
+
+    private Projector(Mat4f matrix, int width, int height) {
+        this.m00 = matrix.get(0, 0);
+        this.m01 = matrix.get(0, 1);
+        this.m02 = matrix.get(0, 2);
+        this.m03 = matrix.get(0, 3);
+        this.m10 = matrix.get(1, 0);
+        this.m11 = matrix.get(1, 1);
+        this.m12 = matrix.get(1, 2);
+        this.m13 = matrix.get(1, 3);
+        this.m20 = matrix.get(2, 0);
+        this.m21 = matrix.get(2, 1);
+        this.m22 = matrix.get(2, 2);
+        this.m23 = matrix.get(2, 3);
+        this.m30 = matrix.get(3, 0);
+        this.m31 = matrix.get(3, 1);
+        this.m32 = matrix.get(3, 2);
+        this.m33 = matrix.get(3, 3);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param viewProjection the view-projection matrix
+     * @param width the viewport width in pixels
+     * @param height the viewport height in pixels
+     * @return the new projector
+     * @throws NullPointerException if the matrix is null
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public static Projector of(Mat4f viewProjection, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width: " + width + ", height: " + height);
+        }
+        return new Projector(viewProjection, width, height);
+    }
+
+    /**
+     * @param view the view matrix
+     * @param projection the projection matrix
+     * @param width the viewport width in pixels
+     * @param height the viewport height in pixels
+     * @return the new projector of <code>projection * view</code>
+     * @throws NullPointerException if any matrix is null
+     * @throws IllegalArgumentException if a dimension is not positive
+     */
+    public static Projector of(Mat4f view, Mat4f projection, int width, int height) {
+        return of(projection.mul(view), width, height);
+    }
+
+    /**
+     * Transforms points to clip space.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param clip receives x, y, z and w per point
+     * @param visible the visibility bitset to write
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the amount of visible points
+     */
+    public int toClip(float[] xyz, int offset, int count, float[] clip, long[] visible, ForkJoinPool pool) {
+        return run(CLIP, xyz, offset, count, clip, visible, pool);
+    }
+
+    /**
+     * Transforms points to normalized device coordinates.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param ndc receives x, y and z per point
+     * @param visible the visibility bitset to write
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the amount of visible points
+     */
+    public int toNdc(float[] xyz, int offset, int count, float[] ndc, long[] visible, ForkJoinPool pool) {
+        return run(NDC, xyz, offset, count, ndc, visible, pool);
+    }
+
+    /**
+     * Transforms points to pixels of the viewport.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param pixels receives x, y and depth per point
+     * @param visible the visibility bitset to write
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the amount of visible points
+     */
+    public int toPixels(float[] xyz, int offset, int count, float[] pixels, long[] visible, ForkJoinPool pool) {
+        return run(PIXEL, xyz, offset, count, pixels, visible, pool);
+    }
+
+    private int run(int mode, float[] xyz, int offset, int count, float[] result, long[] visible, ForkJoinPool pool) {
+        final int end = offset + count;
+        final int first = offset / BLOCK_SIZE, blocks = count <= 0 ? 0 : (end - 1) / BLOCK_SIZE - first + 1;
+        if (pool == null || blocks <= 1) {
+            return project(mode, xyz, offset, end, result, visible);
+        }
+        return pool.submit(() -> IntStream.range(first, first + blocks).parallel()
+                .map(block -> project(mode, xyz, Math.max(offset, block * BLOCK_SIZE),
+                        Math.min(end, (block + 1) * BLOCK_SIZE), result, visible))
+                .sum()).join();
+    }
+
+    private int project(int mode, float[] xyz, int from, int to, float[] result, long[] visible) {
+        final float halfWidth = width * 0.5f, halfHeight = height * 0.5f;
+        int visibleCount = 0;
+        for (int start = from; start < to;) {
+            final int wordEnd = Math.min(to, ((start >> 6) + 1) << 6);
+            long bits = 0;
+            for (int i = start; i < wordEnd; i++) {
+                final float x = xyz[i * 3], y = xyz[i * 3 + 1], z = xyz[i * 3 + 2];
+                final float cx = m00 * x + m01 * y + m02 * z + m03;
+                final float cy = m10 * x + m11 * y + m12 * z + m13;
+                final float cz = m20 * x + m21 * y + m22 * z + m23;
+                final float cw = m30 * x + m31 * y + m32 * z + m33;
+                final boolean inside = cw > 0 & cx >= -cw & cx <= cw & cy >= -cw & cy <= cw & cz >= -cw & cz <= cw;
+                bits |= (inside ? 1L : 0L) << i;
+
+                if (mode == CLIP) {
+                    result[i * 4] = cx;
+                    result[i * 4 + 1] = cy;
+                    result[i * 4 + 2] = cz;
+                    result[i * 4 + 3] = cw;
+                } else {
+                    final float invW = cw > 0 ? 1.0f / cw : Float.NaN;
+                    if (mode == NDC) {
+                        result[i * 3] = cx * invW;
+                        result[i * 3 + 1] = cy * invW;
+                        result[i * 3 + 2] = cz * invW;
+                    } else {
+                        result[i * 3] = (cx * invW + 1.0f) * halfWidth;
+                        result[i * 3 + 1] = (1.0f - cy * invW) * halfHeight;
+                        result[i * 3 + 2] = cz * invW * 0.5f + 0.5f;
+                    }
+                }
+            }
+            // keeps the bits outside of [start, wordEnd)
+            final long mask = (wordEnd & 63) == 0 ? -1L << start : (-1L << start) & ~(-1L << wordEnd);
+            visible[start >> 6] = visible[start >> 6] & ~mask | bits;
+            visibleCount += Long.bitCount(bits);
+            start = wordEnd;
+        }
+        return visibleCount;
+    }
+
+    /**
+     * @return the viewport width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the viewport height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "Projector [width=" + width + ", height=" + height + "]";
+    }
+
+}
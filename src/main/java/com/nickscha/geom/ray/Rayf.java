@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.ray;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec4f;
+
+/**
+ * Ray of 3 element float origin and direction (final::immutable)
+ * <p>
+ * A point on the ray is <code>origin + t * direction</code> for t &gt;= 0. All
+ * intersection methods return the smallest non negative t of the hit or
+ * {@link #MISS} (positive infinity) if the primitive is not hit, so results
+ * can be compared with <code>&lt;</code> without special casing misses. The
+ * direction does not need to be normalized, t is measured in units of its
+ * length.
+ * </p>
+ * <b>Bulk intersection</b>
+ * <p>
+ * Every test is available in two bulk forms. The instance methods test this
+ * ray against many primitives, the static methods test many rays (passed as
+ * one array per origin and direction component) against one primitive. Both
+ * write t for element <code>i</code> to <code>t[i]</code> and compute all
+ * elements without data dependent branches so the JIT is able to vectorize
+ * the loops.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Rayf {
+
+    /**
+     * Result of an intersection test if nothing is hit
+     */
+    public static final float MISS = Float.POSITIVE_INFINITY;
+
+    /**
+     * Determinants below this value are treated as parallel to the triangle
+     */
+    static final float EPSILON = 1e-12f;
+
+    private final float ox, oy, oz;
+    private final float dx, dy, dz;
+
+    /**
+     * Creates a new ray for the specified components.
+     *
+     * @param ox the x component of the origin
+     * @param oy the y component of the origin
+     * @param oz the z component of the origin
+     * @param dx the x component of the direction
+     * @param dy the y component of the direction
+     * @param dz the z component of the direction
+     */
+    public Rayf(float ox, float oy, float oz, float dx, float dy, float dz) {
+        this.ox = ox;
+        this.oy = oy;
+        this.oz = oz;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+    }
+
+    /**
+     * Creates a new ray for the specified origin and direction.
+     *
+     * @param origin the origin
+     * @param direction the direction
+     * @throws NullPointerException if any passed vector is null
+     */
+    public Rayf(Vec3f origin, Vec3f direction) {
+        this(origin.getX(), origin.getY(), origin.getZ(), direction.getX(), direction.getY(), direction.getZ());
+    }
+
+    public static Rayf of(float ox, float oy, float oz, float dx, float dy, float dz) {
+        return new Rayf(ox, oy, oz, dx, dy, dz);
+    }
+
+    public static Rayf of(Vec3f origin, Vec3f direction) {
+        return new Rayf(origin, direction);
+    }
+
+    /**
+     * Creates a picking ray starting at the specified origin through the near
+     * plane of the frustum of the specified matrix.
+     *
+     * @param origin the origin, usually the camera position
+     * @param matrix the (view-)projection matrix
+     * @param x the interpolation factor from the left to the right frustum
+     *            plane within [0..1]
+     * @param y the interpolation factor from the bottom to the top frustum
+     *            plane within [0..1]
+     * @return the new ray with normalized direction
+     * @see Mat4f#frustumRayDir(float, float)
+     */
+    public static Rayf ofFrustum(Vec3f origin, Mat4f matrix, float x, float y) {
+        return new Rayf(origin, matrix.frustumRayDir(x, y));
+    }
+
+    /**
+     * Returns the point at the specified distance along the ray.
+     *
+     * @param t the distance in units of the direction length
+     * @return the new point
+     */
+    public Vec3f pointAt(float t) {
+        return new Vec3f(ox + dx * t, oy + dy * t, oz + dz * t);
+    }
+
+    /**
+     * Intersects the ray with the triangle using the Moeller-Trumbore
+     * algorithm. Both sides of the triangle are hit.
+     *
+     * @param a the first vertex
+     * @param b the second vertex
+     * @param c the third vertex
+     * @return the distance to the hit or {@link #MISS}
+     * @throws NullPointerException if any passed vector is null
+     */
+    public float intersectTriangle(Vec3f a, Vec3f b, Vec3f c) {
+        return triangle(ox, oy, oz, dx, dy, dz, a.getX(), a.getY(), a.getZ(), b.getX() - a.getX(), b.getY() - a.getY(),
+                b.getZ() - a.getZ(), c.getX() - a.getX(), c.getY() - a.getY(), c.getZ() - a.getZ());
+    }
+
+    /**
+     * Intersects the ray with the box using the slab method.
+     *
+     * @param box the box
+     * @return the entry distance (zero if the origin is inside) or
+     *         {@link #MISS}
+     * @throws NullPointerException if the passed box is null
+     */
+    public float intersectBox(Aabb3f box) {
+        return box(ox, oy, oz, 1.0f / dx, 1.0f / dy, 1.0f / dz, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(),
+                box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * Intersects the ray with the sphere.
+     *
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     * @return the distance to the first hit (the exit if the origin is inside)
+     *         or {@link #MISS}
+     * @throws NullPointerException if the passed vector is null
+     */
+    public float intersectSphere(Vec3f center, float radius) {
+        return sphere(ox, oy, oz, dx, dy, dz, center.getX(), center.getY(), center.getZ(), radius);
+    }
+
+    /**
+     * Intersects the ray with the plane <code>a*x + b*y + c*z + d = 0</code>.
+     *
+     * @param plane the plane equation (a,b,c,d)
+     * @return the distance to the hit or {@link #MISS} if the ray is parallel
+     *         or points away
+     * @throws NullPointerException if the passed vector is null
+     */
+    public float intersectPlane(Vec4f plane) {
+        return plane(ox, oy, oz, dx, dy, dz, plane.getX(), plane.getY(), plane.getZ(), plane.getW());
+    }
+
+    /**
+     * Intersects the ray with <code>count</code> triangles stored as nine
+     * floats each (three vertices) starting at triangle <code>offset</code>.
+     *
+     * @param triangles the triangle vertices
+     * @param offset the index of the first triangle
+     * @param count the amount of triangles
+     * @param t receives the distance of triangle i at index i
+     * @return the index of the nearest hit triangle or -1
+     */
+    public int intersectTriangles(float[] triangles, int offset, int count, float[] t) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final int o = i * 9;
+            final float ax = triangles[o], ay = triangles[o + 1], az = triangles[o + 2];
+            t[i] = triangle(ox, oy, oz, dx, dy, dz, ax, ay, az, triangles[o + 3] - ax, triangles[o + 4] - ay,
+                    triangles[o + 5] - az, triangles[o + 6] - ax, triangles[o + 7] - ay, triangles[o + 8] - az);
+        }
+        return nearest(t, offset, end);
+    }
+
+    /**
+     * Intersects the ray with <code>count</code> boxes stored as structure of
+     * arrays starting at index <code>offset</code>.
+     *
+     * @param minX the minimal x components
+     * @param minY the minimal y components
+     * @param minZ the minimal z components
+     * @param maxX the maximal x components
+     * @param maxY the maximal y components
+     * @param maxZ the maximal z components
+     * @param offset the index of the first box
+     * @param count the amount of boxes
+     * @param t receives the entry distance of box i at index i
+     * @return the index of the nearest hit box or -1
+     */
+    public int intersectBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset,
+            int count, float[] t) {
+        final float ix = 1.0f / dx, iy = 1.0f / dy, iz = 1.0f / dz;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = box(ox, oy, oz, ix, iy, iz, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+        }
+        return nearest(t, offset, end);
+    }
+
+    /**
+     * Intersects the ray with <code>count</code> spheres stored as structure of
+     * arrays starting at index <code>offset</code>.
+     *
+     * @param x the x components of the centers
+     * @param y the y components of the centers
+     * @param z the z components of the centers
+     * @param radius the radii
+     * @param offset the index of the first sphere
+     * @param count the amount of spheres
+     * @param t receives the distance of sphere i at index i
+     * @return the index of the nearest hit sphere or -1
+     */
+    public int intersectSpheres(float[] x, float[] y, float[] z, float[] radius, int offset, int count, float[] t) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = sphere(ox, oy, oz, dx, dy, dz, x[i], y[i], z[i], radius[i]);
+        }
+        return nearest(t, offset, end);
+    }
+
+    /**
+     * Intersects the ray with <code>count</code> planes stored as structure of
+     * arrays starting at index <code>offset</code>.
+     *
+     * @param a the x components of the plane normals
+     * @param b the y components of the plane normals
+     * @param c the z components of the plane normals
+     * @param d the plane distances
+     * @param offset the index of the first plane
+     * @param count the amount of planes
+     * @param t receives the distance of plane i at index i
+     * @return the index of the nearest hit plane or -1
+     */
+    public int intersectPlanes(float[] a, float[] b, float[] c, float[] d, int offset, int count, float[] t) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = plane(ox, oy, oz, dx, dy, dz, a[i], b[i], c[i], d[i]);
+        }
+        return nearest(t, offset, end);
+    }
+
+    /**
+     * Intersects <code>count</code> rays stored as structure of arrays with
+     * one triangle.
+     *
+     * @param ox the x components of the origins
+     * @param oy the y components of the origins
+     * @param oz the z components of the origins
+     * @param dx the x components of the directions
+     * @param dy the y components of the directions
+     * @param dz the z components of the directions
+     * @param offset the index of the first ray
+     * @param count the amount of rays
+     * @param a the first vertex
+     * @param b the second vertex
+     * @param c the third vertex
+     * @param t receives the distance of ray i at index i
+     * @return the amount of rays hitting the triangle
+     * @throws NullPointerException if any passed vector is null
+     */
+    public static int intersectTriangle(float[] ox, float[] oy, float[] oz, float[] dx, float[] dy, float[] dz, int offset,
+            int count, Vec3f a, Vec3f b, Vec3f c, float[] t) {
+        final float ax = a.getX(), ay = a.getY(), az = a.getZ();
+        final float e1x = b.getX() - ax, e1y = b.getY() - ay, e1z = b.getZ() - az;
+        final float e2x = c.getX() - ax, e2y = c.getY() - ay, e2z = c.getZ() - az;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = triangle(ox[i], oy[i], oz[i], dx[i], dy[i], dz[i], ax, ay, az, e1x, e1y, e1z, e2x, e2y, e2z);
+        }
+        return hits(t, offset, end);
+    }
+
+    /**
+     * Intersects <code>count</code> rays stored as structure of arrays with
+     * one box.
+     *
+     * @param ox the x components of the origins
+     * @param oy the y components of the origins
+     * @param oz the z components of the origins
+     * @param dx the x components of the directions
+     * @param dy the y components of the directions
+     * @param dz the z components of the directions
+     * @param offset the index of the first ray
+     * @param count the amount of rays
+     * @param box the box
+     * @param t receives the entry distance of ray i at index i
+     * @return the amount of rays hitting the box
+     * @throws NullPointerException if the passed box is null
+     */
+    public static int intersectBox(float[] ox, float[] oy, float[] oz, float[] dx, float[] dy, float[] dz, int offset,
+            int count, Aabb3f box, float[] t) {
+        final float minX = box.getMinX(), minY = box.getMinY(), minZ = box.getMinZ();
+        final float maxX = box.getMaxX(), maxY = box.getMaxY(), maxZ = box.getMaxZ();
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = box(ox[i], oy[i], oz[i], 1.0f / dx[i], 1.0f / dy[i], 1.0f / dz[i], minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        return hits(t, offset, end);
+    }
+
+    /**
+     * Intersects <code>count</code> rays stored as structure of arrays with
+     * one sphere.
+     *
+     * @param ox the x components of the origins
+     * @param oy the y components of the origins
+     * @param oz the z components of the origins
+     * @param dx the x components of the directions
+     * @param dy the y components of the directions
+     * @param dz the z components of the directions
+     * @param offset the index of the first ray
+     * @param count the amount of rays
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     * @param t receives the distance of ray i at index i
+     * @return the amount of rays hitting the sphere
+     * @throws NullPointerException if the passed vector is null
+     */
+    public static int intersectSphere(float[] ox, float[] oy, float[] oz, float[] dx, float[] dy, float[] dz, int offset,
+            int count, Vec3f center, float radius, float[] t) {
+        final float cx = center.getX(), cy = center.getY(), cz = center.getZ();
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = sphere(ox[i], oy[i], oz[i], dx[i], dy[i], dz[i], cx, cy, cz, radius);
+        }
+        return hits(t, offset, end);
+    }
+
+    /**
+     * Intersects <code>count</code> rays stored as structure of arrays with
+     * one plane.
+     *
+     * @param ox the x components of the origins
+     * @param oy the y components of the origins
+     * @param oz the z components of the origins
+     * @param dx the x components of the directions
+     * @param dy the y components of the directions
+     * @param dz the z components of the directions
+     * @param offset the index of the first ray
+     * @param count the amount of rays
+     * @param plane the plane equation (a,b,c,d)
+     * @param t receives the distance of ray i at index i
+     * @return the amount of rays hitting the plane
+     * @throws NullPointerException if the passed vector is null
+     */
+    public static int intersectPlane(float[] ox, float[] oy, float[] oz, float[] dx, float[] dy, float[] dz, int offset,
+            int count, Vec4f plane, float[] t) {
+        final float a = plane.getX(), b = plane.getY(), c = plane.getZ(), d = plane.getW();
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            t[i] = plane(ox[i], oy[i], oz[i], dx[i], dy[i], dz[i], a, b, c, d);
+        }
+        return hits(t, offset, end);
+    }
+
+    /**
+     * Moeller-Trumbore kernel. The hit conditions are combined with
+     * non-short-circuit operators so the method compiles to selects.
+     */
+    static float triangle(float ox, float oy, float oz, float dx, float dy, float dz, float ax, float ay, float az, float e1x,
+            float e1y, float e1z, float e2x, float e2y, float e2z) {
+        final float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        final float det = e1x * px + e1y * py + e1z * pz;
+        final float inv = 1.0f / det;
+        final float sx = ox - ax, sy = oy - ay, sz = oz - az;
+        final float u = (sx * px + sy * py + sz * pz) * inv;
+        final float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        final float v = (dx * qx + dy * qy + dz * qz) * inv;
+        final float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        final boolean hit = (Math.abs(det) > EPSILON) & (u >= 0) & (v >= 0) & (u + v <= 1) & (t >= 0);
+        return hit ? t : MISS;
+    }
+
+    /**
+     * Slab kernel with the inverse direction. A ray parallel to an axis whose
+     * origin lies on a face plane of that axis yields <code>0 * inf = NaN</code>
+     * for the plane. Math.min and Math.max keep the NaN for that axis and the
+     * comparisons below drop it, as the axis does not constrain the ray.
+     */
+    static float box(float ox, float oy, float oz, float ix, float iy, float iz, float minX, float minY, float minZ, float maxX,
+            float maxY, float maxZ) {
+        final float x0 = (minX - ox) * ix, x1 = (maxX - ox) * ix;
+        final float y0 = (minY - oy) * iy, y1 = (maxY - oy) * iy;
+        final float z0 = (minZ - oz) * iz, z1 = (maxZ - oz) * iz;
+        final float nx = Math.min(x0, x1), ny = Math.min(y0, y1), nz = Math.min(z0, z1);
+        final float fx = Math.max(x0, x1), fy = Math.max(y0, y1), fz = Math.max(z0, z1);
+        float tNear = nx > 0 ? nx : 0;
+        tNear = ny > tNear ? ny : tNear;
+        tNear = nz > tNear ? nz : tNear;
+        float tFar = fx < MISS ? fx : MISS;
+        tFar = fy < tFar ? fy : tFar;
+        tFar = fz < tFar ? fz : tFar;
+        return tNear <= tFar ? tNear : MISS;
+    }
+
+    static float sphere(float ox, float oy, float oz, float dx, float dy, float dz, float cx, float cy, float cz, float radius) {
+        final float lx = ox - cx, ly = oy - cy, lz = oz - cz;
+        final float a = dx * dx + dy * dy + dz * dz;
+        final float b = lx * dx + ly * dy + lz * dz;
+        final float c = lx * lx + ly * ly + lz * lz - radius * radius;
+        final float disc = b * b - a * c;
+        final float root = (float) Math.sqrt(Math.max(disc, 0));
+        final float t0 = (-b - root) / a, t1 = (-b + root) / a;
+        final float t = t0 >= 0 ? t0 : t1;
+        return (disc >= 0) & (t >= 0) ? t : MISS;
+    }
+
+    static float plane(float ox, float oy, float oz, float dx, float dy, float dz, float a, float b, float c, float d) {
+        final float denom = a * dx + b * dy + c * dz;
+        final float t = -(a * ox + b * oy + c * oz + d) / denom;
+        return (denom != 0) & (t >= 0) ? t : MISS;
+    }
+
+    private static int nearest(float[] t, int start, int end) {
+        int index = -1;
+        float best = MISS;
+        for (int i = start; i < end; i++) {
+            if (t[i] < best) {
+                best = t[i];
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static int hits(float[] t, int start, int end) {
+        int hits = 0;
+        for (int i = start; i < end; i++) {
+            hits += t[i] != MISS ? 1 : 0;
+        }
+        return hits;
+    }
+
+    /**
+     * @return the origin of this ray
+     */
+    public Vec3f getOrigin() {
+        return new Vec3f(ox, oy, oz);
+    }
+
+    /**
+     * @return the direction of this ray
+     */
+    public Vec3f getDirection() {
+        return new Vec3f(dx, dy, dz);
+    }
+
+    public float getOriginX() {
+        return ox;
+    }
+
+    public float getOriginY() {
+        return oy;
+    }
+
+    public float getOriginZ() {
+        return oz;
+    }
+
+    public float getDirectionX() {
+        return dx;
+    }
+
+    public float getDirectionY() {
+        return dy;
+    }
+
+    public float getDirectionZ() {
+        return dz;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Float.floatToIntBits(ox);
+        result = prime * result + Float.floatToIntBits(oy);
+        result = prime * result + Float.floatToIntBits(oz);
+        result = prime * result + Float.floatToIntBits(dx);
+        result = prime * result + Float.floatToIntBits(dy);
+        result = prime * result + Float.floatToIntBits(dz);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj instanceof Rayf) {
+            Rayf o = (Rayf) obj;
+            return ox == o.ox && oy == o.oy && oz == o.oz && dx == o.dx && dy == o.dy && dz == o.dz;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Rayf [originX=" + ox + ", originY=" + oy + ", originZ=" + oz + ", directionX=" + dx + ", directionY="
+                + dy + ", directionZ=" + dz + "]";
+    }
+}
@@ -0,0 +1,1023 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.ray.Rayf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Bounding volume hierarchy over triangles or boxes (final::immutable)
+ * <p>
+ * The hierarchy is built top down with the surface area heuristic (SAH)
+ * evaluated on 16 centroid bins per axis. Subtrees above a threshold are built
+ * in parallel on a {@link ForkJoinPool}.
+ * </p>
+ * <b>Memory layout</b>
+ * <p>
+ * Nodes are stored in two flat arrays. <code>nodeBounds</code> holds six
+ * floats per node (min x,y,z and max x,y,z) and <code>nodeIndex</code> two
+ * ints: for inner nodes the index of the left child (the right child is the
+ * next node) and zero, for leaves the first primitive and the primitive count.
+ * The primitives are copied in leaf order so a leaf reads a contiguous range
+ * of memory.
+ * </p>
+ * <b>Queries</b>
+ * <p>
+ * All queries are allocation free. Results are written to caller supplied
+ * arrays or passed to an {@link IntConsumer}. Primitive indices are always the
+ * indices of the input (triangle <code>i</code> are the indices
+ * <code>3*i..3*i+2</code>). The traversal stacks are kept per thread so a
+ * hierarchy can be queried concurrently, and a visitor may start further
+ * queries on this or another hierarchy.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Bvh {
+
+    /**
+     * Preferred maximal amount of primitives in a leaf
+     */
+    public static final int LEAF_SIZE = 4;
+
+    /**
+     * Leaves are allowed to grow up to this amount if splitting is more
+     * expensive
+     */
+    static final int MAX_LEAF_SIZE = 16;
+
+    /**
+     * Maximal depth of the tree which also bounds the traversal stack
+     */
+    static final int MAX_DEPTH = 64;
+
+    static final int BINS = 16;
+
+    /**
+     * Amount of primitives above which a subtree is built as separate task
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private static final ThreadLocal<TraversalStack> STACK = TraversalStack.local(MAX_DEPTH + 2);
+
+    private final float[] nodeBounds;
+    private final int[] nodeIndex;
+    private final int nodeCount;
+
+    /**
+     * leaf order to input primitive index
+     */
+    private final int[] primitives;
+
+    /**
+     * triangle vertices (9 floats) in leaf order or null if built from boxes
+     */
+    private final float[] triangles;
+
+    /**
+     * primitive bounds (6 floats) in leaf order or null if built from
+     * triangles
+     */
+    private final float[] boxes;
+
+    private Bvh(float[] nodeBounds, int[] nodeIndex, int nodeCount, int[] primitives, float[] triangles, float[] boxes) {
+        this.nodeBounds = nodeBounds;
+        this.nodeIndex = nodeIndex;
+        this.nodeCount = nodeCount;
+        this.primitives = primitives;
+        this.triangles = triangles;
+        this.boxes = boxes;
+    }
+
+    /**
+     * Builds a hierarchy over an indexed triangle mesh on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices three vertex indices per triangle
+     * @return the new hierarchy
+     */
+    public static Bvh ofTriangles(float[] positions, int[] indices) {
+        return ofTriangles(positions, indices, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a hierarchy over an indexed triangle mesh.
+     *
+     * @param vertices the vertex positions
+     * @param indices three vertex indices per triangle
+     * @return the new hierarchy
+     * @throws NullPointerException if any vertex is null
+     */
+    public static Bvh ofTriangles(Vec3f[] vertices, int[] indices) {
+        final float[] positions = new float[vertices.length * 3];
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getX();
+            positions[i * 3 + 1] = vertices[i].getY();
+            positions[i * 3 + 2] = vertices[i].getZ();
+        }
+        return ofTriangles(positions, indices);
+    }
+
+    /**
+     * Builds a hierarchy over an indexed triangle mesh on the specified pool.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices three vertex indices per triangle
+     * @param pool the pool to run the build on
+     * @return the new hierarchy
+     */
+    public static Bvh ofTriangles(float[] positions, int[] indices, ForkJoinPool pool) {
+        // the parallel streams of the preprocessing run on the pool of the task
+        return pool.submit(() -> buildTriangles(positions, indices)).join();
+    }
+
+    private static Bvh buildTriangles(float[] positions, int[] indices) {
+        final int n = indices.length / 3;
+        final float[] bounds = new float[n * 6];
+        stream(n).forEach(t -> {
+            final int a = indices[t * 3] * 3, b = indices[t * 3 + 1] * 3, c = indices[t * 3 + 2] * 3;
+            for (int k = 0; k < 3; k++) {
+                final float va = positions[a + k], vb = positions[b + k], vc = positions[c + k];
+                bounds[t * 6 + k] = Math.min(va, Math.min(vb, vc));
+                bounds[t * 6 + k + 3] = Math.max(va, Math.max(vb, vc));
+            }
+        });
+        final Builder builder = build(bounds, n);
+
+        final int[] order = builder.order;
+        final float[] triangles = new float[n * 9];
+        stream(n).forEach(i -> {
+            final int t = order[i];
+            for (int v = 0; v < 3; v++) {
+                final int src = indices[t * 3 + v] * 3, dst = i * 9 + v * 3;
+                triangles[dst] = positions[src];
+                triangles[dst + 1] = positions[src + 1];
+                triangles[dst + 2] = positions[src + 2];
+            }
+        });
+        return builder.toBvh(triangles, null);
+    }
+
+    /**
+     * Builds a hierarchy over boxes on the common {@link ForkJoinPool}.
+     *
+     * @param bounds six floats per box (min x,y,z and max x,y,z)
+     * @return the new hierarchy
+     */
+    public static Bvh ofBoxes(float[] bounds) {
+        return ofBoxes(bounds, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a hierarchy over boxes.
+     *
+     * @param boxes the boxes
+     * @return the new hierarchy
+     * @throws NullPointerException if any box is null
+     */
+    public static Bvh ofBoxes(Aabb3f[] boxes) {
+        final float[] bounds = new float[boxes.length * 6];
+        for (int i = 0; i < boxes.length; i++) {
+            bounds[i * 6] = boxes[i].getMinX();
+            bounds[i * 6 + 1] = boxes[i].getMinY();
+            bounds[i * 6 + 2] = boxes[i].getMinZ();
+            bounds[i * 6 + 3] = boxes[i].getMaxX();
+            bounds[i * 6 + 4] = boxes[i].getMaxY();
+            bounds[i * 6 + 5] = boxes[i].getMaxZ();
+        }
+        return ofBoxes(bounds);
+    }
+
+    /**
+     * Builds a hierarchy over boxes on the specified pool.
+     *
+     * @param bounds six floats per box (min x,y,z and max x,y,z)
+     * @param pool the pool to run the build on
+     * @return the new hierarchy
+     */
+    public static Bvh ofBoxes(float[] bounds, ForkJoinPool pool) {
+        return pool.submit(() -> buildBoxes(bounds)).join();
+    }
+
+    private static Bvh buildBoxes(float[] bounds) {
+        final int n = bounds.length / 6;
+        final Builder builder = build(bounds, n);
+
+        final int[] order = builder.order;
+        final float[] boxes = new float[n * 6];
+        stream(n).forEach(i -> System.arraycopy(bounds, order[i] * 6, boxes, i * 6, 6));
+        return builder.toBvh(null, boxes);
+    }
+
+    private static IntStream stream(int n) {
+        final IntStream stream = IntStream.range(0, n);
+        return n > PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    private static Builder build(float[] bounds, int n) {
+        final Builder builder = new Builder(bounds, n);
+        if (n > 0) {
+            builder.nodeCounter.set(1);
+            new BuildTask(builder, 0, 0, n, 0).invoke();
+        }
+        return builder;
+    }
+
+    /**
+     * Finds the nearest intersection of the ray with the primitives.
+     *
+     * @param ox the x component of the ray origin
+     * @param oy the y component of the ray origin
+     * @param oz the z component of the ray origin
+     * @param dx the x component of the ray direction
+     * @param dy the y component of the ray direction
+     * @param dz the z component of the ray direction
+     * @param tMax the maximal distance along the ray (in units of the
+     *            direction length)
+     * @param hit receives the ray parameter t at index 0 and for triangles the
+     *            barycentric coordinates u and v at index 1 and 2, may be null
+     * @return the index of the nearest hit primitive or -1 if nothing is hit
+     */
+    public int raycast(float ox, float oy, float oz, float dx, float dy, float dz, float tMax, float[] hit) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        final float ix = 1.0f / dx, iy = 1.0f / dy, iz = 1.0f / dz;
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int node = 0;
+            float best = tMax;
+            int bestLeaf = -1;
+
+            if (slab(nodeBounds, 0, ox, oy, oz, ix, iy, iz, best) == Float.POSITIVE_INFINITY) {
+                return -1;
+            }
+            while (true) {
+                final int first = nodeIndex[node * 2], count = nodeIndex[node * 2 + 1];
+                if (count > 0) {
+                    for (int j = first; j < first + count; j++) {
+                        final float t = triangles != null ? triangle(triangles, j, ox, oy, oz, dx, dy, dz, best, null)
+                                : slab(boxes, j, ox, oy, oz, ix, iy, iz, best);
+                        if (t < best) {
+                            best = t;
+                            bestLeaf = j;
+                        }
+                    }
+                } else {
+                    float tl = slab(nodeBounds, first, ox, oy, oz, ix, iy, iz, best);
+                    float tr = slab(nodeBounds, first + 1, ox, oy, oz, ix, iy, iz, best);
+                    int near = first, far = first + 1;
+                    if (tr < tl) {
+                        final float t = tl;
+                        tl = tr;
+                        tr = t;
+                        near = first + 1;
+                        far = first;
+                    }
+                    if (tl != Float.POSITIVE_INFINITY) {
+                        if (tr != Float.POSITIVE_INFINITY) {
+                            stack[sp++] = far;
+                        }
+                        node = near;
+                        continue;
+                    }
+                }
+                // pop the next node which is still closer than the best hit
+                node = -1;
+                while (sp > 0) {
+                    final int candidate = stack[--sp];
+                    if (slab(nodeBounds, candidate, ox, oy, oz, ix, iy, iz, best) != Float.POSITIVE_INFINITY) {
+                        node = candidate;
+                        break;
+                    }
+                }
+                if (node < 0) {
+                    break;
+                }
+            }
+            if (bestLeaf < 0) {
+                return -1;
+            }
+            if (hit != null) {
+                hit[0] = best;
+                if (triangles != null) {
+                    triangle(triangles, bestLeaf, ox, oy, oz, dx, dy, dz, Float.POSITIVE_INFINITY, hit);
+                }
+            }
+            return primitives[bestLeaf];
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Finds the nearest intersection of the ray with the primitives.
+     *
+     * @param ray the ray
+     * @param tMax the maximal distance along the ray (in units of the
+     *            direction length)
+     * @param hit receives the ray parameter t at index 0 and for triangles the
+     *            barycentric coordinates u and v at index 1 and 2, may be null
+     * @return the index of the nearest hit primitive or -1 if nothing is hit
+     * @throws NullPointerException if the passed ray is null
+     * @see #raycast(float, float, float, float, float, float, float, float[])
+     */
+    public int raycast(Rayf ray, float tMax, float[] hit) {
+        return raycast(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(), ray.getDirectionX(), ray.getDirectionY(),
+                ray.getDirectionZ(), tMax, hit);
+    }
+
+    /**
+     * Checks if the ray hits any primitive. The traversal stops at the first
+     * hit found which is usually much cheaper than searching the nearest one,
+     * for example for shadow or line of sight rays.
+     *
+     * @param ox the x component of the ray origin
+     * @param oy the y component of the ray origin
+     * @param oz the z component of the ray origin
+     * @param dx the x component of the ray direction
+     * @param dy the y component of the ray direction
+     * @param dz the z component of the ray direction
+     * @param tMax the maximal distance along the ray (in units of the
+     *            direction length)
+     * @return true if any primitive is hit before tMax
+     */
+    public boolean raycastAny(float ox, float oy, float oz, float dx, float dy, float dz, float tMax) {
+        if (nodeCount == 0) {
+            return false;
+        }
+        final float ix = 1.0f / dx, iy = 1.0f / dy, iz = 1.0f / dz;
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            stack[sp++] = 0;
+
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (slab(nodeBounds, node, ox, oy, oz, ix, iy, iz, tMax) == Float.POSITIVE_INFINITY) {
+                    continue;
+                }
+                final int first = nodeIndex[node * 2], count = nodeIndex[node * 2 + 1];
+                if (count > 0) {
+                    for (int j = first; j < first + count; j++) {
+                        final float t = triangles != null ? triangle(triangles, j, ox, oy, oz, dx, dy, dz, tMax, null)
+                                : slab(boxes, j, ox, oy, oz, ix, iy, iz, tMax);
+                        if (t != Float.POSITIVE_INFINITY) {
+                            return true;
+                        }
+                    }
+                } else {
+                    stack[sp++] = first + 1;
+                    stack[sp++] = first;
+                }
+            }
+            return false;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Checks if the ray hits any primitive.
+     *
+     * @param ray the ray
+     * @param tMax the maximal distance along the ray (in units of the
+     *            direction length)
+     * @return true if any primitive is hit before tMax
+     * @throws NullPointerException if the passed ray is null
+     * @see #raycastAny(float, float, float, float, float, float, float)
+     */
+    public boolean raycastAny(Rayf ray, float tMax) {
+        return raycastAny(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(), ray.getDirectionX(), ray.getDirectionY(),
+                ray.getDirectionZ(), tMax);
+    }
+
+    /**
+     * Visits all primitives whose bounds overlap the specified box.
+     *
+     * @param minX the minimal x component of the box
+     * @param minY the minimal y component of the box
+     * @param minZ the minimal z component of the box
+     * @param maxX the maximal x component of the box
+     * @param maxY the maximal y component of the box
+     * @param maxZ the maximal z component of the box
+     * @param visitor receives the index of every overlapping primitive
+     * @return the amount of visited primitives
+     */
+    public int overlap(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, IntConsumer visitor) {
+        if (nodeCount == 0) {
+            return 0;
+        }
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int found = 0;
+            stack[sp++] = 0;
+
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (!overlaps(nodeBounds, node * 6, minX, minY, minZ, maxX, maxY, maxZ)) {
+                    continue;
+                }
+                final int first = nodeIndex[node * 2], count = nodeIndex[node * 2 + 1];
+                if (count > 0) {
+                    for (int j = first; j < first + count; j++) {
+                        if (primitiveOverlaps(j, minX, minY, minZ, maxX, maxY, maxZ)) {
+                            visitor.accept(primitives[j]);
+                            found++;
+                        }
+                    }
+                } else {
+                    stack[sp++] = first + 1;
+                    stack[sp++] = first;
+                }
+            }
+            return found;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Visits all primitives whose bounds overlap the specified box.
+     *
+     * @param box the box
+     * @param visitor receives the index of every overlapping primitive
+     * @return the amount of visited primitives
+     * @throws NullPointerException if the passed box is null
+     */
+    public int overlap(Aabb3f box, IntConsumer visitor) {
+        return overlap(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ(), visitor);
+    }
+
+    /**
+     * Finds the closest point on any primitive to the specified point.
+     *
+     * @param px the x component of the query point
+     * @param py the y component of the query point
+     * @param pz the z component of the query point
+     * @param maxDistance only primitives closer than this distance are
+     *            considered
+     * @param result receives the closest point at index 0 to 2 and the squared
+     *            distance at index 3
+     * @return the index of the closest primitive or -1 if no primitive is
+     *         within maxDistance
+     */
+    public int closestPoint(float px, float py, float pz, float maxDistance, float[] result) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int node = 0;
+            float best = maxDistance == Float.POSITIVE_INFINITY ? maxDistance : maxDistance * maxDistance;
+            int bestLeaf = -1;
+
+            while (true) {
+                final int first = nodeIndex[node * 2], count = nodeIndex[node * 2 + 1];
+                if (count > 0) {
+                    for (int j = first; j < first + count; j++) {
+                        final float d = triangles != null ? closestOnTriangle(triangles, j, px, py, pz, best, result)
+                                : closestOnBox(boxes, j, px, py, pz, best, result);
+                        if (d < best) {
+                            best = d;
+                            bestLeaf = j;
+                        }
+                    }
+                } else {
+                    float dl = boxDistanceSquared(nodeBounds, first, px, py, pz);
+                    float dr = boxDistanceSquared(nodeBounds, first + 1, px, py, pz);
+                    int near = first, far = first + 1;
+                    if (dr < dl) {
+                        final float d = dl;
+                        dl = dr;
+                        dr = d;
+                        near = first + 1;
+                        far = first;
+                    }
+                    if (dl < best) {
+                        if (dr < best) {
+                            stack[sp++] = far;
+                        }
+                        node = near;
+                        continue;
+                    }
+                }
+                node = -1;
+                while (sp > 0) {
+                    final int candidate = stack[--sp];
+                    if (boxDistanceSquared(nodeBounds, candidate, px, py, pz) < best) {
+                        node = candidate;
+                        break;
+                    }
+                }
+                if (node < 0) {
+                    break;
+                }
+            }
+            if (bestLeaf < 0) {
+                return -1;
+            }
+            result[3] = best;
+            return primitives[bestLeaf];
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * @return the bounds of all primitives
+     */
+    public Aabb3f bounds() {
+        if (nodeCount == 0) {
+            return Aabb3f.EMPTY;
+        }
+        return Aabb3f.of(nodeBounds[0], nodeBounds[1], nodeBounds[2], nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+    }
+
+    /**
+     * @return the amount of nodes of the hierarchy
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the amount of primitives of the hierarchy
+     */
+    public int getPrimitiveCount() {
+        return primitives.length;
+    }
+
+    /**
+     * @return the depth of the deepest leaf where the root has depth 1
+     */
+    public int depth() {
+        return nodeCount == 0 ? 0 : depth(0);
+    }
+
+    private int depth(int node) {
+        if (nodeIndex[node * 2 + 1] > 0) {
+            return 1;
+        }
+        final int first = nodeIndex[node * 2];
+        return 1 + Math.max(depth(first), depth(first + 1));
+    }
+
+    /**
+     * Slab test of the ray against the box at the specified index. A ray
+     * parallel to an axis whose origin lies on a face plane of that axis
+     * yields <code>0 * inf = NaN</code> for the plane, the comparisons drop
+     * such an axis as it does not constrain the ray.
+     *
+     * @return the entry distance or positive infinity if missed
+     */
+    static float slab(float[] bounds, int index, float ox, float oy, float oz, float ix, float iy, float iz, float tMax) {
+        final int o = index * 6;
+        float tNear = 0, tFar = tMax;
+        float t0 = (bounds[o] - ox) * ix, t1 = (bounds[o + 3] - ox) * ix;
+        float lo = Math.min(t0, t1), hi = Math.max(t0, t1);
+        tNear = lo > tNear ? lo : tNear;
+        tFar = hi < tFar ? hi : tFar;
+        t0 = (bounds[o + 1] - oy) * iy;
+        t1 = (bounds[o + 4] - oy) * iy;
+        lo = Math.min(t0, t1);
+        hi = Math.max(t0, t1);
+        tNear = lo > tNear ? lo : tNear;
+        tFar = hi < tFar ? hi : tFar;
+        t0 = (bounds[o + 2] - oz) * iz;
+        t1 = (bounds[o + 5] - oz) * iz;
+        lo = Math.min(t0, t1);
+        hi = Math.max(t0, t1);
+        tNear = lo > tNear ? lo : tNear;
+        tFar = hi < tFar ? hi : tFar;
+        return tNear <= tFar ? tNear : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Moeller-Trumbore intersection of the ray with the triangle at the
+     * specified index (both sides).
+     *
+     * @param uv receives the barycentric coordinates at index 1 and 2 if not
+     *            null
+     * @return the ray parameter or positive infinity if missed
+     */
+    static float triangle(float[] tris, int index, float ox, float oy, float oz, float dx, float dy, float dz, float tMax,
+            float[] uv) {
+        final int o = index * 9;
+        final float ax = tris[o], ay = tris[o + 1], az = tris[o + 2];
+        final float e1x = tris[o + 3] - ax, e1y = tris[o + 4] - ay, e1z = tris[o + 5] - az;
+        final float e2x = tris[o + 6] - ax, e2y = tris[o + 7] - ay, e2z = tris[o + 8] - az;
+
+        final float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        final float det = e1x * px + e1y * py + e1z * pz;
+        if (det > -1e-12f && det < 1e-12f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float inv = 1.0f / det;
+        final float sx = ox - ax, sy = oy - ay, sz = oz - az;
+        final float u = (sx * px + sy * py + sz * pz) * inv;
+        if (u < 0 || u > 1) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        final float v = (dx * qx + dy * qy + dz * qz) * inv;
+        if (v < 0 || u + v > 1) {
+            return Float.POSITIVE_INFINITY;
+        }
+        final float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        if (t < 0 || t > tMax) {
+            return Float.POSITIVE_INFINITY;
+        }
+        if (uv != null) {
+            uv[1] = u;
+            uv[2] = v;
+        }
+        return t;
+    }
+
+    private static boolean overlaps(float[] bounds, int o, float minX, float minY, float minZ, float maxX, float maxY,
+            float maxZ) {
+        return bounds[o] <= maxX && bounds[o + 3] >= minX && bounds[o + 1] <= maxY && bounds[o + 4] >= minY
+                && bounds[o + 2] <= maxZ && bounds[o + 5] >= minZ;
+    }
+
+    private boolean primitiveOverlaps(int j, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (boxes != null) {
+            return overlaps(boxes, j * 6, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        final float[] t = triangles;
+        final int o = j * 9;
+        return Math.min(t[o], Math.min(t[o + 3], t[o + 6])) <= maxX && Math.max(t[o], Math.max(t[o + 3], t[o + 6])) >= minX
+                && Math.min(t[o + 1], Math.min(t[o + 4], t[o + 7])) <= maxY
+                && Math.max(t[o + 1], Math.max(t[o + 4], t[o + 7])) >= minY
+                && Math.min(t[o + 2], Math.min(t[o + 5], t[o + 8])) <= maxZ
+                && Math.max(t[o + 2], Math.max(t[o + 5], t[o + 8])) >= minZ;
+    }
+
+    private static float boxDistanceSquared(float[] bounds, int index, float px, float py, float pz) {
+        final int o = index * 6;
+        final float dx = Math.max(Math.max(bounds[o] - px, px - bounds[o + 3]), 0);
+        final float dy = Math.max(Math.max(bounds[o + 1] - py, py - bounds[o + 4]), 0);
+        final float dz = Math.max(Math.max(bounds[o + 2] - pz, pz - bounds[o + 5]), 0);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static float closestOnBox(float[] bounds, int index, float px, float py, float pz, float best, float[] out) {
+        final float d = boxDistanceSquared(bounds, index, px, py, pz);
+        if (d < best) {
+            final int o = index * 6;
+            out[0] = Math.min(Math.max(px, bounds[o]), bounds[o + 3]);
+            out[1] = Math.min(Math.max(py, bounds[o + 1]), bounds[o + 4]);
+            out[2] = Math.min(Math.max(pz, bounds[o + 2]), bounds[o + 5]);
+        }
+        return d;
+    }
+
+    /**
+     * Closest point on a triangle by its Voronoi regions (Ericson, Real-Time
+     * Collision Detection, 5.1.5). The point is only written if it is closer
+     * than best.
+     *
+     * @return the squared distance to the closest point
+     */
+    static float closestOnTriangle(float[] tris, int index, float px, float py, float pz, float best, float[] out) {
+        final int o = index * 9;
+        final float ax = tris[o], ay = tris[o + 1], az = tris[o + 2];
+        final float abx = tris[o + 3] - ax, aby = tris[o + 4] - ay, abz = tris[o + 5] - az;
+        final float acx = tris[o + 6] - ax, acy = tris[o + 7] - ay, acz = tris[o + 8] - az;
+        final float apx = px - ax, apy = py - ay, apz = pz - az;
+
+        float qx, qy, qz;
+        final float d1 = abx * apx + aby * apy + abz * apz, d2 = acx * apx + acy * apy + acz * apz;
+        final float bpx = px - tris[o + 3], bpy = py - tris[o + 4], bpz = pz - tris[o + 5];
+        final float d3 = abx * bpx + aby * bpy + abz * bpz, d4 = acx * bpx + acy * bpy + acz * bpz;
+        final float cpx = px - tris[o + 6], cpy = py - tris[o + 7], cpz = pz - tris[o + 8];
+        final float d5 = abx * cpx + aby * cpy + abz * cpz, d6 = acx * cpx + acy * cpy + acz * cpz;
+        final float vc = d1 * d4 - d3 * d2, vb = d5 * d2 - d1 * d6, va = d3 * d6 - d5 * d4;
+
+        if (d1 <= 0 && d2 <= 0) {
+            qx = ax;
+            qy = ay;
+            qz = az;
+        } else if (d3 >= 0 && d4 <= d3) {
+            qx = tris[o + 3];
+            qy = tris[o + 4];
+            qz = tris[o + 5];
+        } else if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            final float v = d1 / (d1 - d3);
+            qx = ax + abx * v;
+            qy = ay + aby * v;
+            qz = az + abz * v;
+        } else if (d6 >= 0 && d5 <= d6) {
+            qx = tris[o + 6];
+            qy = tris[o + 7];
+            qz = tris[o + 8];
+        } else if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            final float w = d2 / (d2 - d6);
+            qx = ax + acx * w;
+            qy = ay + acy * w;
+            qz = az + acz * w;
+        } else if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+            final float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            qx = tris[o + 3] + (tris[o + 6] - tris[o + 3]) * w;
+            qy = tris[o + 4] + (tris[o + 7] - tris[o + 4]) * w;
+            qz = tris[o + 5] + (tris[o + 8] - tris[o + 5]) * w;
+        } else {
+            final float denom = 1.0f / (va + vb + vc);
+            final float v = vb * denom, w = vc * denom;
+            qx = ax + abx * v + acx * w;
+            qy = ay + aby * v + acy * w;
+            qz = az + abz * v + acz * w;
+        }
+        final float dx = px - qx, dy = py - qy, dz = pz - qz;
+        final float d = dx * dx + dy * dy + dz * dz;
+        if (d < best) {
+            out[0] = qx;
+            out[1] = qy;
+            out[2] = qz;
+        }
+        return d;
+    }
+
+    @Override
+    public String toString() {
+        return "Bvh [nodes=" + nodeCount + ", primitives=" + primitives.length + ", triangles=" + (triangles != null) + "]";
+    }
+
+    /**
+     * Shared state of one build. Node indices are handed out in pairs by an
+     * atomic counter so subtrees can be built concurrently.
+     */
+    private static final class Builder {
+
+        final float[] bounds;
+        final float[] centroids;
+        final int[] order;
+        final float[] nodeBounds;
+        final int[] nodeIndex;
+        final AtomicInteger nodeCounter = new AtomicInteger();
+
+        Builder(float[] bounds, int n) {
+            this.bounds = bounds;
+            this.centroids = new float[n * 3];
+            this.order = new int[n];
+            final int maxNodes = Math.max(1, 2 * n - 1);
+            this.nodeBounds = new float[maxNodes * 6];
+            this.nodeIndex = new int[maxNodes * 2];
+            stream(n).forEach(i -> {
+                order[i] = i;
+                centroids[i * 3] = (bounds[i * 6] + bounds[i * 6 + 3]) * 0.5f;
+                centroids[i * 3 + 1] = (bounds[i * 6 + 1] + bounds[i * 6 + 4]) * 0.5f;
+                centroids[i * 3 + 2] = (bounds[i * 6 + 2] + bounds[i * 6 + 5]) * 0.5f;
+            });
+        }
+
+        Bvh toBvh(float[] triangles, float[] boxes) {
+            final int count = nodeCounter.get();
+            return new Bvh(Arrays.copyOf(nodeBounds, count * 6), Arrays.copyOf(nodeIndex, count * 2), count, order, triangles,
+                    boxes);
+        }
+    }
+
+    /**
+     * Builds the subtree of one node. Children with more than
+     * {@link Bvh#PARALLEL_THRESHOLD} primitives are forked, smaller ones are
+     * built recursively in the same task reusing its bin arrays.
+     */
+    private static final class BuildTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Builder b;
+        private final int node, start, end, depth;
+
+        private final int[] binCount = new int[BINS];
+        private final float[] binBounds = new float[BINS * 6];
+        private final float[] rightArea = new float[BINS];
+        private final float[] cMin = new float[3];
+        private final float[] cMax = new float[3];
+
+        BuildTask(Builder b, int node, int start, int end, int depth) {
+            this.b = b;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            build(node, start, end, depth);
+        }
+
+        private void build(int node, int start, int end, int depth) {
+            final float[] bounds = b.bounds, centroids = b.centroids;
+            final int[] order = b.order;
+
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+            Arrays.fill(cMin, Float.POSITIVE_INFINITY);
+            Arrays.fill(cMax, Float.NEGATIVE_INFINITY);
+            for (int i = start; i < end; i++) {
+                final int p = order[i], o = p * 6;
+                minX = Math.min(minX, bounds[o]);
+                minY = Math.min(minY, bounds[o + 1]);
+                minZ = Math.min(minZ, bounds[o + 2]);
+                maxX = Math.max(maxX, bounds[o + 3]);
+                maxY = Math.max(maxY, bounds[o + 4]);
+                maxZ = Math.max(maxZ, bounds[o + 5]);
+                for (int k = 0; k < 3; k++) {
+                    final float c = centroids[p * 3 + k];
+                    cMin[k] = Math.min(cMin[k], c);
+                    cMax[k] = Math.max(cMax[k], c);
+                }
+            }
+            final int no = node * 6;
+            b.nodeBounds[no] = minX;
+            b.nodeBounds[no + 1] = minY;
+            b.nodeBounds[no + 2] = minZ;
+            b.nodeBounds[no + 3] = maxX;
+            b.nodeBounds[no + 4] = maxY;
+            b.nodeBounds[no + 5] = maxZ;
+
+            final int count = end - start;
+            if (count <= LEAF_SIZE || depth >= MAX_DEPTH - 1) {
+                leaf(node, start, count);
+                return;
+            }
+
+            // evaluate the SAH for every bin border on every axis
+            float bestCost = Float.POSITIVE_INFINITY;
+            int bestAxis = -1, bestBin = -1;
+            for (int axis = 0; axis < 3; axis++) {
+                final float extent = cMax[axis] - cMin[axis];
+                if (!(extent > 0)) {
+                    continue;
+                }
+                final float scale = BINS / extent;
+                Arrays.fill(binCount, 0);
+                for (int k = 0; k < BINS; k++) {
+                    Arrays.fill(binBounds, k * 6, k * 6 + 3, Float.POSITIVE_INFINITY);
+                    Arrays.fill(binBounds, k * 6 + 3, k * 6 + 6, Float.NEGATIVE_INFINITY);
+                }
+                for (int i = start; i < end; i++) {
+                    final int p = order[i];
+                    final int bin = bin(centroids[p * 3 + axis], cMin[axis], scale);
+                    binCount[bin]++;
+                    final int o = p * 6, bo = bin * 6;
+                    for (int k = 0; k < 3; k++) {
+                        binBounds[bo + k] = Math.min(binBounds[bo + k], bounds[o + k]);
+                        binBounds[bo + k + 3] = Math.max(binBounds[bo + k + 3], bounds[o + k + 3]);
+                    }
+                }
+                sweep();
+                float lMinX = Float.POSITIVE_INFINITY, lMinY = Float.POSITIVE_INFINITY, lMinZ = Float.POSITIVE_INFINITY;
+                float lMaxX = Float.NEGATIVE_INFINITY, lMaxY = Float.NEGATIVE_INFINITY, lMaxZ = Float.NEGATIVE_INFINITY;
+                int leftCount = 0;
+                for (int k = 0; k < BINS - 1; k++) {
+                    final int bo = k * 6;
+                    lMinX = Math.min(lMinX, binBounds[bo]);
+                    lMinY = Math.min(lMinY, binBounds[bo + 1]);
+                    lMinZ = Math.min(lMinZ, binBounds[bo + 2]);
+                    lMaxX = Math.max(lMaxX, binBounds[bo + 3]);
+                    lMaxY = Math.max(lMaxY, binBounds[bo + 4]);
+                    lMaxZ = Math.max(lMaxZ, binBounds[bo + 5]);
+                    leftCount += binCount[k];
+                    final int rightCount = count - leftCount;
+                    if (leftCount == 0 || rightCount == 0) {
+                        continue;
+                    }
+                    final float cost = area(lMinX, lMinY, lMinZ, lMaxX, lMaxY, lMaxZ) * leftCount + rightArea[k + 1] * rightCount;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestBin = k;
+                    }
+                }
+            }
+
+            int mid;
+            if (bestAxis < 0) {
+                // all centroids are equal, no spatial split is possible
+                if (count <= MAX_LEAF_SIZE) {
+                    leaf(node, start, count);
+                    return;
+                }
+                mid = (start + end) >>> 1;
+            } else {
+                final float nodeArea = area(minX, minY, minZ, maxX, maxY, maxZ);
+                final float splitCost = 1 + (nodeArea > 0 ? bestCost / nodeArea : count);
+                if (splitCost >= count && count <= MAX_LEAF_SIZE) {
+                    leaf(node, start, count);
+                    return;
+                }
+                final float lo = cMin[bestAxis], scale = BINS / (cMax[bestAxis] - lo);
+                int i = start, j = end - 1;
+                while (i <= j) {
+                    if (bin(centroids[order[i] * 3 + bestAxis], lo, scale) <= bestBin) {
+                        i++;
+                    } else {
+                        final int t = order[i];
+                        order[i] = order[j];
+                        order[j--] = t;
+                    }
+                }
+                mid = i;
+                if (mid == start || mid == end) {
+                    mid = (start + end) >>> 1;
+                }
+            }
+
+            final int left = b.nodeCounter.getAndAdd(2);
+            b.nodeIndex[node * 2] = left;
+            b.nodeIndex[node * 2 + 1] = 0;
+
+            final boolean forkLeft = mid - start > PARALLEL_THRESHOLD, forkRight = end - mid > PARALLEL_THRESHOLD;
+            if (forkLeft && forkRight) {
+                ForkJoinTask.invokeAll(new BuildTask(b, left, start, mid, depth + 1), new BuildTask(b, left + 1, mid, end, depth + 1));
+            } else if (forkLeft) {
+                final BuildTask task = new BuildTask(b, left, start, mid, depth + 1);
+                task.fork();
+                build(left + 1, mid, end, depth + 1);
+                task.join();
+            } else if (forkRight) {
+                final BuildTask task = new BuildTask(b, left + 1, mid, end, depth + 1);
+                task.fork();
+                build(left, start, mid, depth + 1);
+                task.join();
+            } else {
+                build(left, start, mid, depth + 1);
+                build(left + 1, mid, end, depth + 1);
+            }
+        }
+
+        /**
+         * Computes the surface area of all bins right of and including each
+         * bin.
+         */
+        private void sweep() {
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+            for (int k = BINS - 1; k > 0; k--) {
+                final int bo = k * 6;
+                minX = Math.min(minX, binBounds[bo]);
+                minY = Math.min(minY, binBounds[bo + 1]);
+                minZ = Math.min(minZ, binBounds[bo + 2]);
+                maxX = Math.max(maxX, binBounds[bo + 3]);
+                maxY = Math.max(maxY, binBounds[bo + 4]);
+                maxZ = Math.max(maxZ, binBounds[bo + 5]);
+                rightArea[k] = area(minX, minY, minZ, maxX, maxY, maxZ);
+            }
+        }
+
+        private void leaf(int node, int start, int count) {
+            b.nodeIndex[node * 2] = start;
+            b.nodeIndex[node * 2 + 1] = count;
+        }
+
+        private static int bin(float centroid, float lo, float scale) {
+            final int bin = (int) ((centroid - lo) * scale);
+            return bin < BINS ? bin : BINS - 1;
+        }
+
+        private static float area(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+            if (minX > maxX) {
+                return 0;
+            }
+            final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+            return 2 * (dx * dy + dy * dz + dz * dx);
+        }
+    }
+}
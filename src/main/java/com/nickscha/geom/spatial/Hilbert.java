@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import static com.nickscha.geom.spatial.Morton.BITS_2D;
+import static com.nickscha.geom.spatial.Morton.BITS_3D;
+import static com.nickscha.geom.spatial.Morton.quantize;
+import static com.nickscha.geom.spatial.Morton.scale;
+
+import com.nickscha.geom.bounds.Aabb2f;
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Hilbert curve indices
+ * <p>
+ * Consecutive Hilbert indices are always neighbouring grid cells, which gives
+ * better locality than Morton order at a slightly higher encoding cost. The
+ * grid resolution matches {@link Morton}: 32 bits per coordinate in two and
+ * 21 bits in three dimensions. The index is computed with Skilling's transpose
+ * algorithm ("Programming the Hilbert curve", 2004) followed by a bit
+ * interleave.
+ * </p>
+ * <p>
+ * Two dimensional indices use all 64 bits and must be compared unsigned
+ * ({@link Long#compareUnsigned(long, long)}), as {@link RadixSort} does.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Hilbert {
+
+    private Hilbert() {
+    }
+
+    /**
+     * @param x the x coordinate (lower 32 bits)
+     * @param y the y coordinate (lower 32 bits)
+     * @return the two dimensional index
+     */
+    public static long encode(int x, int y) {
+        return encode2(x & 0xFFFFFFFFL, y & 0xFFFFFFFFL);
+    }
+
+    private static long encode2(long x, long y) {
+        for (long q = 1L << BITS_2D - 1; q > 1; q >>>= 1) {
+            final long p = q - 1;
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                final long t = (x ^ y) & p;
+                x ^= t;
+                y ^= t;
+            }
+        }
+        y ^= x;
+        long t = 0;
+        for (long q = 1L << BITS_2D - 1; q > 1; q >>>= 1) {
+            if ((y & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        // x holds the most significant bit of every level
+        return Morton.part1By1(y ^ t) | Morton.part1By1(x ^ t) << 1;
+    }
+
+    /**
+     * @param x the x coordinate (lower 21 bits)
+     * @param y the y coordinate (lower 21 bits)
+     * @param z the z coordinate (lower 21 bits)
+     * @return the three dimensional index
+     */
+    public static long encode(int x, int y, int z) {
+        return encode3(x & 0x1FFFFFL, y & 0x1FFFFFL, z & 0x1FFFFFL);
+    }
+
+    private static long encode3(long x, long y, long z) {
+        for (long q = 1L << BITS_3D - 1; q > 1; q >>>= 1) {
+            final long p = q - 1;
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                final long t = (x ^ y) & p;
+                x ^= t;
+                y ^= t;
+            }
+            if ((z & q) != 0) {
+                x ^= p;
+            } else {
+                final long t = (x ^ z) & p;
+                x ^= t;
+                z ^= t;
+            }
+        }
+        y ^= x;
+        z ^= y;
+        long t = 0;
+        for (long q = 1L << BITS_3D - 1; q > 1; q >>>= 1) {
+            if ((z & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        return Morton.part1By2(z ^ t) | Morton.part1By2(y ^ t) << 1 | Morton.part1By2(x ^ t) << 2;
+    }
+
+    /**
+     * Decodes a two dimensional index.
+     *
+     * @param index the index
+     * @param result receives x and y
+     * @return the passed result array
+     */
+    public static int[] decode2(long index, int[] result) {
+        long x = Morton.compact1By1(index >>> 1), y = Morton.compact1By1(index);
+        final long t = y >>> 1;
+        y ^= x;
+        x ^= t;
+        for (long q = 2; q != 1L << BITS_2D; q <<= 1) {
+            final long p = q - 1;
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                final long s = (x ^ y) & p;
+                x ^= s;
+                y ^= s;
+            }
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+        }
+        result[0] = (int) x;
+        result[1] = (int) y;
+        return result;
+    }
+
+    /**
+     * Decodes a three dimensional index.
+     *
+     * @param index the index
+     * @param result receives x, y and z
+     * @return the passed result array
+     */
+    public static int[] decode3(long index, int[] result) {
+        long x = Morton.compact1By2(index >>> 2), y = Morton.compact1By2(index >>> 1), z = Morton.compact1By2(index);
+        final long t = z >>> 1;
+        z ^= y;
+        y ^= x;
+        x ^= t;
+        for (long q = 2; q != 1L << BITS_3D; q <<= 1) {
+            final long p = q - 1;
+            if ((z & q) != 0) {
+                x ^= p;
+            } else {
+                final long s = (x ^ z) & p;
+                x ^= s;
+                z ^= s;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                final long s = (x ^ y) & p;
+                x ^= s;
+                y ^= s;
+            }
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+        }
+        result[0] = (int) x;
+        result[1] = (int) y;
+        result[2] = (int) z;
+        return result;
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the two dimensional index
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec2f point, Aabb2f bounds) {
+        return encode2(quantize(point.getX(), bounds.getMinX(), scale(bounds.getMinX(), bounds.getMaxX(), BITS_2D), BITS_2D),
+                quantize(point.getY(), bounds.getMinY(), scale(bounds.getMinY(), bounds.getMaxY(), BITS_2D), BITS_2D));
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the three dimensional index
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec3f point, Aabb3f bounds) {
+        return encode3(quantize(point.getX(), bounds.getMinX(), scale(bounds.getMinX(), bounds.getMaxX(), BITS_3D), BITS_3D),
+                quantize(point.getY(), bounds.getMinY(), scale(bounds.getMinY(), bounds.getMaxY(), BITS_3D), BITS_3D),
+                quantize(point.getZ(), bounds.getMinZ(), scale(bounds.getMinZ(), bounds.getMaxZ(), BITS_3D), BITS_3D));
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the three dimensional index
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec3d point, Aabb3d bounds) {
+        return encode3(quantize(point.getX(), bounds.getMinX(), scale(bounds.getMinX(), bounds.getMaxX(), BITS_3D), BITS_3D),
+                quantize(point.getY(), bounds.getMinY(), scale(bounds.getMinY(), bounds.getMaxY(), BITS_3D), BITS_3D),
+                quantize(point.getZ(), bounds.getMinZ(), scale(bounds.getMinZ(), bounds.getMaxZ(), BITS_3D), BITS_3D));
+    }
+
+    /**
+     * Encodes interleaved two dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xy the points (x,y interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param indices receives the index of point <code>offset + i</code> at
+     *            position <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(float[] xy, int offset, int count, Aabb2f bounds, long[] indices) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_2D), sy = scale(minY, bounds.getMaxY(), BITS_2D);
+        Morton.stream(count).forEach(i -> {
+            final int p = (offset + i) * 2;
+            indices[i] = encode2(quantize(xy[p], minX, sx, BITS_2D), quantize(xy[p + 1], minY, sy, BITS_2D));
+        });
+    }
+
+    /**
+     * Encodes interleaved three dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param indices receives the index of point <code>offset + i</code> at
+     *            position <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(float[] xyz, int offset, int count, Aabb3f bounds, long[] indices) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_3D), sy = scale(minY, bounds.getMaxY(), BITS_3D),
+                sz = scale(minZ, bounds.getMaxZ(), BITS_3D);
+        Morton.stream(count).forEach(i -> {
+            final int p = (offset + i) * 3;
+            indices[i] = encode3(quantize(xyz[p], minX, sx, BITS_3D), quantize(xyz[p + 1], minY, sy, BITS_3D),
+                    quantize(xyz[p + 2], minZ, sz, BITS_3D));
+        });
+    }
+
+    /**
+     * Encodes interleaved three dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param indices receives the index of point <code>offset + i</code> at
+     *            position <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(double[] xyz, int offset, int count, Aabb3d bounds, long[] indices) {
+        final double minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_3D), sy = scale(minY, bounds.getMaxY(), BITS_3D),
+                sz = scale(minZ, bounds.getMaxZ(), BITS_3D);
+        Morton.stream(count).forEach(i -> {
+            final int p = (offset + i) * 3;
+            indices[i] = encode3(quantize(xyz[p], minX, sx, BITS_3D), quantize(xyz[p + 1], minY, sy, BITS_3D),
+                    quantize(xyz[p + 2], minZ, sz, BITS_3D));
+        });
+    }
+
+}
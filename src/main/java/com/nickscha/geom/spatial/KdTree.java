@@ -0,0 +1,607 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.vec.Vec2d;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Static k-d tree over two or three dimensional points (final::immutable)
+ * <p>
+ * The tree is implicit: the points are reordered so that the median of every
+ * range <code>[lo, hi)</code> sits at <code>(lo + hi) / 2</code>, with the
+ * smaller points to its left and the larger to its right. Only the points,
+ * the input index of every point and the split dimension of every median are
+ * stored, there are no node objects. Ranges of at most {@link #LEAF_SIZE}
+ * points are left unsplit and scanned linearly.
+ * </p>
+ * <b>Construction</b>
+ * <p>
+ * Every range is split on the dimension of largest spread with a quickselect,
+ * which builds the tree in O(n log n). Ranges above a threshold are split in
+ * parallel on a {@link ForkJoinPool}. Coordinates are stored as doubles, float
+ * input is widened.
+ * </p>
+ * <b>Queries</b>
+ * <p>
+ * Nearest neighbour queries write the input indices and squared distances of
+ * the found points, nearest first, into caller supplied arrays. A positive
+ * epsilon turns them into approximate queries which only guarantee that every
+ * reported distance is within a factor of <code>1 + epsilon</code> of the
+ * exact one. Query state is kept per thread, so the tree can be queried
+ * concurrently and the batch queries fan out over a pool. Radius query
+ * visitors may start further queries.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class KdTree {
+
+    /**
+     * Maximal amount of points in an unsplit range
+     */
+    public static final int LEAF_SIZE = 8;
+
+    /**
+     * Amount of points above which a range is split as separate task
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+
+    private final int dimensions;
+    private final int size;
+
+    /**
+     * point coordinates in tree order, dimensions values per point
+     */
+    private final double[] coords;
+
+    /**
+     * tree order to input index
+     */
+    private final int[] index;
+
+    /**
+     * split dimension of the median at every position
+     */
+    private final byte[] split;
+
+    private KdTree(double[] coords, int dimensions, ForkJoinPool pool) {
+        if (dimensions != 2 && dimensions != 3) {
+            throw new IllegalArgumentException("Only two and three dimensions are supported: " + dimensions);
+        }
+        this.dimensions = dimensions;
+        this.size = coords.length / dimensions;
+        this.coords = coords;
+        this.index = new int[size];
+        this.split = new byte[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = i;
+        }
+        if (size > LEAF_SIZE) {
+            pool.invoke(new BuildTask(this, 0, size));
+        }
+    }
+
+    /**
+     * Builds a tree over points on the common {@link ForkJoinPool}.
+     *
+     * @param points the points
+     * @return the new tree
+     * @throws NullPointerException if any point is null
+     */
+    public static KdTree of(Vec3f[] points) {
+        final double[] coords = new double[points.length * 3];
+        for (int i = 0; i < points.length; i++) {
+            coords[i * 3] = points[i].getX();
+            coords[i * 3 + 1] = points[i].getY();
+            coords[i * 3 + 2] = points[i].getZ();
+        }
+        return new KdTree(coords, 3, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a tree over points on the common {@link ForkJoinPool}.
+     *
+     * @param points the points
+     * @return the new tree
+     * @throws NullPointerException if any point is null
+     */
+    public static KdTree of(Vec3d[] points) {
+        final double[] coords = new double[points.length * 3];
+        for (int i = 0; i < points.length; i++) {
+            coords[i * 3] = points[i].getX();
+            coords[i * 3 + 1] = points[i].getY();
+            coords[i * 3 + 2] = points[i].getZ();
+        }
+        return new KdTree(coords, 3, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a tree over points on the common {@link ForkJoinPool}.
+     *
+     * @param points the points
+     * @return the new tree
+     * @throws NullPointerException if any point is null
+     */
+    public static KdTree of(Vec2d[] points) {
+        final double[] coords = new double[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            coords[i * 2] = points[i].getX();
+            coords[i * 2 + 1] = points[i].getY();
+        }
+        return new KdTree(coords, 2, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a tree over interleaved coordinates on the specified pool.
+     *
+     * @param coordinates the coordinates (x,y or x,y,z interleaved)
+     * @param dimensions 2 or 3
+     * @param pool the pool to run the build on
+     * @return the new tree
+     * @throws IllegalArgumentException if the dimensions are not 2 or 3
+     */
+    public static KdTree of(float[] coordinates, int dimensions, ForkJoinPool pool) {
+        final double[] coords = new double[coordinates.length - coordinates.length % Math.max(dimensions, 1)];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = coordinates[i];
+        }
+        return new KdTree(coords, dimensions, pool);
+    }
+
+    /**
+     * Builds a tree over interleaved coordinates on the specified pool. The
+     * array is copied.
+     *
+     * @param coordinates the coordinates (x,y or x,y,z interleaved)
+     * @param dimensions 2 or 3
+     * @param pool the pool to run the build on
+     * @return the new tree
+     * @throws IllegalArgumentException if the dimensions are not 2 or 3
+     */
+    public static KdTree of(double[] coordinates, int dimensions, ForkJoinPool pool) {
+        return new KdTree(Arrays.copyOf(coordinates, coordinates.length - coordinates.length % Math.max(dimensions, 1)),
+                dimensions, pool);
+    }
+
+    /**
+     * Finds the k nearest points.
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param z the z component of the query point (ignored in two dimensions)
+     * @param ids receives the input indices of the nearest points, nearest
+     *            first. Its length is the amount of points searched for.
+     * @param distances receives the squared distances of the found points
+     * @return the amount of found points
+     * @throws IndexOutOfBoundsException if distances is shorter than ids
+     */
+    public int nearest(double x, double y, double z, int[] ids, double[] distances) {
+        return nearest(x, y, z, Double.POSITIVE_INFINITY, 0, ids, distances, 0, ids.length);
+    }
+
+    /**
+     * Finds the k nearest points within a distance, optionally approximate.
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param z the z component of the query point (ignored in two dimensions)
+     * @param maxDistance only points within this distance are considered
+     * @param epsilon the allowed relative error of the distances, zero for
+     *            exact results
+     * @param ids receives the input indices of the nearest points, nearest
+     *            first. Its length is the amount of points searched for.
+     * @param distances receives the squared distances of the found points
+     * @return the amount of found points
+     * @throws IndexOutOfBoundsException if distances is shorter than ids
+     */
+    public int nearest(double x, double y, double z, double maxDistance, double epsilon, int[] ids, double[] distances) {
+        return nearest(x, y, z, maxDistance, epsilon, ids, distances, 0, ids.length);
+    }
+
+    /**
+     * Finds the nearest point.
+     *
+     * @param point the query point
+     * @return the input index of the nearest point or -1 if the tree is empty
+     * @throws NullPointerException if the passed point is null
+     */
+    public int nearest(Vec3f point) {
+        return nearest(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Finds the nearest point.
+     *
+     * @param point the query point
+     * @return the input index of the nearest point or -1 if the tree is empty
+     * @throws NullPointerException if the passed point is null
+     */
+    public int nearest(Vec3d point) {
+        return nearest(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Finds the nearest point.
+     *
+     * @param point the query point
+     * @return the input index of the nearest point or -1 if the tree is empty
+     * @throws NullPointerException if the passed point is null
+     */
+    public int nearest(Vec2d point) {
+        return nearest(point.getX(), point.getY(), 0);
+    }
+
+    private int nearest(double x, double y, double z) {
+        final Search s = SEARCH.get();
+        final int found = nearest(x, y, z, Double.POSITIVE_INFINITY, 0, s.id, s.distance, 0, 1);
+        return found == 0 ? -1 : s.id[0];
+    }
+
+    private int nearest(double x, double y, double z, double maxDistance, double epsilon, int[] ids, double[] distances,
+            int offset, int k) {
+        if (k > distances.length - offset) {
+            throw new IndexOutOfBoundsException("distances: " + distances.length + ", k: " + k);
+        }
+        if (k <= 0 || size == 0) {
+            return 0;
+        }
+        final Search s = SEARCH.get();
+        s.query[0] = x;
+        s.query[1] = y;
+        s.query[2] = z;
+        s.ids = ids;
+        s.distances = distances;
+        s.offset = offset;
+        s.k = k;
+        s.count = 0;
+        s.limit = maxDistance * maxDistance;
+        s.factor = (1 + epsilon) * (1 + epsilon);
+        search(s, 0, size);
+        s.sort();
+        for (int i = offset; i < offset + s.count; i++) {
+            ids[i] = index[ids[i]];
+        }
+        s.ids = null;
+        s.distances = null;
+        return s.count;
+    }
+
+    private void search(Search s, int lo, int hi) {
+        final double[] q = s.query;
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                s.offer(i, distanceSquared(q, i));
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1, dim = split[mid];
+        final double diff = q[dim] - coords[mid * dimensions + dim];
+        if (diff < 0) {
+            search(s, lo, mid);
+        } else {
+            search(s, mid + 1, hi);
+        }
+        s.offer(mid, distanceSquared(q, mid));
+        if (diff * diff * s.factor < s.bound()) {
+            if (diff < 0) {
+                search(s, mid + 1, hi);
+            } else {
+                search(s, lo, mid);
+            }
+        }
+    }
+
+    private double distanceSquared(double[] q, int i) {
+        return distanceSquared(q[0], q[1], q[2], i);
+    }
+
+    private double distanceSquared(double x, double y, double z, int i) {
+        final int o = i * dimensions;
+        final double dx = coords[o] - x, dy = coords[o + 1] - y;
+        final double dz = dimensions == 3 ? coords[o + 2] - z : 0;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Visits all points within the specified distance.
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param z the z component of the query point (ignored in two dimensions)
+     * @param radius the query radius
+     * @param visitor receives the input index of every point within the radius
+     * @return the amount of visited points
+     */
+    public int radius(double x, double y, double z, double radius, IntConsumer visitor) {
+        if (size == 0 || !(radius >= 0)) {
+            return 0;
+        }
+        // the query stays on the call stack, so the visitor may start further
+        // queries which reuse the per thread search state
+        return radius(x, y, dimensions == 3 ? z : 0, radius * radius, visitor, 0, size);
+    }
+
+    private int radius(double x, double y, double z, double r2, IntConsumer visitor, int lo, int hi) {
+        int found = 0;
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                if (distanceSquared(x, y, z, i) <= r2) {
+                    visitor.accept(index[i]);
+                    found++;
+                }
+            }
+            return found;
+        }
+        final int mid = (lo + hi) >>> 1, dim = split[mid];
+        final double diff = (dim == 0 ? x : dim == 1 ? y : z) - coords[mid * dimensions + dim];
+        if (distanceSquared(x, y, z, mid) <= r2) {
+            visitor.accept(index[mid]);
+            found++;
+        }
+        if (diff <= 0 || diff * diff <= r2) {
+            found += radius(x, y, z, r2, visitor, lo, mid);
+        }
+        if (diff >= 0 || diff * diff <= r2) {
+            found += radius(x, y, z, r2, visitor, mid + 1, hi);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the k nearest points of many query points on the specified pool.
+     * The results of query <code>i</code> are written to
+     * <code>k*i..k*i+k-1</code>, nearest first. Slots without a point are set
+     * to -1 and positive infinity.
+     *
+     * @param queries the query coordinates, interleaved with the dimensions of
+     *            this tree
+     * @param k the amount of points searched for per query
+     * @param epsilon the allowed relative error of the distances, zero for
+     *            exact results
+     * @param ids receives the input indices of the nearest points
+     * @param distances receives the squared distances of the found points
+     * @param pool the pool to run the queries on
+     * @throws IndexOutOfBoundsException if ids or distances are shorter than k
+     *             times the amount of queries
+     */
+    public void nearest(double[] queries, int k, double epsilon, int[] ids, double[] distances, ForkJoinPool pool) {
+        final int n = queries.length / dimensions;
+        if (ids.length < n * k || distances.length < n * k) {
+            throw new IndexOutOfBoundsException("Result arrays too short for " + n + " queries");
+        }
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> {
+            final int o = i * dimensions;
+            final int found = nearest(queries[o], queries[o + 1], dimensions == 3 ? queries[o + 2] : 0, Double.POSITIVE_INFINITY,
+                    epsilon, ids, distances, i * k, k);
+            Arrays.fill(ids, i * k + found, i * k + k, -1);
+            Arrays.fill(distances, i * k + found, i * k + k, Double.POSITIVE_INFINITY);
+        })).join();
+    }
+
+    /**
+     * Finds the nearest point of many query points on the specified pool.
+     *
+     * @param queries the query coordinates, interleaved with the dimensions of
+     *            this tree
+     * @param pool the pool to run the queries on
+     * @return the input index of the nearest point per query, -1 if the tree
+     *         is empty
+     */
+    public int[] nearest(double[] queries, ForkJoinPool pool) {
+        final int n = queries.length / dimensions;
+        final int[] ids = new int[n];
+        nearest(queries, 1, 0, ids, new double[n], pool);
+        return ids;
+    }
+
+    /**
+     * @return the amount of dimensions (2 or 3)
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return the amount of points
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "KdTree [dimensions=" + dimensions + ", size=" + size + "]";
+    }
+
+    /**
+     * Per thread query state. The results are kept as max heap on the squared
+     * distance in the caller arrays and sorted at the end.
+     */
+    private static final class Search {
+
+        final double[] query = new double[3];
+        final int[] id = new int[1];
+        final double[] distance = new double[1];
+
+        int[] ids;
+        double[] distances;
+        int offset;
+        int k;
+        int count;
+        double limit;
+        double factor;
+
+        double bound() {
+            return count < k ? limit : Math.min(limit, distances[offset]);
+        }
+
+        void offer(int position, double d) {
+            if (d > limit) {
+                return;
+            }
+            if (count < k) {
+                int i = count++;
+                while (i > 0) {
+                    final int parent = (i - 1) >> 1;
+                    if (distances[offset + parent] >= d) {
+                        break;
+                    }
+                    set(i, ids[offset + parent], distances[offset + parent]);
+                    i = parent;
+                }
+                set(i, position, d);
+            } else if (d < distances[offset]) {
+                siftDown(0, count, position, d);
+            }
+        }
+
+        private void siftDown(int i, int end, int position, double d) {
+            for (int child = i * 2 + 1; child < end; child = i * 2 + 1) {
+                if (child + 1 < end && distances[offset + child + 1] > distances[offset + child]) {
+                    child++;
+                }
+                if (distances[offset + child] <= d) {
+                    break;
+                }
+                set(i, ids[offset + child], distances[offset + child]);
+                i = child;
+            }
+            set(i, position, d);
+        }
+
+        private void set(int i, int position, double d) {
+            ids[offset + i] = position;
+            distances[offset + i] = d;
+        }
+
+        /**
+         * Heap sort into ascending order. The heap holds tree positions which
+         * are mapped to input indices afterwards.
+         */
+        void sort() {
+            for (int end = count - 1; end > 0; end--) {
+                final int position = ids[offset + end];
+                final double d = distances[offset + end];
+                set(end, ids[offset], distances[offset]);
+                siftDown(0, end, position, d);
+            }
+        }
+    }
+
+    /**
+     * Splits a range at its median and recurses into both halves.
+     */
+    private static final class BuildTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final KdTree tree;
+        private final int lo, hi;
+
+        BuildTask(KdTree tree, int lo, int hi) {
+            this.tree = tree;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            int lo = this.lo, hi = this.hi;
+            while (hi - lo > LEAF_SIZE) {
+                final int mid = (lo + hi) >>> 1;
+                tree.split(lo, hi, mid);
+                if (hi - lo > PARALLEL_THRESHOLD) {
+                    ForkJoinTask.invokeAll(new BuildTask(tree, lo, mid), new BuildTask(tree, mid + 1, hi));
+                    return;
+                }
+                new BuildTask(tree, lo, mid).compute();
+                lo = mid + 1;
+            }
+        }
+    }
+
+    /**
+     * Selects the median of the range on its widest dimension.
+     */
+    private void split(int lo, int hi, int mid) {
+        final int d = dimensions;
+        int dim = 0;
+        double widest = -1;
+        for (int k = 0; k < d; k++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                final double v = coords[i * d + k];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                dim = k;
+            }
+        }
+        split[mid] = (byte) dim;
+
+        while (hi - lo > 1) {
+            final double a = coords[lo * d + dim], b = coords[((lo + hi) >>> 1) * d + dim], c = coords[(hi - 1) * d + dim];
+            final double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = lo, j = hi - 1;
+            while (i <= j) {
+                while (coords[i * d + dim] < pivot) {
+                    i++;
+                }
+                while (coords[j * d + dim] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (mid <= j) {
+                hi = j + 1;
+            } else if (mid >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        final int d = dimensions;
+        for (int k = 0; k < d; k++) {
+            final double t = coords[i * d + k];
+            coords[i * d + k] = coords[j * d + k];
+            coords[j * d + k] = t;
+        }
+        final int t = index[i];
+        index[i] = index[j];
+        index[j] = t;
+    }
+
+}
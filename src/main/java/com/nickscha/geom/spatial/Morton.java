@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Aabb2f;
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Morton (Z-order) codes
+ * <p>
+ * A Morton code interleaves the bits of the integer coordinates, x in the
+ * lowest bit. Two dimensional codes use 32 bits and three dimensional codes 21
+ * bits per coordinate. Floating point positions are quantized to the grid
+ * spanned by a bounding box, positions outside the box are clamped.
+ * </p>
+ * <p>
+ * Two dimensional codes use all 64 bits and must be compared unsigned
+ * ({@link Long#compareUnsigned(long, long)}), as {@link RadixSort} does.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Morton {
+
+    /**
+     * Bits per coordinate of two dimensional codes
+     */
+    public static final int BITS_2D = 32;
+
+    /**
+     * Bits per coordinate of three dimensional codes
+     */
+    public static final int BITS_3D = 21;
+
+    /**
+     * Amount of values above which bulk encoding runs in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private Morton() {
+    }
+
+    /**
+     * Spreads the lower 32 bits of a value to the even bits.
+     */
+    static long part1By1(long x) {
+        x &= 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        return (x | x << 1) & 0x5555555555555555L;
+    }
+
+    static long compact1By1(long x) {
+        x &= 0x5555555555555555L;
+        x = (x ^ x >>> 1) & 0x3333333333333333L;
+        x = (x ^ x >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x ^ x >>> 4) & 0x00FF00FF00FF00FFL;
+        x = (x ^ x >>> 8) & 0x0000FFFF0000FFFFL;
+        return (x ^ x >>> 16) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Spreads the lower 21 bits of a value to every third bit.
+     */
+    static long part1By2(long x) {
+        x &= 0x1FFFFFL;
+        x = (x | x << 32) & 0x001F00000000FFFFL;
+        x = (x | x << 16) & 0x001F0000FF0000FFL;
+        x = (x | x << 8) & 0x100F00F00F00F00FL;
+        x = (x | x << 4) & 0x10C30C30C30C30C3L;
+        return (x | x << 2) & 0x1249249249249249L;
+    }
+
+    static long compact1By2(long x) {
+        x &= 0x1249249249249249L;
+        x = (x ^ x >>> 2) & 0x10C30C30C30C30C3L;
+        x = (x ^ x >>> 4) & 0x100F00F00F00F00FL;
+        x = (x ^ x >>> 8) & 0x001F0000FF0000FFL;
+        x = (x ^ x >>> 16) & 0x001F00000000FFFFL;
+        return (x ^ x >>> 32) & 0x1FFFFFL;
+    }
+
+    /**
+     * Maps a value to an integer grid coordinate in <code>[0, 2^bits)</code>.
+     *
+     * @param scale <code>2^bits / extent</code> or zero for an empty extent
+     */
+    static long quantize(double value, double min, double scale, int bits) {
+        final double q = (value - min) * scale;
+        final long max = (1L << bits) - 1;
+        // also maps NaN to zero
+        return q >= max ? max : q > 0 ? (long) q : 0;
+    }
+
+    static double scale(double min, double max, int bits) {
+        final double extent = max - min;
+        return extent > 0 && extent < Double.POSITIVE_INFINITY ? (1L << bits) / extent : 0;
+    }
+
+    /**
+     * @param x the x coordinate (lower 32 bits)
+     * @param y the y coordinate (lower 32 bits)
+     * @return the two dimensional code
+     */
+    public static long encode(int x, int y) {
+        return part1By1(x) | part1By1(y) << 1;
+    }
+
+    /**
+     * @param x the x coordinate (lower 21 bits)
+     * @param y the y coordinate (lower 21 bits)
+     * @param z the z coordinate (lower 21 bits)
+     * @return the three dimensional code
+     */
+    public static long encode(int x, int y, int z) {
+        return part1By2(x) | part1By2(y) << 1 | part1By2(z) << 2;
+    }
+
+    /**
+     * @param code a two dimensional code
+     * @return the x coordinate
+     */
+    public static int decode2X(long code) {
+        return (int) compact1By1(code);
+    }
+
+    /**
+     * @param code a two dimensional code
+     * @return the y coordinate
+     */
+    public static int decode2Y(long code) {
+        return (int) compact1By1(code >>> 1);
+    }
+
+    /**
+     * @param code a three dimensional code
+     * @return the x coordinate
+     */
+    public static int decode3X(long code) {
+        return (int) compact1By2(code);
+    }
+
+    /**
+     * @param code a three dimensional code
+     * @return the y coordinate
+     */
+    public static int decode3Y(long code) {
+        return (int) compact1By2(code >>> 1);
+    }
+
+    /**
+     * @param code a three dimensional code
+     * @return the z coordinate
+     */
+    public static int decode3Z(long code) {
+        return (int) compact1By2(code >>> 2);
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the two dimensional code
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec2f point, Aabb2f bounds) {
+        return part1By1(quantize(point.getX(), bounds.getMinX(), scale(bounds.getMinX(), bounds.getMaxX(), BITS_2D), BITS_2D))
+                | part1By1(quantize(point.getY(), bounds.getMinY(), scale(bounds.getMinY(), bounds.getMaxY(), BITS_2D), BITS_2D)) << 1;
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the three dimensional code
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec3f point, Aabb3f bounds) {
+        return encode3(point.getX(), point.getY(), point.getZ(), bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(),
+                scale(bounds.getMinX(), bounds.getMaxX(), BITS_3D), scale(bounds.getMinY(), bounds.getMaxY(), BITS_3D),
+                scale(bounds.getMinZ(), bounds.getMaxZ(), BITS_3D));
+    }
+
+    /**
+     * Encodes a point quantized to the specified bounds.
+     *
+     * @param point the point
+     * @param bounds the bounds of the grid
+     * @return the three dimensional code
+     * @throws NullPointerException if any argument is null
+     */
+    public static long encode(Vec3d point, Aabb3d bounds) {
+        return encode3(point.getX(), point.getY(), point.getZ(), bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(),
+                scale(bounds.getMinX(), bounds.getMaxX(), BITS_3D), scale(bounds.getMinY(), bounds.getMaxY(), BITS_3D),
+                scale(bounds.getMinZ(), bounds.getMaxZ(), BITS_3D));
+    }
+
+    private static long encode3(double x, double y, double z, double minX, double minY, double minZ, double sx, double sy,
+            double sz) {
+        return part1By2(quantize(x, minX, sx, BITS_3D)) | part1By2(quantize(y, minY, sy, BITS_3D)) << 1
+                | part1By2(quantize(z, minZ, sz, BITS_3D)) << 2;
+    }
+
+    static IntStream stream(int count) {
+        final IntStream stream = IntStream.range(0, count);
+        return count > PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    /**
+     * Encodes interleaved two dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xy the points (x,y interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param codes receives the code of point <code>offset + i</code> at
+     *            index <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(float[] xy, int offset, int count, Aabb2f bounds, long[] codes) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_2D), sy = scale(minY, bounds.getMaxY(), BITS_2D);
+        stream(count).forEach(i -> {
+            final int p = (offset + i) * 2;
+            codes[i] = part1By1(quantize(xy[p], minX, sx, BITS_2D)) | part1By1(quantize(xy[p + 1], minY, sy, BITS_2D)) << 1;
+        });
+    }
+
+    /**
+     * Encodes interleaved three dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param codes receives the code of point <code>offset + i</code> at
+     *            index <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(float[] xyz, int offset, int count, Aabb3f bounds, long[] codes) {
+        final float minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_3D), sy = scale(minY, bounds.getMaxY(), BITS_3D),
+                sz = scale(minZ, bounds.getMaxZ(), BITS_3D);
+        stream(count).forEach(i -> {
+            final int p = (offset + i) * 3;
+            codes[i] = encode3(xyz[p], xyz[p + 1], xyz[p + 2], minX, minY, minZ, sx, sy, sz);
+        });
+    }
+
+    /**
+     * Encodes interleaved three dimensional points quantized to the specified
+     * bounds.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param bounds the bounds of the grid
+     * @param codes receives the code of point <code>offset + i</code> at
+     *            index <code>i</code>
+     * @throws NullPointerException if any array or the bounds are null
+     */
+    public static void encode(double[] xyz, int offset, int count, Aabb3d bounds, long[] codes) {
+        final double minX = bounds.getMinX(), minY = bounds.getMinY(), minZ = bounds.getMinZ();
+        final double sx = scale(minX, bounds.getMaxX(), BITS_3D), sy = scale(minY, bounds.getMaxY(), BITS_3D),
+                sz = scale(minZ, bounds.getMaxZ(), BITS_3D);
+        stream(count).forEach(i -> {
+            final int p = (offset + i) * 3;
+            codes[i] = encode3(xyz[p], xyz[p + 1], xyz[p + 2], minX, minY, minZ, sx, sy, sz);
+        });
+    }
+
+}
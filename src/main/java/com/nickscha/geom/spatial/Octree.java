@@ -0,0 +1,755 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.bounds.Frustumf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Loose octree over dynamic spheres and points (final::mutable)
+ * <p>
+ * Every node owns a cubic cell but accepts objects whose bounds lie within
+ * twice the cell (the loose bounds). An object is stored in the deepest node
+ * whose cell contains its center and whose half size is at least its radius,
+ * so the node of an object only depends on its position and size and never
+ * on the other objects. Objects outside the world bounds are kept in the root
+ * node.
+ * </p>
+ * <b>Incremental updates</b>
+ * <p>
+ * {@link #move(int, float, float, float)} keeps an object in its node as long
+ * as it stays within the loose bounds of that node, which makes the common
+ * case of small movements a few float compares and stores. Objects that leave
+ * their loose bounds are unlinked and inserted again. Nodes that become empty
+ * are returned to the pool.
+ * </p>
+ * <b>Memory layout</b>
+ * <p>
+ * Nodes and objects live in pooled arrays and are addressed by index. The
+ * objects of a node form a doubly linked list through the object arrays, so
+ * insert, remove and move never allocate once the pools have grown to the
+ * working set. Object handles returned by {@link #insert(float, float, float,
+ * float)} are reused after removal.
+ * </p>
+ * <b>Queries</b>
+ * <p>
+ * Box, sphere and frustum queries pass the handles of all overlapping objects
+ * to an {@link IntConsumer}. Subtrees without objects are skipped. Nearest
+ * queries report squared distances like {@link KdTree}. The traversal stack
+ * is kept per thread and nesting level, so the tree can be queried
+ * concurrently as long as it is not modified at the same time and visitors
+ * may start further queries.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Octree {
+
+    /**
+     * Depth used if none is specified
+     */
+    public static final int DEFAULT_DEPTH = 8;
+
+    /**
+     * Maximal supported depth. Deeper cells are below float precision for
+     * most worlds.
+     */
+    public static final int MAX_DEPTH = 20;
+
+    private static final int NONE = -1;
+
+    private static final int STACK_SIZE = 8 * (MAX_DEPTH + 1);
+
+    private static final ThreadLocal<TraversalStack> STACK = TraversalStack.local(STACK_SIZE);
+
+    private final int maxDepth;
+
+    /**
+     * center x,y,z and half size per node
+     */
+    private float[] nodeData;
+
+    /**
+     * eight children per node, zero if absent (the root is never a child)
+     */
+    private int[] nodeChildren;
+    private int[] nodeParent;
+
+    /**
+     * first object of a node or the next free node
+     */
+    private int[] nodeHead;
+
+    /**
+     * amount of objects in the subtree of a node
+     */
+    private int[] nodeCount;
+    private int nodeTop;
+    private int freeNode = NONE;
+    private int nodes;
+
+    /**
+     * x,y,z and radius per object
+     */
+    private float[] objectData;
+
+    /**
+     * node of an object or NONE if the handle is free
+     */
+    private int[] objectNode;
+    private int[] objectNext;
+    private int[] objectPrev;
+    private int objectTop;
+    private int freeObject = NONE;
+    private int size;
+
+    /**
+     * Creates an empty tree with {@link #DEFAULT_DEPTH} levels.
+     *
+     * @param world the bounds of the world, the root is the smallest enclosing
+     *            cube
+     * @throws IllegalArgumentException if the bounds are empty
+     */
+    public Octree(Aabb3f world) {
+        this(world, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param world the bounds of the world, the root is the smallest enclosing
+     *            cube
+     * @param maxDepth the maximal depth of a node (root is depth zero)
+     * @throws IllegalArgumentException if the bounds are empty or the depth is
+     *             not within 0 and {@link #MAX_DEPTH}
+     */
+    public Octree(Aabb3f world, int maxDepth) {
+        this(world.getMinX(), world.getMinY(), world.getMinZ(), world.getMaxX(), world.getMaxY(), world.getMaxZ(), maxDepth);
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param center the center of the root cell
+     * @param halfSize half the edge length of the root cell
+     * @param maxDepth the maximal depth of a node (root is depth zero)
+     * @throws IllegalArgumentException if the size is not positive or the
+     *             depth is not within 0 and {@link #MAX_DEPTH}
+     */
+    public Octree(Vec3f center, float halfSize, int maxDepth) {
+        this(center.getX() - halfSize, center.getY() - halfSize, center.getZ() - halfSize, center.getX() + halfSize,
+                center.getY() + halfSize, center.getZ() + halfSize, maxDepth);
+    }
+
+    private Octree(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int maxDepth) {
+        final float half = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ)) * 0.5f;
+        if (!(half > 0) || Float.isInfinite(half)) {
+            throw new IllegalArgumentException("World bounds must not be empty");
+        }
+        if (maxDepth < 0 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be within 0 and " + MAX_DEPTH + ": " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.nodeData = new float[64 * 4];
+        this.nodeChildren = new int[64 * 8];
+        this.nodeParent = new int[64];
+        this.nodeHead = new int[64];
+        this.nodeCount = new int[64];
+        this.objectData = new float[64 * 4];
+        this.objectNode = new int[64];
+        this.objectNext = new int[64];
+        this.objectPrev = new int[64];
+        createNode(NONE, (minX + maxX) * 0.5f, (minY + maxY) * 0.5f, (minZ + maxZ) * 0.5f, half);
+    }
+
+    /**
+     * Inserts a point.
+     *
+     * @param position the position
+     * @return the handle of the object
+     */
+    public int insert(Vec3f position) {
+        return insert(position.getX(), position.getY(), position.getZ(), 0);
+    }
+
+    /**
+     * Inserts a sphere.
+     *
+     * @param x the x component of the center
+     * @param y the y component of the center
+     * @param z the z component of the center
+     * @param radius the radius
+     * @return the handle of the object
+     * @throws IllegalArgumentException if the radius is negative or NaN
+     */
+    public int insert(float x, float y, float z, float radius) {
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        int id = freeObject;
+        if (id != NONE) {
+            freeObject = objectNext[id];
+        } else {
+            id = objectTop++;
+            if (id == objectNode.length) {
+                final int capacity = id + (id >> 1);
+                objectData = Arrays.copyOf(objectData, capacity * 4);
+                objectNode = Arrays.copyOf(objectNode, capacity);
+                objectNext = Arrays.copyOf(objectNext, capacity);
+                objectPrev = Arrays.copyOf(objectPrev, capacity);
+            }
+        }
+        objectData[id * 4] = x;
+        objectData[id * 4 + 1] = y;
+        objectData[id * 4 + 2] = z;
+        objectData[id * 4 + 3] = radius;
+        link(id, findNode(x, y, z, radius));
+        size++;
+        return id;
+    }
+
+    /**
+     * Removes an object.
+     *
+     * @param id the handle of the object
+     * @return true if the object was removed, false if the handle is not in
+     *         use
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        unlink(id);
+        objectNode[id] = NONE;
+        objectNext[id] = freeObject;
+        freeObject = id;
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves an object to a new position keeping its radius.
+     *
+     * @param id the handle of the object
+     * @param x the new x component of the center
+     * @param y the new y component of the center
+     * @param z the new z component of the center
+     * @return true if the object changed its node, false if it was updated in
+     *         place
+     * @throws IllegalArgumentException if the handle is not in use
+     */
+    public boolean move(int id, float x, float y, float z) {
+        return move(id, x, y, z, radius(id));
+    }
+
+    /**
+     * Moves and resizes an object.
+     *
+     * @param id the handle of the object
+     * @param x the new x component of the center
+     * @param y the new y component of the center
+     * @param z the new z component of the center
+     * @param radius the new radius
+     * @return true if the object changed its node, false if it was updated in
+     *         place
+     * @throws IllegalArgumentException if the handle is not in use or the
+     *             radius is negative
+     */
+    public boolean move(int id, float x, float y, float z, float radius) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown object: " + id);
+        }
+        if (!(radius >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radius);
+        }
+        objectData[id * 4] = x;
+        objectData[id * 4 + 1] = y;
+        objectData[id * 4 + 2] = z;
+        objectData[id * 4 + 3] = radius;
+
+        final int node = objectNode[id];
+        if (node != 0 ? fitsLoose(node, x, y, z, radius) : findNode(x, y, z, radius) == 0) {
+            return false;
+        }
+        unlink(id);
+        link(id, findNode(x, y, z, radius));
+        return true;
+    }
+
+    /**
+     * Removes all objects. The pools keep their capacity.
+     */
+    public void clear() {
+        final float[] root = Arrays.copyOf(nodeData, 4);
+        nodeTop = 0;
+        nodes = 0;
+        freeNode = NONE;
+        objectTop = 0;
+        freeObject = NONE;
+        size = 0;
+        createNode(NONE, root[0], root[1], root[2], root[3]);
+    }
+
+    private int createNode(int parent, float x, float y, float z, float half) {
+        int node = freeNode;
+        if (node != NONE) {
+            freeNode = nodeHead[node];
+        } else {
+            node = nodeTop++;
+            if (node == nodeParent.length) {
+                final int capacity = node + (node >> 1);
+                nodeData = Arrays.copyOf(nodeData, capacity * 4);
+                nodeChildren = Arrays.copyOf(nodeChildren, capacity * 8);
+                nodeParent = Arrays.copyOf(nodeParent, capacity);
+                nodeHead = Arrays.copyOf(nodeHead, capacity);
+                nodeCount = Arrays.copyOf(nodeCount, capacity);
+            }
+        }
+        nodeData[node * 4] = x;
+        nodeData[node * 4 + 1] = y;
+        nodeData[node * 4 + 2] = z;
+        nodeData[node * 4 + 3] = half;
+        Arrays.fill(nodeChildren, node * 8, node * 8 + 8, 0);
+        nodeParent[node] = parent;
+        nodeHead[node] = NONE;
+        nodeCount[node] = 0;
+        nodes++;
+        return node;
+    }
+
+    /**
+     * Finds the deepest node for the specified sphere, creating missing nodes
+     * on the way.
+     */
+    private int findNode(float x, float y, float z, float radius) {
+        final float half = nodeData[3];
+        if (!(Math.abs(x - nodeData[0]) <= half && Math.abs(y - nodeData[1]) <= half && Math.abs(z - nodeData[2]) <= half)) {
+            return 0;
+        }
+        int node = 0;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            final float cx = nodeData[node * 4], cy = nodeData[node * 4 + 1], cz = nodeData[node * 4 + 2];
+            final float childHalf = nodeData[node * 4 + 3] * 0.5f;
+            if (radius > childHalf) {
+                break;
+            }
+            final int octant = (x >= cx ? 1 : 0) | (y >= cy ? 2 : 0) | (z >= cz ? 4 : 0);
+            int child = nodeChildren[node * 8 + octant];
+            if (child == 0) {
+                child = createNode(node, (octant & 1) != 0 ? cx + childHalf : cx - childHalf,
+                        (octant & 2) != 0 ? cy + childHalf : cy - childHalf,
+                        (octant & 4) != 0 ? cz + childHalf : cz - childHalf, childHalf);
+                nodeChildren[node * 8 + octant] = child;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Whether the sphere lies within the loose bounds (twice the cell) of a
+     * node.
+     */
+    private boolean fitsLoose(int node, float x, float y, float z, float radius) {
+        final float loose = nodeData[node * 4 + 3] * 2 - radius;
+        return Math.abs(x - nodeData[node * 4]) <= loose && Math.abs(y - nodeData[node * 4 + 1]) <= loose
+                && Math.abs(z - nodeData[node * 4 + 2]) <= loose;
+    }
+
+    private void link(int id, int node) {
+        final int head = nodeHead[node];
+        objectNode[id] = node;
+        objectPrev[id] = NONE;
+        objectNext[id] = head;
+        if (head != NONE) {
+            objectPrev[head] = id;
+        }
+        nodeHead[node] = id;
+        for (int n = node; n != NONE; n = nodeParent[n]) {
+            nodeCount[n]++;
+        }
+    }
+
+    private void unlink(int id) {
+        final int node = objectNode[id], prev = objectPrev[id], next = objectNext[id];
+        if (prev != NONE) {
+            objectNext[prev] = next;
+        } else {
+            nodeHead[node] = next;
+        }
+        if (next != NONE) {
+            objectPrev[next] = prev;
+        }
+        for (int n = node; n != NONE;) {
+            final int parent = nodeParent[n];
+            if (--nodeCount[n] == 0 && parent != NONE) {
+                // the subtree is empty and all of its children are already freed
+                for (int c = parent * 8; c < parent * 8 + 8; c++) {
+                    if (nodeChildren[c] == n) {
+                        nodeChildren[c] = 0;
+                    }
+                }
+                nodeHead[n] = freeNode;
+                freeNode = n;
+                nodes--;
+            }
+            n = parent;
+        }
+    }
+
+    private boolean nodeOverlaps(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (node == 0) {
+            return true;
+        }
+        final float loose = nodeData[node * 4 + 3] * 2;
+        final float x = nodeData[node * 4], y = nodeData[node * 4 + 1], z = nodeData[node * 4 + 2];
+        return x - loose <= maxX && x + loose >= minX && y - loose <= maxY && y + loose >= minY && z - loose <= maxZ
+                && z + loose >= minZ;
+    }
+
+    private int pushChildren(int[] stack, int sp, int node) {
+        for (int c = node * 8; c < node * 8 + 8; c++) {
+            if (nodeChildren[c] != 0) {
+                stack[sp++] = nodeChildren[c];
+            }
+        }
+        return sp;
+    }
+
+    /**
+     * Visits all objects overlapping the specified box.
+     *
+     * @param minX the minimal x component of the box
+     * @param minY the minimal y component of the box
+     * @param minZ the minimal z component of the box
+     * @param maxX the maximal x component of the box
+     * @param maxY the maximal y component of the box
+     * @param maxZ the maximal z component of the box
+     * @param visitor receives the handle of every overlapping object
+     * @return the amount of visited objects
+     */
+    public int queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, IntConsumer visitor) {
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int found = 0;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (nodeCount[node] == 0 || !nodeOverlaps(node, minX, minY, minZ, maxX, maxY, maxZ)) {
+                    continue;
+                }
+                for (int o = nodeHead[node]; o != NONE; o = objectNext[o]) {
+                    final float x = objectData[o * 4], y = objectData[o * 4 + 1], z = objectData[o * 4 + 2];
+                    final float r = objectData[o * 4 + 3];
+                    final float dx = x - Math.max(minX, Math.min(x, maxX));
+                    final float dy = y - Math.max(minY, Math.min(y, maxY));
+                    final float dz = z - Math.max(minZ, Math.min(z, maxZ));
+                    if (dx * dx + dy * dy + dz * dz <= r * r) {
+                        visitor.accept(o);
+                        found++;
+                    }
+                }
+                sp = pushChildren(stack, sp, node);
+            }
+            return found;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Visits all objects overlapping the specified box.
+     *
+     * @param box the box
+     * @param visitor receives the handle of every overlapping object
+     * @return the amount of visited objects
+     * @throws NullPointerException if the passed box is null
+     */
+    public int queryBox(Aabb3f box, IntConsumer visitor) {
+        return queryBox(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ(), visitor);
+    }
+
+    /**
+     * Visits all objects overlapping the specified sphere.
+     *
+     * @param x the x component of the center
+     * @param y the y component of the center
+     * @param z the z component of the center
+     * @param radius the radius
+     * @param visitor receives the handle of every overlapping object
+     * @return the amount of visited objects
+     */
+    public int querySphere(float x, float y, float z, float radius, IntConsumer visitor) {
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int found = 0;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (nodeCount[node] == 0 || !nodeOverlaps(node, x - radius, y - radius, z - radius, x + radius, y + radius, z + radius)) {
+                    continue;
+                }
+                for (int o = nodeHead[node]; o != NONE; o = objectNext[o]) {
+                    final float dx = objectData[o * 4] - x, dy = objectData[o * 4 + 1] - y, dz = objectData[o * 4 + 2] - z;
+                    final float r = objectData[o * 4 + 3] + radius;
+                    if (dx * dx + dy * dy + dz * dz <= r * r) {
+                        visitor.accept(o);
+                        found++;
+                    }
+                }
+                sp = pushChildren(stack, sp, node);
+            }
+            return found;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Visits all objects overlapping the specified sphere.
+     *
+     * @param center the center
+     * @param radius the radius
+     * @param visitor receives the handle of every overlapping object
+     * @return the amount of visited objects
+     * @throws NullPointerException if the passed center is null
+     */
+    public int querySphere(Vec3f center, float radius, IntConsumer visitor) {
+        return querySphere(center.getX(), center.getY(), center.getZ(), radius, visitor);
+    }
+
+    /**
+     * Visits all objects that are potentially visible in the specified
+     * frustum.
+     *
+     * @param frustum the frustum
+     * @param visitor receives the handle of every visible object
+     * @return the amount of visited objects
+     * @throws NullPointerException if the passed frustum is null
+     */
+    public int queryFrustum(Frustumf frustum, IntConsumer visitor) {
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire();
+        try {
+            int sp = 0;
+            int found = 0;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (nodeCount[node] == 0) {
+                    continue;
+                }
+                if (node != 0) {
+                    final float loose = nodeData[node * 4 + 3] * 2;
+                    final float x = nodeData[node * 4], y = nodeData[node * 4 + 1], z = nodeData[node * 4 + 2];
+                    if (!frustum.isVisible(x - loose, y - loose, z - loose, x + loose, y + loose, z + loose)) {
+                        continue;
+                    }
+                }
+                for (int o = nodeHead[node]; o != NONE; o = objectNext[o]) {
+                    if (frustum.isSphereVisible(objectData[o * 4], objectData[o * 4 + 1], objectData[o * 4 + 2], objectData[o * 4 + 3])) {
+                        visitor.accept(o);
+                        found++;
+                    }
+                }
+                sp = pushChildren(stack, sp, node);
+            }
+            return found;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Finds the objects nearest to a point. The distance of an object is the
+     * distance to its surface (zero inside).
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param z the z component of the query point
+     * @param maxDistance only objects within this distance are considered
+     * @param ids receives the handles of the nearest objects, nearest first.
+     *            Its length is the amount of objects searched for.
+     * @param distances receives the squared distances of the found objects
+     *            (as far as it is long enough) or null
+     * @return the amount of found objects
+     */
+    public int nearest(float x, float y, float z, float maxDistance, int[] ids, float[] distances) {
+        final int k = ids.length;
+        if (k == 0) {
+            return 0;
+        }
+        final TraversalStack stacks = STACK.get();
+        final int[] stack = stacks.acquire(STACK_SIZE + k);
+        try {
+            // the squared distances of the found objects follow the node stack
+            // as raw float bits, which order like ints as they are never
+            // negative. The last one bounds the search.
+            final int best = STACK_SIZE;
+            int sp = 0;
+            int found = 0;
+            float bound = maxDistance * maxDistance;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                final int node = stack[--sp];
+                if (nodeCount[node] == 0) {
+                    continue;
+                }
+                final float cx = nodeData[node * 4], cy = nodeData[node * 4 + 1], cz = nodeData[node * 4 + 2];
+                if (node != 0) {
+                    final float loose = nodeData[node * 4 + 3] * 2;
+                    final float dx = Math.max(Math.abs(x - cx) - loose, 0), dy = Math.max(Math.abs(y - cy) - loose, 0),
+                            dz = Math.max(Math.abs(z - cz) - loose, 0);
+                    if (dx * dx + dy * dy + dz * dz > bound) {
+                        continue;
+                    }
+                }
+                for (int o = nodeHead[node]; o != NONE; o = objectNext[o]) {
+                    final float dx = objectData[o * 4] - x, dy = objectData[o * 4 + 1] - y, dz = objectData[o * 4 + 2] - z;
+                    final float r = objectData[o * 4 + 3];
+                    float distance = dx * dx + dy * dy + dz * dz;
+                    if (r > 0) {
+                        final float surface = Math.max((float) Math.sqrt(distance) - r, 0);
+                        distance = surface * surface;
+                    }
+                    final int bits = Float.floatToRawIntBits(distance);
+                    if (distance > bound || found == k && bits >= stack[best + k - 1]) {
+                        continue;
+                    }
+                    int i = found < k ? found++ : k - 1;
+                    for (; i > 0 && stack[best + i - 1] > bits; i--) {
+                        stack[best + i] = stack[best + i - 1];
+                        ids[i] = ids[i - 1];
+                    }
+                    stack[best + i] = bits;
+                    ids[i] = o;
+                    if (found == k) {
+                        bound = Math.min(bound, Float.intBitsToFloat(stack[best + k - 1]));
+                    }
+                }
+                // push the octant containing the point last so it is searched first
+                final int octant = (x >= cx ? 1 : 0) | (y >= cy ? 2 : 0) | (z >= cz ? 4 : 0);
+                for (int i = 7; i >= 0; i--) {
+                    final int child = nodeChildren[node * 8 + (octant ^ i)];
+                    if (child != 0) {
+                        stack[sp++] = child;
+                    }
+                }
+            }
+            if (distances != null) {
+                for (int i = 0, n = Math.min(found, distances.length); i < n; i++) {
+                    distances[i] = Float.intBitsToFloat(stack[best + i]);
+                }
+            }
+            return found;
+        } finally {
+            stacks.release();
+        }
+    }
+
+    /**
+     * Finds the objects nearest to a point.
+     *
+     * @param point the query point
+     * @param ids receives the handles of the nearest objects, nearest first.
+     *            Its length is the amount of objects searched for.
+     * @return the amount of found objects
+     * @throws NullPointerException if the passed point is null
+     */
+    public int nearest(Vec3f point, int[] ids) {
+        return nearest(point.getX(), point.getY(), point.getZ(), Float.POSITIVE_INFINITY, ids, null);
+    }
+
+    /**
+     * @param id the handle of an object
+     * @return true if the handle refers to an object in this tree
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < objectTop && objectNode[id] != NONE;
+    }
+
+    private float radius(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown object: " + id);
+        }
+        return objectData[id * 4 + 3];
+    }
+
+    /**
+     * @param id the handle of an object
+     * @return the center of the object
+     * @throws IllegalArgumentException if the handle is not in use
+     */
+    public Vec3f getPosition(int id) {
+        radius(id);
+        return Vec3f.of(objectData[id * 4], objectData[id * 4 + 1], objectData[id * 4 + 2]);
+    }
+
+    /**
+     * @param id the handle of an object
+     * @return the radius of the object
+     * @throws IllegalArgumentException if the handle is not in use
+     */
+    public float getRadius(int id) {
+        return radius(id);
+    }
+
+    /**
+     * @return the bounds of the root cell
+     */
+    public Aabb3f bounds() {
+        final float half = nodeData[3];
+        return Aabb3f.of(nodeData[0] - half, nodeData[1] - half, nodeData[2] - half, nodeData[0] + half, nodeData[1] + half,
+                nodeData[2] + half);
+    }
+
+    /**
+     * @return the maximal depth of a node
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the amount of nodes in use
+     */
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @return the amount of objects
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "Octree [bounds=" + bounds() + ", maxDepth=" + maxDepth + ", nodes=" + nodes + ", size=" + size + "]";
+    }
+
+}
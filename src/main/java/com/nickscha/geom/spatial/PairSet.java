@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+
+import com.nickscha.geom.spatial.SpatialHashGrid.PairVisitor;
+
+/**
+ * Set of unordered pairs of non negative ints (final::mutable)
+ * <p>
+ * A pair is stored as one long key with the smaller value in the upper half,
+ * so <code>(a, b)</code> and <code>(b, a)</code> are the same pair. Keys live
+ * in an open addressing table with linear probing, removal shifts the
+ * following keys back instead of leaving tombstones. This keeps add and
+ * remove free of allocation and boxing once the table has grown, which suits
+ * broadphase pair lists that change a little every frame.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class PairSet {
+
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int shift;
+    private int size;
+
+    /**
+     * Creates an empty set.
+     */
+    public PairSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Creates an empty set that holds the specified amount of pairs without
+     * growing.
+     *
+     * @param expected the expected amount of pairs
+     */
+    public PairSet(int expected) {
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expected, 1) * 2 - 1) << 1));
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * @param a the first value
+     * @param b the second value
+     * @return the key of the unordered pair
+     */
+    public static long key(int a, int b) {
+        return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+    }
+
+    /**
+     * @param key a pair key
+     * @return the smaller value of the pair
+     */
+    public static int first(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * @param key a pair key
+     * @return the larger value of the pair
+     */
+    public static int second(long key) {
+        return (int) key;
+    }
+
+    private int slot(long key) {
+        return (int) (key * 0x9E3779B97F4A7C15L >>> shift);
+    }
+
+    /**
+     * Adds a pair.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @return true if the pair was not contained before
+     * @throws IllegalArgumentException if a value is negative
+     */
+    public boolean add(int a, int b) {
+        if ((a | b) < 0) {
+            throw new IllegalArgumentException("Negative value: " + a + ", " + b);
+        }
+        final long key = key(a, b);
+        final int mask = table.length - 1;
+        int i = slot(key);
+        while (table[i] != EMPTY) {
+            if (table[i] == key) {
+                return false;
+            }
+            i = i + 1 & mask;
+        }
+        table[i] = key;
+        if (++size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        final long[] old = table;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (final long key : old) {
+            if (key != EMPTY) {
+                int i = slot(key);
+                while (table[i] != EMPTY) {
+                    i = i + 1 & mask;
+                }
+                table[i] = key;
+            }
+        }
+    }
+
+    /**
+     * Removes a pair.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @return true if the pair was contained
+     */
+    public boolean remove(int a, int b) {
+        if ((a | b) < 0) {
+            return false;
+        }
+        final long key = key(a, b);
+        final long[] t = table;
+        final int mask = t.length - 1;
+        int i = slot(key);
+        while (t[i] != key) {
+            if (t[i] == EMPTY) {
+                return false;
+            }
+            i = i + 1 & mask;
+        }
+        // shift back every following key whose probe sequence passes the gap
+        for (int gap = i, j = i + 1 & mask;; j = j + 1 & mask) {
+            final long k = t[j];
+            if (k == EMPTY) {
+                t[gap] = EMPTY;
+                break;
+            }
+            final int home = slot(k);
+            if ((j - home & mask) >= (j - gap & mask)) {
+                t[gap] = k;
+                gap = j;
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * @param a the first value
+     * @param b the second value
+     * @return true if the pair is contained
+     */
+    public boolean contains(int a, int b) {
+        if ((a | b) < 0) {
+            return false;
+        }
+        final long key = key(a, b);
+        final int mask = table.length - 1;
+        for (int i = slot(key);; i = i + 1 & mask) {
+            if (table[i] == key) {
+                return true;
+            }
+            if (table[i] == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Passes every pair to a visitor, the smaller value first. The order is
+     * unspecified and the set must not be modified by the visitor.
+     *
+     * @param visitor the visitor
+     */
+    public void forEach(PairVisitor visitor) {
+        for (final long key : table) {
+            if (key != EMPTY) {
+                visitor.accept(first(key), second(key));
+            }
+        }
+    }
+
+    /**
+     * @return the keys of all pairs in unspecified order
+     */
+    public long[] toArray() {
+        final long[] keys = new long[size];
+        int n = 0;
+        for (final long key : table) {
+            if (key != EMPTY) {
+                keys[n++] = key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Removes all pairs. The table keeps its capacity.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, EMPTY);
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the amount of pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no pairs
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PairSet [size=" + size + "]";
+    }
+
+}
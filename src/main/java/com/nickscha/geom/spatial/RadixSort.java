@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Stable least significant digit radix sort of 64 bit keys
+ * <p>
+ * Keys are sorted as unsigned values, eight bits per pass. Passes over bytes
+ * that are equal for all keys are skipped, so quantized spatial keys that only
+ * use the lower bits cost fewer passes. The sort produces the permutation of
+ * the input, which is then applied to any amount of point buffers with the
+ * <code>reorder</code> methods.
+ * </p>
+ * <p>
+ * Above a threshold the keys are split into one block per thread of the pool.
+ * Every block counts its digits and scatters its keys in parallel, the block
+ * offsets are a prefix sum over the block histograms. The result is identical
+ * to the sequential sort.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class RadixSort {
+
+    /**
+     * Amount of keys above which sorting runs in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int RADIX = 256;
+
+    private RadixSort() {
+    }
+
+    /**
+     * Sorts keys on the calling thread.
+     *
+     * @param keys the keys, sorted in place
+     * @param count the amount of keys to sort
+     * @return the permutation: position <code>i</code> of the sorted keys holds
+     *         the original index <code>order[i]</code>
+     * @throws IndexOutOfBoundsException if count exceeds the keys
+     */
+    public static int[] sort(long[] keys, int count) {
+        return sort(keys, count, null);
+    }
+
+    /**
+     * Sorts keys on the specified pool.
+     *
+     * @param keys the keys, sorted in place
+     * @param count the amount of keys to sort
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the permutation: position <code>i</code> of the sorted keys holds
+     *         the original index <code>order[i]</code>
+     * @throws IndexOutOfBoundsException if count exceeds the keys
+     */
+    public static int[] sort(long[] keys, int count, ForkJoinPool pool) {
+        if (count < 0 || count > keys.length) {
+            throw new IndexOutOfBoundsException("count: " + count + ", length: " + keys.length);
+        }
+        final int blocks = pool == null || count <= PARALLEL_THRESHOLD ? 1 : pool.getParallelism();
+        final int blockSize = (count + blocks - 1) / Math.max(blocks, 1);
+
+        final int[] identity = new int[count];
+        run(pool, blocks, count, i -> identity[i] = i);
+        int[] order = identity, orderTemp = new int[count];
+        long[] src = keys, dst = new long[count];
+
+        long differing = 0;
+        for (int i = 1; i < count; i++) {
+            differing |= keys[i] ^ keys[0];
+        }
+
+        final int[][] histograms = new int[blocks][RADIX];
+        for (int shift = 0; shift < 64; shift += 8) {
+            if ((differing >>> shift & 0xFF) == 0) {
+                continue;
+            }
+            final int s = shift;
+            final long[] from = src, to = dst;
+            final int[] in = order, out = orderTemp;
+
+            run(pool, blocks, blocks, b -> {
+                final int[] h = histograms[b];
+                Arrays.fill(h, 0);
+                for (int i = b * blockSize, end = Math.min(count, i + blockSize); i < end; i++) {
+                    h[(int) (from[i] >>> s) & 0xFF]++;
+                }
+            });
+            // exclusive prefix sum in digit major, block minor order
+            int sum = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                for (int b = 0; b < blocks; b++) {
+                    final int c = histograms[b][digit];
+                    histograms[b][digit] = sum;
+                    sum += c;
+                }
+            }
+            run(pool, blocks, blocks, b -> {
+                final int[] h = histograms[b];
+                for (int i = b * blockSize, end = Math.min(count, i + blockSize); i < end; i++) {
+                    final int at = h[(int) (from[i] >>> s) & 0xFF]++;
+                    to[at] = from[i];
+                    out[at] = in[i];
+                }
+            });
+
+            src = to;
+            dst = from;
+            orderTemp = in;
+            order = out;
+        }
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, count);
+        }
+        return order;
+    }
+
+    private static void run(ForkJoinPool pool, int blocks, int count, IntConsumer action) {
+        if (blocks <= 1) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+        }
+    }
+
+    /**
+     * Applies a permutation to interleaved values.
+     *
+     * @param values the values, stride values per element
+     * @param stride the amount of values per element
+     * @param order the permutation as returned by
+     *            {@link #sort(long[], int, ForkJoinPool)}
+     * @return a new array whose element <code>i</code> is element
+     *         <code>order[i]</code> of the input
+     */
+    public static float[] reorder(float[] values, int stride, int[] order) {
+        final float[] result = new float[order.length * stride];
+        Morton.stream(order.length).forEach(i -> System.arraycopy(values, order[i] * stride, result, i * stride, stride));
+        return result;
+    }
+
+    /**
+     * Applies a permutation to interleaved values.
+     *
+     * @param values the values, stride values per element
+     * @param stride the amount of values per element
+     * @param order the permutation as returned by
+     *            {@link #sort(long[], int, ForkJoinPool)}
+     * @return a new array whose element <code>i</code> is element
+     *         <code>order[i]</code> of the input
+     */
+    public static double[] reorder(double[] values, int stride, int[] order) {
+        final double[] result = new double[order.length * stride];
+        Morton.stream(order.length).forEach(i -> System.arraycopy(values, order[i] * stride, result, i * stride, stride));
+        return result;
+    }
+
+    /**
+     * Applies a permutation to interleaved values.
+     *
+     * @param values the values, stride values per element
+     * @param stride the amount of values per element
+     * @param order the permutation as returned by
+     *            {@link #sort(long[], int, ForkJoinPool)}
+     * @return a new array whose element <code>i</code> is element
+     *         <code>order[i]</code> of the input
+     */
+    public static int[] reorder(int[] values, int stride, int[] order) {
+        final int[] result = new int[order.length * stride];
+        Morton.stream(order.length).forEach(i -> System.arraycopy(values, order[i] * stride, result, i * stride, stride));
+        return result;
+    }
+
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Uniform spatial hash grid over points (final::mutable)
+ * <p>
+ * Space is divided into cubic cells of a fixed size and every cell is hashed
+ * into a power of two sized bucket table. The grid is meant to be rebuilt
+ * every frame: a rebuild is a counting sort of the points by bucket and only
+ * reallocates its arrays when the point count outgrows them.
+ * </p>
+ * <b>Memory layout</b>
+ * <p>
+ * <code>bucketStart[b]..bucketStart[b+1]</code> is the range of the points in
+ * bucket <code>b</code>. The positions are copied in bucket order into three
+ * coordinate arrays so a bucket reads contiguous memory and
+ * <code>order</code> maps back to the input index. There are no per cell
+ * objects and nothing is boxed.
+ * </p>
+ * <b>Queries</b>
+ * <p>
+ * Queries are exact and allocation free. Different cells may share a bucket,
+ * every bucket is scanned at most once per query and every point is tested
+ * against the query shape. The grid can be queried concurrently as long as
+ * it is not rebuilt at the same time and visitors may start further queries.
+ * Query ranges that cover more cells than there are buckets, such as an
+ * infinite radius, scan the whole table. Points rebuilt from two dimensional
+ * input lie in the plane z = 0 and only one layer of cells is scanned.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class SpatialHashGrid {
+
+    /**
+     * Amount of points above which a rebuild runs in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Cell coordinates are clamped to this range, so cell ranges of far away
+     * or infinite coordinates neither saturate nor wrap
+     */
+    private static final float CELL_LIMIT = 1 << 30;
+
+    /**
+     * Scratch space for the deduplicated buckets of a query, one array per
+     * nesting level
+     */
+    private static final ThreadLocal<TraversalStack> BUCKETS = TraversalStack.local(64);
+
+    private final float cellSize;
+    private final float inverseCellSize;
+    private final boolean fixedTable;
+
+    private int mask;
+    private int[] bucketStart = new int[0];
+    private int[] bucket = new int[0];
+    private int[] order = new int[0];
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private float[] zs = new float[0];
+    private float[] inputX = new float[0];
+    private float[] inputY = new float[0];
+    private float[] inputZ = new float[0];
+    private int size;
+    private boolean planar;
+
+    /**
+     * Visitor of point pairs
+     */
+    @FunctionalInterface
+    public interface PairVisitor {
+
+        /**
+         * Receives a pair of point indices with <code>a != b</code>.
+         *
+         * @param a the index of the first point
+         * @param b the index of the second point
+         */
+        void accept(int a, int b);
+    }
+
+    /**
+     * Creates an empty grid whose bucket table grows with the amount of points.
+     *
+     * @param cellSize the edge length of a cell
+     * @throws IllegalArgumentException if the cell size is not positive
+     */
+    public SpatialHashGrid(float cellSize) {
+        this(cellSize, 0);
+    }
+
+    /**
+     * Creates an empty grid with a fixed bucket table.
+     *
+     * @param cellSize the edge length of a cell
+     * @param tableSize the amount of buckets, rounded up to a power of two. A
+     *            value of zero sizes the table to the amount of points on
+     *            every rebuild.
+     * @throws IllegalArgumentException if the cell size is not positive or the
+     *             table size is negative
+     */
+    public SpatialHashGrid(float cellSize, int tableSize) {
+        if (!(cellSize > 0) || Float.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        if (tableSize < 0 || tableSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid table size: " + tableSize);
+        }
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1f / cellSize;
+        this.fixedTable = tableSize > 0;
+        resizeTable(fixedTable ? tableSize : 1);
+    }
+
+    /**
+     * Rebuilds the grid from interleaved positions.
+     *
+     * @param positions the positions (x,y,z interleaved)
+     * @param count the amount of points
+     * @return this grid
+     * @throws IndexOutOfBoundsException if positions holds less than count
+     *             points
+     */
+    public SpatialHashGrid rebuild(float[] positions, int count) {
+        return rebuild(positions, count, null);
+    }
+
+    /**
+     * Rebuilds the grid from interleaved positions on the specified pool.
+     *
+     * @param positions the positions (x,y,z interleaved)
+     * @param count the amount of points
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return this grid
+     * @throws IndexOutOfBoundsException if positions holds less than count
+     *             points
+     */
+    public SpatialHashGrid rebuild(float[] positions, int count, ForkJoinPool pool) {
+        checkLength(positions.length / 3, count);
+        prepare(count, false);
+        run(pool, count, i -> {
+            inputX[i] = positions[i * 3];
+            inputY[i] = positions[i * 3 + 1];
+            inputZ[i] = positions[i * 3 + 2];
+        });
+        return sort(pool);
+    }
+
+    /**
+     * Rebuilds the grid from separate coordinate arrays.
+     *
+     * @param x the x components
+     * @param y the y components
+     * @param z the z components or null for points in the plane z = 0
+     * @param count the amount of points
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return this grid
+     * @throws IndexOutOfBoundsException if an array holds less than count
+     *             values
+     */
+    public SpatialHashGrid rebuild(float[] x, float[] y, float[] z, int count, ForkJoinPool pool) {
+        checkLength(Math.min(x.length, y.length), count);
+        if (z != null) {
+            checkLength(z.length, count);
+        }
+        prepare(count, z == null);
+        run(pool, count, i -> {
+            inputX[i] = x[i];
+            inputY[i] = y[i];
+            inputZ[i] = z == null ? 0 : z[i];
+        });
+        return sort(pool);
+    }
+
+    /**
+     * Rebuilds the grid from three dimensional points.
+     *
+     * @param points the points
+     * @return this grid
+     * @throws NullPointerException if any point is null
+     */
+    public SpatialHashGrid rebuild(Vec3f[] points) {
+        prepare(points.length, false);
+        run(null, points.length, i -> {
+            inputX[i] = points[i].getX();
+            inputY[i] = points[i].getY();
+            inputZ[i] = points[i].getZ();
+        });
+        return sort(null);
+    }
+
+    /**
+     * Rebuilds the grid from two dimensional points. The points are placed in
+     * the plane z = 0.
+     *
+     * @param points the points
+     * @return this grid
+     * @throws NullPointerException if any point is null
+     */
+    public SpatialHashGrid rebuild(Vec2f[] points) {
+        prepare(points.length, true);
+        run(null, points.length, i -> {
+            inputX[i] = points[i].getX();
+            inputY[i] = points[i].getY();
+            inputZ[i] = 0;
+        });
+        return sort(null);
+    }
+
+    private static void checkLength(int length, int count) {
+        if (count < 0 || count > length) {
+            throw new IndexOutOfBoundsException("count: " + count + ", length: " + length);
+        }
+    }
+
+    /**
+     * Grows the arrays if necessary. The input is first copied into the input
+     * arrays and then gathered into xs, ys and zs in bucket order by sort.
+     */
+    private void prepare(int count, boolean planar) {
+        if (order.length < count) {
+            final int capacity = Math.max(count, order.length + (order.length >> 1));
+            bucket = new int[capacity];
+            order = new int[capacity];
+            xs = new float[capacity];
+            ys = new float[capacity];
+            zs = new float[capacity];
+            inputX = new float[capacity];
+            inputY = new float[capacity];
+            inputZ = new float[capacity];
+        }
+        if (!fixedTable && mask + 1 < count) {
+            resizeTable(count);
+        }
+        this.size = count;
+        this.planar = planar;
+    }
+
+    private void resizeTable(int tableSize) {
+        final int buckets = tableSize <= 1 ? 1 : Integer.highestOneBit(tableSize - 1) << 1;
+        this.mask = buckets - 1;
+        this.bucketStart = new int[buckets + 1];
+    }
+
+    private static void run(ForkJoinPool pool, int count, IntConsumer action) {
+        if (pool == null || count <= PARALLEL_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+        }
+    }
+
+    /**
+     * Counting sort by bucket. Hashing and the final gather run in parallel,
+     * the histogram and the scatter are a single sequential pass over ints.
+     */
+    private SpatialHashGrid sort(ForkJoinPool pool) {
+        final int n = size;
+        final int[] bucket = this.bucket, start = this.bucketStart;
+        run(pool, n, i -> bucket[i] = hash(cell(inputX[i]), cell(inputY[i]), cell(inputZ[i])));
+
+        final int buckets = start.length - 1;
+        Arrays.fill(start, 0);
+        for (int i = 0; i < n; i++) {
+            start[bucket[i]]++;
+        }
+        for (int b = 1; b < buckets; b++) {
+            start[b] += start[b - 1];
+        }
+        start[buckets] = n;
+        // start[b] is the end of bucket b and becomes its start while scattering
+        for (int i = n - 1; i >= 0; i--) {
+            order[--start[bucket[i]]] = i;
+        }
+
+        run(pool, n, i -> {
+            final int src = order[i];
+            xs[i] = inputX[src];
+            ys[i] = inputY[src];
+            zs[i] = inputZ[src];
+        });
+        return this;
+    }
+
+    private int cell(float v) {
+        final float f = Math.max(-CELL_LIMIT, Math.min(CELL_LIMIT, v * inverseCellSize));
+        final int i = (int) f;
+        return f < i ? i - 1 : i;
+    }
+
+    private int hash(int x, int y, int z) {
+        final int h = x * 0x8DA6B343 ^ y * 0xD8163841 ^ z * 0xCB1AB31F;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**
+     * @return the amount of cells in the specified cell range or
+     *         {@link Long#MAX_VALUE} if the range covers more cells than there
+     *         are buckets
+     */
+    private long cells(int x0, int y0, int z0, int x1, int y1, int z1) {
+        final long table = mask + 1L;
+        final long dx = (long) x1 - x0 + 1, dy = (long) y1 - y0 + 1, dz = (long) z1 - z0 + 1;
+        // every partial product stays below table^2, so none of them overflows
+        if (dx > table || dy > table || dz > table || dx * dy > table || dx * dy * dz > table) {
+            return Long.MAX_VALUE;
+        }
+        return dx * dy * dz;
+    }
+
+    /**
+     * Collects the distinct buckets of the cells in the specified cell range.
+     *
+     * @param out receives the buckets, at least as long as the amount of cells
+     * @return the amount of buckets
+     */
+    private int buckets(int x0, int y0, int z0, int x1, int y1, int z1, int[] out) {
+        int n = 0;
+        for (int cz = z0; cz <= z1; cz++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cx = x0; cx <= x1; cx++) {
+                    out[n++] = hash(cx, cy, cz);
+                }
+            }
+        }
+        if (n > 1) {
+            Arrays.sort(out, 0, n);
+            int unique = 1;
+            for (int i = 1; i < n; i++) {
+                if (out[i] != out[unique - 1]) {
+                    out[unique++] = out[i];
+                }
+            }
+            n = unique;
+        }
+        return n;
+    }
+
+    /**
+     * Visits all points within the specified distance of a point.
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param z the z component of the query point
+     * @param radius the query radius
+     * @param visitor receives the index of every point within the radius
+     * @return the amount of visited points
+     */
+    public int queryRadius(float x, float y, float z, float radius, IntConsumer visitor) {
+        if (size == 0 || !(radius >= 0)) {
+            return 0;
+        }
+        final float r2 = radius * radius;
+        final float qz = planar ? 0 : z;
+        final int x0 = cell(x - radius), y0 = cell(y - radius), z0 = planar ? 0 : cell(z - radius);
+        final int x1 = cell(x + radius), y1 = cell(y + radius), z1 = planar ? 0 : cell(z + radius);
+        final long cells = cells(x0, y0, z0, x1, y1, z1);
+        final TraversalStack scratch = BUCKETS.get();
+        final int[] buckets = scratch.acquire(cells > mask ? 0 : (int) cells);
+        try {
+            // ranges larger than the table scan every bucket
+            final int n = cells > mask ? -1 : buckets(x0, y0, z0, x1, y1, z1, buckets);
+            int found = 0;
+            for (int k = 0, count = n < 0 ? mask + 1 : n; k < count; k++) {
+                final int b = n < 0 ? k : buckets[k];
+                for (int i = bucketStart[b], end = bucketStart[b + 1]; i < end; i++) {
+                    final float dx = xs[i] - x, dy = ys[i] - y, dz = zs[i] - qz;
+                    if (dx * dx + dy * dy + dz * dz <= r2) {
+                        visitor.accept(order[i]);
+                        found++;
+                    }
+                }
+            }
+            return found;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Visits all points within the specified distance of a two dimensional
+     * point.
+     *
+     * @param x the x component of the query point
+     * @param y the y component of the query point
+     * @param radius the query radius
+     * @param visitor receives the index of every point within the radius
+     * @return the amount of visited points
+     */
+    public int queryRadius(float x, float y, float radius, IntConsumer visitor) {
+        return queryRadius(x, y, 0, radius, visitor);
+    }
+
+    /**
+     * Visits all points inside the specified box (inclusive).
+     *
+     * @param minX the minimal x component of the box
+     * @param minY the minimal y component of the box
+     * @param minZ the minimal z component of the box
+     * @param maxX the maximal x component of the box
+     * @param maxY the maximal y component of the box
+     * @param maxZ the maximal z component of the box
+     * @param visitor receives the index of every point inside the box
+     * @return the amount of visited points
+     */
+    public int queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, IntConsumer visitor) {
+        if (size == 0 || !(minX <= maxX && minY <= maxY && minZ <= maxZ)) {
+            return 0;
+        }
+        if (planar && (minZ > 0 || maxZ < 0)) {
+            return 0;
+        }
+        final int x0 = cell(minX), y0 = cell(minY), z0 = planar ? 0 : cell(minZ);
+        final int x1 = cell(maxX), y1 = cell(maxY), z1 = planar ? 0 : cell(maxZ);
+        final long cells = cells(x0, y0, z0, x1, y1, z1);
+        final TraversalStack scratch = BUCKETS.get();
+        final int[] buckets = scratch.acquire(cells > mask ? 0 : (int) cells);
+        try {
+            // ranges larger than the table scan every bucket
+            final int n = cells > mask ? -1 : buckets(x0, y0, z0, x1, y1, z1, buckets);
+            int found = 0;
+            for (int k = 0, count = n < 0 ? mask + 1 : n; k < count; k++) {
+                final int b = n < 0 ? k : buckets[k];
+                for (int i = bucketStart[b], end = bucketStart[b + 1]; i < end; i++) {
+                    if (xs[i] >= minX & xs[i] <= maxX & ys[i] >= minY & ys[i] <= maxY & zs[i] >= minZ
+                            & zs[i] <= maxZ) {
+                        visitor.accept(order[i]);
+                        found++;
+                    }
+                }
+            }
+            return found;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Visits all points inside the specified box (inclusive).
+     *
+     * @param box the box
+     * @param visitor receives the index of every point inside the box
+     * @return the amount of visited points
+     * @throws NullPointerException if the passed box is null
+     */
+    public int queryBox(Aabb3f box, IntConsumer visitor) {
+        return queryBox(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ(),
+                visitor);
+    }
+
+    /**
+     * Visits every unordered pair of points whose distance is at most the
+     * specified radius exactly once.
+     *
+     * @param radius the pair distance
+     * @param visitor receives the indices of every pair
+     * @return the amount of visited pairs
+     */
+    public long forEachPair(float radius, PairVisitor visitor) {
+        if (size < 2 || !(radius >= 0)) {
+            return 0;
+        }
+        final float r2 = radius * radius;
+        // rings wider than the limit cover more cells than there can be buckets
+        final int ring = (int) Math.min(1 << 16, Math.max(1, Math.ceil(radius * inverseCellSize)));
+        final long cells = cells(-ring, -ring, planar ? 0 : -ring, ring, ring, planar ? 0 : ring);
+        final TraversalStack scratch = BUCKETS.get();
+        final int[] buckets = scratch.acquire(cells > mask ? 0 : (int) cells);
+        try {
+            long found = 0;
+            for (int i = 0; i < size; i++) {
+                final float x = xs[i], y = ys[i], z = zs[i];
+                final int cx = cell(x), cy = cell(y), cz = cell(z);
+                final int n = cells > mask ? -1
+                        : buckets(cx - ring, cy - ring, planar ? cz : cz - ring, cx + ring, cy + ring,
+                                planar ? cz : cz + ring, buckets);
+                for (int k = 0, count = n < 0 ? mask + 1 : n; k < count; k++) {
+                    final int b = n < 0 ? k : buckets[k];
+                    // every pair is reported from the point that comes first in bucket order
+                    for (int j = Math.max(bucketStart[b], i + 1), end = bucketStart[b + 1]; j < end; j++) {
+                        final float dx = xs[j] - x, dy = ys[j] - y, dz = zs[j] - z;
+                        if (dx * dx + dy * dy + dz * dz <= r2) {
+                            visitor.accept(order[i], order[j]);
+                            found++;
+                        }
+                    }
+                }
+            }
+            return found;
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * @return the edge length of a cell
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return the amount of buckets
+     */
+    public int getTableSize() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the amount of points of the last rebuild
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "SpatialHashGrid [cellSize=" + cellSize + ", tableSize=" + getTableSize() + ", size=" + size + "]";
+    }
+
+}
@@ -0,0 +1,648 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.SpatialHashGrid.PairVisitor;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * Sweep and prune broadphase over axis aligned boxes (final::mutable)
+ * <p>
+ * The minimum and maximum of every box are kept as endpoints sorted along
+ * each of the three axes, in one float and one int array per axis. Bodies
+ * change their bounds with {@link #setBounds(int, float, float, float, float,
+ * float, float)} and the endpoints are brought back in order by an insertion
+ * sort, which is close to linear when the bodies move coherently between
+ * updates. Two boxes overlap if their open intervals overlap on all axes, so
+ * boxes that only touch are not a pair.
+ * </p>
+ * <b>Incremental pairs</b>
+ * <p>
+ * {@link #update()} maintains the overlapping pairs while sorting: a minimum
+ * passing a maximum of another body starts an overlap on that axis and the
+ * pair is added if the boxes overlap on all axes, a maximum passing a
+ * minimum ends it. The cost of an update is the amount of endpoint swaps and
+ * not the amount of pairs.
+ * </p>
+ * <b>Parallel sweep</b>
+ * <p>
+ * {@link #update(ForkJoinPool)} sorts the three axes concurrently without
+ * tracking and then sweeps the axis along which the box centers spread most.
+ * The sweep is split into blocks of endpoints that find their pairs in
+ * parallel. This is the better choice after large jumps or for the first
+ * update of many bodies. Both updates produce the same pairs and can be mixed.
+ * </p>
+ * <b>Adding and removing</b>
+ * <p>
+ * Added bodies are collected and merged into the endpoints by the next
+ * update: they are sorted among themselves with {@link RadixSort} and merged
+ * in one linear pass, their pairs are found by scanning only the x endpoints
+ * whose minimum lies within the largest body extent of their own minimum.
+ * Removing a body drops its pairs with the same scan after a binary search
+ * and its endpoints are skipped by the next update. Adding is constant and
+ * removing logarithmic plus the bodies in the scanned window, so bulk
+ * changes never shift the endpoint arrays per body. Handles are reused after
+ * the update following their removal.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class SweepAndPrune {
+
+    private static final int NONE = -1;
+    private static final int USED = -2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Amount of endpoints per block of the parallel sweep
+     */
+    static final int SWEEP_BLOCK = 1 << 12;
+
+    /**
+     * minimum x,y,z and maximum x,y,z per body as set by the user
+     */
+    private float[] bounds;
+
+    /**
+     * bounds per body as sorted into the endpoints by the last update
+     */
+    private float[] sorted;
+
+    /**
+     * USED for bodies in use, otherwise the next free handle
+     */
+    private int[] next;
+
+    /**
+     * whether the endpoints of a body are in the sorted arrays
+     */
+    private boolean[] merged;
+    private int top;
+    private int free = NONE;
+    private int size;
+
+    private int[] added = new int[INITIAL_CAPACITY];
+    private int addedCount;
+    private int[] released = new int[INITIAL_CAPACITY];
+    private int releasedCount;
+
+    /**
+     * per axis the endpoint values and body handle times two, plus one for a
+     * maximum
+     */
+    private final float[][] values = new float[3][];
+    private final int[][] ends = new int[3][];
+    private int endpoints;
+
+    /**
+     * upper bound of the x extent of the sorted bodies
+     */
+    private float maxExtent;
+
+    private final PairSet pairs = new PairSet();
+    private long[][] blockPairs = new long[0][];
+    private int[] blockCounts = new int[0];
+
+    /**
+     * Creates an empty broadphase.
+     */
+    public SweepAndPrune() {
+        bounds = new float[INITIAL_CAPACITY * 6];
+        sorted = new float[INITIAL_CAPACITY * 6];
+        next = new int[INITIAL_CAPACITY];
+        merged = new boolean[INITIAL_CAPACITY];
+        for (int axis = 0; axis < 3; axis++) {
+            values[axis] = new float[INITIAL_CAPACITY * 2];
+            ends[axis] = new int[INITIAL_CAPACITY * 2];
+        }
+    }
+
+    /**
+     * Adds a body, its pairs are found by the next update.
+     *
+     * @param box the bounds
+     * @return the handle of the body
+     */
+    public int add(Aabb3f box) {
+        return add(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * Adds a body, its pairs are found by the next update.
+     *
+     * @param min the minimum of the bounds
+     * @param max the maximum of the bounds
+     * @return the handle of the body
+     * @throws IllegalArgumentException if the minimum exceeds the maximum
+     */
+    public int add(Vec3f min, Vec3f max) {
+        return add(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    /**
+     * Adds a body, its pairs are found by the next update.
+     *
+     * @param minX the minimum x
+     * @param minY the minimum y
+     * @param minZ the minimum z
+     * @param maxX the maximum x
+     * @param maxY the maximum y
+     * @param maxZ the maximum z
+     * @return the handle of the body
+     * @throws IllegalArgumentException if the minimum exceeds the maximum or a
+     *             value is NaN
+     */
+    public int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        check(minX, minY, minZ, maxX, maxY, maxZ);
+        int id = free;
+        if (id != NONE) {
+            free = next[id];
+        } else {
+            id = top++;
+            if (id == next.length) {
+                final int capacity = id + (id >> 1);
+                bounds = Arrays.copyOf(bounds, capacity * 6);
+                sorted = Arrays.copyOf(sorted, capacity * 6);
+                next = Arrays.copyOf(next, capacity);
+                merged = Arrays.copyOf(merged, capacity);
+            }
+        }
+        next[id] = USED;
+        merged[id] = false;
+        write(bounds, id, minX, minY, minZ, maxX, maxY, maxZ);
+        if (addedCount == added.length) {
+            added = Arrays.copyOf(added, addedCount * 2);
+        }
+        added[addedCount++] = id;
+        size++;
+        return id;
+    }
+
+    private static void check(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (!(minX <= maxX) || !(minY <= maxY) || !(minZ <= maxZ)) {
+            throw new IllegalArgumentException(
+                    "Invalid bounds: " + minX + ", " + minY + ", " + minZ + ", " + maxX + ", " + maxY + ", " + maxZ);
+        }
+    }
+
+    private static void write(float[] array, int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        final int o = id * 6;
+        array[o] = minX;
+        array[o + 1] = minY;
+        array[o + 2] = minZ;
+        array[o + 3] = maxX;
+        array[o + 4] = maxY;
+        array[o + 5] = maxZ;
+    }
+
+    /**
+     * Orders endpoints by value, a maximum before a minimum of equal value
+     * so that touching boxes do not overlap.
+     */
+    private static boolean less(float value, int end, float otherValue, int otherEnd) {
+        return value < otherValue || value == otherValue && (end & 1) > (otherEnd & 1);
+    }
+
+    private static int lowerBound(float[] v, int count, float value) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (v[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Removes a body and its pairs.
+     *
+     * @param id the handle of the body
+     * @return true if the body was removed, false if the handle is not in use
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        if (merged[id]) {
+            final float minX = sorted[id * 6], maxX = sorted[id * 6 + 3];
+            final float[] x = values[0];
+            final int[] e = ends[0];
+            for (int i = lowerBound(x, endpoints, minX - maxExtent); i < endpoints && x[i] <= maxX; i++) {
+                if ((e[i] & 1) == 0) {
+                    pairs.remove(id, e[i] >>> 1);
+                }
+            }
+            merged[id] = false;
+        }
+        // the endpoints still refer to the handle until the next update
+        next[id] = NONE;
+        if (releasedCount == released.length) {
+            released = Arrays.copyOf(released, releasedCount * 2);
+        }
+        released[releasedCount++] = id;
+        size--;
+        return true;
+    }
+
+    /**
+     * Changes the bounds of a body. The endpoints and pairs follow with the
+     * next update.
+     *
+     * @param id the handle of the body
+     * @param box the new bounds
+     * @throws IllegalArgumentException if the handle is not in use
+     */
+    public void setBounds(int id, Aabb3f box) {
+        setBounds(id, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    }
+
+    /**
+     * Changes the bounds of a body. The endpoints and pairs follow with the
+     * next update.
+     *
+     * @param id the handle of the body
+     * @param minX the minimum x
+     * @param minY the minimum y
+     * @param minZ the minimum z
+     * @param maxX the maximum x
+     * @param maxY the maximum y
+     * @param maxZ the maximum z
+     * @throws IllegalArgumentException if the handle is not in use, the
+     *             minimum exceeds the maximum or a value is NaN
+     */
+    public void setBounds(int id, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown body: " + id);
+        }
+        check(minX, minY, minZ, maxX, maxY, maxZ);
+        write(bounds, id, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Merges added bodies, sorts the endpoints and updates the pairs
+     * incrementally on the calling thread.
+     */
+    public void update() {
+        compact();
+        for (int axis = 0; axis < 3; axis++) {
+            sort(axis, true);
+        }
+        merge();
+        commit();
+        if (addedCount * 2 > size) {
+            // mostly new bodies, one sweep is cheaper than a scan per body
+            sweep(null, spreadAxis());
+            release();
+            return;
+        }
+        final float[] x = values[0];
+        final int[] e = ends[0];
+        for (int k = 0; k < addedCount; k++) {
+            final int id = added[k];
+            final float minX = sorted[id * 6], maxX = sorted[id * 6 + 3];
+            for (int i = lowerBound(x, endpoints, minX - maxExtent); i < endpoints && x[i] <= maxX; i++) {
+                final int other = e[i] >>> 1;
+                if ((e[i] & 1) == 0 && other != id && overlaps(sorted, id, other)) {
+                    pairs.add(id, other);
+                }
+            }
+        }
+        release();
+    }
+
+    /**
+     * Merges added bodies, sorts the endpoints and finds all pairs with a
+     * parallel sweep.
+     *
+     * @param pool the pool to run on or null to run on the calling thread
+     */
+    public void update(ForkJoinPool pool) {
+        compact();
+        if (pool == null) {
+            for (int axis = 0; axis < 3; axis++) {
+                sort(axis, false);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, 3).parallel().forEach(axis -> sort(axis, false))).join();
+        }
+        merge();
+        commit();
+        sweep(pool, spreadAxis());
+        release();
+    }
+
+    /**
+     * Drops the endpoints of removed bodies and loads the current bounds.
+     */
+    private void compact() {
+        int count = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            final float[] v = values[axis];
+            final int[] e = ends[axis];
+            count = 0;
+            for (int i = 0; i < endpoints; i++) {
+                final int id = e[i] >>> 1;
+                if (next[id] == USED) {
+                    v[count] = bounds[id * 6 + (e[i] & 1) * 3 + axis];
+                    e[count++] = e[i];
+                }
+            }
+        }
+        endpoints = count;
+    }
+
+    /**
+     * Sorts the added bodies that are still in use and merges them into the
+     * endpoints, the list of added bodies is compacted to them.
+     */
+    private void merge() {
+        int n = 0;
+        for (int k = 0; k < addedCount; k++) {
+            final int id = added[k];
+            if (next[id] == USED) {
+                merged[id] = true;
+                added[n++] = id;
+            }
+        }
+        addedCount = n;
+        if (n == 0) {
+            return;
+        }
+        final int count = n * 2;
+        if (values[0].length < endpoints + count) {
+            final int capacity = Math.max(endpoints + count, values[0].length + (values[0].length >> 1));
+            for (int axis = 0; axis < 3; axis++) {
+                values[axis] = Arrays.copyOf(values[axis], capacity);
+                ends[axis] = Arrays.copyOf(ends[axis], capacity);
+            }
+        }
+        final long[] keys = new long[count];
+        for (int axis = 0; axis < 3; axis++) {
+            for (int k = 0; k < n; k++) {
+                final int id = added[k];
+                keys[k * 2] = key(bounds[id * 6 + axis], id << 1);
+                keys[k * 2 + 1] = key(bounds[id * 6 + 3 + axis], id << 1 | 1);
+            }
+            RadixSort.sort(keys, count);
+            final float[] v = values[axis];
+            final int[] e = ends[axis];
+            for (int i = endpoints - 1, j = count - 1, at = endpoints + count - 1; j >= 0; at--) {
+                final int id = (int) keys[j] & 0x7FFFFFFF;
+                final int max = (int) (~keys[j] >>> 31 & 1);
+                final float value = bounds[id * 6 + max * 3 + axis];
+                if (i >= 0 && less(value, id << 1 | max, v[i], e[i])) {
+                    v[at] = v[i];
+                    e[at] = e[i--];
+                } else {
+                    v[at] = value;
+                    e[at] = id << 1 | max;
+                    j--;
+                }
+            }
+        }
+        endpoints += count;
+    }
+
+    /**
+     * Maps an endpoint to an unsigned key in the order of
+     * {@link #less(float, int, float, int)}.
+     */
+    private static long key(float value, int end) {
+        final int bits = Float.floatToIntBits(value + 0.0f);
+        final long sortable = (bits ^ (bits >> 31 & 0x7FFFFFFF) ^ 0x80000000) & 0xFFFFFFFFL;
+        // a maximum sorts before a minimum of equal value
+        return sortable << 32 | (long) (~end & 1) << 31 | end >>> 1;
+    }
+
+    private void commit() {
+        System.arraycopy(bounds, 0, sorted, 0, top * 6);
+        float extent = 0;
+        for (int id = 0; id < top; id++) {
+            if (next[id] == USED) {
+                extent = Math.max(extent, sorted[id * 6 + 3] - sorted[id * 6]);
+            }
+        }
+        maxExtent = extent;
+    }
+
+    private void release() {
+        for (int k = 0; k < releasedCount; k++) {
+            next[released[k]] = free;
+            free = released[k];
+        }
+        releasedCount = 0;
+        addedCount = 0;
+    }
+
+    /**
+     * Insertion sort of one axis, optionally updating the pairs on every
+     * swap of a minimum and a maximum.
+     */
+    private void sort(int axis, boolean track) {
+        final float[] v = values[axis];
+        final int[] e = ends[axis];
+        for (int i = 1; i < endpoints; i++) {
+            final float value = v[i];
+            final int end = e[i];
+            int j = i - 1;
+            while (j >= 0 && less(value, end, v[j], e[j])) {
+                final int other = e[j];
+                if (track && (end ^ other) >>> 1 != 0) {
+                    if ((end & 1) == 0 && (other & 1) == 1) {
+                        if (overlaps(bounds, end >>> 1, other >>> 1)) {
+                            pairs.add(end >>> 1, other >>> 1);
+                        }
+                    } else if ((end & 1) == 1 && (other & 1) == 0) {
+                        pairs.remove(end >>> 1, other >>> 1);
+                    }
+                }
+                v[j + 1] = v[j];
+                e[j + 1] = other;
+                j--;
+            }
+            v[j + 1] = value;
+            e[j + 1] = end;
+        }
+    }
+
+    private static boolean overlaps(float[] b, int first, int second) {
+        final int p = first * 6, q = second * 6;
+        return b[p] < b[q + 3] && b[q] < b[p + 3] && b[p + 1] < b[q + 4] && b[q + 1] < b[p + 4] && b[p + 2] < b[q + 5]
+                && b[q + 2] < b[p + 5];
+    }
+
+    /**
+     * @return the axis with the largest variance of the box centers
+     */
+    private int spreadAxis() {
+        final double[] sum = new double[3], squares = new double[3];
+        for (int id = 0; id < top; id++) {
+            if (next[id] == USED) {
+                for (int axis = 0; axis < 3; axis++) {
+                    final double c = sorted[id * 6 + axis] + (double) sorted[id * 6 + 3 + axis];
+                    sum[axis] += c;
+                    squares[axis] += c * c;
+                }
+            }
+        }
+        int best = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            final double variance = squares[axis] - sum[axis] * sum[axis] / Math.max(size, 1);
+            if (variance > max) {
+                max = variance;
+                best = axis;
+            }
+        }
+        return best;
+    }
+
+    private void sweep(ForkJoinPool pool, int axis) {
+        final int count = endpoints;
+        final int blocks = Math.max(1, (count + SWEEP_BLOCK - 1) / SWEEP_BLOCK);
+        if (blockPairs.length < blocks) {
+            blockPairs = Arrays.copyOf(blockPairs, blocks);
+            blockCounts = new int[blocks];
+        }
+        if (pool == null || blocks == 1) {
+            for (int block = 0; block < blocks; block++) {
+                sweep(axis, block, count);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(block -> sweep(axis, block, count))).join();
+        }
+        pairs.clear();
+        for (int block = 0; block < blocks; block++) {
+            final long[] found = blockPairs[block];
+            for (int i = 0; i < blockCounts[block]; i++) {
+                pairs.add(PairSet.first(found[i]), PairSet.second(found[i]));
+            }
+        }
+    }
+
+    /**
+     * Scans from every minimum of a block to its maximum and tests the boxes
+     * starting in between.
+     */
+    private void sweep(int axis, int block, int count) {
+        final int[] e = ends[axis];
+        long[] found = blockPairs[block];
+        if (found == null) {
+            found = new long[64];
+        }
+        int n = 0;
+        for (int i = block * SWEEP_BLOCK, end = Math.min(count, i + SWEEP_BLOCK); i < end; i++) {
+            if ((e[i] & 1) != 0) {
+                continue;
+            }
+            final int id = e[i] >>> 1, max = e[i] | 1;
+            for (int j = i + 1; e[j] != max; j++) {
+                if ((e[j] & 1) == 0 && overlaps(sorted, id, e[j] >>> 1)) {
+                    if (n == found.length) {
+                        found = Arrays.copyOf(found, n * 2);
+                    }
+                    found[n++] = PairSet.key(id, e[j] >>> 1);
+                }
+            }
+        }
+        blockPairs[block] = found;
+        blockCounts[block] = n;
+    }
+
+    /**
+     * Passes every overlapping pair to a visitor, the smaller handle first.
+     * The broadphase must not be modified by the visitor.
+     *
+     * @param visitor the visitor
+     */
+    public void forEachPair(PairVisitor visitor) {
+        pairs.forEach(visitor);
+    }
+
+    /**
+     * @param a the handle of a body
+     * @param b the handle of another body
+     * @return true if the bodies overlapped at the last update
+     */
+    public boolean overlaps(int a, int b) {
+        return pairs.contains(a, b);
+    }
+
+    /**
+     * @return the amount of overlapping pairs
+     */
+    public int getPairCount() {
+        return pairs.size();
+    }
+
+    /**
+     * @param id the handle of a body
+     * @return true if the handle refers to a body in this broadphase
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < top && next[id] == USED;
+    }
+
+    /**
+     * @param id the handle of a body
+     * @return the current bounds of the body
+     * @throws IllegalArgumentException if the handle is not in use
+     */
+    public Aabb3f getBounds(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown body: " + id);
+        }
+        final int o = id * 6;
+        return Aabb3f.of(bounds[o], bounds[o + 1], bounds[o + 2], bounds[o + 3], bounds[o + 4], bounds[o + 5]);
+    }
+
+    /**
+     * Removes all bodies and pairs. The arrays keep their capacity.
+     */
+    public void clear() {
+        top = 0;
+        free = NONE;
+        size = 0;
+        addedCount = 0;
+        releasedCount = 0;
+        endpoints = 0;
+        maxExtent = 0;
+        pairs.clear();
+    }
+
+    /**
+     * @return the amount of bodies
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "SweepAndPrune [size=" + size + ", pairs=" + pairs.size() + "]";
+    }
+
+}
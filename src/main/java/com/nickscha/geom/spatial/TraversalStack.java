@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Per thread traversal stacks which stay valid for nested queries
+ * (final::mutable)
+ * <p>
+ * A query takes the stack of the current nesting level with
+ * {@link #acquire()} and hands it back with {@link #release()} in a finally
+ * block. A visitor that starts another query, on the same or any other tree,
+ * gets the stack of the next level, so the stack of the outer traversal is
+ * never overwritten. Stacks are allocated on first use of a level and reused
+ * afterwards, queries that are not nested do not allocate.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+final class TraversalStack {
+
+    private final int size;
+    private int[][] stacks = new int[4][];
+    private int level;
+
+    TraversalStack(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @param size the capacity of every stack
+     * @return the per thread stacks of the specified capacity
+     */
+    static ThreadLocal<TraversalStack> local(int size) {
+        return ThreadLocal.withInitial(() -> new TraversalStack(size));
+    }
+
+    /**
+     * @return the stack of the current nesting level
+     */
+    int[] acquire() {
+        return acquire(size);
+    }
+
+    /**
+     * @param capacity the minimal capacity of the stack
+     * @return the stack of the current nesting level, grown to the specified
+     *         capacity if needed
+     */
+    int[] acquire(int capacity) {
+        if (level == stacks.length) {
+            stacks = Arrays.copyOf(stacks, level * 2);
+        }
+        int[] stack = stacks[level];
+        if (stack == null || stack.length < capacity) {
+            stack = stacks[level] = new int[Math.max(size, capacity)];
+        }
+        level++;
+        return stack;
+    }
+
+    /**
+     * Hands back the stack of the current nesting level.
+     */
+    void release() {
+        level--;
+    }
+
+}
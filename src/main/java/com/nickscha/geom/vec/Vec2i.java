@@ -0,0 +1,471 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.vec;
+
+/**
+ * Vector of 2 element integers (final::immutable)
+ * <p>
+ * All methods return a new instance rather then modifying the object it self.
+ * Integer vectors address grid cells and voxels: convert positions with
+ * {@link #floor(Vec2f)} or {@link #round(Vec2f)} instead of flooring a
+ * {@link Vec2f} and using it as a hash key, which breaks on
+ * <code>-0.0</code> and NaN.
+ * </p>
+ * <b>Keys</b>
+ * <p>
+ * {@link #toKey()} packs both components into a <code>long</code>, x in the
+ * lower and y in the upper 32 bits. Every vector has a key, so keys can be
+ * used in primitive long keyed hash maps instead of boxed vectors.
+ * </p>
+ * <b>Null-Handling</b>
+ * <p>
+ * Passing null values will cause to throw a NullpointerException. Methods which
+ * could throw a NullPointerException are marked in the javadoc.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Vec2i {
+
+	/**
+	 * Defines how much fields are stored in this class which will be used for
+	 * optimal binary serialization
+	 */
+	public static final int FIELDS = 2;
+
+	/**
+	 * Defines how much bytes will be needed to store this type as binary
+	 */
+	public static final byte BYTES = 8;
+
+	/**
+	 * Bits per component of a key
+	 */
+	public static final int KEY_BITS = 32;
+
+	/**
+	 * Represents the zero vector
+	 */
+	public static final Vec2i ZERO = new Vec2i(0);
+
+	/**
+	 * Represents the vector with all components one
+	 */
+	public static final Vec2i ONE = new Vec2i(1);
+
+	/**
+	 * x and y component of this vector
+	 */
+	private final int x, y;
+
+	/**
+	 * Creates a new vector and sets all properties to the specified amount.
+	 *
+	 * @param amt as the value for all components
+	 */
+	public Vec2i(int amt) {
+		x = y = amt;
+	}
+
+	/**
+	 * Creates a new vector for the specified properties
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 */
+	public Vec2i(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Creates an new Vec2i instance where each component has the specified
+	 * amount.
+	 *
+	 * @param amt to apply to all components
+	 * @return the new vector
+	 */
+	public static Vec2i of(int amt) {
+		return new Vec2i(amt);
+	}
+
+	/**
+	 * Creates an new Vec2i instance with the specified components.
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @return the new vector
+	 */
+	public static Vec2i of(int x, int y) {
+		return new Vec2i(x, y);
+	}
+
+	/**
+	 * Converts a vector to the largest integers less than or equal to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec2i floor(Vec2f v) {
+		return new Vec2i((int) Math.floor(v.getX()), (int) Math.floor(v.getY()));
+	}
+
+	/**
+	 * Converts a vector to the closest integers to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec2i round(Vec2f v) {
+		return new Vec2i(Math.round(v.getX()), Math.round(v.getY()));
+	}
+
+	/**
+	 * Converts a vector to the largest integers less than or equal to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec2i floor(Vec2d v) {
+		return new Vec2i((int) Math.floor(v.getX()), (int) Math.floor(v.getY()));
+	}
+
+	/**
+	 * Converts a vector to the closest integers to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec2i round(Vec2d v) {
+		return new Vec2i(round(v.getX()), round(v.getY()));
+	}
+
+	private static int round(double value) {
+		// Math.round(double) saturates to the long range, clamp to the int range like Math.round(float)
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(value)));
+	}
+
+
+	/**
+	 * @param other the vector to add
+	 * @return the sum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec2i add(Vec2i other) {
+		return new Vec2i(x + other.x, y + other.y);
+	}
+
+	/**
+	 * @param amt the amount to add to every component
+	 * @return the sum
+	 */
+	public Vec2i add(int amt) {
+		return new Vec2i(x + amt, y + amt);
+	}
+
+	/**
+	 * @param other the vector to subtract
+	 * @return the difference
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec2i sub(Vec2i other) {
+		return new Vec2i(x - other.x, y - other.y);
+	}
+
+	/**
+	 * @param amt the amount to subtract from every component
+	 * @return the difference
+	 */
+	public Vec2i sub(int amt) {
+		return new Vec2i(x - amt, y - amt);
+	}
+
+	/**
+	 * @param other the vector to multiply with component wise
+	 * @return the product
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec2i mul(Vec2i other) {
+		return new Vec2i(x * other.x, y * other.y);
+	}
+
+	/**
+	 * @param amt the amount to multiply every component with
+	 * @return the product
+	 */
+	public Vec2i mul(int amt) {
+		return new Vec2i(x * amt, y * amt);
+	}
+
+	/**
+	 * @param other the other vector
+	 * @return the component wise minimum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec2i min(Vec2i other) {
+		return new Vec2i(Math.min(x, other.x), Math.min(y, other.y));
+	}
+
+	/**
+	 * @param other the other vector
+	 * @return the component wise maximum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec2i max(Vec2i other) {
+		return new Vec2i(Math.max(x, other.x), Math.max(y, other.y));
+	}
+
+	/**
+	 * @return the vector with all components negated
+	 */
+	public Vec2i negate() {
+		return new Vec2i(-x, -y);
+	}
+
+	/**
+	 * @return the squared length, computed in long to avoid overflow
+	 */
+	public long lengthSquared() {
+		return (long) x * x + (long) y * y;
+	}
+
+	/**
+	 * Calculates the Manhattan length between two vectors, the amount of grid
+	 * steps between two cells.
+	 *
+	 * @param other the other vector
+	 * @return the Manhattan length
+	 * @throws NullPointerException if the vector is null
+	 */
+	public long lengthManhattan(Vec2i other) {
+		return Math.abs((long) x - other.x) + Math.abs((long) y - other.y);
+	}
+
+	/**
+	 * @return this vector as floats
+	 */
+	public Vec2f vec2f() {
+		return new Vec2f(x, y);
+	}
+
+	/**
+	 * @return this vector as doubles
+	 */
+	public Vec2d vec2d() {
+		return new Vec2d(x, y);
+	}
+
+	/**
+	 * @return the x component of this vector
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the y component of this vector
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Packs components into a key.
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @return the key
+	 */
+	public static long key(int x, int y) {
+		return x & 0xFFFFFFFFL | (long) y << 32;
+	}
+
+	/**
+	 * @return the components packed into a key
+	 */
+	public long toKey() {
+		return key(x, y);
+	}
+
+	/**
+	 * @param key a key as returned by {@link #toKey()}
+	 * @return the vector
+	 */
+	public static Vec2i fromKey(long key) {
+		return new Vec2i(keyX(key), keyY(key));
+	}
+
+	/**
+	 * @param key a key
+	 * @return the x component of the key
+	 */
+	public static int keyX(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * @param key a key
+	 * @return the y component of the key
+	 */
+	public static int keyY(long key) {
+		return (int) (key >>> 32);
+	}
+
+	/**
+	 * Converts interleaved points to the keys of the cells of a grid with the
+	 * specified cell size and its origin at zero.
+	 *
+	 * @param points the points (x,y interleaved)
+	 * @param offset the first point
+	 * @param count the amount of points
+	 * @param cellSize the edge length of a cell
+	 * @param keys receives the key of point <code>offset + i</code> at index
+	 *            <code>i</code>
+	 * @return the passed keys array
+	 */
+	public static long[] floorKeys(float[] points, int offset, int count, float cellSize, long[] keys) {
+		for (int i = 0, p = offset * 2; i < count; i++, p += 2) {
+			keys[i] = key(fastFloor(points[p] / cellSize), fastFloor(points[p + 1] / cellSize));
+		}
+		return keys;
+	}
+
+	/**
+	 * Converts interleaved points to the keys of the cells of a grid with the
+	 * specified cell size and its origin at zero.
+	 *
+	 * @param points the points (x,y interleaved)
+	 * @param offset the first point
+	 * @param count the amount of points
+	 * @param cellSize the edge length of a cell
+	 * @param keys receives the key of point <code>offset + i</code> at index
+	 *            <code>i</code>
+	 * @return the passed keys array
+	 */
+	public static long[] floorKeys(double[] points, int offset, int count, double cellSize, long[] keys) {
+		for (int i = 0, p = offset * 2; i < count; i++, p += 2) {
+			keys[i] = key(fastFloor(points[p] / cellSize), fastFloor(points[p + 1] / cellSize));
+		}
+		return keys;
+	}
+
+	private static int fastFloor(double value) {
+		final int i = (int) value;
+		return value < i ? i - 1 : i;
+	}
+
+	/**
+	 * Converts the vector to a byte array optimized for high performance
+	 * serialization.
+	 *
+	 * @return this vector comprised in a byte array.
+	 */
+	public byte[] toBytes() {
+		return toBytes(new byte[BYTES], 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data) {
+		return toBytes(data, 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @param offset the offset to start from
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data, int offset) {
+		int[] values = new int[] { x, y };
+		for (int i = 0; i < FIELDS; i++) {
+			data[offset++] = (byte) (values[i] >> 24);
+			data[offset++] = (byte) (values[i] >> 16);
+			data[offset++] = (byte) (values[i] >> 8);
+			data[offset++] = (byte) (values[i]);
+		}
+		return data;
+	}
+
+	/**
+	 * Converts the specified byte array (length >= 8) to a new vector
+	 *
+	 * @param data the byte data
+	 * @return the new vector from the specified byte array
+	 */
+	public static Vec2i fromBytes(byte[] data) {
+		return fromBytes(data, 0);
+	}
+
+	/**
+	 * Converts the specified byte array to a new vector by the given offset
+	 *
+	 * @param data the byte data
+	 * @param offset the offset to start from
+	 * @return the new vector from the specified byte array and offset
+	 */
+	public static Vec2i fromBytes(byte[] data, int offset) {
+		int[] values = new int[FIELDS];
+		for (int i = 0; i < FIELDS; i++) {
+			values[i] = (data[offset++] & 0xFF) << 24 | (data[offset++] & 0xFF) << 16 | (data[offset++] & 0xFF) << 8
+					| (data[offset++] & 0xFF);
+		}
+		return new Vec2i(values[0], values[1]);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + x;
+		result = prime * result + y;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Vec2i) {
+			Vec2i v = (Vec2i) obj;
+			return (x == v.x) && (y == v.y);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "vec2i[x=" + x + ", y=" + y + "]";
+	}
+
+}
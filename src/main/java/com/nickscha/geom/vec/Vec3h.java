@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.vec;
+
+import com.nickscha.geom.codec.HalfFloat;
+
+/**
+ * Vector of 3 element half floats (final::immutable)
+ * <p>
+ * Storage type for large attribute buffers such as colours, normals and
+ * texture coordinates. The components are kept as IEEE half float bits, which
+ * halves the memory of a {@link Vec3f}. There is no arithmetic: convert with
+ * {@link #vec3f()}, compute and convert back. Conversion rounds to nearest
+ * even, see {@link HalfFloat}. For whole buffers use the bulk methods of
+ * {@link HalfFloat} on flat arrays instead of instances of this class.
+ * </p>
+ * <b>Null-Handling</b>
+ * <p>
+ * Passing null values will cause to throw a NullpointerException. Methods which
+ * could throw a NullPointerException are marked in the javadoc.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Vec3h {
+
+	/**
+	 * Defines how much fields are stored in this class which will be used for
+	 * optimal binary serialization
+	 */
+	public static final int FIELDS = 3;
+
+	/**
+	 * Defines how much bytes will be needed to store this type as binary
+	 */
+	public static final byte BYTES = 6;
+
+	/**
+	 * Represents the zero vector
+	 */
+	public static final Vec3h ZERO = new Vec3h((short) 0, (short) 0, (short) 0);
+
+	/**
+	 * x, y and z component of this vector as half float bits
+	 */
+	private final short x, y, z;
+
+	private Vec3h(short x, short y, short z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/**
+	 * Creates a new vector rounding the specified components to half floats.
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @param z the z component
+	 * @return the new vector
+	 */
+	public static Vec3h of(float x, float y, float z) {
+		return new Vec3h(HalfFloat.toHalf(x), HalfFloat.toHalf(y), HalfFloat.toHalf(z));
+	}
+
+	/**
+	 * Creates a new vector rounding the components of the specified vector to
+	 * half floats.
+	 *
+	 * @param vector the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec3h of(Vec3f vector) {
+		return of(vector.getX(), vector.getY(), vector.getZ());
+	}
+
+	/**
+	 * Creates a new vector from half float bits.
+	 *
+	 * @param x the bits of the x component
+	 * @param y the bits of the y component
+	 * @param z the bits of the z component
+	 * @return the new vector
+	 */
+	public static Vec3h fromBits(short x, short y, short z) {
+		return new Vec3h(x, y, z);
+	}
+
+	/**
+	 * Converts this vector to single precision, which is exact.
+	 *
+	 * @return the new vector
+	 */
+	public Vec3f vec3f() {
+		return new Vec3f(HalfFloat.toFloat(x), HalfFloat.toFloat(y), HalfFloat.toFloat(z));
+	}
+
+	/**
+	 * @return the x component of this vector
+	 */
+	public float getX() {
+		return HalfFloat.toFloat(x);
+	}
+
+	/**
+	 * @return the y component of this vector
+	 */
+	public float getY() {
+		return HalfFloat.toFloat(y);
+	}
+
+	/**
+	 * @return the z component of this vector
+	 */
+	public float getZ() {
+		return HalfFloat.toFloat(z);
+	}
+
+	/**
+	 * @return the half float bits of the x component of this vector
+	 */
+	public short getBitsX() {
+		return x;
+	}
+
+	/**
+	 * @return the half float bits of the y component of this vector
+	 */
+	public short getBitsY() {
+		return y;
+	}
+
+	/**
+	 * @return the half float bits of the z component of this vector
+	 */
+	public short getBitsZ() {
+		return z;
+	}
+
+	/**
+	 * Converts the vector to a byte array optimized for high performance
+	 * serialization.
+	 *
+	 * @return this vector comprised in a byte array.
+	 */
+	public byte[] toBytes() {
+		return toBytes(new byte[BYTES], 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data) {
+		return toBytes(data, 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @param offset the offset to start from
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data, int offset) {
+		data[offset++] = (byte) (x >> 8);
+		data[offset++] = (byte) x;
+		data[offset++] = (byte) (y >> 8);
+		data[offset++] = (byte) y;
+		data[offset++] = (byte) (z >> 8);
+		data[offset++] = (byte) z;
+		return data;
+	}
+
+	/**
+	 * Converts the specified byte array (length >= 6) to a new vector
+	 *
+	 * @param data the byte data
+	 * @return the new vector from the specified byte array
+	 */
+	public static Vec3h fromBytes(byte[] data) {
+		return fromBytes(data, 0);
+	}
+
+	/**
+	 * Converts the specified byte array to a new vector by the given offset
+	 *
+	 * @param data the byte data
+	 * @param offset the offset to start from
+	 * @return the new vector from the specified byte array and offset
+	 */
+	public static Vec3h fromBytes(byte[] data, int offset) {
+		return new Vec3h((short) (data[offset] << 8 | data[offset + 1] & 0xFF),
+				(short) (data[offset + 2] << 8 | data[offset + 3] & 0xFF),
+				(short) (data[offset + 4] << 8 | data[offset + 5] & 0xFF));
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + x;
+		result = prime * result + y;
+		result = prime * result + z;
+		return result;
+	}
+
+	/**
+	 * Two instances are equal if they hold the same half float bits.
+	 *
+	 * @param obj an object to be compared with this <code>Vec3h</code>
+	 * @return <code>true</code> if the object to be compared is an instance of
+	 *         <code>Vec3h</code> and has the same bits, <code>false</code>
+	 *         otherwise.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Vec3h) {
+			Vec3h v = (Vec3h) obj;
+			return (x == v.x) && (y == v.y) && (z == v.z);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "vec3h[x=" + getX() + ", y=" + getY() + ", z=" + getZ() + "]";
+	}
+
+}
@@ -761,22 +761,24 @@ public final class Vec4f {
 	}
 
 	/**
-	 * Transforms this three dimensional vector to its screen space (x,y)
-	 * position based on supplied view and projection matrix.
-	 * 
-	 * @param viewMatrix
-	 * @param projectionMatrix
-	 * @return the screen space position of this vector
+	 * Transforms this homogeneous vector to its normalized device coordinates
+	 * (x,y) based on supplied view and projection matrix. The result is the
+	 * clip space position <code>projection * view * v</code> divided by its w
+	 * component, both coordinates are in the range [-1,1] when the vector is
+	 * inside of the view frustum. For bulk projection see
+	 * {@link com.nickscha.geom.raster.Projector}.
+	 * 
+	 * @param viewMatrix the view matrix
+	 * @param projectionMatrix the projection matrix
+	 * @return the screen space position of this vector or null if it is not in
+	 *         front of the camera (w &lt;= 0)
+	 * @throws NullPointerException if any passed matrix is null
 	 */
-	// TODO adjust matrix class
 	public Vec2f screenSpace(Mat4f viewMatrix, Mat4f projectionMatrix) {
-		Vec4f coords = this;
-		// Mat4f.transform(viewMatrix, coords, coords);
-		// Mat4f.transform(projectionMatrix, coords, coords);
+		Vec4f coords = projectionMatrix.transform(viewMatrix.transform(this));
 		if (coords.getW() <= 0) {
 			return null;
 		}
-		// no need for conversion below
 		return coords.vec2().div(coords.getW());
 	}
 
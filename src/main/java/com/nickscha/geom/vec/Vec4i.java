@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.vec;
+
+/**
+ * Vector of 4 element integers (final::immutable)
+ * <p>
+ * All methods return a new instance rather then modifying the object it self.
+ * Integer vectors address grid cells and voxels: convert positions with
+ * {@link #floor(Vec4f)} or {@link #round(Vec4f)} instead of flooring a
+ * {@link Vec4f} and using it as a hash key, which breaks on
+ * <code>-0.0</code> and NaN.
+ * </p>
+ * <b>Keys</b>
+ * <p>
+ * {@link #toKey()} packs the components into a <code>long</code> with
+ * 16 bits each, x in the lowest bits. Keys can be used in primitive long
+ * keyed hash maps instead of boxed vectors. Only components in
+ * <code>[{@value #MIN_KEY_VALUE}, {@value #MAX_KEY_VALUE}]</code> can be
+ * packed.
+ * </p>
+ * <b>Null-Handling</b>
+ * <p>
+ * Passing null values will cause to throw a NullpointerException. Methods which
+ * could throw a NullPointerException are marked in the javadoc.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class Vec4i {
+
+	/**
+	 * Defines how much fields are stored in this class which will be used for
+	 * optimal binary serialization
+	 */
+	public static final int FIELDS = 4;
+
+	/**
+	 * Defines how much bytes will be needed to store this type as binary
+	 */
+	public static final byte BYTES = 16;
+
+	/**
+	 * Bits per component of a key
+	 */
+	public static final int KEY_BITS = 16;
+
+	/**
+	 * Smallest component that can be packed into a key
+	 */
+	public static final int MIN_KEY_VALUE = -(1 << KEY_BITS - 1);
+
+	/**
+	 * Largest component that can be packed into a key
+	 */
+	public static final int MAX_KEY_VALUE = (1 << KEY_BITS - 1) - 1;
+
+	private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+	/**
+	 * Represents the zero vector
+	 */
+	public static final Vec4i ZERO = new Vec4i(0);
+
+	/**
+	 * Represents the vector with all components one
+	 */
+	public static final Vec4i ONE = new Vec4i(1);
+
+	/**
+	 * x, y, z and w component of this vector
+	 */
+	private final int x, y, z, w;
+
+	/**
+	 * Creates a new vector and sets all properties to the specified amount.
+	 *
+	 * @param amt as the value for all components
+	 */
+	public Vec4i(int amt) {
+		x = y = z = w = amt;
+	}
+
+	/**
+	 * Creates a new vector for the specified properties
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @param z the z component
+	 * @param w the w component
+	 */
+	public Vec4i(int x, int y, int z, int w) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.w = w;
+	}
+
+	/**
+	 * Creates an new Vec4i instance where each component has the specified
+	 * amount.
+	 *
+	 * @param amt to apply to all components
+	 * @return the new vector
+	 */
+	public static Vec4i of(int amt) {
+		return new Vec4i(amt);
+	}
+
+	/**
+	 * Creates an new Vec4i instance with the specified components.
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @param z the z component
+	 * @param w the w component
+	 * @return the new vector
+	 */
+	public static Vec4i of(int x, int y, int z, int w) {
+		return new Vec4i(x, y, z, w);
+	}
+
+	/**
+	 * Converts a vector to the largest integers less than or equal to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec4i floor(Vec4f v) {
+		return new Vec4i((int) Math.floor(v.getX()), (int) Math.floor(v.getY()), (int) Math.floor(v.getZ()),
+				(int) Math.floor(v.getW()));
+	}
+
+	/**
+	 * Converts a vector to the closest integers to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec4i round(Vec4f v) {
+		return new Vec4i(Math.round(v.getX()), Math.round(v.getY()), Math.round(v.getZ()), Math.round(v.getW()));
+	}
+
+	/**
+	 * Converts a vector to the largest integers less than or equal to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec4i floor(Vec4d v) {
+		return new Vec4i((int) Math.floor(v.getX()), (int) Math.floor(v.getY()), (int) Math.floor(v.getZ()),
+				(int) Math.floor(v.getW()));
+	}
+
+	/**
+	 * Converts a vector to the closest integers to its components. Components beyond the
+	 * integer range saturate, NaN becomes zero.
+	 *
+	 * @param v the vector
+	 * @return the new vector
+	 * @throws NullPointerException if the vector is null
+	 */
+	public static Vec4i round(Vec4d v) {
+		return new Vec4i(round(v.getX()), round(v.getY()), round(v.getZ()), round(v.getW()));
+	}
+
+	private static int round(double value) {
+		// Math.round(double) saturates to the long range, clamp to the int range like Math.round(float)
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.round(value)));
+	}
+
+
+	/**
+	 * @param other the vector to add
+	 * @return the sum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec4i add(Vec4i other) {
+		return new Vec4i(x + other.x, y + other.y, z + other.z, w + other.w);
+	}
+
+	/**
+	 * @param amt the amount to add to every component
+	 * @return the sum
+	 */
+	public Vec4i add(int amt) {
+		return new Vec4i(x + amt, y + amt, z + amt, w + amt);
+	}
+
+	/**
+	 * @param other the vector to subtract
+	 * @return the difference
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec4i sub(Vec4i other) {
+		return new Vec4i(x - other.x, y - other.y, z - other.z, w - other.w);
+	}
+
+	/**
+	 * @param amt the amount to subtract from every component
+	 * @return the difference
+	 */
+	public Vec4i sub(int amt) {
+		return new Vec4i(x - amt, y - amt, z - amt, w - amt);
+	}
+
+	/**
+	 * @param other the vector to multiply with component wise
+	 * @return the product
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec4i mul(Vec4i other) {
+		return new Vec4i(x * other.x, y * other.y, z * other.z, w * other.w);
+	}
+
+	/**
+	 * @param amt the amount to multiply every component with
+	 * @return the product
+	 */
+	public Vec4i mul(int amt) {
+		return new Vec4i(x * amt, y * amt, z * amt, w * amt);
+	}
+
+	/**
+	 * @param other the other vector
+	 * @return the component wise minimum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec4i min(Vec4i other) {
+		return new Vec4i(Math.min(x, other.x), Math.min(y, other.y), Math.min(z, other.z), Math.min(w, other.w));
+	}
+
+	/**
+	 * @param other the other vector
+	 * @return the component wise maximum
+	 * @throws NullPointerException if the vector is null
+	 */
+	public Vec4i max(Vec4i other) {
+		return new Vec4i(Math.max(x, other.x), Math.max(y, other.y), Math.max(z, other.z), Math.max(w, other.w));
+	}
+
+	/**
+	 * @return the vector with all components negated
+	 */
+	public Vec4i negate() {
+		return new Vec4i(-x, -y, -z, -w);
+	}
+
+	/**
+	 * @return the squared length, computed in long to avoid overflow
+	 */
+	public long lengthSquared() {
+		return (long) x * x + (long) y * y + (long) z * z + (long) w * w;
+	}
+
+	/**
+	 * Calculates the Manhattan length between two vectors, the amount of grid
+	 * steps between two cells.
+	 *
+	 * @param other the other vector
+	 * @return the Manhattan length
+	 * @throws NullPointerException if the vector is null
+	 */
+	public long lengthManhattan(Vec4i other) {
+		return Math.abs((long) x - other.x) + Math.abs((long) y - other.y) + Math.abs((long) z - other.z)
+				+ Math.abs((long) w - other.w);
+	}
+
+	/**
+	 * @return this vector as floats
+	 */
+	public Vec4f vec4f() {
+		return new Vec4f(x, y, z, w);
+	}
+
+	/**
+	 * @return this vector as doubles
+	 */
+	public Vec4d vec4d() {
+		return new Vec4d(x, y, z, w);
+	}
+
+	/**
+	 * @return the x component of this vector
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return the y component of this vector
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the z component of this vector
+	 */
+	public int getZ() {
+		return z;
+	}
+
+	/**
+	 * @return the w component of this vector
+	 */
+	public int getW() {
+		return w;
+	}
+
+	/**
+	 * Packs components into a key.
+	 *
+	 * @param x the x component
+	 * @param y the y component
+	 * @param z the z component
+	 * @param w the w component
+	 * @return the key
+	 * @throws IllegalArgumentException if a component is out of the key range
+	 */
+	public static long key(int x, int y, int z, int w) {
+		if (x < MIN_KEY_VALUE || x > MAX_KEY_VALUE || y < MIN_KEY_VALUE || y > MAX_KEY_VALUE
+				|| z < MIN_KEY_VALUE || z > MAX_KEY_VALUE || w < MIN_KEY_VALUE || w > MAX_KEY_VALUE) {
+			throw new IllegalArgumentException("out of key range: " + x + ", " + y + ", " + z + ", " + w);
+		}
+		return x & KEY_MASK | (y & KEY_MASK) << KEY_BITS | (z & KEY_MASK) << 2 * KEY_BITS | (w & KEY_MASK) << 3 * KEY_BITS;
+	}
+
+	/**
+	 * @return the components packed into a key
+	 * @throws IllegalArgumentException if a component is out of the key range
+	 */
+	public long toKey() {
+		return key(x, y, z, w);
+	}
+
+	/**
+	 * @param key a key as returned by {@link #toKey()}
+	 * @return the vector
+	 */
+	public static Vec4i fromKey(long key) {
+		return new Vec4i(keyX(key), keyY(key), keyZ(key), keyW(key));
+	}
+
+	/**
+	 * @param key a key
+	 * @return the x component of the key
+	 */
+	public static int keyX(long key) {
+		return (int) (key << 48 >> 48);
+	}
+
+	/**
+	 * @param key a key
+	 * @return the y component of the key
+	 */
+	public static int keyY(long key) {
+		return (int) (key << 32 >> 48);
+	}
+
+	/**
+	 * @param key a key
+	 * @return the z component of the key
+	 */
+	public static int keyZ(long key) {
+		return (int) (key << 16 >> 48);
+	}
+
+	/**
+	 * @param key a key
+	 * @return the w component of the key
+	 */
+	public static int keyW(long key) {
+		return (int) (key >> 48);
+	}
+
+	/**
+	 * Converts the vector to a byte array optimized for high performance
+	 * serialization.
+	 *
+	 * @return this vector comprised in a byte array.
+	 */
+	public byte[] toBytes() {
+		return toBytes(new byte[BYTES], 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data) {
+		return toBytes(data, 0);
+	}
+
+	/**
+	 * Converts the vector to the specified byte array optimized for high
+	 * performance serialization.
+	 *
+	 * @param data the array to store the data
+	 * @param offset the offset to start from
+	 * @return the byte array
+	 */
+	public byte[] toBytes(byte[] data, int offset) {
+		int[] values = new int[] { x, y, z, w };
+		for (int i = 0; i < FIELDS; i++) {
+			data[offset++] = (byte) (values[i] >> 24);
+			data[offset++] = (byte) (values[i] >> 16);
+			data[offset++] = (byte) (values[i] >> 8);
+			data[offset++] = (byte) (values[i]);
+		}
+		return data;
+	}
+
+	/**
+	 * Converts the specified byte array (length >= 16) to a new vector
+	 *
+	 * @param data the byte data
+	 * @return the new vector from the specified byte array
+	 */
+	public static Vec4i fromBytes(byte[] data) {
+		return fromBytes(data, 0);
+	}
+
+	/**
+	 * Converts the specified byte array to a new vector by the given offset
+	 *
+	 * @param data the byte data
+	 * @param offset the offset to start from
+	 * @return the new vector from the specified byte array and offset
+	 */
+	public static Vec4i fromBytes(byte[] data, int offset) {
+		int[] values = new int[FIELDS];
+		for (int i = 0; i < FIELDS; i++) {
+			values[i] = (data[offset++] & 0xFF) << 24 | (data[offset++] & 0xFF) << 16 | (data[offset++] & 0xFF) << 8
+					| (data[offset++] & 0xFF);
+		}
+		return new Vec4i(values[0], values[1], values[2], values[3]);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + x;
+		result = prime * result + y;
+		result = prime * result + z;
+		result = prime * result + w;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj instanceof Vec4i) {
+			Vec4i v = (Vec4i) obj;
+			return (x == v.x) && (y == v.y) && (z == v.z) && (w == v.w);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "vec4i[x=" + x + ", y=" + y + ", z=" + z + ", w=" + w + "]";
+	}
+
+}
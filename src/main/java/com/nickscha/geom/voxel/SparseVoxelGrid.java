@@ -0,0 +1,830 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.voxel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.nickscha.geom.vec.Vec3i;
+
+/**
+ * Sparse voxel grid of dense bricks (final::mutable)
+ * <p>
+ * Voxels are cubes of a fixed size with integer coordinates, voxel
+ * <code>(x, y, z)</code> covers <code>[x, x + 1) * voxelSize</code> on every
+ * axis. The grid allocates {@value #BRICK_SIZE}&sup3; bricks only where voxels
+ * are set. A brick is addressed by its packed {@link Vec3i} key in an open
+ * addressing table with linear probing, so there are no per voxel objects and
+ * nothing is boxed. Voxel coordinates must lie in
+ * <code>[-2^23, 2^23)</code>.
+ * </p>
+ * <b>Memory layout</b>
+ * <p>
+ * Brick <code>b</code> owns the occupancy bits
+ * <code>occupancy[b * 8]..occupancy[b * 8 + 7]</code>, bit
+ * <code>x | y &lt;&lt; 3 | z &lt;&lt; 6</code> for local coordinates. If the
+ * grid stores values, the brick also owns 512 ints of <code>values</code>.
+ * A brick costs 64 bytes plus 2 KiB with values. Bricks are never freed,
+ * clearing voxels leaves empty bricks behind that are skipped by iteration and
+ * serialization.
+ * </p>
+ * <b>Serialization</b>
+ * <p>
+ * {@link #write(OutputStream)} stores every non empty brick as its key and the
+ * run lengths of its alternating empty and occupied voxels, values as runs of
+ * equal values over the occupied voxels. Solid and mostly empty bricks take a
+ * few bytes.
+ * </p>
+ * <p>
+ * The grid is not thread safe. {@link #voxelize(float[], int[], ForkJoinPool)}
+ * tests triangles in parallel and inserts the results on the calling thread.
+ * </p>
+ *
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ */
+public final class SparseVoxelGrid {
+
+    /**
+     * Edge length of a brick in voxels
+     */
+    public static final int BRICK_SIZE = 8;
+
+    /**
+     * Amount of triangles per parallel block of a voxelization
+     */
+    static final int BLOCK_SIZE = 1 << 10;
+
+    private static final int BRICK_BITS = 3;
+    private static final int BRICK_MASK = BRICK_SIZE - 1;
+    private static final int BRICK_VOXELS = BRICK_SIZE * BRICK_SIZE * BRICK_SIZE;
+    private static final int BRICK_WORDS = BRICK_VOXELS / 64;
+    private static final int MAGIC = 0x53564731;
+    private static final long EMPTY = -1L;
+
+    /**
+     * Visitor of voxels
+     */
+    @FunctionalInterface
+    public interface VoxelVisitor {
+
+        /**
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @param z the z coordinate
+         */
+        void accept(int x, int y, int z);
+    }
+
+    private final float voxelSize;
+    private final boolean hasValues;
+
+    // brick key to brick index, open addressing
+    private long[] tableKeys;
+    private int[] tableBricks;
+    private int shift;
+
+    private long[] brickKeys = new long[16];
+    private long[] occupancy = new long[16 * BRICK_WORDS];
+    private int[] values;
+    private int brickCount;
+    private long size;
+
+    // brick of the last lookup, points and triangles are mostly coherent
+    private long lastKey = EMPTY;
+    private int lastBrick = -1;
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param voxelSize the edge length of a voxel
+     * @param hasValues whether every voxel stores an int value
+     * @throws IllegalArgumentException if the voxel size is not positive and
+     *             finite
+     */
+    public SparseVoxelGrid(float voxelSize, boolean hasValues) {
+        if (!(voxelSize > 0 && voxelSize < Float.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("voxelSize: " + voxelSize);
+        }
+        this.voxelSize = voxelSize;
+        this.hasValues = hasValues;
+        this.values = hasValues ? new int[16 * BRICK_VOXELS] : null;
+        allocate(32);
+    }
+
+    private void allocate(int capacity) {
+        tableKeys = new long[capacity];
+        tableBricks = new int[capacity];
+        Arrays.fill(tableKeys, EMPTY);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private int slot(long key) {
+        return (int) (key * 0x9E3779B97F4A7C15L >>> shift);
+    }
+
+    /**
+     * @return the brick index or -1 if the brick does not exist
+     */
+    private int findBrick(long key) {
+        if (key == lastKey) {
+            return lastBrick;
+        }
+        final int mask = tableKeys.length - 1;
+        for (int i = slot(key);; i = i + 1 & mask) {
+            final long k = tableKeys[i];
+            if (k == key) {
+                lastKey = key;
+                lastBrick = tableBricks[i];
+                return lastBrick;
+            }
+            if (k == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int brick(long key) {
+        if (key == lastKey) {
+            return lastBrick;
+        }
+        final int mask = tableKeys.length - 1;
+        int i = slot(key);
+        for (long k; (k = tableKeys[i]) != EMPTY; i = i + 1 & mask) {
+            if (k == key) {
+                lastKey = key;
+                lastBrick = tableBricks[i];
+                return lastBrick;
+            }
+        }
+        final int b = brickCount++;
+        if (b == brickKeys.length) {
+            brickKeys = Arrays.copyOf(brickKeys, b * 2);
+            occupancy = Arrays.copyOf(occupancy, b * 2 * BRICK_WORDS);
+            if (hasValues) {
+                values = Arrays.copyOf(values, b * 2 * BRICK_VOXELS);
+            }
+        }
+        brickKeys[b] = key;
+        tableKeys[i] = key;
+        tableBricks[i] = b;
+        if (brickCount * 2 > tableKeys.length) {
+            rehash(tableKeys.length * 2);
+        }
+        lastKey = key;
+        lastBrick = b;
+        return b;
+    }
+
+    private void rehash(int capacity) {
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int b = 0; b < brickCount; b++) {
+            int i = slot(brickKeys[b]);
+            while (tableKeys[i] != EMPTY) {
+                i = i + 1 & mask;
+            }
+            tableKeys[i] = brickKeys[b];
+            tableBricks[i] = b;
+        }
+    }
+
+    private static long brickKey(int x, int y, int z) {
+        return Vec3i.key(x >> BRICK_BITS, y >> BRICK_BITS, z >> BRICK_BITS);
+    }
+
+    private static int local(int x, int y, int z) {
+        return x & BRICK_MASK | (y & BRICK_MASK) << BRICK_BITS | (z & BRICK_MASK) << 2 * BRICK_BITS;
+    }
+
+    /**
+     * Sets a voxel.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return true if the voxel was not set before
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    public boolean set(int x, int y, int z) {
+        final int b = brick(brickKey(x, y, z));
+        final int l = local(x, y, z);
+        final int w = b * BRICK_WORDS + (l >>> 6);
+        final long bit = 1L << l;
+        if ((occupancy[w] & bit) != 0) {
+            return false;
+        }
+        occupancy[w] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Sets a voxel and its value.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @param value the value
+     * @return true if the voxel was not set before
+     * @throws IllegalArgumentException if a coordinate is out of range
+     * @throws IllegalStateException if the grid does not store values
+     */
+    public boolean set(int x, int y, int z, int value) {
+        checkValues();
+        final boolean added = set(x, y, z);
+        values[lastBrick * BRICK_VOXELS + local(x, y, z)] = value;
+        return added;
+    }
+
+    /**
+     * Clears a voxel.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return true if the voxel was set
+     */
+    public boolean clear(int x, int y, int z) {
+        final int b = find(x, y, z);
+        if (b < 0) {
+            return false;
+        }
+        final int l = local(x, y, z);
+        final int w = b * BRICK_WORDS + (l >>> 6);
+        final long bit = 1L << l;
+        if ((occupancy[w] & bit) == 0) {
+            return false;
+        }
+        occupancy[w] &= ~bit;
+        if (hasValues) {
+            values[b * BRICK_VOXELS + l] = 0;
+        }
+        size--;
+        return true;
+    }
+
+    private int find(int x, int y, int z) {
+        final int range = 1 << Vec3i.KEY_BITS + BRICK_BITS - 1;
+        if (x < -range || x >= range || y < -range || y >= range || z < -range || z >= range) {
+            return -1;
+        }
+        return findBrick(brickKey(x, y, z));
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return true if the voxel is set
+     */
+    public boolean contains(int x, int y, int z) {
+        final int b = find(x, y, z);
+        if (b < 0) {
+            return false;
+        }
+        final int l = local(x, y, z);
+        return (occupancy[b * BRICK_WORDS + (l >>> 6)] & 1L << l) != 0;
+    }
+
+    /**
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return the value of the voxel or zero if it is not set
+     * @throws IllegalStateException if the grid does not store values
+     */
+    public int get(int x, int y, int z) {
+        checkValues();
+        final int b = find(x, y, z);
+        return b < 0 ? 0 : values[b * BRICK_VOXELS + local(x, y, z)];
+    }
+
+    private void checkValues() {
+        if (!hasValues) {
+            throw new IllegalStateException("grid without values");
+        }
+    }
+
+    /**
+     * @param v a coordinate
+     * @return the voxel containing the coordinate
+     */
+    public int voxel(float v) {
+        final float s = v / voxelSize;
+        final int i = (int) s;
+        return s < i ? i - 1 : i;
+    }
+
+    /**
+     * Sets the voxels containing interleaved points.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @return the amount of voxels that were not set before
+     * @throws IllegalArgumentException if a point is out of range
+     */
+    public long insert(float[] xyz, int offset, int count) {
+        final long before = size;
+        for (int p = offset * 3, end = (offset + count) * 3; p < end; p += 3) {
+            set(voxel(xyz[p]), voxel(xyz[p + 1]), voxel(xyz[p + 2]));
+        }
+        return size - before;
+    }
+
+    /**
+     * Sets the voxels containing interleaved points and their values. A voxel
+     * containing several points keeps the value of the last one.
+     *
+     * @param xyz the points (x,y,z interleaved)
+     * @param offset the first point
+     * @param count the amount of points
+     * @param pointValues the value of every point starting at index zero
+     * @return the amount of voxels that were not set before
+     * @throws IllegalArgumentException if a point is out of range
+     * @throws IllegalStateException if the grid does not store values
+     */
+    public long insert(float[] xyz, int offset, int count, int[] pointValues) {
+        checkValues();
+        final long before = size;
+        for (int i = 0, p = offset * 3; i < count; i++, p += 3) {
+            set(voxel(xyz[p]), voxel(xyz[p + 1]), voxel(xyz[p + 2]), pointValues[i]);
+        }
+        return size - before;
+    }
+
+    /**
+     * Sets every voxel that a triangle touches. The triangles are tested in
+     * parallel blocks with the separating axis test of Akenine-M&ouml;ller
+     * ("Fast 3D Triangle-Box Overlap Testing", 2001) against every voxel of
+     * their bounds, the result is conservative. The voxels found are inserted
+     * on the calling thread in triangle order, so the result does not depend
+     * on the pool.
+     *
+     * @param positions the vertex positions (x,y,z interleaved)
+     * @param indices the triangle indices
+     * @param pool the pool to run on or null to run on the calling thread
+     * @return the amount of voxels that were not set before
+     * @throws IllegalArgumentException if a triangle is out of range
+     */
+    public long voxelize(float[] positions, int[] indices, ForkJoinPool pool) {
+        final int triangles = indices.length / 3;
+        final int blocks = (triangles + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int[][] found = new int[blocks][];
+        if (pool == null || blocks <= 1) {
+            for (int block = 0; block < blocks; block++) {
+                found[block] = voxelizeBlock(positions, indices, block);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, blocks).parallel()
+                    .forEach(block -> found[block] = voxelizeBlock(positions, indices, block))).join();
+        }
+        final long before = size;
+        for (final int[] voxels : found) {
+            for (int i = 1, end = voxels[0]; i < end; i += 3) {
+                set(voxels[i], voxels[i + 1], voxels[i + 2]);
+            }
+        }
+        return size - before;
+    }
+
+    /**
+     * @return the length including itself at index zero, followed by the
+     *         coordinates of the touched voxels
+     */
+    private int[] voxelizeBlock(float[] positions, int[] indices, int block) {
+        int[] result = new int[1 + 3 * 64];
+        int length = 1;
+        final float inv = 1 / voxelSize, h = 0.5f;
+        final float[] v = new float[9];
+        for (int t = block * BLOCK_SIZE, end = Math.min(indices.length / 3, t + BLOCK_SIZE); t < end; t++) {
+            // in voxel units
+            for (int c = 0; c < 3; c++) {
+                final int p = indices[t * 3 + c] * 3;
+                v[c * 3] = positions[p] * inv;
+                v[c * 3 + 1] = positions[p + 1] * inv;
+                v[c * 3 + 2] = positions[p + 2] * inv;
+            }
+            final int x0 = floor(Math.min(v[0], Math.min(v[3], v[6])));
+            final int y0 = floor(Math.min(v[1], Math.min(v[4], v[7])));
+            final int z0 = floor(Math.min(v[2], Math.min(v[5], v[8])));
+            final int x1 = floor(Math.max(v[0], Math.max(v[3], v[6])));
+            final int y1 = floor(Math.max(v[1], Math.max(v[4], v[7])));
+            final int z1 = floor(Math.max(v[2], Math.max(v[5], v[8])));
+            for (int z = z0; z <= z1; z++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        if (overlaps(v, x + h, y + h, z + h, h)) {
+                            if (length + 3 > result.length) {
+                                result = Arrays.copyOf(result, result.length * 2);
+                            }
+                            result[length++] = x;
+                            result[length++] = y;
+                            result[length++] = z;
+                        }
+                    }
+                }
+            }
+        }
+        result[0] = length;
+        return result;
+    }
+
+    private static int floor(float value) {
+        final int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+    /**
+     * Triangle and box overlap, touching counts.
+     *
+     * @param t the corners (x,y,z interleaved)
+     */
+    static boolean overlaps(float[] t, float cx, float cy, float cz, float h) {
+        final float ax = t[0] - cx, ay = t[1] - cy, az = t[2] - cz;
+        final float bx = t[3] - cx, by = t[4] - cy, bz = t[5] - cz;
+        final float px = t[6] - cx, py = t[7] - cy, pz = t[8] - cz;
+        // the nine cross products of the box axes and the edges
+        if (!edgeAxes(bx - ax, by - ay, bz - az, ax, ay, az, px, py, pz, h)
+                || !edgeAxes(px - bx, py - by, pz - bz, ax, ay, az, px, py, pz, h)
+                || !edgeAxes(ax - px, ay - py, az - pz, ax, ay, az, bx, by, bz, h)) {
+            return false;
+        }
+        // the box axes
+        if (Math.min(ax, Math.min(bx, px)) > h || Math.max(ax, Math.max(bx, px)) < -h
+                || Math.min(ay, Math.min(by, py)) > h || Math.max(ay, Math.max(by, py)) < -h
+                || Math.min(az, Math.min(bz, pz)) > h || Math.max(az, Math.max(bz, pz)) < -h) {
+            return false;
+        }
+        // the triangle normal
+        final float e0x = bx - ax, e0y = by - ay, e0z = bz - az, e1x = px - ax, e1y = py - ay, e1z = pz - az;
+        final float nx = e0y * e1z - e0z * e1y, ny = e0z * e1x - e0x * e1z, nz = e0x * e1y - e0y * e1x;
+        final float d = nx * ax + ny * ay + nz * az;
+        return Math.abs(d) <= h * (Math.abs(nx) + Math.abs(ny) + Math.abs(nz));
+    }
+
+    /**
+     * Tests the axes perpendicular to an edge and one box axis each. The edge
+     * starts or ends at <code>a</code>, so <code>a</code> and <code>b</code>
+     * project to the same value and only one of them is tested.
+     */
+    private static boolean edgeAxes(float ex, float ey, float ez, float ax, float ay, float az, float bx, float by,
+            float bz, float h) {
+        final float fx = Math.abs(ex), fy = Math.abs(ey), fz = Math.abs(ez);
+        // x cross e
+        float p0 = ez * ay - ey * az, p1 = ez * by - ey * bz, r = h * (fz + fy);
+        if (Math.min(p0, p1) > r || Math.max(p0, p1) < -r) {
+            return false;
+        }
+        // y cross e
+        p0 = ex * az - ez * ax;
+        p1 = ex * bz - ez * bx;
+        r = h * (fz + fx);
+        if (Math.min(p0, p1) > r || Math.max(p0, p1) < -r) {
+            return false;
+        }
+        // z cross e
+        p0 = ey * ax - ex * ay;
+        p1 = ey * bx - ex * by;
+        r = h * (fy + fx);
+        return !(Math.min(p0, p1) > r || Math.max(p0, p1) < -r);
+    }
+
+    /**
+     * Passes every set voxel to a visitor, brick by brick. The grid must not be
+     * modified by the visitor.
+     *
+     * @param visitor the visitor
+     */
+    public void forEach(VoxelVisitor visitor) {
+        for (int b = 0; b < brickCount; b++) {
+            forEachInBrick(b, visitor);
+        }
+    }
+
+    private void forEachInBrick(int b, VoxelVisitor visitor) {
+        final long key = brickKeys[b];
+        final int bx = Vec3i.keyX(key) << BRICK_BITS;
+        final int by = Vec3i.keyY(key) << BRICK_BITS;
+        final int bz = Vec3i.keyZ(key) << BRICK_BITS;
+        for (int w = 0; w < BRICK_WORDS; w++) {
+            for (long bits = occupancy[b * BRICK_WORDS + w]; bits != 0; bits &= bits - 1) {
+                final int l = w << 6 | Long.numberOfTrailingZeros(bits);
+                visitor.accept(bx | l & BRICK_MASK, by | l >>> BRICK_BITS & BRICK_MASK, bz | l >>> 2 * BRICK_BITS);
+            }
+        }
+    }
+
+    /**
+     * Passes every set voxel inside a box to a visitor. Bricks that do not
+     * exist are skipped without looking at their voxels.
+     *
+     * @param minX the smallest x coordinate
+     * @param minY the smallest y coordinate
+     * @param minZ the smallest z coordinate
+     * @param maxX the largest x coordinate, inclusive
+     * @param maxY the largest y coordinate, inclusive
+     * @param maxZ the largest z coordinate, inclusive
+     * @param visitor the visitor
+     * @return the amount of visited voxels
+     */
+    public int forEachInBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, VoxelVisitor visitor) {
+        final int range = 1 << Vec3i.KEY_BITS + BRICK_BITS - 1;
+        minX = Math.max(minX, -range);
+        minY = Math.max(minY, -range);
+        minZ = Math.max(minZ, -range);
+        maxX = Math.min(maxX, range - 1);
+        maxY = Math.min(maxY, range - 1);
+        maxZ = Math.min(maxZ, range - 1);
+        if (maxX < minX || maxY < minY || maxZ < minZ) {
+            return 0;
+        }
+        final double bricks = ((maxX >> BRICK_BITS) - (minX >> BRICK_BITS) + 1.0)
+                * ((maxY >> BRICK_BITS) - (minY >> BRICK_BITS) + 1.0) * ((maxZ >> BRICK_BITS) - (minZ >> BRICK_BITS) + 1.0);
+        int visited = 0;
+        if (bricks > brickCount) {
+            // fewer allocated bricks than bricks in the box
+            for (int b = 0; b < brickCount; b++) {
+                final long key = brickKeys[b];
+                visited += forEachInBrick(b, Vec3i.keyX(key), Vec3i.keyY(key), Vec3i.keyZ(key), minX, minY, minZ, maxX,
+                        maxY, maxZ, visitor);
+            }
+            return visited;
+        }
+        for (int bz = minZ >> BRICK_BITS; bz <= maxZ >> BRICK_BITS; bz++) {
+            for (int by = minY >> BRICK_BITS; by <= maxY >> BRICK_BITS; by++) {
+                for (int bx = minX >> BRICK_BITS; bx <= maxX >> BRICK_BITS; bx++) {
+                    final int b = findBrick(Vec3i.key(bx, by, bz));
+                    if (b >= 0) {
+                        visited += forEachInBrick(b, bx, by, bz, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    private int forEachInBrick(int b, int bx, int by, int bz, int minX, int minY, int minZ, int maxX, int maxY,
+            int maxZ, VoxelVisitor visitor) {
+        final int x0 = Math.max(minX, bx << BRICK_BITS), x1 = Math.min(maxX, (bx << BRICK_BITS) + BRICK_MASK);
+        final int y0 = Math.max(minY, by << BRICK_BITS), y1 = Math.min(maxY, (by << BRICK_BITS) + BRICK_MASK);
+        final int z0 = Math.max(minZ, bz << BRICK_BITS), z1 = Math.min(maxZ, (bz << BRICK_BITS) + BRICK_MASK);
+        int visited = 0;
+        for (int z = z0; z <= z1; z++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    final int l = local(x, y, z);
+                    if ((occupancy[b * BRICK_WORDS + (l >>> 6)] & 1L << l) != 0) {
+                        visitor.accept(x, y, z);
+                        visited++;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Passes the set neighbours of a voxel to a visitor.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @param connectivity 6 for voxels sharing a face, 18 for voxels sharing an
+     *            edge and 26 for voxels sharing a corner
+     * @param visitor the visitor
+     * @return the amount of visited neighbours
+     * @throws IllegalArgumentException if the connectivity is not 6, 18 or 26
+     */
+    public int forEachNeighbour(int x, int y, int z, int connectivity, VoxelVisitor visitor) {
+        if (connectivity != 6 && connectivity != 18 && connectivity != 26) {
+            throw new IllegalArgumentException("connectivity: " + connectivity);
+        }
+        // the amount of non zero offsets a neighbour may have
+        final int maxOffsets = connectivity == 6 ? 1 : connectivity == 18 ? 2 : 3;
+        int visited = 0;
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    final int offsets = (dx & 1) + (dy & 1) + (dz & 1);
+                    if (offsets != 0 && offsets <= maxOffsets && contains(x + dx, y + dy, z + dz)) {
+                        visitor.accept(x + dx, y + dy, z + dz);
+                        visited++;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Writes the run length encoded grid. The stream is not closed.
+     *
+     * @param out the stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        int bricks = 0;
+        for (int b = 0; b < brickCount; b++) {
+            bricks += isEmpty(b) ? 0 : 1;
+        }
+        data.writeInt(MAGIC);
+        data.writeFloat(voxelSize);
+        data.writeBoolean(hasValues);
+        data.writeInt(bricks);
+        final short[] runs = new short[BRICK_VOXELS + 1];
+        for (int b = 0; b < brickCount; b++) {
+            if (isEmpty(b)) {
+                continue;
+            }
+            data.writeLong(brickKeys[b]);
+            // alternating runs of empty and occupied voxels, starting empty
+            int count = 0, run = 0;
+            boolean state = false;
+            for (int l = 0; l < BRICK_VOXELS; l++) {
+                final boolean set = (occupancy[b * BRICK_WORDS + (l >>> 6)] & 1L << l) != 0;
+                if (set != state) {
+                    runs[count++] = (short) run;
+                    run = 0;
+                    state = set;
+                }
+                run++;
+            }
+            runs[count++] = (short) run;
+            data.writeShort(count);
+            for (int i = 0; i < count; i++) {
+                data.writeShort(runs[i]);
+            }
+            if (hasValues) {
+                writeValues(data, b);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes runs of equal values of the occupied voxels, terminated by a zero
+     * length run.
+     */
+    private void writeValues(DataOutputStream data, int b) throws IOException {
+        int run = 0, value = 0;
+        for (int l = 0; l < BRICK_VOXELS; l++) {
+            if ((occupancy[b * BRICK_WORDS + (l >>> 6)] & 1L << l) == 0) {
+                continue;
+            }
+            final int v = values[b * BRICK_VOXELS + l];
+            if (run > 0 && v != value) {
+                data.writeShort(run);
+                data.writeInt(value);
+                run = 0;
+            }
+            value = v;
+            run++;
+        }
+        data.writeShort(run);
+        data.writeInt(value);
+        data.writeShort(0);
+    }
+
+    private boolean isEmpty(int b) {
+        for (int w = 0; w < BRICK_WORDS; w++) {
+            if (occupancy[b * BRICK_WORDS + w] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a grid written with {@link #write(OutputStream)}. The stream is
+     * not closed.
+     *
+     * @param in the stream
+     * @return the grid
+     * @throws IOException if the stream cannot be read or is not a grid
+     */
+    public static SparseVoxelGrid read(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a voxel grid");
+        }
+        final float voxelSize = data.readFloat();
+        final boolean hasValues = data.readBoolean();
+        final int bricks = data.readInt();
+        if (!(voxelSize > 0 && voxelSize < Float.POSITIVE_INFINITY) || bricks < 0) {
+            throw new IOException("Corrupt voxel grid header");
+        }
+        final SparseVoxelGrid grid = new SparseVoxelGrid(voxelSize, hasValues);
+        for (int i = 0; i < bricks; i++) {
+            final long key = data.readLong();
+            if (key < 0 || grid.findBrick(key) >= 0) {
+                throw new IOException("Corrupt voxel grid brick: " + key);
+            }
+            final int b = grid.brick(key);
+            final int count = data.readUnsignedShort();
+            int l = 0;
+            for (int r = 0; r < count; r++) {
+                final int run = data.readUnsignedShort();
+                if (l + run > BRICK_VOXELS) {
+                    throw new IOException("Corrupt voxel grid runs");
+                }
+                if ((r & 1) != 0) {
+                    for (int end = l + run; l < end; l++) {
+                        grid.occupancy[b * BRICK_WORDS + (l >>> 6)] |= 1L << l;
+                    }
+                    grid.size += run;
+                } else {
+                    l += run;
+                }
+            }
+            if (l != BRICK_VOXELS) {
+                throw new IOException("Corrupt voxel grid runs");
+            }
+            if (hasValues) {
+                grid.readValues(data, b);
+            }
+        }
+        return grid;
+    }
+
+    private void readValues(DataInputStream data, int b) throws IOException {
+        int l = 0;
+        for (int run; (run = data.readUnsignedShort()) != 0;) {
+            final int value = data.readInt();
+            for (; run > 0; l++) {
+                if (l == BRICK_VOXELS) {
+                    throw new IOException("Corrupt voxel grid values");
+                }
+                if ((occupancy[b * BRICK_WORDS + (l >>> 6)] & 1L << l) != 0) {
+                    values[b * BRICK_VOXELS + l] = value;
+                    run--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the edge length of a voxel
+     */
+    public float getVoxelSize() {
+        return voxelSize;
+    }
+
+    /**
+     * @return whether every voxel stores an int value
+     */
+    public boolean hasValues() {
+        return hasValues;
+    }
+
+    /**
+     * @return the amount of allocated bricks, including emptied ones
+     */
+    public int getBrickCount() {
+        return brickCount;
+    }
+
+    /**
+     * @return the amount of set voxels
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return whether no voxel is set
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVoxelGrid [voxelSize=" + voxelSize + ", voxels=" + size + ", bricks=" + brickCount + "]";
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.bounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb2f;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Aabb2fTest {
+
+	@Test
+	public void testOverlapsAndIntersection() {
+		Aabb2f a = Aabb2f.of(0, 0, 2, 2);
+		Aabb2f b = Aabb2f.of(1, 1, 3, 3);
+
+		Assert.assertTrue(a.overlaps(b));
+		Assert.assertFalse(a.overlaps(Aabb2f.of(4, 4, 5, 5)));
+		Assert.assertTrue(a.contains(Vec2f.of(1, 1)));
+		Assert.assertEquals(Aabb2f.of(1, 1, 2, 2), a.intersection(b));
+		Assert.assertEquals(Aabb2f.of(0, 0, 3, 3), a.union(b));
+		Assert.assertEquals(4f, a.area(), 0f);
+	}
+
+	@Test
+	public void testTransform() {
+		Aabb2f box = Aabb2f.of(-1, -1, 1, 1);
+		Assert.assertEquals(Aabb2f.of(1, 2, 3, 4), box.transform(Mat4f.translationMatrix(2, 3, 4)));
+	}
+
+	@Test
+	public void testFromPoints() {
+		float[] xy = new float[] { 1, 2, -4, 5, 2, -1 };
+		Aabb2f expected = Aabb2f.of(-4, -1, 2, 5);
+
+		Assert.assertEquals(expected, Aabb2f.fromPoints(xy));
+		Assert.assertEquals(expected, Aabb2f.fromPointsParallel(xy, 0, 3));
+		Assert.assertEquals(expected, Aabb2f.fromPoints(new float[] { 1, -4, 2 }, new float[] { 2, 5, -1 }, 0, 3));
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.bounds;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.mat.Mat4d;
+import com.nickscha.geom.vec.Vec3d;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Aabb3dTest {
+
+	@Test
+	public void testEmpty() {
+		Assert.assertTrue(Aabb3d.EMPTY.isEmpty());
+		Aabb3d box = Aabb3d.of(0, 0, 0, 1, 1, 1);
+		Assert.assertEquals(box, Aabb3d.EMPTY.union(box));
+	}
+
+	@Test
+	public void testOverlapsAndIntersection() {
+		Aabb3d a = Aabb3d.of(0, 0, 0, 2, 2, 2);
+		Aabb3d b = Aabb3d.of(1, 1, 1, 3, 3, 3);
+
+		Assert.assertTrue(a.overlaps(b));
+		Assert.assertTrue(a.contains(Vec3d.of(1)));
+		Assert.assertEquals(Aabb3d.of(1, 1, 1, 2, 2, 2), a.intersection(b));
+	}
+
+	@Test
+	public void testTransform() {
+		Aabb3d box = Aabb3d.of(-1, -1, -1, 1, 1, 1);
+		Assert.assertEquals(Aabb3d.of(1, 2, 3, 3, 4, 5), box.transform(Mat4d.translationMatrix(2, 3, 4)));
+		Assert.assertEquals(Aabb3d.of(-2, -3, -4, 2, 3, 4), box.transform(Mat4d.scaleMatrix(2, 3, 4)));
+	}
+
+	@Test
+	public void testFromPoints() {
+		double[] xyz = new double[] { 1, 2, 3, -4, 5, 0, 2, -1, 7 };
+		Aabb3d expected = Aabb3d.of(-4, -1, 0, 2, 5, 7);
+
+		Assert.assertEquals(expected, Aabb3d.fromPoints(xyz));
+		Assert.assertEquals(expected, Aabb3d.fromPointsParallel(xyz));
+	}
+
+}
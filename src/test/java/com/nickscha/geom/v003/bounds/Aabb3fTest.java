@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.bounds;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Aabb3fTest {
+
+	@Test
+	public void testEmpty() {
+		Assert.assertTrue(Aabb3f.EMPTY.isEmpty());
+		Assert.assertFalse(Aabb3f.EMPTY.contains(Vec3f.ZERO));
+		Assert.assertEquals(0f, Aabb3f.EMPTY.volume(), 0f);
+
+		Aabb3f box = Aabb3f.of(0, 0, 0, 1, 1, 1);
+		Assert.assertEquals(box, Aabb3f.EMPTY.union(box));
+		Assert.assertTrue(box.contains(Aabb3f.EMPTY));
+	}
+
+	@Test
+	public void testToString() {
+		Assert.assertEquals("Aabb3f [minX=0.0, minY=1.0, minZ=2.0, maxX=3.0, maxY=4.0, maxZ=5.0]",
+				Aabb3f.of(0, 1, 2, 3, 4, 5).toString());
+	}
+
+	@Test
+	public void testContains() {
+		Aabb3f box = Aabb3f.of(Vec3f.of(-1), Vec3f.of(1));
+		Assert.assertTrue(box.contains(Vec3f.ZERO));
+		Assert.assertTrue(box.contains(1, 1, 1));
+		Assert.assertFalse(box.contains(1.5f, 0, 0));
+		Assert.assertTrue(box.contains(Aabb3f.of(0, 0, 0, 0.5f, 0.5f, 0.5f)));
+		Assert.assertFalse(box.contains(Aabb3f.of(0, 0, 0, 2, 0.5f, 0.5f)));
+	}
+
+	@Test
+	public void testOverlapsAndIntersection() {
+		Aabb3f a = Aabb3f.of(0, 0, 0, 2, 2, 2);
+		Aabb3f b = Aabb3f.of(1, 1, 1, 3, 3, 3);
+		Aabb3f c = Aabb3f.of(5, 5, 5, 6, 6, 6);
+
+		Assert.assertTrue(a.overlaps(b));
+		Assert.assertFalse(a.overlaps(c));
+		Assert.assertEquals(Aabb3f.of(1, 1, 1, 2, 2, 2), a.intersection(b));
+		Assert.assertTrue(a.intersection(c).isEmpty());
+		Assert.assertEquals(Aabb3f.of(0, 0, 0, 6, 6, 6), a.union(c));
+	}
+
+	@Test
+	public void testMeasures() {
+		Aabb3f box = Aabb3f.of(0, 0, 0, 1, 2, 3);
+		Assert.assertEquals(Vec3f.of(0.5f, 1, 1.5f), box.center());
+		Assert.assertEquals(Vec3f.of(1, 2, 3), box.extent());
+		Assert.assertEquals(6f, box.volume(), 0f);
+		Assert.assertEquals(22f, box.surfaceArea(), 0f);
+	}
+
+	@Test
+	public void testTransform() {
+		Aabb3f box = Aabb3f.of(-1, -1, -1, 1, 1, 1);
+
+		Assert.assertEquals(Aabb3f.of(1, 2, 3, 3, 4, 5), box.transform(Mat4f.translationMatrix(2, 3, 4)));
+		Assert.assertEquals(Aabb3f.of(-2, -3, -4, 2, 3, 4), box.transform(Mat4f.scaleMatrix(2, 3, 4)));
+
+		// rotating by 45 degree around z grows the box to the diagonal
+		Aabb3f rotated = box.transform(Mat4f.rotationMatrix(0, 0, 45));
+		float diagonal = (float) Math.sqrt(2);
+		Assert.assertEquals(diagonal, rotated.getMaxX(), 1e-5f);
+		Assert.assertEquals(-diagonal, rotated.getMinY(), 1e-5f);
+		Assert.assertEquals(1f, rotated.getMaxZ(), 1e-5f);
+	}
+
+	@Test
+	public void testTransformMatchesCorners() {
+		Aabb3f box = Aabb3f.of(-1, 2, 0, 3, 5, 1);
+		Mat4f matrix = Mat4f.translationMatrix(1, -2, 3).mul(Mat4f.rotationMatrix(30, 60, 10));
+
+		Aabb3f expected = Aabb3f.EMPTY;
+		for (int i = 0; i < 8; i++) {
+			Vec3f corner = Vec3f.of((i & 1) == 0 ? -1 : 3, (i & 2) == 0 ? 2 : 5, (i & 4) == 0 ? 0 : 1);
+			expected = expected.union(matrix.transform(corner));
+		}
+		Aabb3f result = box.transform(matrix);
+		Assert.assertEquals(expected.getMinX(), result.getMinX(), 1e-5f);
+		Assert.assertEquals(expected.getMinY(), result.getMinY(), 1e-5f);
+		Assert.assertEquals(expected.getMinZ(), result.getMinZ(), 1e-5f);
+		Assert.assertEquals(expected.getMaxX(), result.getMaxX(), 1e-5f);
+		Assert.assertEquals(expected.getMaxY(), result.getMaxY(), 1e-5f);
+		Assert.assertEquals(expected.getMaxZ(), result.getMaxZ(), 1e-5f);
+	}
+
+	@Test
+	public void testFromPoints() {
+		float[] xyz = new float[] { 1, 2, 3, -4, 5, 0, 2, -1, 7 };
+		Aabb3f expected = Aabb3f.of(-4, -1, 0, 2, 5, 7);
+
+		Assert.assertEquals(expected, Aabb3f.fromPoints(xyz));
+		Assert.assertEquals(Aabb3f.of(-4, -1, 0, 2, 5, 7), Aabb3f.fromPoints(xyz, 1, 2));
+		Assert.assertEquals(Aabb3f.of(-4, 5, 0, -4, 5, 0), Aabb3f.fromPoints(xyz, 1, 1));
+		Assert.assertTrue(Aabb3f.fromPoints(xyz, 0, 0).isEmpty());
+
+		float[] xs = new float[] { 1, -4, 2 };
+		float[] ys = new float[] { 2, 5, -1 };
+		float[] zs = new float[] { 3, 0, 7 };
+		Assert.assertEquals(expected, Aabb3f.fromPoints(xs, ys, zs, 0, 3));
+	}
+
+	@Test
+	public void testFromPointsParallel() {
+		Random random = new Random(42);
+		int count = 500_000;
+		float[] xyz = new float[count * 3];
+		float[] xs = new float[count];
+		float[] ys = new float[count];
+		float[] zs = new float[count];
+		for (int i = 0; i < count; i++) {
+			xs[i] = xyz[i * 3] = random.nextFloat() * 100 - 50;
+			ys[i] = xyz[i * 3 + 1] = random.nextFloat() * 10;
+			zs[i] = xyz[i * 3 + 2] = -random.nextFloat();
+		}
+		Aabb3f expected = Aabb3f.fromPoints(xyz);
+
+		Assert.assertEquals(expected, Aabb3f.fromPointsParallel(xyz));
+		Assert.assertEquals(expected, Aabb3f.fromPointsParallel(xs, ys, zs, 0, count));
+		Assert.assertEquals(Aabb3f.fromPoints(xyz, 100, 300_000), Aabb3f.fromPointsParallel(xyz, 100, 300_000));
+	}
+
+}
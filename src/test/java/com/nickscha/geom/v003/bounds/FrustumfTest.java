@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.bounds;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.bounds.Frustumf;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class FrustumfTest {
+
+	private static final Frustumf FRUSTUM = Frustumf.of(Mat4f.perspectiveMatrix((float) Math.toRadians(90), 1, 1, 100));
+
+	@Test
+	public void testContains() {
+		Assert.assertTrue(FRUSTUM.contains(Vec3f.of(0, 0, 10)));
+		Assert.assertTrue(FRUSTUM.contains(Vec3f.of(9, -9, 10)));
+		Assert.assertFalse(FRUSTUM.contains(Vec3f.of(11, 0, 10)));
+		Assert.assertFalse(FRUSTUM.contains(Vec3f.of(0, 0, -10)));
+		Assert.assertFalse(FRUSTUM.contains(Vec3f.of(0, 0, 0.5f)));
+		Assert.assertFalse(FRUSTUM.contains(Vec3f.of(0, 0, 101)));
+	}
+
+	@Test
+	public void testPlanes() {
+		Assert.assertEquals(1f, FRUSTUM.getPlane(Frustumf.NEAR).getZ(), 1e-5f);
+		Assert.assertEquals(-1f, FRUSTUM.getPlane(Frustumf.NEAR).getW(), 1e-5f);
+		Assert.assertEquals(-1f, FRUSTUM.getPlane(Frustumf.FAR).getZ(), 1e-5f);
+		Assert.assertEquals(100f, FRUSTUM.getPlane(Frustumf.FAR).getW(), 1e-3f);
+	}
+
+	@Test
+	public void testBoxAndSphere() {
+		Assert.assertTrue(FRUSTUM.isVisible(Aabb3f.of(-1, -1, 5, 1, 1, 6)));
+		Assert.assertTrue(FRUSTUM.isVisible(Aabb3f.of(-1, -1, -5, 1, 1, 6)));
+		Assert.assertFalse(FRUSTUM.isVisible(Aabb3f.of(-1, -1, -6, 1, 1, -5)));
+
+		Assert.assertEquals(Frustumf.INSIDE, FRUSTUM.classify(Aabb3f.of(-1, -1, 5, 1, 1, 6)));
+		Assert.assertEquals(Frustumf.INTERSECTING, FRUSTUM.classify(Aabb3f.of(-1, -1, -5, 1, 1, 6)));
+		Assert.assertEquals(Frustumf.OUTSIDE, FRUSTUM.classify(Aabb3f.of(20, -1, 5, 21, 1, 6)));
+
+		Assert.assertTrue(FRUSTUM.isSphereVisible(0, 0, 0, 2));
+		Assert.assertFalse(FRUSTUM.isSphereVisible(0, 0, -5, 2));
+	}
+
+	@Test
+	public void testCull() {
+		Random random = new Random(7);
+		int count = 1000;
+		float[] minX = new float[count], minY = new float[count], minZ = new float[count];
+		float[] maxX = new float[count], maxY = new float[count], maxZ = new float[count];
+		float[] radius = new float[count];
+		for (int i = 0; i < count; i++) {
+			minX[i] = random.nextFloat() * 200 - 100;
+			minY[i] = random.nextFloat() * 200 - 100;
+			minZ[i] = random.nextFloat() * 200 - 100;
+			maxX[i] = minX[i] + random.nextFloat() * 5;
+			maxY[i] = minY[i] + random.nextFloat() * 5;
+			maxZ[i] = minZ[i] + random.nextFloat() * 5;
+			radius[i] = random.nextFloat() * 5;
+		}
+
+		long[] visible = new long[(count + 63) / 64];
+		long[] coherent = new long[visible.length];
+		long[] spheres = new long[visible.length];
+		byte[] planeCache = new byte[count];
+
+		// start in the middle of a word to check that the leading bits are kept
+		visible[0] = coherent[0] = 1L;
+		int visibleCount = FRUSTUM.cull(minX, minY, minZ, maxX, maxY, maxZ, 3, count - 3, visible);
+		FRUSTUM.cull(minX, minY, minZ, maxX, maxY, maxZ, 3, count - 3, planeCache, coherent);
+		int coherentCount = FRUSTUM.cull(minX, minY, minZ, maxX, maxY, maxZ, 3, count - 3, planeCache, coherent);
+		FRUSTUM.cullSpheres(minX, minY, minZ, radius, 0, count, spheres);
+
+		BitSet bits = BitSet.valueOf(visible);
+		Assert.assertTrue(bits.get(0));
+		Assert.assertEquals(visibleCount + 1, bits.cardinality());
+		Assert.assertEquals(visibleCount, coherentCount);
+		Assert.assertArrayEquals(visible, coherent);
+		for (int i = 3; i < count; i++) {
+			Assert.assertEquals(FRUSTUM.isVisible(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]), bits.get(i));
+			Assert.assertEquals(FRUSTUM.isSphereVisible(minX[i], minY[i], minZ[i], radius[i]),
+					(spheres[i >> 6] & (1L << i)) != 0);
+		}
+	}
+
+}
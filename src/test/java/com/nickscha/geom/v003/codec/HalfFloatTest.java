@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.codec.HalfFloat;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class HalfFloatTest {
+
+	@Test
+	public void testSpecialValues() {
+		Assert.assertEquals(0x0000, HalfFloat.toHalf(0f));
+		Assert.assertEquals((short) 0x8000, HalfFloat.toHalf(-0f));
+		Assert.assertEquals(0x3C00, HalfFloat.toHalf(1f));
+		Assert.assertEquals((short) 0xC000, HalfFloat.toHalf(-2f));
+		Assert.assertEquals(0x7BFF, HalfFloat.toHalf(HalfFloat.MAX_VALUE));
+		Assert.assertEquals(0x7C00, HalfFloat.toHalf(65520f));
+		Assert.assertEquals(0x7BFF, HalfFloat.toHalf(65519.99f));
+		Assert.assertEquals(0x7C00, HalfFloat.toHalf(Float.POSITIVE_INFINITY));
+		Assert.assertEquals((short) 0xFC00, HalfFloat.toHalf(Float.NEGATIVE_INFINITY));
+		Assert.assertEquals(0x0001, HalfFloat.toHalf(0x1p-24f));
+		Assert.assertEquals(0x0400, HalfFloat.toHalf(0x1p-14f));
+		Assert.assertEquals(0x0000, HalfFloat.toHalf(0x1p-25f));
+		Assert.assertEquals(0x0001, HalfFloat.toHalf(Math.nextUp(0x1p-25f)));
+		Assert.assertTrue(Float.isNaN(HalfFloat.toFloat(HalfFloat.toHalf(Float.NaN))));
+		Assert.assertEquals(Float.NEGATIVE_INFINITY, HalfFloat.toFloat((short) 0xFC00), 0);
+		Assert.assertEquals(0x1p-24f, HalfFloat.toFloat((short) 1), 0);
+		Assert.assertEquals(-0f, HalfFloat.toFloat((short) 0x8000), 0);
+		Assert.assertEquals(Float.floatToIntBits(-0f), Float.floatToIntBits(HalfFloat.toFloat((short) 0x8000)));
+	}
+
+	@Test
+	public void testRoundTripAllHalves() {
+		for (int h = 0; h <= 0xFFFF; h++) {
+			float value = HalfFloat.toFloat((short) h);
+			if (!Float.isNaN(value)) {
+				Assert.assertEquals(Integer.toHexString(h), (short) h, HalfFloat.toHalf(value));
+			}
+		}
+	}
+
+	@Test
+	public void testRoundToNearestEven() {
+		// every float between two neighbouring halves rounds to the nearer one
+		for (int h = 0; h < 0x7BFF; h += 7) {
+			float a = HalfFloat.toFloat((short) h), b = HalfFloat.toFloat((short) (h + 1));
+			float mid = (a + b) / 2;
+			Assert.assertEquals((short) h, HalfFloat.toHalf(Math.nextDown(mid)));
+			Assert.assertEquals((short) (h + 1), HalfFloat.toHalf(Math.nextUp(mid)));
+			Assert.assertEquals((short) ((h & 1) == 0 ? h : h + 1), HalfFloat.toHalf(mid));
+		}
+	}
+
+	@Test
+	public void testBulk() {
+		float[] uvs = { 0, 0, 0.5f, 0.25f, 1, 1, 0.1f, 0.9f };
+		short[] halves = HalfFloat.encode(uvs);
+		float[] decoded = HalfFloat.decode(halves);
+		for (int i = 0; i < uvs.length; i++) {
+			Assert.assertEquals(uvs[i], decoded[i], 0x1p-11f);
+		}
+		float[] part = HalfFloat.decode(halves, 2, 4, new float[4]);
+		Assert.assertArrayEquals(new float[] { 0.5f, 0.25f, 1, 1 }, part, 0);
+		short[] encoded = HalfFloat.encode(uvs, 6, 2, new short[2]);
+		Assert.assertEquals(halves[6], encoded[0]);
+		Assert.assertEquals(halves[7], encoded[1]);
+	}
+
+	@Test
+	public void testPack() {
+		Vec2f uv = HalfFloat.unpack(HalfFloat.pack(Vec2f.of(0.75f, -3.5f)));
+		Assert.assertEquals(0.75f, uv.getX(), 0);
+		Assert.assertEquals(-3.5f, uv.getY(), 0);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.codec;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.codec.OctahedralCodec;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class OctahedralCodecTest {
+
+	private static float[] randomUnitVectors(int count) {
+		Random random = new Random(3);
+		float[] xyz = new float[count * 3];
+		for (int i = 0; i < count; i++) {
+			double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+			double length = Math.sqrt(x * x + y * y + z * z);
+			xyz[i * 3] = (float) (x / length);
+			xyz[i * 3 + 1] = (float) (y / length);
+			xyz[i * 3 + 2] = (float) (z / length);
+		}
+		return xyz;
+	}
+
+	private static double maxAngle(float[] a, float[] b) {
+		double max = 0;
+		for (int i = 0; i < a.length; i += 3) {
+			double dot = (double) a[i] * b[i] + (double) a[i + 1] * b[i + 1] + (double) a[i + 2] * b[i + 2];
+			double cx = (double) a[i + 1] * b[i + 2] - (double) a[i + 2] * b[i + 1];
+			double cy = (double) a[i + 2] * b[i] - (double) a[i] * b[i + 2];
+			double cz = (double) a[i] * b[i + 1] - (double) a[i + 1] * b[i];
+			max = Math.max(max, Math.toDegrees(Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), dot)));
+			double length = b[i] * b[i] + b[i + 1] * b[i + 1] + b[i + 2] * b[i + 2];
+			Assert.assertEquals(1, length, 1e-5);
+		}
+		return max;
+	}
+
+	@Test
+	public void testError8() {
+		float[] xyz = randomUnitVectors(100000);
+		byte[] encoded = OctahedralCodec.encode8(xyz);
+		Assert.assertEquals(200000, encoded.length);
+		double max = maxAngle(xyz, OctahedralCodec.decode8(encoded));
+		Assert.assertTrue(String.valueOf(max), max < 1.5);
+	}
+
+	@Test
+	public void testError16() {
+		float[] xyz = randomUnitVectors(100000);
+		double max = maxAngle(xyz, OctahedralCodec.decode16(OctahedralCodec.encode16(xyz)));
+		Assert.assertTrue(String.valueOf(max), max < 0.006);
+	}
+
+	@Test
+	public void testAxes() {
+		float[] axes = { 1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1, 0, 0, 0, 1, 0, 0, -1 };
+		Assert.assertArrayEquals(axes, OctahedralCodec.decode8(OctahedralCodec.encode8(axes)), 0);
+		Assert.assertArrayEquals(axes, OctahedralCodec.decode16(OctahedralCodec.encode16(axes)), 0);
+	}
+
+	@Test
+	public void testOffset() {
+		float[] xyz = randomUnitVectors(10);
+		short[] encoded = OctahedralCodec.encode16(xyz, 4, 3, new short[6]);
+		float[] decoded = OctahedralCodec.decode16(encoded, 1, 2, new float[6]);
+		for (int i = 0; i < 6; i++) {
+			Assert.assertEquals(xyz[15 + i], decoded[i], 1e-4);
+		}
+	}
+
+	@Test
+	public void testPacked() {
+		Vec3f vector = Vec3f.of(0.3f, -0.5f, -0.8f);
+		Vec3f decoded = OctahedralCodec.decode16(OctahedralCodec.encode16(vector));
+		Vec3f unit = vector.normalize();
+		Assert.assertEquals(unit.getX(), decoded.getX(), 1e-4);
+		Assert.assertEquals(unit.getY(), decoded.getY(), 1e-4);
+		Assert.assertEquals(unit.getZ(), decoded.getZ(), 1e-4);
+	}
+
+	@Test
+	public void testZero() {
+		Assert.assertArrayEquals(new float[] { 0, 0, 1 }, OctahedralCodec.decode8(OctahedralCodec.encode8(new float[3])), 0);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.codec;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.codec.PositionCodec;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class PositionCodecTest {
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(5);
+		float[] xyz = new float[30000];
+		for (int i = 0; i < xyz.length; i++) {
+			xyz[i] = (random.nextFloat() - 0.5f) * (i % 3 + 1) * 100;
+		}
+		Aabb3f bounds = Aabb3f.fromPoints(xyz);
+		short[] quantized = PositionCodec.encode(xyz, bounds);
+		Assert.assertEquals(xyz.length, quantized.length);
+		float[] decoded = PositionCodec.decode(quantized, bounds);
+		Vec3f error = PositionCodec.getMaxError(bounds);
+		float[] max = { error.getX(), error.getY(), error.getZ() };
+		for (int i = 0; i < xyz.length; i++) {
+			Assert.assertEquals(xyz[i], decoded[i], max[i % 3] * 1.05f);
+		}
+		Assert.assertEquals(100f / 65535 / 2, error.getX(), 1e-4);
+
+		Vec3f p = PositionCodec.decode(quantized, 7, bounds);
+		Assert.assertEquals(decoded[21], p.getX(), 0);
+		Assert.assertEquals(decoded[22], p.getY(), 0);
+		Assert.assertEquals(decoded[23], p.getZ(), 0);
+	}
+
+	@Test
+	public void testBoundsAreExact() {
+		Aabb3f bounds = Aabb3f.of(-1, 2, 3, 1, 4, 3);
+		float[] xyz = { -1, 2, 3, 1, 4, 3 };
+		short[] quantized = PositionCodec.encode(xyz, bounds);
+		Assert.assertArrayEquals(new short[] { 0, 0, 0, (short) 0xFFFF, (short) 0xFFFF, 0 }, quantized);
+		Assert.assertArrayEquals(xyz, PositionCodec.decode(quantized, bounds), 1e-6f);
+	}
+
+	@Test
+	public void testClamp() {
+		Aabb3f bounds = Aabb3f.of(0, 0, 0, 1, 1, 1);
+		short[] quantized = PositionCodec.encode(new float[] { -5, 5, Float.NaN }, bounds);
+		Assert.assertArrayEquals(new short[] { 0, (short) 0xFFFF, 0 }, quantized);
+	}
+
+	@Test
+	public void testOffset() {
+		Aabb3f bounds = Aabb3f.of(0, 0, 0, 10, 10, 10);
+		float[] xyz = { 1, 1, 1, 2, 2, 2, 3, 3, 3 };
+		short[] quantized = PositionCodec.encode(xyz, 1, 2, bounds, new short[6]);
+		float[] decoded = PositionCodec.decode(quantized, 1, 1, bounds, new float[3]);
+		Assert.assertArrayEquals(new float[] { 3, 3, 3 }, decoded, 1e-3f);
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.collision;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.collision.Box;
+import com.nickscha.geom.collision.Capsule;
+import com.nickscha.geom.collision.ConvexShape;
+import com.nickscha.geom.collision.Gjk;
+import com.nickscha.geom.collision.GjkCache;
+import com.nickscha.geom.collision.Hull;
+import com.nickscha.geom.collision.Sphere;
+import com.nickscha.geom.quat.Quatf;
+import com.nickscha.geom.transform.Transf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class GjkTest {
+
+	private static final Quatf IDENTITY = Quatf.of(0, 0, 0, 1);
+
+	private static Quatf randomRotation(Random random) {
+		return Quatf.of((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian(),
+				(float) random.nextGaussian()).normalize();
+	}
+
+	private static float[] corners(float hx, float hy, float hz) {
+		float[] p = new float[24];
+		for (int i = 0; i < 8; i++) {
+			p[i * 3] = (i & 1) == 0 ? -hx : hx;
+			p[i * 3 + 1] = (i & 2) == 0 ? -hy : hy;
+			p[i * 3 + 2] = (i & 4) == 0 ? -hz : hz;
+		}
+		return p;
+	}
+
+	@Test
+	public void testSpheres() {
+		Gjk gjk = new Gjk();
+		Sphere a = new Sphere(1), b = new Sphere(0.5f);
+
+		Assert.assertEquals(1.5f, gjk.distance(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(0, 3, 0), IDENTITY, null), 1e-6f);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0 }, gjk.getNormal(new float[3]), 1e-6f);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0 }, gjk.getPointA(new float[3]), 1e-6f);
+		Assert.assertArrayEquals(new float[] { 0, 2.5f, 0 }, gjk.getPointB(new float[3]), 1e-6f);
+
+		// overlapping surfaces with separated centers are exact
+		Assert.assertEquals(-0.5f, gjk.distance(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(1, 0, 0), IDENTITY, null), 1e-6f);
+		Assert.assertArrayEquals(new float[] { 1, 0, 0 }, gjk.getNormal(new float[3]), 1e-6f);
+
+		// concentric spheres need EPA on the inflated shapes
+		float distance = gjk.distance(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(0, 0, 0), IDENTITY, null);
+		Assert.assertEquals(-1.5f, distance, 1e-6f);
+		Assert.assertTrue(gjk.intersects(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(0, 0, 0), IDENTITY, null));
+		Assert.assertTrue(gjk.intersects(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(1.4f, 0, 0), IDENTITY, null));
+		Assert.assertFalse(gjk.intersects(a, Vec3f.of(0, 0, 0), IDENTITY, b, Vec3f.of(1.6f, 0, 0), IDENTITY, null));
+	}
+
+	@Test
+	public void testBoxes() {
+		Gjk gjk = new Gjk();
+		Box box = new Box(1, 1, 1);
+
+		Assert.assertEquals(-0.5f, gjk.distance(box, Vec3f.of(0, 0, 0), IDENTITY, box, Vec3f.of(1.5f, 0.2f, 0.1f), IDENTITY, null),
+				1e-5f);
+		Assert.assertArrayEquals(new float[] { 1, 0, 0 }, gjk.getNormal(new float[3]), 1e-5f);
+		Assert.assertEquals(1, gjk.getPointA(new float[3])[0] - gjk.getPointB(new float[3])[0], 0.5f + 1e-5f);
+
+		Quatf rotation = Quatf.of(Vec3f.of(0, 0, 1), (float) Math.PI / 4);
+		float expected = 3 - (float) Math.sqrt(2) - 1;
+		Assert.assertEquals(expected, gjk.distance(box, Vec3f.of(0, 0, 0), IDENTITY, box, Vec3f.of(3, 0, 0), rotation, null), 1e-5f);
+		Assert.assertArrayEquals(new float[] { 1, 0, 0 }, gjk.getNormal(new float[3]), 1e-5f);
+		Assert.assertArrayEquals(new float[] { 3 - (float) Math.sqrt(2), 0, 0 }, new float[] { gjk.getPointB(new float[3])[0], 0, 0 },
+				1e-5f);
+	}
+
+	/**
+	 * Two unit cubes, one rotated about the x axis and moved along it, always
+	 * separate fastest along x. The Minkowski difference of such nearly
+	 * symmetric pairs has many coplanar support points.
+	 */
+	@Test
+	public void testSymmetricBoxes() {
+		Gjk gjk = new Gjk();
+		Box box = new Box(0.5f, 0.5f, 0.5f);
+		Vec3f axis = Vec3f.of(1, 0, 0);
+		float[][] cases = { { 0.1005926f, 3.0238469f }, { 0, 2.7f }, { 0, 2.8f }, { 0.025f, 2.576391f },
+				{ 0.030206632f, 2.8254535f }, { 0.038090676f, 3.892912f } };
+		for (float[] c : cases) {
+			Assert.assertEquals(c[0] - 1,
+					gjk.distance(box, Vec3f.ZERO, IDENTITY, box, Vec3f.of(c[0], 0, 0), Quatf.of(axis, c[1]), null), 1e-4f);
+			Assert.assertTrue(gjk.intersects(box, Vec3f.ZERO, IDENTITY, box, Vec3f.of(c[0], 0, 0), Quatf.of(axis, c[1]), null));
+		}
+		for (int i = 0; i < 38; i++) {
+			for (int j = 0; j < 32; j++) {
+				float x = i * 0.025f, angle = j * (float) Math.PI / 16 + 0.0238469f * (j % 3);
+				Assert.assertEquals(x - 1,
+						gjk.distance(box, Vec3f.ZERO, IDENTITY, box, Vec3f.of(x, 0, 0), Quatf.of(axis, angle), null), 1e-4f);
+				if (x > 0) {
+					// centered cubes may separate along y or z just as well
+					Assert.assertEquals(1, gjk.getNormal(new float[3])[0], 1e-4f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCapsule() {
+		Gjk gjk = new Gjk();
+		Capsule capsule = new Capsule(0.5f, 1);
+		Box ground = new Box(10, 1, 10);
+
+		// standing upright, the lower cap reaches y = -1.5
+		Assert.assertEquals(0.5f, gjk.distance(ground, Vec3f.of(0, -3, 0), IDENTITY, capsule, Vec3f.of(0, 0, 0), IDENTITY, null), 1e-5f);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0 }, gjk.getNormal(new float[3]), 1e-5f);
+		Assert.assertArrayEquals(new float[] { 0, -1.5f, 0 }, gjk.getPointB(new float[3]), 1e-5f);
+
+		// lying down, the side reaches y = -0.5
+		Quatf lying = Quatf.of(Vec3f.of(0, 0, 1), (float) Math.PI / 2);
+		Assert.assertEquals(-0.3f, gjk.distance(ground, Vec3f.of(0, -1.2f, 0), IDENTITY, capsule, Vec3f.of(0, 0, 0), lying, null), 1e-5f);
+
+		// deep penetration of the core into the ground
+		Assert.assertEquals(-1, gjk.distance(ground, Vec3f.of(0, -0.5f, 0), IDENTITY, capsule, Vec3f.of(0, 0, 0), lying, null),
+				1e-4f);
+		Assert.assertArrayEquals(new float[] { 0, 1, 0 }, gjk.getNormal(new float[3]), 1e-4f);
+	}
+
+	@Test
+	public void testHullMatchesBox() {
+		Gjk gjk = new Gjk();
+		Random random = new Random(7);
+		Box box = new Box(1, 0.5f, 2);
+		Hull hull = Hull.of(corners(1, 0.5f, 2));
+		Assert.assertEquals(8, hull.getVertexCount());
+		for (int i = 0; i < 500; i++) {
+			Vec3f position = Vec3f.of((float) random.nextGaussian() * 3, (float) random.nextGaussian() * 3,
+					(float) random.nextGaussian() * 3);
+			Quatf rotationA = randomRotation(random), rotationB = randomRotation(random);
+			float expected = gjk.distance(box, Vec3f.of(0, 0, 0), rotationA, box, position, rotationB, null);
+			float actual = gjk.distance(hull, Vec3f.of(0, 0, 0), rotationA, hull, position, rotationB, null);
+			Assert.assertEquals(expected, actual, 1e-4f);
+		}
+	}
+
+	/**
+	 * Moving the second shape along the normal by minus the distance must make
+	 * the shapes touch.
+	 */
+	@Test
+	public void testResolve() {
+		Gjk gjk = new Gjk();
+		Random random = new Random(3);
+		ConvexShape[] shapes = { new Box(1, 0.5f, 0.7f), new Capsule(0.3f, 0.8f), new Sphere(0.6f),
+				Hull.of(new float[] { 0, 1, 0, 1, -1, 0, -1, -1, 0.5f, 0, -1, -1, 0.2f, 0.3f, 0.1f }) };
+		float[] normal = new float[3];
+		for (int i = 0; i < 2000; i++) {
+			ConvexShape a = shapes[random.nextInt(shapes.length)], b = shapes[random.nextInt(shapes.length)];
+			Quatf rotationA = randomRotation(random), rotationB = randomRotation(random);
+			Vec3f positionA = Vec3f.of((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian());
+			Vec3f positionB = Vec3f.of((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian());
+			float distance = gjk.distance(a, positionA, rotationA, b, positionB, rotationB, null);
+			gjk.getNormal(normal);
+			Assert.assertEquals(1, normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2], 1e-4f);
+			Assert.assertEquals(distance <= 0, gjk.intersects(a, positionA, rotationA, b, positionB, rotationB, null));
+
+			float margin = 1e-2f;
+			Vec3f moved = Vec3f.of(positionB.getX() + normal[0] * (margin - distance), positionB.getY() + normal[1] * (margin - distance),
+					positionB.getZ() + normal[2] * (margin - distance));
+			float after = gjk.distance(a, positionA, rotationA, b, moved, rotationB, null);
+			Assert.assertEquals(margin, after, 1e-4f);
+		}
+	}
+
+	@Test
+	public void testWarmStart() {
+		Gjk gjk = new Gjk();
+		GjkCache cache = new GjkCache();
+		Hull hull = Hull.of(corners(1, 1, 1));
+		Box box = new Box(0.5f, 2, 0.5f);
+		long cold = 0, warm = 0;
+		for (int frame = 0; frame < 100; frame++) {
+			Vec3f position = Vec3f.of(3 - frame * 0.02f, (float) Math.sin(frame * 0.05f), 0);
+			Quatf rotation = Quatf.of(Vec3f.of(0, 1, 0), frame * 0.01f);
+
+			long start = gjk.getSupportCount();
+			float expected = gjk.distance(hull, Vec3f.of(0, 0, 0), IDENTITY, box, position, rotation, null);
+			cold += gjk.getSupportCount() - start;
+
+			start = gjk.getSupportCount();
+			Assert.assertEquals(expected, gjk.distance(hull, Vec3f.of(0, 0, 0), IDENTITY, box, position, rotation, cache), 1e-5f);
+			warm += gjk.getSupportCount() - start;
+			Assert.assertTrue(cache.getSimplexSize() > 0);
+		}
+		Assert.assertTrue(warm + " < " + cold, warm < cold);
+		cache.reset();
+		Assert.assertEquals(0, cache.getSimplexSize());
+	}
+
+	@Test
+	public void testTransf() {
+		Gjk gjk = new Gjk();
+		Transf parent = new Transf().setPos(Vec3f.of(10, 0, 0));
+		Transf a = new Transf().setPos(Vec3f.of(1, 0, 0)).setParent(parent);
+		Transf b = new Transf().setPos(Vec3f.of(11, 3, 0));
+		Sphere sphere = new Sphere(1);
+		Assert.assertEquals(1, gjk.distance(sphere, a, sphere, b, null), 1e-5f);
+		Assert.assertArrayEquals(new float[] { 11, 1, 0 }, gjk.getPointA(new float[3]), 1e-5f);
+		Assert.assertTrue(gjk.intersects(sphere, a, new Sphere(2), b, null));
+	}
+
+	@Test
+	public void testShapes() {
+		float[] out = new float[3];
+		new Box(1, 2, 3).support(-1, 1, -1, out);
+		Assert.assertArrayEquals(new float[] { -1, 2, -3 }, out, 0);
+		new Capsule(1, 2).support(0.5f, -1, 0, out);
+		Assert.assertArrayEquals(new float[] { 0, -2, 0 }, out, 0);
+		Assert.assertEquals(1, new Capsule(1, 2).getMargin(), 0);
+		Assert.assertEquals(new Sphere(2), new Sphere(2));
+
+		// interior points are dropped
+		float[] points = new float[27];
+		System.arraycopy(corners(1, 1, 1), 0, points, 0, 24);
+		Assert.assertEquals(8, Hull.of(points).getVertexCount());
+		Assert.assertEquals(9, Hull.ofVertices(points).getVertexCount());
+		// flat point sets are kept as they are
+		Assert.assertEquals(3, Hull.of(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }).getVertexCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeRadius() {
+		new Sphere(-1);
+	}
+
+}
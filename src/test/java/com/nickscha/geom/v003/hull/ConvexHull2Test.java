@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.hull;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.hull.ConvexHull2;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class ConvexHull2Test {
+
+	@Test
+	public void testSquare() {
+		Vec2f[] points = { Vec2f.of(0.5f, 0.5f), Vec2f.of(1, 1), Vec2f.of(-1, 1), Vec2f.of(0, 1), Vec2f.of(-1, -1),
+				Vec2f.of(1, -1), Vec2f.of(-0.5f, 0.2f) };
+		ConvexHull2 hull = ConvexHull2.of(points);
+		Assert.assertArrayEquals(new int[] { 4, 5, 1, 2 }, hull.getVertices());
+		Assert.assertEquals(4, hull.area(), 0);
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(1);
+		int n = 10000;
+		float[] xy = new float[n * 2];
+		for (int i = 0; i < xy.length; i++) {
+			xy[i] = (float) random.nextGaussian() * (i % 2 == 0 ? 1 : -3);
+		}
+		int[] v = ConvexHull2.of(xy).getVertices();
+		Assert.assertTrue(v.length >= 3);
+		for (int i = 0; i < v.length; i++) {
+			int a = v[i], b = v[(i + 1) % v.length];
+			double ex = xy[b * 2] - xy[a * 2], ey = xy[b * 2 + 1] - xy[a * 2 + 1];
+			for (int j = 0; j < n; j++) {
+				double cross = ex * (xy[j * 2 + 1] - xy[a * 2 + 1]) - ey * (xy[j * 2] - xy[a * 2]);
+				Assert.assertTrue(cross >= -1e-4);
+			}
+		}
+	}
+
+	@Test
+	public void testDegenerate() {
+		Assert.assertEquals(0, ConvexHull2.of(new float[0]).getVertexCount());
+		Assert.assertArrayEquals(new int[] { 0 }, ConvexHull2.of(new float[] { 3, 4 }).getVertices());
+		Assert.assertArrayEquals(new int[] { 1, 0 }, ConvexHull2.of(new float[] { 3, 4, -1, 0 }).getVertices());
+		// coincident points keep a single vertex
+		Assert.assertArrayEquals(new int[] { 0 }, ConvexHull2.of(new float[] { 3, 4, 3, 4, 3, 4 }).getVertices());
+		Assert.assertArrayEquals(new int[] { 0 }, ConvexHull2.of(new float[] { 0, -0.0f, -0.0f, 0 }).getVertices());
+		Assert.assertEquals(2, ConvexHull2.of(new float[] { 3, 4, 3, 4, -1, 0, 3, 4 }).getVertexCount());
+		// colinear points keep only the end points
+		Assert.assertArrayEquals(new int[] { 2, 0 }, ConvexHull2.of(new float[] { 2, 2, 1, 1, 0, 0 }).getVertices());
+		Assert.assertArrayEquals(new int[] { 1, 2, 0 },
+				ConvexHull2.of(new float[] { 0, 1, -0.0f, 0, 1, 0 }).getVertices());
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.hull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.hull.ConvexHull3;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class ConvexHull3Test {
+
+	/**
+	 * Checks that the hull is a closed consistently oriented mesh (Euler
+	 * characteristic 2) and that no point lies outside of any face.
+	 */
+	private static void assertHull(double[] p, ConvexHull3 hull, double tolerance) {
+		int[] t = hull.getTriangles();
+		Map<Long, Integer> edges = new HashMap<>();
+		for (int i = 0; i < t.length; i += 3) {
+			for (int e = 0; e < 3; e++) {
+				long edge = (long) t[i + e] << 32 | t[i + (e + 1) % 3];
+				Assert.assertNull(edges.put(edge, i));
+			}
+		}
+		for (long edge : edges.keySet()) {
+			Assert.assertTrue(edges.containsKey(edge << 32 | edge >>> 32));
+		}
+		Assert.assertEquals(2, hull.getVertexCount() - edges.size() / 2 + hull.getFaceCount());
+
+		for (int i = 0; i < t.length; i += 3) {
+			int a = t[i] * 3, b = t[i + 1] * 3, c = t[i + 2] * 3;
+			double ux = p[b] - p[a], uy = p[b + 1] - p[a + 1], uz = p[b + 2] - p[a + 2];
+			double vx = p[c] - p[a], vy = p[c + 1] - p[a + 1], vz = p[c + 2] - p[a + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			for (int j = 0; j < p.length; j += 3) {
+				double d = (nx * (p[j] - p[a]) + ny * (p[j + 1] - p[a + 1]) + nz * (p[j + 2] - p[a + 2])) / length;
+				Assert.assertTrue(d <= tolerance);
+			}
+		}
+	}
+
+	@Test
+	public void testCube() {
+		Vec3f[] points = new Vec3f[8 + 100];
+		for (int i = 0; i < 8; i++) {
+			points[i] = Vec3f.of(i & 1, i >> 1 & 1, i >> 2 & 1);
+		}
+		Random random = new Random(1);
+		for (int i = 8; i < points.length; i++) {
+			points[i] = Vec3f.of(random.nextFloat(), random.nextFloat(), random.nextFloat());
+		}
+		ConvexHull3 hull = ConvexHull3.of(points);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, hull.getVertices());
+		Assert.assertEquals(12, hull.getFaceCount());
+		double[] p = new double[points.length * 3];
+		for (int i = 0; i < points.length; i++) {
+			p[i * 3] = points[i].getX();
+			p[i * 3 + 1] = points[i].getY();
+			p[i * 3 + 2] = points[i].getZ();
+		}
+		assertHull(p, hull, 1e-9);
+	}
+
+	@Test
+	public void testSphere() {
+		Random random = new Random(2);
+		int n = 2000;
+		double[] p = new double[n * 3];
+		for (int i = 0; i < n; i++) {
+			double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+			double length = Math.sqrt(x * x + y * y + z * z);
+			p[i * 3] = x / length * 10;
+			p[i * 3 + 1] = y / length * 10;
+			p[i * 3 + 2] = z / length * 10;
+		}
+		ConvexHull3 hull = ConvexHull3.of(p);
+		// every point of a sphere is on the hull
+		Assert.assertEquals(n, hull.getVertexCount());
+		assertHull(p, hull, 1e-9);
+	}
+
+	@Test
+	public void testLarge() {
+		Random random = new Random(3);
+		int n = 200000;
+		float[] xyz = new float[n * 3];
+		for (int i = 0; i < xyz.length; i++) {
+			xyz[i] = (float) random.nextGaussian();
+		}
+		ConvexHull3 hull = ConvexHull3.of(xyz);
+		double[] p = new double[hull.getVertexCount() * 3];
+		int[] v = hull.getVertices();
+		for (int i = 0; i < v.length; i++) {
+			p[i * 3] = xyz[v[i] * 3];
+			p[i * 3 + 1] = xyz[v[i] * 3 + 1];
+			p[i * 3 + 2] = xyz[v[i] * 3 + 2];
+		}
+		// all input points are inside every face plane
+		int[] t = hull.getTriangles();
+		for (int i = 0; i < t.length; i += 3) {
+			int a = t[i] * 3, b = t[i + 1] * 3, c = t[i + 2] * 3;
+			double ux = xyz[b] - xyz[a], uy = xyz[b + 1] - xyz[a + 1], uz = xyz[b + 2] - xyz[a + 2];
+			double vx = xyz[c] - xyz[a], vy = xyz[c + 1] - xyz[a + 1], vz = xyz[c + 2] - xyz[a + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			for (int j = 0; j < xyz.length; j += 3 * 101) {
+				Assert.assertTrue((nx * (xyz[j] - xyz[a]) + ny * (xyz[j + 1] - xyz[a + 1]) + nz * (xyz[j + 2] - xyz[a + 2]))
+						/ length <= 1e-5);
+			}
+		}
+		Assert.assertTrue(hull.getVertexCount() > 10);
+	}
+
+	@Test
+	public void testTetrahedron() {
+		ConvexHull3 hull = ConvexHull3.of(new Vec3d[] { Vec3d.of(0, 0, 0), Vec3d.of(1, 0, 0), Vec3d.of(0, 1, 0),
+				Vec3d.of(0, 0, 1), Vec3d.of(0.1, 0.1, 0.1) });
+		Assert.assertEquals(4, hull.getFaceCount());
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3 }, hull.getVertices());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCoplanar() {
+		ConvexHull3.of(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0, 0.5f, 0.5f, 0 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooFewPoints() {
+		ConvexHull3.of(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 });
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.io.AsciiParser;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class AsciiParserTest {
+
+	private static AsciiParser parser(String text) {
+		byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+		return new AsciiParser(data, 0, data.length);
+	}
+
+	private static float parse(String text) {
+		return parser(text).nextFloat();
+	}
+
+	@Test
+	public void testFloats() {
+		String[] values = { "0", "-0", "1", "-1.5", "+2.25", ".5", "-.125", "5.", "1e3", "1E-3", "-2.5e+2", "3.4028235e38",
+				"1.4e-45", "0.000001234", "123456789", "1.00000006", "0.1", "0.30000001", "16777217",
+				"1234567890123456789012", "0.1234567890123456789012345", "1e39", "1e-50" };
+		for (String value : values) {
+			Assert.assertEquals(value, Float.parseFloat(value), parse(value), 0);
+			Assert.assertEquals(value, Float.floatToIntBits(Float.parseFloat(value)), Float.floatToIntBits(parse(value)));
+		}
+		Assert.assertTrue(Float.isNaN(parse("nan")));
+		Assert.assertEquals(Float.NEGATIVE_INFINITY, parse("-inf"), 0);
+		Assert.assertEquals(Float.POSITIVE_INFINITY, parse("Infinity"), 0);
+	}
+
+	@Test
+	public void testRandomFloats() {
+		Random random = new Random(5);
+		for (int i = 0; i < 100000; i++) {
+			float value = Float.intBitsToFloat(random.nextInt());
+			if (Float.isNaN(value)) {
+				continue;
+			}
+			String text = i % 2 == 0 ? Float.toString(value) : String.format("%.6f", value);
+			Assert.assertEquals(text, Float.floatToIntBits(Float.parseFloat(text)), Float.floatToIntBits(parse(text)));
+		}
+	}
+
+	/**
+	 * Decimals whose correctly rounded double lies exactly between two floats
+	 * must not be rounded a second time.
+	 */
+	@Test
+	public void testDoubleRounding() {
+		String[] values = { "2.972519278526306", "0.000006194963816597010", "0.0000004774563819864852", "16777217",
+				"-2.972519278526306", "33554435" };
+		for (String value : values) {
+			Assert.assertEquals(value, Float.floatToIntBits(Float.parseFloat(value)), Float.floatToIntBits(parse(value)));
+		}
+		Random random = new Random(6);
+		for (int i = 0; i < 100000; i++) {
+			String text = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10));
+			Assert.assertEquals(text, Float.floatToIntBits(Float.parseFloat(text)), Float.floatToIntBits(parse(text)));
+		}
+	}
+
+	@Test
+	public void testSequence() {
+		AsciiParser parser = parser("v 1 -2\t3.5\r\nf 1/2/3 4//5\n");
+		Assert.assertTrue(parser.nextKeyword("v"));
+		Assert.assertEquals(1, parser.nextFloat(), 0);
+		Assert.assertEquals(-2, parser.nextFloat(), 0);
+		Assert.assertEquals(3.5f, parser.nextFloat(), 0);
+		Assert.assertTrue(parser.isLineEnd());
+		parser.nextLine();
+		Assert.assertFalse(parser.nextKeyword("fo"));
+		Assert.assertTrue(parser.nextKeyword("f"));
+		Assert.assertEquals(1, parser.nextInt());
+		Assert.assertTrue(parser.skip('/'));
+		Assert.assertEquals(2, parser.nextInt());
+		Assert.assertTrue(parser.skip('/'));
+		Assert.assertEquals(3, parser.nextInt());
+		Assert.assertEquals(4, parser.nextInt());
+		Assert.assertTrue(parser.skip('/'));
+		Assert.assertFalse(parser.skip('2'));
+		Assert.assertTrue(parser.skip('/'));
+		Assert.assertEquals(5, parser.nextInt());
+		Assert.assertTrue(parser.isLineEnd());
+		parser.nextLine();
+		Assert.assertFalse(parser.hasRemaining());
+		Assert.assertEquals(-1, parser.peek());
+	}
+
+	@Test
+	public void testWords() {
+		AsciiParser parser = parser("element vertex 8\n");
+		Assert.assertEquals("element", parser.nextWord());
+		Assert.assertEquals("vertex", parser.nextWord());
+		Assert.assertEquals(8, parser.nextInt());
+		Assert.assertEquals("", parser.nextWord());
+	}
+
+	@Test
+	public void testInts() {
+		Assert.assertEquals(Integer.MAX_VALUE, parser("2147483647").nextInt());
+		Assert.assertEquals(Integer.MIN_VALUE, parser("-2147483648").nextInt());
+		Assert.assertEquals(-7, parser("  -7 ").nextInt());
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntOverflow() {
+		parser("2147483648").nextInt();
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNoFloat() {
+		parse("x1");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNoInt() {
+		parser("-").nextInt();
+	}
+
+}
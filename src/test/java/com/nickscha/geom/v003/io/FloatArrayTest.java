@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.io.FloatArray;
+import com.nickscha.geom.io.IntArray;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class FloatArrayTest {
+
+	@Test
+	public void testAdd() {
+		FloatArray array = new FloatArray(0);
+		Assert.assertTrue(array.isEmpty());
+		for (int i = 0; i < 1000; i++) {
+			array.add(i);
+		}
+		array.add(1, 2);
+		array.add(3, 4, 5);
+		Assert.assertEquals(1005, array.size());
+		Assert.assertEquals(999, array.get(999), 0);
+		Assert.assertEquals(5, array.get(1004), 0);
+		array.set(0, -1);
+		Assert.assertEquals(-1, array.toArray()[0], 0);
+		Assert.assertTrue(array.getArray().length >= array.size());
+
+		FloatArray other = FloatArray.wrap(new float[] { 7, 8 });
+		array.addAll(other);
+		Assert.assertEquals(1007, array.size());
+		Assert.assertEquals(8, array.get(1006), 0);
+		array.clear();
+		Assert.assertEquals(0, array.size());
+	}
+
+	@Test
+	public void testResize() {
+		FloatArray array = FloatArray.wrap(new float[] { 1, 2, 3 });
+		array.resize(1);
+		array.resize(3);
+		Assert.assertArrayEquals(new float[] { 1, 0, 0 }, array.toArray(), 0);
+	}
+
+	@Test
+	public void testEquals() {
+		FloatArray a = new FloatArray(), b = new FloatArray(100);
+		a.add(1, 2);
+		b.add(1, 2);
+		Assert.assertEquals(a, b);
+		Assert.assertEquals(a.hashCode(), b.hashCode());
+		b.add(3);
+		Assert.assertNotEquals(a, b);
+	}
+
+	@Test
+	public void testIntArray() {
+		IntArray array = new IntArray();
+		array.add(1, 2, 3);
+		array.addAll(IntArray.wrap(new int[] { 4 }));
+		Assert.assertArrayEquals(new int[] { 1, 2, 3, 4 }, array.toArray());
+		Assert.assertEquals(IntArray.wrap(new int[] { 1, 2, 3, 4 }), array);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutOfBounds() {
+		new FloatArray(8).get(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeCapacity() {
+		new IntArray(-1);
+	}
+
+}
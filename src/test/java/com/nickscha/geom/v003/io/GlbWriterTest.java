@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nickscha.geom.io.GlbWriter;
+import com.nickscha.geom.io.MeshData;
+import com.nickscha.geom.io.ObjReader;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.quat.Quatf;
+import com.nickscha.geom.transform.Transf;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class GlbWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final float[] POSITIONS = { -1, 0, 2, 1, 0, 2, 0, 3, -4 };
+	private static final float[] NORMALS = { 0, 1, 0, 0, 1, 0, 0, 1, 0 };
+	private static final int[] INDICES = { 0, 1, 2 };
+
+	@Test
+	public void testLayout() {
+		GlbWriter writer = new GlbWriter();
+		int mesh = writer.addMesh(POSITIONS, NORMALS, INDICES);
+		writer.addNode(mesh, Vec3f.of(1, 2, 3), Quatf.of(0, 0, 0, 1), Vec3f.of(2));
+		byte[] data = writer.toByteArray();
+
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		Assert.assertEquals(0x46546C67, buffer.getInt(0));
+		Assert.assertEquals(2, buffer.getInt(4));
+		Assert.assertEquals(data.length, buffer.getInt(8));
+		int jsonLength = buffer.getInt(12);
+		Assert.assertEquals(0, jsonLength % 4);
+		Assert.assertEquals(0x4E4F534A, buffer.getInt(16));
+		String json = new String(data, 20, jsonLength, StandardCharsets.UTF_8);
+		Assert.assertTrue(json, json.contains("\"min\":[-1.0,0.0,-4.0],\"max\":[1.0,3.0,2.0]"));
+		Assert.assertTrue(json, json.contains("\"componentType\":5123,\"count\":3,\"type\":\"SCALAR\",\"min\":[0],\"max\":[2]"));
+		Assert.assertTrue(json, json.contains("\"translation\":[1.0,2.0,3.0],\"rotation\":[0.0,0.0,0.0,1.0],\"scale\":[2.0,2.0,2.0],\"mesh\":0"));
+		Assert.assertTrue(json, json.contains("\"buffers\":[{\"byteLength\":80}]"));
+		Assert.assertTrue(json, json.contains("\"mode\":4"));
+
+		int bin = 20 + jsonLength;
+		Assert.assertEquals(80, buffer.getInt(bin));
+		Assert.assertEquals(0x004E4942, buffer.getInt(bin + 4));
+		bin += 8;
+		for (int i = 0; i < POSITIONS.length; i++) {
+			Assert.assertEquals(POSITIONS[i], buffer.getFloat(bin + i * 4), 0);
+			Assert.assertEquals(NORMALS[i], buffer.getFloat(bin + 36 + i * 4), 0);
+		}
+		for (int i = 0; i < INDICES.length; i++) {
+			Assert.assertEquals(INDICES[i], buffer.getShort(bin + 72 + i * 2));
+		}
+		Assert.assertEquals(bin + 80, data.length);
+	}
+
+	@Test
+	public void testLargeIndices() {
+		int vertices = 70000;
+		float[] positions = new float[vertices * 3];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
+		}
+		int[] indices = { 0, 69999, 65536 };
+		GlbWriter writer = new GlbWriter();
+		writer.addMesh(positions, null, indices);
+		byte[] data = writer.toByteArray();
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		String json = new String(data, 20, buffer.getInt(12), StandardCharsets.UTF_8);
+		Assert.assertTrue(json, json.contains("\"componentType\":5125,\"count\":3,\"type\":\"SCALAR\",\"min\":[0],\"max\":[69999]"));
+		Assert.assertFalse(json, json.contains("NORMAL"));
+		Assert.assertEquals(65536, buffer.getInt(data.length - 4));
+	}
+
+	@Test
+	public void testNodes() throws IOException {
+		GlbWriter writer = new GlbWriter();
+		int mesh = writer.addMesh(POSITIONS, null, null);
+		Transf transform = new Transf().setPos(Vec3f.of(5, 0, 0));
+		int root = writer.addNode(-1, transform);
+		int child = writer.addNode(mesh, Mat4f.translationMatrix(0, 7, 0));
+		int first = writer.addNodes(new int[] { mesh, mesh }, new float[] { 1, 1, 1, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 0, 0, 0, 1, 1, 1, 1 });
+		writer.setParent(child, root).setParent(first, child);
+		Assert.assertEquals(4, writer.getNodeCount());
+
+		Path path = folder.newFile().toPath();
+		writer.write(path);
+		byte[] data = Files.readAllBytes(path);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out);
+		Assert.assertArrayEquals(data, out.toByteArray());
+
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		String json = new String(data, 20, buffer.getInt(12), StandardCharsets.UTF_8);
+		Assert.assertTrue(json, json.contains("\"scenes\":[{\"nodes\":[0,3]}]"));
+		Assert.assertTrue(json, json.contains("\"translation\":[5.0,0.0,0.0]"));
+		Assert.assertTrue(json, json.contains("\"matrix\":[1.0,0.0,0.0,0.0,0.0,1.0,0.0,0.0,0.0,0.0,1.0,0.0,0.0,7.0,0.0,1.0],\"mesh\":0,\"children\":[2]"));
+		Assert.assertTrue(json, json.contains("\"scale\":[1.0,1.0,1.0],\"children\":[1]"));
+		Assert.assertFalse(json, json.contains("indices"));
+	}
+
+	@Test
+	public void testPointCloud() throws IOException {
+		MeshData points = ObjReader.read("v 0 0 0\nv 1 0 0\nv 0 1 0\nv 0 0 1\n".getBytes(StandardCharsets.US_ASCII));
+		Assert.assertEquals(0, points.getIndices().size());
+		GlbWriter writer = new GlbWriter();
+		Assert.assertEquals(0, writer.addMesh(points));
+		byte[] data = writer.toByteArray();
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		String json = new String(data, 20, buffer.getInt(12), StandardCharsets.UTF_8);
+		Assert.assertFalse(json, json.contains("indices"));
+		Assert.assertTrue(json, json.contains("\"count\":4"));
+		Assert.assertTrue(json, json.contains("\"mode\":0"));
+		Assert.assertFalse(json, json.contains("\"mode\":4"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartialTriangle() {
+		new GlbWriter().addMesh(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1 }, null, null);
+	}
+
+	@Test
+	public void testNoNodes() {
+		GlbWriter writer = new GlbWriter();
+		writer.addMesh(POSITIONS, NORMALS, INDICES);
+		byte[] data = writer.toByteArray();
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		String json = new String(data, 20, buffer.getInt(12), StandardCharsets.UTF_8);
+		// scenes must list at least one node
+		Assert.assertFalse(json, json.contains("scene"));
+		Assert.assertFalse(json, json.contains("nodes"));
+		Assert.assertTrue(json, json.contains("\"meshes\":["));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCycle() {
+		GlbWriter writer = new GlbWriter();
+		int a = writer.addNode(-1, new Transf());
+		int b = writer.addNode(-1, new Transf());
+		writer.setParent(b, a).setParent(a, b);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexOutOfRange() {
+		new GlbWriter().addMesh(POSITIONS, null, new int[] { 0, 1, 3 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotFinite() {
+		new GlbWriter().addMesh(new float[] { 0, Float.NaN, 0, 1, 0, 0, 0, 1, 0 }, null, null);
+	}
+
+	@Test
+	public void testNodeNotFinite() {
+		GlbWriter writer = new GlbWriter();
+		try {
+			writer.addNode(-1, Vec3f.of(Float.NaN, 0, 0), Quatf.of(0, 0, 0, 1), Vec3f.of(1));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			writer.addNode(-1, Mat4f.translationMatrix(0, Float.POSITIVE_INFINITY, 0));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			writer.addNodes(new int[] { -1, -1 }, new float[] { 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 1, 1, 1,
+					Float.NEGATIVE_INFINITY });
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+		Assert.assertEquals(0, writer.getNodeCount());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testMissingMesh() {
+		new GlbWriter().addNode(0, new Transf());
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.io.LasChunk;
+import com.nickscha.geom.io.LasReader;
+import com.nickscha.geom.vec.Vec3d;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class LasReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Writes points with x = i, y = -i, z = i % 100 scaled by 0.01 around an
+	 * offset of 1000.
+	 */
+	private Path write(int minor, int format, int recordLength, int points) throws IOException {
+		int headerSize = minor >= 4 ? 375 : 227;
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize + points * recordLength).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[] { 'L', 'A', 'S', 'F' });
+		buffer.put(24, (byte) 1).put(25, (byte) minor);
+		buffer.putShort(94, (short) headerSize);
+		buffer.putInt(96, headerSize);
+		buffer.put(104, (byte) format);
+		buffer.putShort(105, (short) recordLength);
+		buffer.putInt(107, minor >= 4 ? 0 : points);
+		buffer.putDouble(131, 0.01).putDouble(139, 0.01).putDouble(147, 0.01);
+		buffer.putDouble(155, 1000).putDouble(163, 1000).putDouble(171, 1000);
+		buffer.putDouble(179, 1000 + (points - 1) * 0.01).putDouble(187, 1000);
+		buffer.putDouble(195, 1000).putDouble(203, 1000 - (points - 1) * 0.01);
+		buffer.putDouble(211, 1000.99).putDouble(219, 1000);
+		if (minor >= 4) {
+			buffer.putLong(247, points);
+		}
+		for (int i = 0; i < points; i++) {
+			int p = headerSize + i * recordLength;
+			buffer.putInt(p, i).putInt(p + 4, -i).putInt(p + 8, i % 100);
+			buffer.putShort(p + 12, (short) (i * 7));
+			buffer.put(p + (format >= 6 ? 16 : 15), (byte) (format >= 6 ? i % 200 : 0xE0 | i % 20));
+		}
+		Path path = folder.newFile().toPath();
+		Files.write(path, buffer.array());
+		return path;
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		try (LasReader reader = LasReader.open(write(2, 1, 28, 1000))) {
+			Assert.assertEquals(1000, reader.getPointCount());
+			Assert.assertEquals(1, reader.getPointFormat());
+			Assert.assertEquals(28, reader.getRecordLength());
+			Assert.assertEquals(2, reader.getVersionMinor());
+			Assert.assertEquals(Aabb3d.of(1000, 990.01, 1000, 1009.99, 1000, 1000.99), reader.getBounds());
+
+			LasChunk chunk = reader.read(10, 5);
+			Assert.assertEquals(10, chunk.getOffset());
+			Assert.assertEquals(5, chunk.getCount());
+			Vec3d p = chunk.getPosition(2);
+			Assert.assertEquals(1000.12, p.getX(), 1e-9);
+			Assert.assertEquals(999.88, p.getY(), 1e-9);
+			Assert.assertEquals(1000.12, p.getZ(), 1e-9);
+			Assert.assertEquals(84, chunk.getIntensities()[2]);
+			// the flag bits are not part of the classification
+			Assert.assertEquals(12, chunk.getClassifications()[2]);
+		}
+	}
+
+	@Test
+	public void testExtendedFormat() throws IOException {
+		try (LasReader reader = LasReader.open(write(4, 6, 30, 300))) {
+			Assert.assertEquals(300, reader.getPointCount());
+			double[] positions = new double[3];
+			int[] intensities = new int[1];
+			byte[] classifications = new byte[1];
+			reader.read(250, 1, positions, intensities, classifications);
+			Assert.assertEquals(1002.5, positions[0], 1e-9);
+			Assert.assertEquals((250 * 7) & 0xFFFF, intensities[0]);
+			Assert.assertEquals(50, classifications[0]);
+			reader.read(299, 1, positions, null, null);
+			Assert.assertEquals(997.01, positions[1], 1e-9);
+		}
+	}
+
+	@Test
+	public void testChunks() throws IOException {
+		int points = 100003;
+		try (LasReader reader = LasReader.open(write(2, 0, 20, points))) {
+			Spliterator<LasChunk> spliterator = reader.spliterator(1000);
+			Assert.assertEquals(101, spliterator.estimateSize());
+			Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED));
+
+			// every point exactly once, in order
+			long[] offsets = reader.chunks(1000, true).mapToLong(LasChunk::getOffset).toArray();
+			for (int i = 0; i < offsets.length; i++) {
+				Assert.assertEquals(i * 1000L, offsets[i]);
+			}
+			Assert.assertEquals(points, reader.chunks(1000, true).mapToInt(LasChunk::getCount).sum());
+			double sequential = reader.chunks(false).mapToDouble(LasReaderTest::sumX).sum();
+			double parallel = reader.chunks(777, true).mapToDouble(LasReaderTest::sumX).sum();
+			Assert.assertEquals(sequential, parallel, 1e-3);
+			Assert.assertEquals(points * 1000.0 + (points - 1) * (double) points / 2 * 0.01, sequential, 1e-3);
+			Assert.assertEquals(3, reader.chunks(1000, false).skip(100).findFirst().get().getCount());
+			Assert.assertEquals(2, reader.chunks(false).collect(Collectors.toList()).size());
+		}
+	}
+
+	private static double sumX(LasChunk chunk) {
+		double sum = 0;
+		double[] positions = chunk.getPositions();
+		for (int i = 0; i < chunk.getCount(); i++) {
+			sum += positions[i * 3];
+		}
+		return sum;
+	}
+
+	@Test(expected = IOException.class)
+	public void testCompressed() throws IOException {
+		LasReader.open(write(2, 0x80 | 1, 28, 10));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotLas() throws IOException {
+		Path path = folder.newFile().toPath();
+		Files.write(path, new byte[300]);
+		LasReader.open(path);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		Path path = write(2, 1, 28, 10);
+		byte[] data = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(data, data.length - 1));
+		LasReader.open(path);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testReadOutOfRange() throws IOException {
+		try (LasReader reader = LasReader.open(write(2, 1, 28, 10))) {
+			reader.read(5, 6);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nickscha.geom.io.MeshData;
+import com.nickscha.geom.io.ObjReader;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class ObjReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static MeshData read(String text) throws IOException {
+		return ObjReader.read(text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void testQuad() throws IOException {
+		MeshData mesh = read("# quad\no quad\nv 0 0 0\nv 1 0 0\nv 1 1 0\r\nv 0 1 0 1.0\n\nvt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+				+ "vn 0 0 1\nusemtl none\ns off\nf 1/1/1 2/2/1 3/3/1 4/4/1\n");
+		Assert.assertEquals(4, mesh.getVertexCount());
+		Assert.assertEquals(2, mesh.getTriangleCount());
+		Assert.assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 }, mesh.getPositions().toArray(), 0);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.getIndices().toArray());
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.getUvIndices().toArray());
+		Assert.assertArrayEquals(new int[] { 0, 0, 0, 0, 0, 0 }, mesh.getNormalIndices().toArray());
+		Assert.assertArrayEquals(new float[] { 0, 0, 1 }, mesh.getNormals().toArray(), 0);
+		Assert.assertEquals(8, mesh.getUvs().size());
+		Assert.assertTrue(mesh.getColors().isEmpty());
+	}
+
+	@Test
+	public void testIndexForms() throws IOException {
+		MeshData mesh = read("v 0 0 0\nv 1 0 0\nv 0 1 0\nvn 0 0 1\nvt 0.5 0.5\n" + "f 1 2 3\nf -3 -2 -1\nf 1//1 2//1 3//1\nf 1/1 2/1 3/1\n");
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 1, 2, 0, 1, 2, 0, 1, 2 }, mesh.getIndices().toArray());
+		Assert.assertArrayEquals(new int[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, 0, 0 }, mesh.getUvIndices().toArray());
+		Assert.assertArrayEquals(new int[] { -1, -1, -1, -1, -1, -1, 0, 0, 0, -1, -1, -1 },
+				mesh.getNormalIndices().toArray());
+	}
+
+	@Test
+	public void testWithoutAttributes() throws IOException {
+		MeshData mesh = read("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3");
+		Assert.assertEquals(1, mesh.getTriangleCount());
+		Assert.assertTrue(mesh.getUvIndices().isEmpty());
+		Assert.assertTrue(mesh.getNormalIndices().isEmpty());
+	}
+
+	@Test
+	public void testChunks() throws IOException {
+		// a grid larger than one chunk with relative indices across chunks
+		int n = 600;
+		StringBuilder text = new StringBuilder();
+		for (int y = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				text.append("v ").append(x * 0.5f).append(' ').append(y * 0.25f).append(" -1.5e-1\n");
+				if (x > 0 && y > 0) {
+					text.append("f -1 -2 -").append(n + 2).append(" -").append(n + 1).append('\n');
+				}
+			}
+		}
+		Path path = folder.newFile("grid.obj").toPath();
+		Files.write(path, text.toString().getBytes(StandardCharsets.US_ASCII));
+		Assert.assertTrue(Files.size(path) > 2 * (1 << 22));
+
+		MeshData sequential = ObjReader.read(path);
+		MeshData parallel = ObjReader.read(path, new ForkJoinPool(4));
+		Assert.assertEquals(n * n, sequential.getVertexCount());
+		Assert.assertEquals((n - 1) * (n - 1) * 2, sequential.getTriangleCount());
+		Assert.assertEquals(sequential.getPositions(), parallel.getPositions());
+		Assert.assertEquals(sequential.getIndices(), parallel.getIndices());
+		Assert.assertEquals(ObjReader.read(Files.readAllBytes(path)).getIndices(), parallel.getIndices());
+
+		int[] indices = parallel.getIndices().toArray();
+		for (int y = 1, t = 0; y < n; y++) {
+			for (int x = 1; x < n; x++, t += 2) {
+				int v = y * n + x;
+				Assert.assertArrayEquals(new int[] { v, v - 1, v - n - 1, v, v - n - 1, v - n },
+						Arrays.copyOfRange(indices, t * 3, t * 3 + 6));
+			}
+		}
+		float[] positions = parallel.getPositions().toArray();
+		Assert.assertEquals(299.5f, positions[(n * n - 1) * 3], 0);
+		Assert.assertEquals(-0.15f, positions[(n * n - 1) * 3 + 2], 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidIndex() throws IOException {
+		read("v 0 0 0\nf 1 2 3\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void testMalformed() throws IOException {
+		read("v 0 zero 0\n");
+	}
+
+	@Test(expected = IOException.class)
+	public void testIndexZero() throws IOException {
+		read("v 0 0 0\nf 0 1 1\n");
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nickscha.geom.io.MeshData;
+import com.nickscha.geom.io.PlyReader;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class PlyReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String HEADER = "element vertex 4\nproperty float x\nproperty float y\nproperty float z\n"
+			+ "property float confidence\nproperty float nx\nproperty float ny\nproperty float nz\n"
+			+ "property uchar red\nproperty uchar green\nproperty uchar blue\n"
+			+ "element face 1\nproperty list uchar int vertex_indices\n"
+			+ "element edge 1\nproperty int vertex1\nproperty int vertex2\nend_header\n";
+
+	private Path write(String name, byte[] data) throws IOException {
+		Path path = folder.newFile(name).toPath();
+		Files.write(path, data);
+		return path;
+	}
+
+	private static void assertQuad(MeshData mesh) {
+		Assert.assertEquals(4, mesh.getVertexCount());
+		Assert.assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0.5f }, mesh.getPositions().toArray(), 0);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, mesh.getIndices().toArray());
+		Assert.assertEquals(12, mesh.getNormals().size());
+		Assert.assertEquals(1, mesh.getNormals().get(11), 0);
+		Assert.assertEquals(16, mesh.getColors().size());
+		Assert.assertEquals(1, mesh.getColors().get(0), 0);
+		Assert.assertEquals(51 / 255f, mesh.getColors().get(1), 1e-6f);
+		Assert.assertEquals(1, mesh.getColors().get(3), 0);
+		Assert.assertTrue(mesh.getUvs().isEmpty());
+		Assert.assertTrue(mesh.getUvIndices().isEmpty());
+	}
+
+	private static byte[] binary(ByteOrder order) {
+		float[][] vertices = { { 0, 0, 0 }, { 1, 0, 0 }, { 1, 1, 0 }, { 0, 1, 0.5f } };
+		byte[] header = ("ply\nformat " + (order == ByteOrder.LITTLE_ENDIAN ? "binary_little_endian" : "binary_big_endian")
+				+ " 1.0\ncomment test\n" + HEADER).getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.allocate(header.length + 4 * 31 + 17 + 8).order(order);
+		buffer.put(header);
+		for (float[] v : vertices) {
+			buffer.putFloat(v[0]).putFloat(v[1]).putFloat(v[2]).putFloat(0.9f);
+			buffer.putFloat(0).putFloat(0).putFloat(1);
+			buffer.put((byte) 255).put((byte) 51).put((byte) 0);
+		}
+		buffer.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3);
+		buffer.putInt(0).putInt(1);
+		return buffer.array();
+	}
+
+	@Test
+	public void testAscii() throws IOException {
+		String text = "ply\r\nformat ascii 1.0\r\n" + HEADER + "0 0 0 0.9 0 0 1 255 51 0\n1 0 0 0.9 0 0 1 255 51 0\n"
+				+ "1 1 0 0.9 0 0 1 255 51 0\n0 1 0.5 0.9 0 0 1 255 51 0\n4 0 1 2 3\n0 1\n";
+		assertQuad(PlyReader.read(write("quad.ply", text.getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	@Test
+	public void testBinary() throws IOException {
+		assertQuad(PlyReader.read(write("little.ply", binary(ByteOrder.LITTLE_ENDIAN))));
+		assertQuad(PlyReader.read(write("big.ply", binary(ByteOrder.BIG_ENDIAN)), new ForkJoinPool(2)));
+	}
+
+	@Test
+	public void testBinaryVertexList() throws IOException {
+		// a list in the vertex element forces the sequential walk
+		byte[] header = ("ply\nformat binary_little_endian 1.0\nelement vertex 2\nproperty list uchar float extra\n"
+				+ "property double x\nproperty double y\nproperty double z\nproperty float u\nproperty float v\n"
+				+ "element face 1\nproperty list uchar uint vertex_indices\nend_header\n").getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.allocate(header.length + 2 * (1 + 8 + 24 + 8) + 13).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(header);
+		buffer.put((byte) 2).putFloat(7).putFloat(8).putDouble(1).putDouble(2).putDouble(3).putFloat(0.25f).putFloat(0.75f);
+		buffer.put((byte) 0).putDouble(4).putDouble(5).putDouble(6).putFloat(1).putFloat(0);
+		buffer.put((byte) 3).putInt(0).putInt(1).putInt(1);
+		MeshData mesh = PlyReader.read(write("list.ply", buffer.array()));
+		Assert.assertArrayEquals(new float[] { 1, 2, 3, 4, 5, 6 }, mesh.getPositions().toArray(), 0);
+		Assert.assertArrayEquals(new float[] { 0.25f, 0.75f, 1, 0 }, mesh.getUvs().toArray(), 0);
+		Assert.assertArrayEquals(new int[] { 0, 1, 1 }, mesh.getIndices().toArray());
+		Assert.assertTrue(mesh.getNormals().isEmpty());
+	}
+
+	@Test
+	public void testAsciiChunks() throws IOException {
+		int n = 300000;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(("ply\nformat ascii 1.0\nelement vertex " + n + "\nproperty float x\nproperty float y\nproperty float z\n"
+				+ "element face " + (n - 2) + "\nproperty list uchar int vertex_indices\nend_header\n")
+						.getBytes(StandardCharsets.US_ASCII));
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			text.append(i * 0.125f).append(' ').append(-i).append(" 1.0000001\n");
+		}
+		for (int i = 0; i < n - 2; i++) {
+			text.append("3 ").append(i).append(' ').append(i + 1).append(' ').append(i + 2).append('\n');
+		}
+		out.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+		Path path = write("cloud.ply", out.toByteArray());
+		Assert.assertTrue(Files.size(path) > 2 * (1 << 22));
+
+		MeshData sequential = PlyReader.read(path);
+		MeshData parallel = PlyReader.read(path, new ForkJoinPool(4));
+		Assert.assertEquals(n, parallel.getVertexCount());
+		Assert.assertEquals(n - 2, parallel.getTriangleCount());
+		Assert.assertEquals(sequential.getPositions(), parallel.getPositions());
+		Assert.assertEquals(sequential.getIndices(), parallel.getIndices());
+		float[] positions = parallel.getPositions().toArray();
+		int[] indices = parallel.getIndices().toArray();
+		for (int i = 0; i < n; i += 997) {
+			Assert.assertEquals(i * 0.125f, positions[i * 3], 0);
+			Assert.assertEquals(-i, positions[i * 3 + 1], 0);
+		}
+		for (int i = 0; i < n - 2; i += 991) {
+			Assert.assertEquals(i + 2, indices[i * 3 + 2]);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoHeaderEnd() throws IOException {
+		PlyReader.read(write("broken.ply", "ply\nformat ascii 1.0\nelement vertex 1\n".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		byte[] data = binary(ByteOrder.LITTLE_ENDIAN);
+		PlyReader.read(write("truncated.ply", Arrays.copyOf(data, data.length - 30)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotPly() throws IOException {
+		PlyReader.read(write("other.ply", "solid\nend_header\n".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+}
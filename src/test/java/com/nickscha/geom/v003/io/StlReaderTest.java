@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nickscha.geom.io.MeshData;
+import com.nickscha.geom.io.StlReader;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class StlReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path write(int triangles) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(84 + 50 * triangles).order(ByteOrder.LITTLE_ENDIAN);
+		// binary files may start with solid as well
+		buffer.put("solid binary".getBytes(StandardCharsets.US_ASCII));
+		buffer.position(80);
+		buffer.putInt(triangles);
+		for (int t = 0; t < triangles; t++) {
+			buffer.putFloat(0).putFloat(0).putFloat(1);
+			for (int k = 0; k < 3; k++) {
+				buffer.putFloat(t).putFloat(k).putFloat(t * 0.5f);
+			}
+			buffer.putShort((short) 0);
+		}
+		Path path = folder.newFile().toPath();
+		Files.write(path, buffer.array());
+		return path;
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		MeshData mesh = StlReader.read(write(2));
+		Assert.assertEquals(6, mesh.getVertexCount());
+		Assert.assertEquals(2, mesh.getTriangleCount());
+		Assert.assertArrayEquals(new float[] { 0, 0, 0, 0, 1, 0, 0, 2, 0, 1, 0, 0.5f, 1, 1, 0.5f, 1, 2, 0.5f },
+				mesh.getPositions().toArray(), 0);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, mesh.getIndices().toArray());
+		for (int v = 0; v < 6; v++) {
+			Assert.assertEquals(1, mesh.getNormals().get(v * 3 + 2), 0);
+		}
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		Path path = write(100000);
+		MeshData sequential = StlReader.read(path);
+		MeshData parallel = StlReader.read(path, new ForkJoinPool(4));
+		Assert.assertEquals(sequential.getPositions(), parallel.getPositions());
+		Assert.assertEquals(sequential.getNormals(), parallel.getNormals());
+		Assert.assertEquals(99999, parallel.getPositions().get(299999 * 3), 0);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		Assert.assertEquals(0, StlReader.read(write(0)).getTriangleCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testAscii() throws IOException {
+		Path path = folder.newFile().toPath();
+		StringBuilder text = new StringBuilder("solid cube\n");
+		for (int i = 0; i < 10; i++) {
+			text.append("facet normal 0 0 1\nouter loop\nvertex 0 0 0\nvertex 1 0 0\nvertex 0 1 0\nendloop\nendfacet\n");
+		}
+		Files.write(path, text.append("endsolid cube\n").toString().getBytes(StandardCharsets.US_ASCII));
+		StlReader.read(path);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		Path path = write(3);
+		byte[] data = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(data, data.length - 1));
+		StlReader.read(path);
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.mesh;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mesh.IndexOptimizer;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class IndexOptimizerTest {
+
+	private static int[] grid(int n) {
+		int[] indices = new int[n * n * 6];
+		for (int y = 0, i = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				int a = y * (n + 1) + x, b = a + 1, c = a + n + 1, d = c + 1;
+				indices[i++] = a;
+				indices[i++] = b;
+				indices[i++] = d;
+				indices[i++] = a;
+				indices[i++] = d;
+				indices[i++] = c;
+			}
+		}
+		return indices;
+	}
+
+	private static int[] shuffle(int[] indices, long seed) {
+		int count = indices.length / 3;
+		int[] result = indices.clone();
+		Random random = new Random(seed);
+		for (int t = count - 1; t > 0; t--) {
+			int s = random.nextInt(t + 1);
+			for (int k = 0; k < 3; k++) {
+				int tmp = result[t * 3 + k];
+				result[t * 3 + k] = result[s * 3 + k];
+				result[s * 3 + k] = tmp;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the triangles as sorted keys, independent of their order
+	 */
+	private static long[] triangles(int[] indices) {
+		long[] keys = new long[indices.length / 3];
+		for (int t = 0; t < keys.length; t++) {
+			keys[t] = (long) indices[t * 3] << 42 | (long) indices[t * 3 + 1] << 21 | indices[t * 3 + 2];
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private static float[] sphere(int rings, int segments, int[][] indices) {
+		int count = (rings + 1) * (segments + 1);
+		float[] positions = new float[count * 3];
+		for (int r = 0, v = 0; r <= rings; r++) {
+			double theta = Math.PI * r / rings;
+			for (int s = 0; s <= segments; s++, v++) {
+				double phi = 2 * Math.PI * s / segments;
+				positions[v * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+				positions[v * 3 + 1] = (float) Math.cos(theta);
+				positions[v * 3 + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+			}
+		}
+		indices[0] = new int[rings * segments * 6];
+		for (int r = 0, i = 0; r < rings; r++) {
+			for (int s = 0; s < segments; s++) {
+				int a = r * (segments + 1) + s, b = a + 1, c = a + segments + 1, d = c + 1;
+				indices[0][i++] = a;
+				indices[0][i++] = b;
+				indices[0][i++] = d;
+				indices[0][i++] = a;
+				indices[0][i++] = d;
+				indices[0][i++] = c;
+			}
+		}
+		return positions;
+	}
+
+	@Test
+	public void testAcmr() {
+		Assert.assertEquals(3, IndexOptimizer.acmr(new int[] { 0, 1, 2, 3, 4, 5 }, 6, 16), 0);
+		Assert.assertEquals(2, IndexOptimizer.acmr(new int[] { 0, 1, 2, 0, 2, 3 }, 4, 16), 0);
+		Assert.assertEquals(0, IndexOptimizer.acmr(new int[0], 0, 16), 0);
+	}
+
+	@Test
+	public void testVertexCache() {
+		int n = 64;
+		int[] indices = shuffle(grid(n), 1);
+		int vertexCount = (n + 1) * (n + 1);
+		int[] optimized = IndexOptimizer.optimizeVertexCache(indices, vertexCount);
+
+		Assert.assertArrayEquals(triangles(indices), triangles(optimized));
+		double before = IndexOptimizer.acmr(indices, vertexCount, 32);
+		double after = IndexOptimizer.acmr(optimized, vertexCount, 32);
+		Assert.assertTrue("before: " + before, before > 1.5);
+		// a regular grid approaches 0.5 misses per triangle
+		Assert.assertTrue("after: " + after, after < 0.75);
+	}
+
+	@Test
+	public void testVertexCacheDisconnected() {
+		int[] indices = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 2, 1, 9 };
+		int[] optimized = IndexOptimizer.optimizeVertexCache(indices, 10);
+		Assert.assertArrayEquals(triangles(indices), triangles(optimized));
+		Assert.assertEquals(0, IndexOptimizer.optimizeVertexCache(new int[0], 0).length);
+	}
+
+	@Test
+	public void testVertexCacheDegenerate() {
+		int n = 8;
+		int[] grid = grid(n);
+		int[] indices = Arrays.copyOf(grid, grid.length + 9);
+		int[] degenerate = { 0, 0, 1, 10, 11, 10, 20, 20, 20 };
+		System.arraycopy(degenerate, 0, indices, grid.length, degenerate.length);
+		indices = shuffle(indices, 2);
+		int[] optimized = IndexOptimizer.optimizeVertexCache(indices, (n + 1) * (n + 1));
+		Assert.assertArrayEquals(triangles(indices), triangles(optimized));
+	}
+
+	@Test
+	public void testOverdraw() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(48, 96, indices);
+		int vertexCount = positions.length / 3;
+		int[] cache = IndexOptimizer.optimizeVertexCache(shuffle(indices[0], 2), vertexCount);
+		int[] overdraw = IndexOptimizer.optimizeOverdraw(cache, positions, vertexCount, 1.05f);
+
+		Assert.assertArrayEquals(triangles(cache), triangles(overdraw));
+		double before = IndexOptimizer.acmr(cache, vertexCount, 16);
+		double after = IndexOptimizer.acmr(overdraw, vertexCount, 16);
+		Assert.assertTrue("before: " + before + ", after: " + after, after <= before * 1.06);
+		// the threshold of one keeps the cache efficiency
+		int[] strict = IndexOptimizer.optimizeOverdraw(cache, positions, vertexCount, 1);
+		Assert.assertArrayEquals(triangles(cache), triangles(strict));
+	}
+
+	@Test
+	public void testVertexFetch() {
+		float[] positions = { 0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4 };
+		int[] indices = { 3, 1, 4, 4, 1, 0 };
+		int[] remap = IndexOptimizer.optimizeVertexFetch(indices, 5);
+		Assert.assertArrayEquals(new int[] { 3, 1, -1, 0, 2 }, remap);
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 2, 1, 3 }, IndexOptimizer.remapIndices(indices, remap));
+		Assert.assertArrayEquals(new float[] { 3, 3, 3, 1, 1, 1, 4, 4, 4, 0, 0, 0 },
+				IndexOptimizer.remapVertices(positions, 3, remap), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreshold() {
+		IndexOptimizer.optimizeOverdraw(new int[] { 0, 1, 2 }, new float[9], 3, 0.5f);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		IndexOptimizer.optimizeVertexCache(new int[] { 0, 1, 3 }, 3);
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.mesh;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mesh.Meshlets;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class MeshletsTest {
+
+	private static float[] sphere(int rings, int segments, int[][] indices) {
+		int count = (rings + 1) * (segments + 1);
+		float[] positions = new float[count * 3];
+		for (int r = 0, v = 0; r <= rings; r++) {
+			double theta = Math.PI * r / rings;
+			for (int s = 0; s <= segments; s++, v++) {
+				double phi = 2 * Math.PI * s / segments;
+				positions[v * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+				positions[v * 3 + 1] = (float) Math.cos(theta);
+				positions[v * 3 + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+			}
+		}
+		indices[0] = new int[rings * segments * 6];
+		for (int r = 0, i = 0; r < rings; r++) {
+			for (int s = 0; s < segments; s++) {
+				int a = r * (segments + 1) + s, b = a + 1, c = a + segments + 1, d = c + 1;
+				indices[0][i++] = a;
+				indices[0][i++] = d;
+				indices[0][i++] = c;
+				indices[0][i++] = a;
+				indices[0][i++] = b;
+				indices[0][i++] = d;
+			}
+		}
+		return positions;
+	}
+
+	private static long[] triangles(int[] indices) {
+		long[] keys = new long[indices.length / 3];
+		for (int t = 0; t < keys.length; t++) {
+			keys[t] = (long) indices[t * 3] << 42 | (long) indices[t * 3 + 1] << 21 | indices[t * 3 + 2];
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private static Vec3f vertex(float[] positions, int v) {
+		return Vec3f.of(positions[v * 3], positions[v * 3 + 1], positions[v * 3 + 2]);
+	}
+
+	@Test
+	public void testLimits() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(64, 128, indices);
+		Meshlets meshlets = Meshlets.build(positions, indices[0]);
+
+		Assert.assertArrayEquals(triangles(indices[0]), triangles(meshlets.toIndices()));
+		byte[] triangles = meshlets.getTriangles();
+		int vertices = 0;
+		for (int m = 0; m < meshlets.getMeshletCount(); m++) {
+			int vertexCount = meshlets.getVertexCount(m), triangleCount = meshlets.getTriangleCount(m);
+			Assert.assertTrue(vertexCount <= Meshlets.MAX_VERTICES);
+			Assert.assertTrue(triangleCount <= Meshlets.MAX_TRIANGLES);
+			Assert.assertEquals(vertices, meshlets.getVertexOffset(m));
+			vertices += vertexCount;
+			boolean[] used = new boolean[vertexCount];
+			for (int i = meshlets.getTriangleOffset(m) * 3, end = i + triangleCount * 3; i < end; i++) {
+				used[triangles[i] & 0xFF] = true;
+			}
+			for (boolean u : used) {
+				Assert.assertTrue(u);
+			}
+		}
+		Assert.assertEquals(vertices, meshlets.getVertices().length);
+		// the growth packs close to the vertex limit of a regular grid
+		double average = indices[0].length / 3.0 / meshlets.getMeshletCount();
+		Assert.assertTrue("average: " + average, average > 70);
+	}
+
+	@Test
+	public void testBounds() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(32, 64, indices);
+		Meshlets meshlets = Meshlets.build(positions, indices[0], 32, 48);
+		int[] vertices = meshlets.getVertices();
+		byte[] triangles = meshlets.getTriangles();
+		Vec3f camera = Vec3f.of(0, 0, -10);
+		int backfacing = 0;
+		for (int m = 0; m < meshlets.getMeshletCount(); m++) {
+			Vec3f center = meshlets.getCenter(m);
+			float radius = meshlets.getRadius(m);
+			Assert.assertTrue(meshlets.getVertexCount(m) <= 32);
+			Assert.assertTrue(meshlets.getTriangleCount(m) <= 48);
+			for (int i = 0; i < meshlets.getVertexCount(m); i++) {
+				Vec3f p = vertex(positions, vertices[meshlets.getVertexOffset(m) + i]);
+				Assert.assertTrue(p.sub(center).length() <= radius * 1.0001f);
+			}
+			// the cone axis points outwards on a sphere
+			Assert.assertTrue(meshlets.getConeAxis(m).dot(center) > 0);
+			if (meshlets.isBackfacing(m, camera)) {
+				backfacing++;
+				// culling is conservative, every triangle faces away
+				for (int i = meshlets.getTriangleOffset(m) * 3, end = i + meshlets.getTriangleCount(m) * 3; i < end; i += 3) {
+					Vec3f a = vertex(positions, vertices[meshlets.getVertexOffset(m) + (triangles[i] & 0xFF)]);
+					Vec3f b = vertex(positions, vertices[meshlets.getVertexOffset(m) + (triangles[i + 1] & 0xFF)]);
+					Vec3f c = vertex(positions, vertices[meshlets.getVertexOffset(m) + (triangles[i + 2] & 0xFF)]);
+					Assert.assertTrue(b.sub(a).cross(c.sub(a)).dot(a.sub(camera)) >= -1e-6f);
+				}
+			}
+		}
+		// roughly the far half is culled
+		Assert.assertTrue("backfacing: " + backfacing, backfacing > meshlets.getMeshletCount() / 4);
+	}
+
+	@Test
+	public void testDegenerate() {
+		float[] positions = { 0, 0, 0, 1, 0, 0, 1, 1, 0 };
+		int[] indices = { 0, 0, 1, 1, 2, 2, 2, 2, 2 };
+		Meshlets meshlets = Meshlets.build(positions, indices, 3, 8);
+		Assert.assertEquals(1, meshlets.getMeshletCount());
+		Assert.assertEquals(3, meshlets.getVertexCount(0));
+		Assert.assertArrayEquals(indices, meshlets.toIndices());
+	}
+
+	@Test
+	public void testPlane() {
+		float[] positions = { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 };
+		Meshlets meshlets = Meshlets.build(positions, new int[] { 0, 1, 2, 0, 2, 3 });
+		Assert.assertEquals(1, meshlets.getMeshletCount());
+		Assert.assertEquals(Vec3f.of(0, 0, 1), meshlets.getConeAxis(0));
+		Assert.assertEquals(0, meshlets.getConeCutoff(0), 1e-6f);
+		Assert.assertEquals(Vec3f.of(0.5f, 0.5f, 0), meshlets.getCenter(0));
+		Assert.assertTrue(meshlets.isBackfacing(0, Vec3f.of(0.5f, 0.5f, -1)));
+		Assert.assertFalse(meshlets.isBackfacing(0, Vec3f.of(0.5f, 0.5f, 1)));
+		Assert.assertArrayEquals(new byte[] { 0, 1, 2, 0, 2, 3 }, meshlets.getTriangles());
+	}
+
+	@Test
+	public void testParallel() {
+		float[][] positions = new float[6][];
+		int[][] indices = new int[6][];
+		for (int i = 0; i < positions.length; i++) {
+			int[][] mesh = new int[1][];
+			positions[i] = sphere(8 + i * 4, 16 + i * 8, mesh);
+			indices[i] = mesh[0];
+		}
+		Meshlets[] sequential = Meshlets.build(positions, indices, null);
+		Meshlets[] parallel = Meshlets.build(positions, indices, new ForkJoinPool(4));
+		for (int i = 0; i < positions.length; i++) {
+			Assert.assertArrayEquals(sequential[i].getVertices(), parallel[i].getVertices());
+			Assert.assertArrayEquals(sequential[i].getTriangles(), parallel[i].getTriangles());
+			Assert.assertArrayEquals(Meshlets.build(positions[i], indices[i]).toIndices(), parallel[i].toIndices());
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		Meshlets meshlets = Meshlets.build(new float[0], new int[0]);
+		Assert.assertEquals(0, meshlets.getMeshletCount());
+		Assert.assertEquals(0, meshlets.toIndices().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLimits() {
+		Meshlets.build(new float[9], new int[] { 0, 1, 2 }, 2, 10);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidMeshlet() {
+		Meshlets.build(new float[9], new int[] { 0, 1, 2 }).getRadius(1);
+	}
+
+}
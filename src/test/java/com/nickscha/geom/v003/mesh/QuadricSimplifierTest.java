@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.mesh;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mat.Mat4d;
+import com.nickscha.geom.mesh.QuadricSimplifier;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class QuadricSimplifierTest {
+
+	/**
+	 * Grid of n * n quads in the xy plane.
+	 */
+	private static float[] grid(int n, int[][] indices) {
+		float[] positions = new float[(n + 1) * (n + 1) * 3];
+		indices[0] = new int[n * n * 6];
+		for (int y = 0, v = 0; y <= n; y++) {
+			for (int x = 0; x <= n; x++, v++) {
+				positions[v * 3] = x;
+				positions[v * 3 + 1] = y;
+			}
+		}
+		for (int y = 0, i = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				int a = y * (n + 1) + x, b = a + 1, c = a + n + 1, d = c + 1;
+				indices[0][i++] = a;
+				indices[0][i++] = b;
+				indices[0][i++] = d;
+				indices[0][i++] = a;
+				indices[0][i++] = d;
+				indices[0][i++] = c;
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Closed unit sphere with shared poles and seam.
+	 */
+	private static float[] sphere(int rings, int segments, int[][] indices) {
+		int count = 2 + (rings - 1) * segments;
+		float[] positions = new float[count * 3];
+		positions[1] = 1;
+		positions[(count - 1) * 3 + 1] = -1;
+		for (int r = 1, v = 1; r < rings; r++) {
+			double theta = Math.PI * r / rings;
+			for (int s = 0; s < segments; s++, v++) {
+				double phi = 2 * Math.PI * s / segments;
+				positions[v * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+				positions[v * 3 + 1] = (float) Math.cos(theta);
+				positions[v * 3 + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+			}
+		}
+		int[] result = new int[segments * (rings - 1) * 6];
+		int i = 0;
+		for (int s = 0; s < segments; s++) {
+			int t = (s + 1) % segments;
+			result[i++] = 0;
+			result[i++] = 1 + t;
+			result[i++] = 1 + s;
+			result[i++] = count - 1;
+			result[i++] = 1 + (rings - 2) * segments + s;
+			result[i++] = 1 + (rings - 2) * segments + t;
+		}
+		for (int r = 1; r < rings - 1; r++) {
+			for (int s = 0; s < segments; s++) {
+				int t = (s + 1) % segments;
+				int a = 1 + (r - 1) * segments + s, b = 1 + (r - 1) * segments + t;
+				int c = a + segments, d = b + segments;
+				result[i++] = a;
+				result[i++] = b;
+				result[i++] = d;
+				result[i++] = a;
+				result[i++] = d;
+				result[i++] = c;
+			}
+		}
+		indices[0] = result;
+		return positions;
+	}
+
+	private static double area(float[] positions, int[] indices) {
+		double area = 0;
+		for (int t = 0; t < indices.length; t += 3) {
+			int a = indices[t] * 3, b = indices[t + 1] * 3, c = indices[t + 2] * 3;
+			double ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1];
+			double vx = positions[c] - positions[a], vy = positions[c + 1] - positions[a + 1];
+			area += (ux * vy - uy * vx) * 0.5;
+		}
+		return area;
+	}
+
+	@Test
+	public void testFlatGrid() {
+		int[][] indices = new int[1][];
+		float[] positions = grid(16, indices);
+		QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+		Assert.assertEquals(512, simplifier.getTriangleCount());
+
+		int remaining = simplifier.simplify(0, 1e-3);
+		Assert.assertTrue("remaining: " + remaining, remaining <= 16);
+		Assert.assertEquals(remaining * 3, simplifier.getIndices().length);
+		Assert.assertTrue(simplifier.getError() < 1e-3);
+
+		// the outline is kept, the area and orientation do not change
+		float[] simplified = simplifier.getPositions();
+		int[] result = simplifier.getIndices();
+		Assert.assertEquals(256, area(simplified, result), 1e-3);
+		for (int v : result) {
+			Assert.assertEquals(0, simplified[v * 3 + 2], 1e-5);
+		}
+		// the corners of the outline keep their position
+		for (int corner = 0; corner < 4; corner++) {
+			float x = corner % 2 * 16, y = corner / 2 * 16;
+			boolean found = false;
+			for (int v : result) {
+				found |= Math.abs(simplified[v * 3] - x) < 1e-4 && Math.abs(simplified[v * 3 + 1] - y) < 1e-4;
+			}
+			Assert.assertTrue("corner: " + x + ", " + y, found);
+		}
+	}
+
+	/**
+	 * Every grid collapses to its two corner triangles, which requires the
+	 * boundary edges to be queued again after their neighbourhood changed.
+	 */
+	@Test
+	public void testFlatGridSizes() {
+		for (int n = 1; n <= 24; n++) {
+			int[][] indices = new int[1][];
+			float[] positions = grid(n, indices);
+			QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+			Assert.assertEquals("n: " + n, 2, simplifier.simplify(0, 1e-3));
+			Assert.assertEquals(n * n, area(simplifier.getPositions(), simplifier.getIndices()), 1e-3);
+		}
+	}
+
+	@Test
+	public void testSphereTarget() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(32, 64, indices);
+		QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+		int target = indices[0].length / 3 / 10;
+
+		Assert.assertTrue(simplifier.simplify(target, Double.POSITIVE_INFINITY) <= target);
+		float[] simplified = simplifier.getPositions();
+		int[] result = simplifier.getIndices();
+		Assert.assertTrue(result.length / 3 > target - 4);
+		for (int v : result) {
+			double x = simplified[v * 3], y = simplified[v * 3 + 1], z = simplified[v * 3 + 2];
+			Assert.assertEquals(1, Math.sqrt(x * x + y * y + z * z), 0.05);
+		}
+		// every triangle still faces outwards
+		for (int t = 0; t < result.length; t += 3) {
+			int a = result[t] * 3, b = result[t + 1] * 3, c = result[t + 2] * 3;
+			double ux = simplified[b] - simplified[a], uy = simplified[b + 1] - simplified[a + 1],
+					uz = simplified[b + 2] - simplified[a + 2];
+			double vx = simplified[c] - simplified[a], vy = simplified[c + 1] - simplified[a + 1],
+					vz = simplified[c + 2] - simplified[a + 2];
+			double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+			Assert.assertTrue(nx * simplified[a] + ny * simplified[a + 1] + nz * simplified[a + 2] > 0);
+		}
+	}
+
+	@Test
+	public void testErrorThreshold() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(32, 64, indices);
+		QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+
+		int coarse = simplifier.simplify(0, 0.01);
+		Assert.assertTrue(coarse > 0);
+		Assert.assertTrue(coarse < indices[0].length / 3);
+		Assert.assertTrue(simplifier.getError() <= 0.01);
+
+		// a larger error continues the same mesh
+		int coarser = simplifier.simplify(0, 0.05);
+		Assert.assertTrue(coarser < coarse);
+		Assert.assertTrue(simplifier.getError() <= 0.05);
+		Assert.assertEquals(coarser, simplifier.getTriangleCount());
+	}
+
+	@Test
+	public void testLevelsOfDetail() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(24, 48, indices);
+		QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+		int previous = simplifier.getTriangleCount();
+		for (int target = previous / 2; target >= 32; target /= 2) {
+			int count = simplifier.simplify(target, Double.POSITIVE_INFINITY);
+			Assert.assertTrue(count <= target);
+			Assert.assertTrue(count < previous);
+			previous = count;
+		}
+	}
+
+	@Test
+	public void testQuadric() {
+		int[][] indices = new int[1][];
+		float[] positions = grid(2, indices);
+		QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices[0]);
+		// the center vertex only sees the plane z = 0 of its six triangles
+		Mat4d q = simplifier.getQuadric(4);
+		Assert.assertEquals(6, q.get(2, 2), 1e-9);
+		Assert.assertEquals(0, q.get(0, 0), 1e-9);
+		Assert.assertEquals(0, q.get(2, 3), 1e-9);
+		Assert.assertEquals(q.get(1, 2), q.get(2, 1), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIndexCount() {
+		new QuadricSimplifier(new float[9], new int[] { 0, 1 });
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		new QuadricSimplifier(new float[9], new int[] { 0, 1, 3 });
+	}
+
+}
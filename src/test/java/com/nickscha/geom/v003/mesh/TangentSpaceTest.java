@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.mesh;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mesh.TangentSpace;
+import com.nickscha.geom.mesh.TangentSpace.Weighting;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class TangentSpaceTest {
+
+	/**
+	 * Grid in the xy plane with texture coordinates equal to the positions,
+	 * optionally mirrored in u.
+	 */
+	private static float[][] grid(int n, boolean mirrored) {
+		float[] positions = new float[(n + 1) * (n + 1) * 3];
+		float[] uvs = new float[(n + 1) * (n + 1) * 2];
+		int[] indices = new int[n * n * 6];
+		for (int y = 0, v = 0; y <= n; y++) {
+			for (int x = 0; x <= n; x++, v++) {
+				positions[v * 3] = x;
+				positions[v * 3 + 1] = y;
+				uvs[v * 2] = mirrored ? -x : x;
+				uvs[v * 2 + 1] = y;
+			}
+		}
+		for (int y = 0, i = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				int a = y * (n + 1) + x, b = a + 1, c = a + n + 1, d = c + 1;
+				indices[i++] = a;
+				indices[i++] = b;
+				indices[i++] = d;
+				indices[i++] = a;
+				indices[i++] = d;
+				indices[i++] = c;
+			}
+		}
+		float[] i = new float[indices.length];
+		for (int k = 0; k < indices.length; k++) {
+			i[k] = indices[k];
+		}
+		return new float[][] { positions, uvs, i };
+	}
+
+	private static int[] indices(float[] values) {
+		int[] indices = new int[values.length];
+		for (int k = 0; k < values.length; k++) {
+			indices[k] = (int) values[k];
+		}
+		return indices;
+	}
+
+	/**
+	 * Latitude longitude sphere, the exact normal is the position.
+	 */
+	private static float[] sphere(int rings, int segments, int[][] indices) {
+		float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+		for (int r = 0, v = 0; r <= rings; r++) {
+			double theta = Math.PI * r / rings;
+			for (int s = 0; s <= segments; s++, v++) {
+				double phi = 2 * Math.PI * s / segments;
+				positions[v * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+				positions[v * 3 + 1] = (float) Math.cos(theta);
+				positions[v * 3 + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+			}
+		}
+		int[] result = new int[rings * segments * 6];
+		int i = 0;
+		for (int r = 0; r < rings; r++) {
+			for (int s = 0; s < segments; s++) {
+				int a = r * (segments + 1) + s, b = a + 1, c = a + segments + 1, d = c + 1;
+				result[i++] = a;
+				result[i++] = b;
+				result[i++] = c;
+				result[i++] = b;
+				result[i++] = d;
+				result[i++] = c;
+			}
+		}
+		indices[0] = result;
+		return positions;
+	}
+
+	@Test
+	public void testGrid() {
+		float[][] grid = grid(4, false);
+		TangentSpace space = new TangentSpace(indices(grid[2]), grid[0].length / 3);
+		Assert.assertEquals(32, space.getTriangleCount());
+		for (Weighting weighting : Weighting.values()) {
+			float[] normals = space.computeNormals(grid[0], weighting, null, null);
+			for (int v = 0; v < space.getVertexCount(); v++) {
+				Assert.assertArrayEquals(new float[] { 0, 0, 1 }, new float[] { normals[v * 3], normals[v * 3 + 1], normals[v * 3 + 2] },
+						1e-6f);
+			}
+		}
+		float[] tangents = space.computeTangents(grid[0], TangentSpace.normals(grid[0], indices(grid[2])), grid[1], null, null);
+		for (int v = 0; v < space.getVertexCount(); v++) {
+			Assert.assertArrayEquals(new float[] { 1, 0, 0, 1 },
+					new float[] { tangents[v * 4], tangents[v * 4 + 1], tangents[v * 4 + 2], tangents[v * 4 + 3] }, 1e-6f);
+		}
+
+		// mirrored texture flips the tangent and the handedness
+		grid = grid(4, true);
+		tangents = space.computeTangents(grid[0], TangentSpace.normals(grid[0], indices(grid[2])), grid[1], null, null);
+		for (int v = 0; v < space.getVertexCount(); v++) {
+			Assert.assertArrayEquals(new float[] { -1, 0, 0, -1 },
+					new float[] { tangents[v * 4], tangents[v * 4 + 1], tangents[v * 4 + 2], tangents[v * 4 + 3] }, 1e-6f);
+		}
+	}
+
+	@Test
+	public void testSphere() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(64, 128, indices);
+		float[] uvs = new float[positions.length / 3 * 2];
+		for (int v = 0; v < uvs.length / 2; v++) {
+			uvs[v * 2] = (float) (v % 129) / 128;
+			uvs[v * 2 + 1] = (float) (v / 129) / 64;
+		}
+		TangentSpace space = new TangentSpace(indices[0], positions.length / 3);
+		float[] normals = space.computeNormals(positions, Weighting.ANGLE, new float[positions.length], null);
+		float[] tangents = space.computeTangents(positions, normals, uvs, null, null);
+		for (int v = 0; v < positions.length / 3; v++) {
+			// skip the poles, which collapse into a point per segment
+			if (v < 129 || v >= positions.length / 3 - 129) {
+				continue;
+			}
+			float dot = normals[v * 3] * positions[v * 3] + normals[v * 3 + 1] * positions[v * 3 + 1]
+					+ normals[v * 3 + 2] * positions[v * 3 + 2];
+			Assert.assertEquals(1, dot, 1e-3f);
+			float tangentDot = normals[v * 3] * tangents[v * 4] + normals[v * 3 + 1] * tangents[v * 4 + 1]
+					+ normals[v * 3 + 2] * tangents[v * 4 + 2];
+			Assert.assertEquals(0, tangentDot, 1e-5f);
+			Assert.assertEquals(1, Math.abs(tangents[v * 4 + 3]), 0);
+		}
+	}
+
+	@Test
+	public void testDeterministic() {
+		int[][] indices = new int[1][];
+		float[] positions = sphere(200, 400, indices);
+		float[] uvs = new float[positions.length / 3 * 2];
+		for (int i = 0; i < uvs.length; i++) {
+			uvs[i] = positions[i] * 0.5f;
+		}
+		TangentSpace space = new TangentSpace(indices[0], positions.length / 3);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (Weighting weighting : Weighting.values()) {
+			float[] sequential = space.computeNormals(positions, weighting, null, null);
+			float[] parallel = space.computeNormals(positions, weighting, null, pool);
+			Assert.assertArrayEquals(sequential, parallel, 0);
+			Assert.assertArrayEquals(space.computeTangents(positions, sequential, uvs, null, null),
+					space.computeTangents(positions, sequential, uvs, null, pool), 0);
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testWeighting() {
+		// a fan at vertex 0: a right angle facing z, half of it facing x and
+		// a sliver facing x
+		float[] positions = { 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 1, 1, 0, 1, 1.01f };
+		int[] indices = { 0, 1, 2, 0, 2, 3, 0, 3, 4 };
+		TangentSpace space = new TangentSpace(indices, 5);
+		float[] uniform = space.computeNormals(positions, Weighting.UNIFORM, null, null);
+		float[] area = space.computeNormals(positions, Weighting.AREA, null, null);
+		float[] angle = space.computeNormals(positions, Weighting.ANGLE, null, null);
+		// the sliver counts fully only when uniform, the right angle counts
+		// twice as much as the half when weighted by angle
+		Assert.assertEquals(1 / Math.sqrt(5), uniform[2], 1e-6);
+		Assert.assertEquals(0.704, area[2], 1e-3);
+		Assert.assertEquals(0.893, angle[2], 1e-3);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		new TangentSpace(new int[] { 0, 1, 3 }, 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShortArray() {
+		new TangentSpace(new int[] { 0, 1, 2 }, 3).computeNormals(new float[6], Weighting.AREA, null, null);
+	}
+
+}
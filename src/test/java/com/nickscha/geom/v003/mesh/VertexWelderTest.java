@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.mesh;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mesh.VertexWelder;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class VertexWelderTest {
+
+	@Test
+	public void testExact() {
+		float[] positions = { 0, 0, 0, 1, 0, 0, 0, 0, 0, -0f, 0, 0, 1, 0, 1e-7f };
+		VertexWelder weld = VertexWelder.weld(positions, 0);
+		Assert.assertEquals(5, weld.getInputCount());
+		Assert.assertEquals(3, weld.getVertexCount());
+		Assert.assertArrayEquals(new int[] { 0, 1, 0, 0, 2 }, weld.getRemap());
+		Assert.assertArrayEquals(new int[] { 0, 1, 4 }, weld.getUnique());
+	}
+
+	@Test
+	public void testEpsilon() {
+		float[] positions = { 0, 0, 0, 1, 0, 0, 0.0009f, -0.0009f, 0.0009f, 1, 0.002f, 0, 1.0005f, 0, 0 };
+		VertexWelder weld = VertexWelder.weld(positions, 0.001f);
+		Assert.assertArrayEquals(new int[] { 0, 1, 0, 2, 1 }, weld.getRemap());
+		Assert.assertArrayEquals(new float[] { 0, 0, 0, 1, 0, 0, 1, 0.002f, 0 }, weld.compact(positions, 3), 0);
+	}
+
+	@Test
+	public void testCellBoundaries() {
+		// pairs straddling the cell faces of every axis still merge
+		float epsilon = 0.01f;
+		Random random = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			float[] positions = new float[6];
+			for (int k = 0; k < 3; k++) {
+				float face = (random.nextInt(200) - 100) * 2 * epsilon;
+				positions[k] = face - random.nextFloat() * epsilon * 0.45f;
+				positions[3 + k] = face + random.nextFloat() * epsilon * 0.45f;
+			}
+			Assert.assertEquals(1, VertexWelder.weld(positions, epsilon).getVertexCount());
+		}
+	}
+
+	@Test
+	public void testFirstMatch() {
+		// the last vertex is within epsilon of both, the first one lies in the
+		// neighbour cell
+		float[] positions = { 0.0196f, 0, 0, 0.0394f, 0, 0, 0.0295f, 0, 0 };
+		VertexWelder weld = VertexWelder.weld(positions, 0.01f);
+		Assert.assertArrayEquals(new int[] { 0, 1, 0 }, weld.getRemap());
+	}
+
+	@Test
+	public void testAttributes() {
+		// equal positions with different texture coordinates stay apart
+		float[] vertices = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 0.00001f, 0 };
+		VertexWelder weld = VertexWelder.weld(vertices, 5, 0.0001f);
+		Assert.assertArrayEquals(new int[] { 0, 1, 0 }, weld.getRemap());
+	}
+
+	@Test
+	public void testTriangles() {
+		// a quad split into two triangles with duplicated vertices per triangle
+		// plus a sliver that collapses
+		float[] positions = { 0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 0, 0, 1, 1, 0, 0, 1, 0, 1, 1, 1e-6f };
+		int[] indices = { 0, 1, 2, 3, 4, 5, 2, 4, 6 };
+		VertexWelder weld = VertexWelder.weld(positions, 1e-5f);
+		Assert.assertEquals(4, weld.getVertexCount());
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3, 2, 2, 2 }, weld.remap(indices));
+		Assert.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, weld.remapTriangles(indices));
+		Assert.assertArrayEquals(new int[] { 10, 11, 12, 15 }, weld.compact(new int[] { 10, 11, 12, 13, 14, 15, 16 }, 1));
+	}
+
+	@Test
+	public void testGridDuplicates() {
+		// every quad of a grid has its own four vertices
+		int n = 64;
+		float[] positions = new float[n * n * 4 * 3];
+		Random random = new Random(3);
+		for (int y = 0, v = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				for (int k = 0; k < 4; k++, v++) {
+					positions[v * 3] = x + (k & 1) + (random.nextFloat() - 0.5f) * 1e-4f;
+					positions[v * 3 + 1] = y + (k >> 1) + (random.nextFloat() - 0.5f) * 1e-4f;
+					positions[v * 3 + 2] = 0;
+				}
+			}
+		}
+		VertexWelder weld = VertexWelder.weld(positions, 1e-3f);
+		Assert.assertEquals((n + 1) * (n + 1), weld.getVertexCount());
+		int[] unique = weld.getUnique();
+		for (int v = 0; v < n * n * 4; v++) {
+			int u = unique[weld.getRemapped(v)];
+			Assert.assertEquals(positions[v * 3], positions[u * 3], 1e-3f);
+			Assert.assertEquals(positions[v * 3 + 1], positions[u * 3 + 1], 1e-3f);
+		}
+	}
+
+	@Test
+	public void testVectors() {
+		VertexWelder weld = VertexWelder.weld(new Vec3f[] { Vec3f.of(1, 2, 3), Vec3f.of(1, 2, 3.0001f), Vec3f.of(2, 2, 3) },
+				0.001f);
+		Assert.assertArrayEquals(new int[] { 0, 0, 1 }, weld.getRemap());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeEpsilon() {
+		VertexWelder.weld(new float[3], -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidStride() {
+		VertexWelder.weld(new float[4], 2, 0);
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.raster;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.raster.DepthRasterizer;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class DepthRasterizerTest {
+
+	private static final float NEAR = 0.5f;
+	private static final float FAR = 100;
+
+	/**
+	 * Camera at the origin looking along +z with a 90 degree field of view.
+	 */
+	private static Mat4f projection() {
+		return Mat4f.perspectiveMatrix((float) Math.toRadians(90), 1, NEAR, FAR);
+	}
+
+	private static float depth(float z) {
+		final float ndc = ((-NEAR - FAR) / (NEAR - FAR) * z + 2 * FAR * NEAR / (NEAR - FAR)) / z;
+		return ndc * 0.5f + 0.5f;
+	}
+
+	/**
+	 * Quad of [-size, size]&sup2; at the specified depth.
+	 */
+	private static float[] quad(float size, float z) {
+		return new float[] { -size, -size, z, size, -size, z, size, size, z, -size, size, z };
+	}
+
+	private static final int[] QUAD = { 0, 1, 2, 0, 2, 3 };
+
+	@Test
+	public void testConstructor() {
+		DepthRasterizer raster = new DepthRasterizer(64, 40);
+		Assert.assertEquals(64, raster.getWidth());
+		Assert.assertEquals(40, raster.getHeight());
+		Assert.assertEquals(7, raster.getLevelCount());
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(63, 39), 0);
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(6, 0, 0), 0);
+		Assert.assertEquals(1, new DepthRasterizer(1, 1).getLevelCount());
+		try {
+			new DepthRasterizer(0, 10);
+			Assert.fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			raster.getDepth(64, 0);
+			Assert.fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	@Test
+	public void testQuadDepth() {
+		DepthRasterizer raster = new DepthRasterizer(64, 64);
+		raster.clear(projection());
+		Assert.assertEquals(2, raster.render(quad(2, 5), QUAD, null));
+
+		// the quad covers [-0.4, 0.4] of the screen in both directions
+		Assert.assertEquals(depth(5), raster.getDepth(32, 32), 1e-6f);
+		Assert.assertEquals(depth(5), raster.getDepth(19, 19), 1e-6f);
+		Assert.assertEquals(depth(5), raster.getDepth(44, 44), 1e-6f);
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(18, 32), 0);
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(32, 45), 0);
+		int covered = 0;
+		for (float d : raster.getDepthBuffer()) {
+			covered += d < DepthRasterizer.FAR ? 1 : 0;
+		}
+		Assert.assertEquals(26 * 26, covered);
+	}
+
+	@Test
+	public void testNearestDepthWins() {
+		DepthRasterizer raster = new DepthRasterizer(32, 32);
+		raster.clear(projection());
+		raster.render(quad(2, 5), QUAD, null);
+		raster.render(quad(1, 3), QUAD, null);
+		raster.render(quad(4, 8), new int[] { 0, 2, 1, 0, 3, 2 }, null);
+		Assert.assertEquals(depth(3), raster.getDepth(16, 16), 1e-6f);
+		Assert.assertEquals(depth(5), raster.getDepth(16, 10), 1e-6f);
+		Assert.assertEquals(depth(8), raster.getDepth(16, 8), 1e-6f);
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(16, 7), 0);
+	}
+
+	@Test
+	public void testOcclusion() {
+		DepthRasterizer raster = new DepthRasterizer(64, 64);
+		raster.clear(projection());
+		Assert.assertTrue(raster.isVisible(-0.5f, -0.5f, 9, 0.5f, 0.5f, 10));
+		raster.render(quad(2, 5), QUAD, null);
+
+		// behind the quad
+		Assert.assertFalse(raster.isVisible(-0.5f, -0.5f, 9, 0.5f, 0.5f, 10));
+		Assert.assertFalse(raster.isVisible(new Aabb3f(new Vec3f(-3, -3, 20), new Vec3f(3, 3, 21))));
+		// in front of the quad
+		Assert.assertTrue(raster.isVisible(-0.5f, -0.5f, 2, 0.5f, 0.5f, 3));
+		// intersecting the quad
+		Assert.assertTrue(raster.isVisible(-0.5f, -0.5f, 4, 0.5f, 0.5f, 6));
+		// beside the quad
+		Assert.assertTrue(raster.isVisible(5, -0.5f, 9, 6, 0.5f, 10));
+		// outside of the screen
+		Assert.assertFalse(raster.isVisible(50, -0.5f, 9, 51, 0.5f, 10));
+		// crossing the near plane
+		Assert.assertTrue(raster.isVisible(-0.5f, -0.5f, -1, 0.5f, 0.5f, 10));
+
+		raster.clear(projection());
+		Assert.assertTrue(raster.isVisible(-0.5f, -0.5f, 9, 0.5f, 0.5f, 10));
+	}
+
+	@Test
+	public void testPyramid() {
+		DepthRasterizer raster = new DepthRasterizer(50, 30);
+		raster.clear(projection());
+		raster.render(quad(100, 10), QUAD, null);
+		raster.render(quad(1, 2), QUAD, null);
+		for (int level = 1; level < raster.getLevelCount(); level++) {
+			for (int y = 0; y < 30; y++) {
+				for (int x = 0; x < 50; x++) {
+					Assert.assertTrue(raster.getDepth(x, y) <= raster.getDepth(level, x >> level, y >> level));
+				}
+			}
+		}
+		int top = raster.getLevelCount() - 1;
+		Assert.assertEquals(depth(10), raster.getDepth(top, 0, 0), 1e-6f);
+		Assert.assertEquals(depth(2), raster.getDepth(25, 15), 1e-6f);
+	}
+
+	@Test
+	public void testNearPlaneClipping() {
+		DepthRasterizer raster = new DepthRasterizer(32, 32);
+		raster.clear(projection());
+		// floor triangle from behind the camera to far ahead, clipped to a quad
+		float[] floor = { 0, -1, -10, 50, -1, 50, -50, -1, 50 };
+		Assert.assertEquals(2, raster.render(floor, new int[] { 0, 1, 2 }, null));
+		Assert.assertEquals(DepthRasterizer.FAR, raster.getDepth(16, 0), 0);
+		Assert.assertTrue(raster.getDepth(16, 31) < raster.getDepth(16, 17));
+		Assert.assertTrue(raster.getDepth(16, 17) < DepthRasterizer.FAR);
+		for (float d : raster.getDepthBuffer()) {
+			Assert.assertTrue(d >= 0);
+		}
+		// entirely behind the camera
+		raster.clear(projection());
+		Assert.assertEquals(0, raster.render(quad(2, -5), QUAD, null));
+		Assert.assertEquals(0, raster.render(quad(2, 0.25f), QUAD, null));
+	}
+
+	@Test
+	public void testTransformedCamera() {
+		Mat4f view = Mat4f.translationMatrix(0, 0, 10);
+		DepthRasterizer raster = new DepthRasterizer(64, 64);
+		raster.clear(projection().mul(view));
+		raster.render(quad(2, -5), QUAD, null);
+		Assert.assertEquals(depth(5), raster.getDepth(32, 32), 1e-6f);
+		Assert.assertFalse(raster.isVisible(-0.5f, -0.5f, -1, 0.5f, 0.5f, 0));
+	}
+
+	@Test
+	public void testParallel() {
+		Random random = new Random(7);
+		int triangles = 20000;
+		float[] positions = new float[triangles * 9];
+		for (int i = 0; i < positions.length; i += 3) {
+			positions[i] = random.nextFloat() * 40 - 20;
+			positions[i + 1] = random.nextFloat() * 40 - 20;
+			positions[i + 2] = random.nextFloat() * 40 - 5;
+		}
+		int[] indices = new int[triangles * 3];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		DepthRasterizer sequential = new DepthRasterizer(200, 120);
+		sequential.clear(Mat4f.perspectiveMatrix((float) Math.toRadians(70), 200, 120, NEAR, FAR));
+		int drawn = sequential.render(positions, indices, null);
+		Assert.assertTrue(drawn > 0);
+
+		DepthRasterizer parallel = new DepthRasterizer(200, 120);
+		parallel.clear(Mat4f.perspectiveMatrix((float) Math.toRadians(70), 200, 120, NEAR, FAR));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertEquals(drawn, parallel.render(positions, indices, pool));
+		} finally {
+			pool.shutdown();
+		}
+		Assert.assertArrayEquals(sequential.getDepthBuffer(), parallel.getDepthBuffer(), 0);
+	}
+
+	@Test
+	public void testCull() {
+		DepthRasterizer raster = new DepthRasterizer(64, 64);
+		raster.clear(projection());
+		raster.render(quad(2, 5), QUAD, null);
+		Random random = new Random(3);
+		int count = 200;
+		float[] minX = new float[count], minY = new float[count], minZ = new float[count];
+		float[] maxX = new float[count], maxY = new float[count], maxZ = new float[count];
+		for (int i = 0; i < count; i++) {
+			minX[i] = random.nextFloat() * 20 - 10;
+			minY[i] = random.nextFloat() * 20 - 10;
+			minZ[i] = random.nextFloat() * 30 + 1;
+			maxX[i] = minX[i] + random.nextFloat();
+			maxY[i] = minY[i] + random.nextFloat();
+			maxZ[i] = minZ[i] + random.nextFloat();
+		}
+		long[] visible = new long[4];
+		visible[3] = -1L;
+		int visibleCount = raster.cull(minX, minY, minZ, maxX, maxY, maxZ, 0, count, visible);
+		int expected = 0;
+		for (int i = 0; i < count; i++) {
+			boolean isVisible = raster.isVisible(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+			expected += isVisible ? 1 : 0;
+			Assert.assertEquals(isVisible, (visible[i >> 6] >>> i & 1) != 0);
+		}
+		Assert.assertEquals(expected, visibleCount);
+		Assert.assertTrue(visibleCount > 0 && visibleCount < count);
+		Assert.assertEquals(-1L >>> 8, visible[3] >>> 8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIndexOutOfRange() {
+		new DepthRasterizer(8, 8).render(quad(1, 5), new int[] { 0, 1, 4 }, null);
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.raster;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.mat.Mat4d;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.raster.Projector;
+import com.nickscha.geom.vec.Vec2d;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec4d;
+import com.nickscha.geom.vec.Vec4f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class ProjectorTest {
+
+	private static final Mat4f VIEW = Mat4f.translationMatrix(1, -2, 10);
+	private static final Mat4f PROJECTION = Mat4f.perspectiveMatrix((float) Math.toRadians(90), 2, 0.5f, 100);
+
+	private static float[] points(Random random, int count) {
+		float[] xyz = new float[count * 3];
+		for (int i = 0; i < xyz.length; i += 3) {
+			xyz[i] = random.nextFloat() * 60 - 30;
+			xyz[i + 1] = random.nextFloat() * 60 - 30;
+			xyz[i + 2] = random.nextFloat() * 60 - 30;
+		}
+		return xyz;
+	}
+
+	@Test
+	public void testScreenSpace() {
+		Vec3f point = Vec3f.of(2, 1, -5);
+		Vec2f ndc = point.screenSpace(VIEW, PROJECTION);
+		// view space (3, -1, 5), half width 5 * 2 and half height 5
+		Assert.assertEquals(0.3f, ndc.getX(), 1e-6f);
+		Assert.assertEquals(-0.2f, ndc.getY(), 1e-6f);
+		Assert.assertEquals(ndc, Vec4f.of(2, 1, -5, 1).screenSpace(VIEW, PROJECTION));
+		Assert.assertNull(Vec3f.of(2, 1, -15).screenSpace(VIEW, PROJECTION));
+		Assert.assertNull(point.screenSpace(new Mat4f(), new Mat4f()));
+
+		Mat4d view = Mat4d.translationMatrix(1, -2, 10);
+		Mat4d projection = Mat4d.perspectiveMatrix(Math.toRadians(90), 2, 0.5, 100);
+		Vec2d ndcd = Vec3d.of(2, 1, -5).screenSpace(view, projection);
+		Assert.assertEquals(0.3, ndcd.getX(), 1e-12);
+		Assert.assertEquals(-0.2, ndcd.getY(), 1e-12);
+		Assert.assertEquals(ndcd, Vec4d.of(2, 1, -5, 1).screenSpace(view, projection));
+		Assert.assertNull(Vec3d.of(2, 1, -15).screenSpace(view, projection));
+	}
+
+	@Test
+	public void testTransformVec4() {
+		Mat4f matrix = PROJECTION.mul(VIEW);
+		Vec4f clip = matrix.transform(Vec4f.of(2, 1, -5, 1));
+		Assert.assertEquals(matrix.transform(Vec3f.of(2, 1, -5)), clip.vec3());
+		Assert.assertEquals(5, clip.getW(), 1e-6f);
+		Assert.assertEquals(Vec4f.of(0, 0, 0, 0), matrix.transform(Vec4f.of(0, 0, 0, 0)));
+	}
+
+	@Test
+	public void testOf() {
+		Projector projector = Projector.of(VIEW, PROJECTION, 640, 320);
+		Assert.assertEquals(640, projector.getWidth());
+		Assert.assertEquals(320, projector.getHeight());
+		try {
+			Projector.of(VIEW, 0, 10);
+			Assert.fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testModes() {
+		Projector projector = Projector.of(VIEW, PROJECTION, 640, 320);
+		float[] xyz = { -1, 2, -5, 2, 1, -5, 2, 1, -15, 40, 2, -5 };
+		long[] visible = new long[1];
+
+		float[] clip = new float[4 * Projector.CLIP_STRIDE];
+		Assert.assertEquals(2, projector.toClip(xyz, 0, 4, clip, visible, null));
+		Assert.assertEquals(0b0011L, visible[0]);
+		Vec4f expected = PROJECTION.mul(VIEW).transform(Vec4f.of(2, 1, -5, 1));
+		Assert.assertArrayEquals(new float[] { expected.getX(), expected.getY(), expected.getZ(), expected.getW() },
+				Arrays.copyOfRange(clip, 4, 8), 1e-6f);
+		Assert.assertEquals(-5, clip[11], 1e-6f);
+
+		float[] ndc = new float[4 * Projector.NDC_STRIDE];
+		Assert.assertEquals(2, projector.toNdc(xyz, 0, 4, ndc, visible, null));
+		Assert.assertArrayEquals(new float[] { 0, 0 }, Arrays.copyOfRange(ndc, 0, 2), 1e-6f);
+		Vec2f screen = Vec3f.of(2, 1, -5).screenSpace(VIEW, PROJECTION);
+		Assert.assertEquals(screen.getX(), ndc[3], 1e-6f);
+		Assert.assertEquals(screen.getY(), ndc[4], 1e-6f);
+		Assert.assertTrue(Float.isNaN(ndc[6]));
+		Assert.assertTrue(ndc[9] > 1);
+
+		float[] pixels = new float[4 * Projector.PIXEL_STRIDE];
+		Assert.assertEquals(2, projector.toPixels(xyz, 0, 4, pixels, visible, null));
+		// the first point is at the center of the screen
+		Assert.assertArrayEquals(new float[] { 320, 160 }, Arrays.copyOfRange(pixels, 0, 2), 1e-4f);
+		Assert.assertEquals(ndc[2] * 0.5f + 0.5f, pixels[2], 1e-6f);
+		Assert.assertEquals(320 + 0.3f * 320, pixels[3], 1e-3f);
+		Assert.assertEquals(160 + 0.2f * 160, pixels[4], 1e-3f);
+		Assert.assertTrue(Float.isNaN(pixels[7]));
+		Assert.assertTrue(pixels[9] > 640);
+	}
+
+	@Test
+	public void testBitsOutsideOfRangeAreKept() {
+		Projector projector = Projector.of(VIEW, PROJECTION, 64, 32);
+		float[] xyz = new float[200 * 3];
+		for (int i = 0; i < 200; i++) {
+			xyz[i * 3 + 2] = -5;
+		}
+		long[] visible = { 0, 0, 0, -1L };
+		Assert.assertEquals(100, projector.toNdc(xyz, 70, 100, new float[200 * 3], visible, null));
+		Assert.assertEquals(-1L << 6, visible[1]);
+		Assert.assertEquals(-1L >>> 22, visible[2]);
+		Assert.assertEquals(-1L, visible[3]);
+		Assert.assertEquals(0, projector.toNdc(xyz, 70, 0, new float[0], visible, null));
+	}
+
+	@Test
+	public void testParallel() {
+		Random random = new Random(5);
+		int count = 100000;
+		float[] xyz = points(random, count);
+		Projector projector = Projector.of(VIEW, PROJECTION, 1920, 1080);
+
+		float[] pixels = new float[count * Projector.PIXEL_STRIDE];
+		long[] visible = new long[(count + 63) / 64];
+		int visibleCount = projector.toPixels(xyz, 13, count - 20, pixels, visible, null);
+		Assert.assertTrue(visibleCount > 0 && visibleCount < count);
+
+		float[] parallelPixels = new float[count * Projector.PIXEL_STRIDE];
+		long[] parallelVisible = new long[(count + 63) / 64];
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertEquals(visibleCount,
+					projector.toPixels(xyz, 13, count - 20, parallelPixels, parallelVisible, pool));
+		} finally {
+			pool.shutdown();
+		}
+		Assert.assertArrayEquals(pixels, parallelPixels, 0);
+		Assert.assertArrayEquals(visible, parallelVisible);
+
+		int expected = 0;
+		for (int i = 13; i < count - 7; i++) {
+			boolean inside = (visible[i >> 6] >>> i & 1) != 0;
+			expected += inside ? 1 : 0;
+			if (inside) {
+				Assert.assertTrue(pixels[i * 3] >= 0 && pixels[i * 3] <= 1920);
+				Assert.assertTrue(pixels[i * 3 + 1] >= 0 && pixels[i * 3 + 1] <= 1080);
+			}
+		}
+		Assert.assertEquals(expected, visibleCount);
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.ray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.ray.Rayd;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec4d;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class RaydTest {
+
+	private static final Rayd RAY = Rayd.of(Vec3d.of(0, 0, -5), Vec3d.ZAXIS);
+
+	@Test
+	public void testIntersect() {
+		Assert.assertEquals(5d, RAY.intersectTriangle(Vec3d.of(-1, -1, 0), Vec3d.of(1, -1, 0), Vec3d.of(0, 1, 0)), 1e-12d);
+		Assert.assertEquals(4d, RAY.intersectBox(Aabb3d.of(-1, -1, -1, 1, 1, 1)), 0d);
+		Assert.assertEquals(3d, RAY.intersectSphere(Vec3d.ZERO, 2), 1e-12d);
+		Assert.assertEquals(7d, RAY.intersectPlane(Vec4d.of(0, 0, 1, -2)), 1e-12d);
+		Assert.assertEquals(Rayd.MISS, RAY.intersectSphere(Vec3d.of(5, 0, 0), 2), 0d);
+	}
+
+	@Test
+	public void testBulk() {
+		double[] x = { 0, 0, 9 }, y = { 0, 0, 0 }, z = { 0, 5, 0 }, r = { 1, 1, 1 };
+		double[] t = new double[3];
+		Assert.assertEquals(0, RAY.intersectSpheres(x, y, z, r, 0, 3, t));
+		Assert.assertEquals(9d, t[1], 1e-12d);
+
+		double[] ox = { 0, 5 }, oy = { 0, 5 }, oz = { -5, -5 }, dx = { 0, 0 }, dy = { 0, 0 }, dz = { 1, 1 };
+		Assert.assertEquals(1, Rayd.intersectBox(ox, oy, oz, dx, dy, dz, 0, 2, Aabb3d.of(-1, -1, -1, 1, 1, 1), t));
+		Assert.assertEquals(Rayd.MISS, t[1], 0d);
+	}
+
+	@Test
+	public void testBoxOnFace() {
+		Aabb3d box = Aabb3d.of(0, 0, 0, 1, 1, 1);
+		// axis parallel rays whose origin lies on a face plane
+		Assert.assertEquals(5d, Rayd.of(0, 0.5, -5, 0, 0, 1).intersectBox(box), 0d);
+		Assert.assertEquals(5d, Rayd.of(1, 0.5, -5, 0, 0, 1).intersectBox(box), 0d);
+		Assert.assertEquals(5d, Rayd.of(0, 1, -5, -0.0, 0, 1).intersectBox(box), 0d);
+		Assert.assertEquals(5d, Rayd.of(0.5, 6, 0, 0, -1, 0).intersectBox(box), 0d);
+		Assert.assertEquals(Rayd.MISS, Rayd.of(1.5, 0.5, -5, 0, 0, 1).intersectBox(box), 0d);
+
+		double[] ox = { 0, 1 }, oy = { 0.5, 0 }, oz = { -5, 0.5 }, dx = { 0, 0 }, dy = { 0, 1 }, dz = { 1, 0 };
+		double[] t = new double[2];
+		Assert.assertEquals(2, Rayd.intersectBox(ox, oy, oz, dx, dy, dz, 0, 2, box, t));
+		Assert.assertEquals(5d, t[0], 0d);
+		Assert.assertEquals(0d, t[1], 0d);
+	}
+
+}
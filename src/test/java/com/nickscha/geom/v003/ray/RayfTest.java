@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.ray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.ray.Rayf;
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec4f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class RayfTest {
+
+	private static final Rayf RAY = Rayf.of(Vec3f.of(0, 0, -5), Vec3f.ZAXIS);
+
+	@Test
+	public void testTriangle() {
+		Assert.assertEquals(5f, RAY.intersectTriangle(Vec3f.of(-1, -1, 0), Vec3f.of(1, -1, 0), Vec3f.of(0, 1, 0)), 1e-6f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectTriangle(Vec3f.of(1, 1, 0), Vec3f.of(2, 1, 0), Vec3f.of(1, 2, 0)), 0f);
+		// behind the origin
+		Assert.assertEquals(Rayf.MISS, RAY.intersectTriangle(Vec3f.of(-1, -1, -6), Vec3f.of(1, -1, -6), Vec3f.of(0, 1, -6)),
+				0f);
+		// parallel to the ray
+		Assert.assertEquals(Rayf.MISS, RAY.intersectTriangle(Vec3f.of(0, -1, 0), Vec3f.of(0, 1, 0), Vec3f.of(0, 0, 1)), 0f);
+	}
+
+	@Test
+	public void testToString() {
+		Assert.assertEquals("Rayf [originX=1.0, originY=2.0, originZ=3.0, directionX=0.0, directionY=0.0, directionZ=1.0]",
+				Rayf.of(1, 2, 3, 0, 0, 1).toString());
+	}
+
+	@Test
+	public void testBox() {
+		Assert.assertEquals(4f, RAY.intersectBox(Aabb3f.of(-1, -1, -1, 1, 1, 1)), 0f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectBox(Aabb3f.of(2, 2, -1, 3, 3, 1)), 0f);
+		Assert.assertEquals(0f, Rayf.of(0, 0, 0, 1, 0, 0).intersectBox(Aabb3f.of(-1, -1, -1, 1, 1, 1)), 0f);
+		Assert.assertEquals(Rayf.MISS, Rayf.of(0, 0, 5, 0, 0, 1).intersectBox(Aabb3f.of(-1, -1, -1, 1, 1, 1)), 0f);
+	}
+
+	@Test
+	public void testSphere() {
+		Assert.assertEquals(3f, RAY.intersectSphere(Vec3f.ZERO, 2), 1e-6f);
+		Assert.assertEquals(2f, Rayf.of(0, 0, 0, 0, 0, 1).intersectSphere(Vec3f.ZERO, 2), 1e-6f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectSphere(Vec3f.of(5, 0, 0), 2), 0f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectSphere(Vec3f.of(0, 0, -10), 2), 0f);
+	}
+
+	@Test
+	public void testPlane() {
+		Assert.assertEquals(7f, RAY.intersectPlane(Vec4f.of(0, 0, 1, -2)), 1e-6f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectPlane(Vec4f.of(0, 0, 1, 6)), 0f);
+		Assert.assertEquals(Rayf.MISS, RAY.intersectPlane(Vec4f.of(1, 0, 0, 0)), 0f);
+	}
+
+	@Test
+	public void testFrustum() {
+		Mat4f projection = Mat4f.perspectiveMatrix((float) Math.toRadians(90), 1, 1, 100);
+		Rayf ray = Rayf.ofFrustum(Vec3f.ZERO, projection, 0.5f, 0.5f);
+		Assert.assertEquals(ray.getDirection().length(), 1f, 1e-6f);
+		Assert.assertEquals(Vec3f.ZERO, ray.getOrigin());
+		Assert.assertEquals(10f, ray.pointAt(10).length(), 1e-5f);
+	}
+
+	@Test
+	public void testBulkOneRay() {
+		float[] triangles = new float[] { -1, -1, 0, 1, -1, 0, 0, 1, 0, //
+				-1, -1, 3, 1, -1, 3, 0, 1, 3, //
+				-1, -1, -2, 1, -1, -2, 0, 1, -2, //
+				5, 5, 0, 6, 5, 0, 5, 6, 0 };
+		float[] t = new float[4];
+		Assert.assertEquals(2, RAY.intersectTriangles(triangles, 0, 4, t));
+		Assert.assertEquals(5f, t[0], 1e-6f);
+		Assert.assertEquals(8f, t[1], 1e-6f);
+		Assert.assertEquals(3f, t[2], 1e-6f);
+		Assert.assertEquals(Rayf.MISS, t[3], 0f);
+		Assert.assertEquals(0, RAY.intersectTriangles(triangles, 0, 2, t));
+
+		float[] x = { 0, 0, 9 }, y = { 0, 0, 0 }, z = { 0, 5, 0 }, r = { 1, 1, 1 };
+		Assert.assertEquals(0, RAY.intersectSpheres(x, y, z, r, 0, 3, t));
+		Assert.assertEquals(Rayf.MISS, t[2], 0f);
+		Assert.assertEquals(9f, t[1], 1e-6f);
+
+		float[] min = { -1, -1, -1 }, max = { 1, 1, 1 }, minZ = { -1, -1, 9 }, maxZ = { 1, 1, 10 };
+		Assert.assertEquals(1, RAY.intersectBoxes(min, min, minZ, max, max, maxZ, 1, 2, t));
+		Assert.assertEquals(4f, t[1], 0f);
+		Assert.assertEquals(14f, t[2], 0f);
+
+		float[] a = { 0, 0 }, b = { 0, 0 }, c = { 1, 1 }, d = { -2, 2 };
+		Assert.assertEquals(1, RAY.intersectPlanes(a, b, c, d, 0, 2, t));
+		Assert.assertEquals(3f, t[1], 1e-6f);
+	}
+
+	@Test
+	public void testBulkManyRays() {
+		float[] ox = { 0, 0, 5, 0 }, oy = { 0, 0, 5, 0 }, oz = { -5, 5, -5, -5 };
+		float[] dx = { 0, 0, 0, 1 }, dy = { 0, 0, 0, 0 }, dz = { 1, 1, 1, 0 };
+		float[] t = new float[4];
+
+		Assert.assertEquals(1, Rayf.intersectTriangle(ox, oy, oz, dx, dy, dz, 0, 4, Vec3f.of(-1, -1, 0), Vec3f.of(1, -1, 0),
+				Vec3f.of(0, 1, 0), t));
+		Assert.assertEquals(5f, t[0], 1e-6f);
+		Assert.assertEquals(1, Rayf.intersectBox(ox, oy, oz, dx, dy, dz, 0, 4, Aabb3f.of(-1, -1, -1, 1, 1, 1), t));
+		Assert.assertEquals(4f, t[0], 0f);
+		Assert.assertEquals(2, Rayf.intersectSphere(ox, oy, oz, dx, dy, dz, 0, 4, Vec3f.of(0, 0, 10), 1, t));
+		Assert.assertEquals(4f, t[1], 1e-6f);
+		Assert.assertEquals(2, Rayf.intersectPlane(ox, oy, oz, dx, dy, dz, 0, 4, Vec4f.of(0, 0, 1, 0), t));
+		Assert.assertEquals(Rayf.MISS, t[3], 0f);
+	}
+
+	@Test
+	public void testBoxOnFace() {
+		Aabb3f box = Aabb3f.of(0, 0, 0, 1, 1, 1);
+		// axis parallel rays whose origin lies on a face plane
+		Assert.assertEquals(5f, Rayf.of(0, 0.5f, -5, 0, 0, 1).intersectBox(box), 0f);
+		Assert.assertEquals(5f, Rayf.of(1, 0.5f, -5, 0, 0, 1).intersectBox(box), 0f);
+		Assert.assertEquals(5f, Rayf.of(0, 1, -5, -0.0f, 0, 1).intersectBox(box), 0f);
+		Assert.assertEquals(5f, Rayf.of(0.5f, 6, 0, 0, -1, 0).intersectBox(box), 0f);
+		Assert.assertEquals(Rayf.MISS, Rayf.of(1.5f, 0.5f, -5, 0, 0, 1).intersectBox(box), 0f);
+
+		float[] ox = { 0, 1 }, oy = { 0.5f, 0 }, oz = { -5, 0.5f }, dx = { 0, 0 }, dy = { 0, 1 }, dz = { 1, 0 };
+		float[] t = new float[2];
+		Assert.assertEquals(2, Rayf.intersectBox(ox, oy, oz, dx, dy, dz, 0, 2, box, t));
+		Assert.assertEquals(5f, t[0], 0f);
+		Assert.assertEquals(0f, t[1], 0f);
+	}
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.Bvh;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class BvhTest {
+
+	/**
+	 * Random soup of small triangles inside a 100 unit cube.
+	 */
+	private static float[] positions(Random random, int triangles) {
+		float[] positions = new float[triangles * 9];
+		for (int t = 0; t < triangles; t++) {
+			float x = random.nextFloat() * 100, y = random.nextFloat() * 100, z = random.nextFloat() * 100;
+			for (int v = 0; v < 3; v++) {
+				positions[t * 9 + v * 3] = x + random.nextFloat() * 4;
+				positions[t * 9 + v * 3 + 1] = y + random.nextFloat() * 4;
+				positions[t * 9 + v * 3 + 2] = z + random.nextFloat() * 4;
+			}
+		}
+		return positions;
+	}
+
+	private static int[] indices(int triangles) {
+		int[] indices = new int[triangles * 3];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		return indices;
+	}
+
+	private static float bruteForce(float[] p, int t, Vec3f o, Vec3f d) {
+		Vec3f a = Vec3f.of(p[t * 9], p[t * 9 + 1], p[t * 9 + 2]);
+		Vec3f e1 = Vec3f.of(p[t * 9 + 3], p[t * 9 + 4], p[t * 9 + 5]).sub(a);
+		Vec3f e2 = Vec3f.of(p[t * 9 + 6], p[t * 9 + 7], p[t * 9 + 8]).sub(a);
+		Vec3f h = d.cross(e2);
+		float det = e1.dot(h);
+		if (Math.abs(det) < 1e-12f) {
+			return Float.POSITIVE_INFINITY;
+		}
+		Vec3f s = o.sub(a);
+		float u = s.dot(h) / det;
+		Vec3f q = s.cross(e1);
+		float v = d.dot(q) / det;
+		float t2 = e2.dot(q) / det;
+		return u < 0 || v < 0 || u + v > 1 || t2 < 0 ? Float.POSITIVE_INFINITY : t2;
+	}
+
+	@Test
+	public void testEmpty() {
+		Bvh bvh = Bvh.ofTriangles(new float[0], new int[0]);
+		Assert.assertEquals(0, bvh.getNodeCount());
+		Assert.assertEquals(-1, bvh.raycast(0, 0, 0, 1, 0, 0, 100, null));
+		Assert.assertFalse(bvh.raycastAny(0, 0, 0, 1, 0, 0, 100));
+		Assert.assertTrue(bvh.bounds().isEmpty());
+	}
+
+	@Test
+	public void testSingleTriangle() {
+		Bvh bvh = Bvh.ofTriangles(new Vec3f[] { Vec3f.of(0, 0, 5), Vec3f.of(1, 0, 5), Vec3f.of(0, 1, 5) },
+				new int[] { 0, 1, 2 });
+		float[] hit = new float[3];
+		Assert.assertEquals(0, bvh.raycast(0.25f, 0.25f, 0, 0, 0, 1, 100, hit));
+		Assert.assertEquals(5f, hit[0], 1e-6f);
+		Assert.assertEquals(0.25f, hit[1], 1e-6f);
+		Assert.assertEquals(0.25f, hit[2], 1e-6f);
+		Assert.assertEquals(-1, bvh.raycast(0.25f, 0.25f, 0, 0, 0, 1, 4, hit));
+		Assert.assertEquals(-1, bvh.raycast(0.75f, 0.75f, 0, 0, 0, 1, 100, hit));
+
+		float[] closest = new float[4];
+		Assert.assertEquals(0, bvh.closestPoint(-1, -1, 5, Float.POSITIVE_INFINITY, closest));
+		Assert.assertEquals(0f, closest[0], 0f);
+		Assert.assertEquals(0f, closest[1], 0f);
+		Assert.assertEquals(2f, closest[3], 1e-6f);
+		Assert.assertEquals(-1, bvh.closestPoint(-1, -1, 5, 1, closest));
+	}
+
+	@Test
+	public void testRaycastMatchesBruteForce() {
+		Random random = new Random(3);
+		int triangles = 20_000;
+		float[] positions = positions(random, triangles);
+		Bvh bvh = Bvh.ofTriangles(positions, indices(triangles));
+
+		Assert.assertEquals(triangles, bvh.getPrimitiveCount());
+		Assert.assertTrue(bvh.depth() < 64);
+		Assert.assertEquals(Aabb3f.fromPoints(positions), bvh.bounds());
+
+		float[] hit = new float[3];
+		for (int r = 0; r < 200; r++) {
+			Vec3f o = Vec3f.of(random.nextFloat() * 100, random.nextFloat() * 100, -10);
+			Vec3f d = Vec3f.of(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, 1).normalize();
+
+			float expected = Float.POSITIVE_INFINITY;
+			for (int t = 0; t < triangles; t++) {
+				expected = Math.min(expected, bruteForce(positions, t, o, d));
+			}
+			int result = bvh.raycast(o.getX(), o.getY(), o.getZ(), d.getX(), d.getY(), d.getZ(), 1000, hit);
+			Assert.assertEquals(expected != Float.POSITIVE_INFINITY, result >= 0);
+			Assert.assertEquals(expected != Float.POSITIVE_INFINITY,
+					bvh.raycastAny(o.getX(), o.getY(), o.getZ(), d.getX(), d.getY(), d.getZ(), 1000));
+			if (result >= 0) {
+				Assert.assertEquals(expected, hit[0], 1e-3f);
+			}
+		}
+	}
+
+	@Test
+	public void testOverlapAndClosestPoint() {
+		Random random = new Random(5);
+		int triangles = 5_000;
+		float[] positions = positions(random, triangles);
+		Bvh bvh = Bvh.ofTriangles(positions, indices(triangles));
+
+		Aabb3f query = Aabb3f.of(20, 20, 20, 40, 40, 40);
+		BitSet expected = new BitSet();
+		for (int t = 0; t < triangles; t++) {
+			if (Aabb3f.fromPoints(positions, t * 3, 3).overlaps(query)) {
+				expected.set(t);
+			}
+		}
+		BitSet found = new BitSet();
+		Assert.assertEquals(expected.cardinality(), bvh.overlap(query, found::set));
+		Assert.assertEquals(expected, found);
+
+		// the closest point of a vertex is the vertex itself
+		float[] closest = new float[4];
+		int t = bvh.closestPoint(positions[300], positions[301], positions[302], Float.POSITIVE_INFINITY, closest);
+		Assert.assertEquals(0f, closest[3], 0f);
+		Assert.assertTrue(t >= 0);
+	}
+
+	@Test
+	public void testBoxes() {
+		Bvh bvh = Bvh.ofBoxes(new Aabb3f[] { Aabb3f.of(0, 0, 0, 1, 1, 1), Aabb3f.of(5, 0, 0, 6, 1, 1),
+				Aabb3f.of(10, 0, 0, 11, 1, 1) });
+		float[] hit = new float[1];
+		Assert.assertEquals(0, bvh.raycast(-5, 0.5f, 0.5f, 1, 0, 0, 100, hit));
+		Assert.assertEquals(5f, hit[0], 0f);
+		Assert.assertEquals(2, bvh.raycast(20, 0.5f, 0.5f, -1, 0, 0, 100, hit));
+		Assert.assertEquals(9f, hit[0], 0f);
+		Assert.assertEquals(2, bvh.overlap(Aabb3f.of(0.5f, 0, 0, 5.5f, 1, 1), i -> {
+		}));
+
+		float[] closest = new float[4];
+		Assert.assertEquals(1, bvh.closestPoint(7, 0.5f, 0.5f, 10, closest));
+		Assert.assertEquals(1f, closest[3], 0f);
+	}
+
+	@Test
+	public void testNestedQueries() {
+		Random random = new Random(11);
+		int triangles = 2_000;
+		float[] positions = positions(random, triangles);
+		Bvh bvh = Bvh.ofTriangles(positions, indices(triangles));
+		Bvh boxes = Bvh.ofBoxes(new Aabb3f[] { Aabb3f.of(0, 0, 0, 50, 50, 50), Aabb3f.of(50, 50, 50, 100, 100, 100) });
+
+		Aabb3f query = Aabb3f.of(20, 20, 20, 40, 40, 40);
+		BitSet expected = new BitSet();
+		int count = bvh.overlap(query, expected::set);
+		Assert.assertTrue(count > 1);
+
+		// every visited triangle runs another overlap, a raycast and a query on a second tree
+		BitSet found = new BitSet();
+		AtomicInteger inner = new AtomicInteger();
+		Assert.assertEquals(count, bvh.overlap(query, t -> {
+			found.set(t);
+			Aabb3f bounds = Aabb3f.fromPoints(positions, t * 3, 3);
+			Assert.assertTrue(bvh.overlap(bounds, i -> inner.incrementAndGet()) >= 1);
+			Assert.assertTrue(bvh.raycast(positions[t * 9] - 200, positions[t * 9 + 1], positions[t * 9 + 2], 1, 0, 0,
+					Float.POSITIVE_INFINITY, null) >= 0);
+			Assert.assertEquals(1, boxes.overlap(Aabb3f.of(1, 1, 1, 2, 2, 2), i -> {
+			}));
+		}));
+		Assert.assertEquals(expected, found);
+		Assert.assertTrue(inner.get() >= count);
+	}
+
+	@Test
+	public void testRayOnFace() {
+		Bvh bvh = Bvh.ofBoxes(new Aabb3f[] { Aabb3f.of(0, 0, 0, 1, 1, 1) });
+		float[] hit = new float[1];
+		// rays parallel to the z axis on the faces x = 0 and x = 1
+		Assert.assertEquals(0, bvh.raycast(0, 0.5f, -5, 0, 0, 1, Float.POSITIVE_INFINITY, hit));
+		Assert.assertEquals(5f, hit[0], 0f);
+		Assert.assertEquals(0, bvh.raycast(1, 0.5f, -5, -0.0f, 0, 1, Float.POSITIVE_INFINITY, hit));
+		Assert.assertEquals(0, bvh.raycast(0, 0, -5, 0, 0, 1, Float.POSITIVE_INFINITY, hit));
+		Assert.assertTrue(bvh.raycastAny(0, 1, -5, 0, 0, 1, Float.POSITIVE_INFINITY));
+		Assert.assertEquals(-1, bvh.raycast(-0.001f, 0.5f, -5, 0, 0, 1, Float.POSITIVE_INFINITY, hit));
+	}
+
+	@Test
+	public void testBuildOnPool() {
+		Random random = new Random(5);
+		int triangles = 20_000;
+		float[] positions = positions(random, triangles);
+		Bvh expected = Bvh.ofTriangles(positions, indices(triangles));
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Bvh bvh = Bvh.ofTriangles(positions, indices(triangles), pool);
+			Assert.assertEquals(expected.getNodeCount(), bvh.getNodeCount());
+			Assert.assertEquals(expected.bounds(), bvh.bounds());
+			Assert.assertEquals(triangles, Bvh.ofBoxes(new float[triangles * 6], pool).getPrimitiveCount());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb2f;
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.Hilbert;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class HilbertTest {
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(1);
+		int[] result = new int[3];
+		for (int i = 0; i < 1000; i++) {
+			int x = random.nextInt(1 << 21), y = random.nextInt(1 << 21), z = random.nextInt(1 << 21);
+			Hilbert.decode3(Hilbert.encode(x, y, z), result);
+			Assert.assertArrayEquals(new int[] { x, y, z }, result);
+
+			int u = random.nextInt(), v = random.nextInt();
+			Hilbert.decode2(Hilbert.encode(u, v), result);
+			Assert.assertEquals(u, result[0]);
+			Assert.assertEquals(v, result[1]);
+		}
+	}
+
+	/**
+	 * Consecutive indices are neighbouring cells and every cell is visited
+	 * once.
+	 */
+	@Test
+	public void testContinuity() {
+		int[] a = new int[3], b = new int[3];
+		// the low indices cover the first 16 * 16 * 16 cell block
+		boolean[] seen = new boolean[16 * 16 * 16];
+		for (long index = 0; index < 4096; index++) {
+			Hilbert.decode3(index, a);
+			Assert.assertTrue(a[0] < 16 && a[1] < 16 && a[2] < 16);
+			Assert.assertFalse(seen[a[0] * 256 + a[1] * 16 + a[2]]);
+			seen[a[0] * 256 + a[1] * 16 + a[2]] = true;
+			Hilbert.decode3(index + 1, b);
+			Assert.assertEquals(1, Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1]) + Math.abs(a[2] - b[2]));
+		}
+		for (long index = 0; index < 4096; index++) {
+			Hilbert.decode2(index, a);
+			Hilbert.decode2(index + 1, b);
+			Assert.assertEquals(1, Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1]));
+		}
+		Random random = new Random(2);
+		for (int i = 0; i < 1000; i++) {
+			long index = random.nextLong() >>> 1;
+			Hilbert.decode2(index, a);
+			Hilbert.decode2(index + 1, b);
+			Assert.assertEquals(1, Math.abs((long) a[0] - b[0]) + Math.abs((long) a[1] - b[1]));
+			index >>>= 1;
+			Hilbert.decode3(index, a);
+			Hilbert.decode3(index + 1, b);
+			Assert.assertEquals(1, Math.abs(a[0] - b[0]) + Math.abs(a[1] - b[1]) + Math.abs(a[2] - b[2]));
+		}
+	}
+
+	@Test
+	public void testQuantized() {
+		Aabb3f bounds = Aabb3f.of(0, 0, 0, 1, 1, 1);
+		Assert.assertEquals(0L, Hilbert.encode(Vec3f.of(0, 0, 0), bounds));
+		float[] xyz = { 0.1f, 0.9f, 0.4f, 0.7f, 0.2f, 0.3f };
+		long[] indices = new long[2];
+		Hilbert.encode(xyz, 0, 2, bounds, indices);
+		Assert.assertEquals(Hilbert.encode(Vec3f.of(0.7f, 0.2f, 0.3f), bounds), indices[1]);
+
+		Aabb2f square = Aabb2f.of(0, 0, 1, 1);
+		long[] indices2 = new long[3];
+		Hilbert.encode(new float[] { 0, 0, 0.3f, 0.6f, 1, 0 }, 0, 3, square, indices2);
+		Assert.assertEquals(0L, indices2[0]);
+		Assert.assertEquals(Hilbert.encode(Vec2f.of(0.3f, 0.6f), square), indices2[1]);
+		// the curve ends in the corner next to its start
+		Assert.assertEquals(-1L, indices2[2]);
+	}
+
+}
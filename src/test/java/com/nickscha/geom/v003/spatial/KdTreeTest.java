@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.spatial.KdTree;
+import com.nickscha.geom.vec.Vec2d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class KdTreeTest {
+
+	private static double[] random(Random random, int values) {
+		double[] coords = new double[values];
+		for (int i = 0; i < values; i++) {
+			coords[i] = random.nextDouble() * 100;
+		}
+		return coords;
+	}
+
+	private static double distanceSquared(double[] p, int i, int d, double x, double y, double z) {
+		double dx = p[i * d] - x, dy = p[i * d + 1] - y, dz = d == 3 ? p[i * d + 2] - z : 0;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	@Test
+	public void testNearest() {
+		Random random = new Random(1);
+		for (int d = 2; d <= 3; d++) {
+			int n = 20000;
+			double[] p = random(random, n * d);
+			// duplicates on the split planes
+			for (int i = 0; i < 100; i++) {
+				p[i * d] = 50;
+			}
+			KdTree tree = KdTree.of(p, d, ForkJoinPool.commonPool());
+			Assert.assertEquals(n, tree.size());
+			for (int q = 0; q < 50; q++) {
+				double x = random.nextDouble() * 120 - 10, y = random.nextDouble() * 120 - 10, z = random.nextDouble() * 100;
+				double[] all = new double[n];
+				for (int i = 0; i < n; i++) {
+					all[i] = distanceSquared(p, i, d, x, y, z);
+				}
+				double[] sorted = all.clone();
+				Arrays.sort(sorted);
+
+				int[] ids = new int[10];
+				double[] distances = new double[10];
+				Assert.assertEquals(10, tree.nearest(x, y, z, ids, distances));
+				for (int k = 0; k < 10; k++) {
+					Assert.assertEquals(sorted[k], distances[k], 0);
+					Assert.assertEquals(all[ids[k]], distances[k], 0);
+				}
+				int found = tree.nearest(x, y, z, Math.sqrt(sorted[3]) * (1 + 1e-9), 0, ids, distances);
+				Assert.assertTrue(found >= 4);
+				Assert.assertEquals(sorted[found - 1], distances[found - 1], 0);
+
+				// approximate results are within the allowed error
+				Assert.assertEquals(10, tree.nearest(x, y, z, Double.POSITIVE_INFINITY, 0.5, ids, distances));
+				for (int k = 0; k < 10; k++) {
+					Assert.assertTrue(distances[k] <= sorted[k] * 1.5 * 1.5);
+					Assert.assertEquals(all[ids[k]], distances[k], 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRadius() {
+		Random random = new Random(2);
+		int n = 5000;
+		double[] p = random(random, n * 3);
+		KdTree tree = KdTree.of(p, 3, ForkJoinPool.commonPool());
+		for (int q = 0; q < 30; q++) {
+			double x = random.nextDouble() * 100, y = random.nextDouble() * 100, z = random.nextDouble() * 100,
+					r = random.nextDouble() * 20;
+			BitSet found = new BitSet();
+			int count = tree.radius(x, y, z, r, found::set);
+			BitSet expected = new BitSet();
+			for (int i = 0; i < n; i++) {
+				if (distanceSquared(p, i, 3, x, y, z) <= r * r) {
+					expected.set(i);
+				}
+			}
+			Assert.assertEquals(expected, found);
+			Assert.assertEquals(expected.cardinality(), count);
+		}
+	}
+
+	@Test
+	public void testNestedQueries() {
+		Random random = new Random(4);
+		int n = 2000;
+		double[] p = random(random, n * 3);
+		KdTree tree = KdTree.of(p, 3, ForkJoinPool.commonPool());
+		int expected = tree.radius(50, 50, 50, 10, i -> {
+		});
+		int[] outer = new int[1];
+		int count = tree.radius(50, 50, 50, 10, i -> {
+			outer[0]++;
+			// far away queries overwrite the per thread search state
+			tree.nearest(0, 0, 0, new int[4], new double[4]);
+			tree.nearest(Vec3f.of(100, 100, 100));
+			tree.radius(0, 100, 0, 5, j -> {
+			});
+		});
+		Assert.assertEquals(expected, count);
+		Assert.assertEquals(expected, outer[0]);
+		Assert.assertTrue(count > 1);
+	}
+
+	@Test
+	public void testBatch() {
+		Random random = new Random(3);
+		int n = 3000;
+		double[] p = random(random, n * 3);
+		KdTree tree = KdTree.of(p, 3, ForkJoinPool.commonPool());
+		double[] queries = random(random, 500 * 3);
+		int[] ids = new int[500 * 4];
+		double[] distances = new double[500 * 4];
+		tree.nearest(queries, 4, 0, ids, distances, ForkJoinPool.commonPool());
+		int[] nearest = tree.nearest(queries, ForkJoinPool.commonPool());
+		int[] single = new int[4];
+		double[] singleDistances = new double[4];
+		for (int q = 0; q < 500; q++) {
+			tree.nearest(queries[q * 3], queries[q * 3 + 1], queries[q * 3 + 2], single, singleDistances);
+			Assert.assertArrayEquals(singleDistances, Arrays.copyOfRange(distances, q * 4, q * 4 + 4), 0);
+			Assert.assertEquals(ids[q * 4], nearest[q]);
+		}
+
+		KdTree small = KdTree.of(new double[] { 0, 0, 0, 1, 1, 1 }, 3, ForkJoinPool.commonPool());
+		small.nearest(new double[] { 0, 0, 0 }, 3, 0, ids, distances, ForkJoinPool.commonPool());
+		Assert.assertArrayEquals(new int[] { 0, 1, -1 }, Arrays.copyOf(ids, 3));
+		Assert.assertEquals(Double.POSITIVE_INFINITY, distances[2], 0);
+	}
+
+	@Test
+	public void testVectors() {
+		KdTree tree = KdTree.of(new Vec3f[] { Vec3f.of(0, 0, 0), Vec3f.of(5, 5, 5), Vec3f.of(-3, 1, 2) });
+		Assert.assertEquals(3, tree.getDimensions());
+		Assert.assertEquals(1, tree.nearest(Vec3f.of(4, 4, 4)));
+		Assert.assertEquals(2, tree.nearest(Vec3f.of(-3, 0, 0)));
+
+		KdTree plane = KdTree.of(new Vec2d[] { Vec2d.of(0, 0), Vec2d.of(10, 0) });
+		Assert.assertEquals(2, plane.getDimensions());
+		Assert.assertEquals(1, plane.nearest(Vec2d.of(7, 3)));
+		Assert.assertEquals(-1, KdTree.of(new Vec2d[0]).nearest(Vec2d.of(0, 0)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDimensions() {
+		KdTree.of(new double[4], 4, ForkJoinPool.commonPool());
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb2f;
+import com.nickscha.geom.bounds.Aabb3d;
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.Morton;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class MortonTest {
+
+	@Test
+	public void testEncode() {
+		Assert.assertEquals(0L, Morton.encode(0, 0, 0));
+		Assert.assertEquals(1L, Morton.encode(1, 0, 0));
+		Assert.assertEquals(2L, Morton.encode(0, 1, 0));
+		Assert.assertEquals(4L, Morton.encode(0, 0, 1));
+		Assert.assertEquals(7L << 3 | 7L, Morton.encode(3, 3, 3));
+		Assert.assertEquals((1L << 63) - 1, Morton.encode(0x1FFFFF, 0x1FFFFF, 0x1FFFFF));
+		Assert.assertEquals(3L, Morton.encode(1, 1));
+		Assert.assertEquals(-1L, Morton.encode(-1, -1));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			int x = random.nextInt(1 << 21), y = random.nextInt(1 << 21), z = random.nextInt(1 << 21);
+			long code = Morton.encode(x, y, z);
+			Assert.assertEquals(x, Morton.decode3X(code));
+			Assert.assertEquals(y, Morton.decode3Y(code));
+			Assert.assertEquals(z, Morton.decode3Z(code));
+
+			int u = random.nextInt(), v = random.nextInt();
+			code = Morton.encode(u, v);
+			Assert.assertEquals(u, Morton.decode2X(code));
+			Assert.assertEquals(v, Morton.decode2Y(code));
+		}
+	}
+
+	@Test
+	public void testQuantized() {
+		Aabb3f bounds = Aabb3f.of(-1, -1, -1, 1, 1, 1);
+		Assert.assertEquals(0L, Morton.encode(Vec3f.of(-1, -1, -1), bounds));
+		Assert.assertEquals(0L, Morton.encode(Vec3f.of(-5, -1, Float.NaN), bounds));
+		Assert.assertEquals((1L << 63) - 1, Morton.encode(Vec3f.of(1, 1, 1), bounds));
+		Assert.assertEquals((1L << 63) - 1, Morton.encode(Vec3f.of(9, 9, 9), bounds));
+		long center = Morton.encode(Vec3f.of(0, 0, 0), bounds);
+		Assert.assertEquals(1 << 20, Morton.decode3X(center));
+		Assert.assertEquals(center, Morton.encode(Vec3d.of(0, 0, 0), Aabb3d.of(-1, -1, -1, 1, 1, 1)));
+		Assert.assertEquals(Morton.encode(1 << 31, 0), Morton.encode(Vec2f.of(0, -1), Aabb2f.of(-1, -1, 1, 1)));
+		// degenerate axis
+		Assert.assertEquals(0, Morton.decode3Y(Morton.encode(Vec3f.of(0, 3, 0), Aabb3f.of(-1, 3, -1, 1, 3, 1))));
+	}
+
+	@Test
+	public void testBulk() {
+		Random random = new Random(2);
+		int n = 100000;
+		float[] xyz = new float[n * 3];
+		for (int i = 0; i < xyz.length; i++) {
+			xyz[i] = random.nextFloat() * 10;
+		}
+		Aabb3f bounds = Aabb3f.fromPoints(xyz);
+		long[] codes = new long[n - 5];
+		Morton.encode(xyz, 5, n - 5, bounds, codes);
+		double[] xyzd = new double[xyz.length];
+		for (int i = 0; i < xyz.length; i++) {
+			xyzd[i] = xyz[i];
+		}
+		long[] codesd = new long[n - 5];
+		Morton.encode(xyzd, 5, n - 5, Aabb3d.of(bounds.getMinX(), bounds.getMinY(), bounds.getMinZ(), bounds.getMaxX(),
+				bounds.getMaxY(), bounds.getMaxZ()), codesd);
+		for (int i = 0; i < n - 5; i += 97) {
+			int p = (i + 5) * 3;
+			Assert.assertEquals(Morton.encode(Vec3f.of(xyz[p], xyz[p + 1], xyz[p + 2]), bounds), codes[i]);
+			Assert.assertEquals(codes[i], codesd[i]);
+		}
+
+		float[] xy = { 0, 0, 1, 1, 0.5f, 0.25f };
+		long[] codes2 = new long[3];
+		Aabb2f square = Aabb2f.of(0, 0, 1, 1);
+		Morton.encode(xy, 0, 3, square, codes2);
+		Assert.assertEquals(Morton.encode(Vec2f.of(0.5f, 0.25f), square), codes2[2]);
+		Assert.assertEquals(-1L, codes2[1]);
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.bounds.Frustumf;
+import com.nickscha.geom.mat.Mat4f;
+import com.nickscha.geom.spatial.Octree;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class OctreeTest {
+
+	private static final int N = 2000;
+
+	/**
+	 * Random spheres, some of them outside of the world bounds.
+	 */
+	private static Octree randomTree(Random random, float[] x, float[] y, float[] z, float[] r, int[] ids) {
+		Octree tree = new Octree(Aabb3f.of(-50, -50, -50, 50, 50, 50), 6);
+		for (int i = 0; i < x.length; i++) {
+			x[i] = (random.nextFloat() - 0.5f) * 120;
+			y[i] = (random.nextFloat() - 0.5f) * 120;
+			z[i] = (random.nextFloat() - 0.5f) * 120;
+			r[i] = random.nextInt(4) == 0 ? random.nextFloat() * 10 : random.nextFloat() * 0.5f;
+			ids[i] = tree.insert(x[i], y[i], z[i], r[i]);
+		}
+		return tree;
+	}
+
+	private static void assertSphereQuery(Octree tree, float[] x, float[] y, float[] z, float[] r, int[] ids, boolean[] removed,
+			float qx, float qy, float qz, float qr) {
+		BitSet found = new BitSet();
+		int count = tree.querySphere(qx, qy, qz, qr, found::set);
+		BitSet expected = new BitSet();
+		for (int i = 0; i < x.length; i++) {
+			float dx = x[i] - qx, dy = y[i] - qy, dz = z[i] - qz, d = r[i] + qr;
+			if (!removed[i] && dx * dx + dy * dy + dz * dz <= d * d) {
+				expected.set(ids[i]);
+			}
+		}
+		Assert.assertEquals(expected, found);
+		Assert.assertEquals(expected.cardinality(), count);
+	}
+
+	@Test
+	public void testQueries() {
+		Random random = new Random(1);
+		float[] x = new float[N], y = new float[N], z = new float[N], r = new float[N];
+		int[] ids = new int[N];
+		Octree tree = randomTree(random, x, y, z, r, ids);
+		Assert.assertEquals(N, tree.size());
+		boolean[] removed = new boolean[N];
+		for (int q = 0; q < 50; q++) {
+			assertSphereQuery(tree, x, y, z, r, ids, removed, (random.nextFloat() - 0.5f) * 120,
+					(random.nextFloat() - 0.5f) * 120, (random.nextFloat() - 0.5f) * 120, random.nextFloat() * 15);
+		}
+
+		Aabb3f box = Aabb3f.of(-20, -5, 10, 30, 5, 60);
+		BitSet found = new BitSet();
+		tree.queryBox(box, found::set);
+		BitSet expected = new BitSet();
+		for (int i = 0; i < N; i++) {
+			float dx = x[i] - Math.max(box.getMinX(), Math.min(x[i], box.getMaxX()));
+			float dy = y[i] - Math.max(box.getMinY(), Math.min(y[i], box.getMaxY()));
+			float dz = z[i] - Math.max(box.getMinZ(), Math.min(z[i], box.getMaxZ()));
+			if (dx * dx + dy * dy + dz * dz <= r[i] * r[i]) {
+				expected.set(ids[i]);
+			}
+		}
+		Assert.assertEquals(expected, found);
+
+		Frustumf frustum = Frustumf.of(Mat4f.perspectiveMatrix((float) Math.toRadians(60), 1, 1, 40));
+		found.clear();
+		tree.queryFrustum(frustum, found::set);
+		expected.clear();
+		for (int i = 0; i < N; i++) {
+			if (frustum.isSphereVisible(x[i], y[i], z[i], r[i])) {
+				expected.set(ids[i]);
+			}
+		}
+		Assert.assertEquals(expected, found);
+	}
+
+	@Test
+	public void testMoveAndRemove() {
+		Random random = new Random(2);
+		float[] x = new float[N], y = new float[N], z = new float[N], r = new float[N];
+		int[] ids = new int[N];
+		Octree tree = randomTree(random, x, y, z, r, ids);
+		boolean[] removed = new boolean[N];
+		for (int tick = 0; tick < 10; tick++) {
+			for (int i = 0; i < N; i++) {
+				if (removed[i]) {
+					continue;
+				}
+				if (random.nextInt(50) == 0) {
+					Assert.assertTrue(tree.remove(ids[i]));
+					Assert.assertFalse(tree.remove(ids[i]));
+					removed[i] = true;
+					continue;
+				}
+				float step = random.nextInt(20) == 0 ? 40 : 1;
+				x[i] += (random.nextFloat() - 0.5f) * step;
+				y[i] += (random.nextFloat() - 0.5f) * step;
+				z[i] += (random.nextFloat() - 0.5f) * step;
+				tree.move(ids[i], x[i], y[i], z[i]);
+				Assert.assertEquals(Vec3f.of(x[i], y[i], z[i]), tree.getPosition(ids[i]));
+			}
+			for (int q = 0; q < 10; q++) {
+				assertSphereQuery(tree, x, y, z, r, ids, removed, (random.nextFloat() - 0.5f) * 120,
+						(random.nextFloat() - 0.5f) * 120, (random.nextFloat() - 0.5f) * 120, random.nextFloat() * 15);
+			}
+		}
+		int alive = 0;
+		for (int i = 0; i < N; i++) {
+			alive += removed[i] ? 0 : 1;
+		}
+		Assert.assertEquals(alive, tree.size());
+
+		for (int i = 0; i < N; i++) {
+			if (!removed[i]) {
+				tree.remove(ids[i]);
+			}
+		}
+		Assert.assertEquals(0, tree.size());
+		Assert.assertEquals(1, tree.getNodeCount());
+	}
+
+	@Test
+	public void testSmallMoveStaysInPlace() {
+		Octree tree = new Octree(Vec3f.ZERO, 16, 4);
+		int id = tree.insert(1.5f, 1.5f, 1.5f, 0.1f);
+		int nodes = tree.getNodeCount();
+		Assert.assertFalse(tree.move(id, 2.2f, 1.4f, 1.9f));
+		Assert.assertTrue(tree.move(id, -10, 1.4f, 1.9f));
+		Assert.assertEquals(nodes, tree.getNodeCount());
+		Assert.assertTrue(tree.move(id, 100, 0, 0));
+		Assert.assertFalse(tree.move(id, 200, 0, 0));
+		Assert.assertEquals(1, tree.getNodeCount());
+		Assert.assertEquals(1, tree.querySphere(Vec3f.of(200, 0, 0), 1, i -> Assert.assertEquals(id, i)));
+	}
+
+	@Test
+	public void testNearest() {
+		Random random = new Random(3);
+		float[] x = new float[N], y = new float[N], z = new float[N], r = new float[N];
+		int[] ids = new int[N];
+		Octree tree = randomTree(random, x, y, z, r, ids);
+		for (int q = 0; q < 30; q++) {
+			float qx = (random.nextFloat() - 0.5f) * 100, qy = (random.nextFloat() - 0.5f) * 100,
+					qz = (random.nextFloat() - 0.5f) * 100;
+			float[] all = new float[N];
+			for (int i = 0; i < N; i++) {
+				float dx = x[i] - qx, dy = y[i] - qy, dz = z[i] - qz;
+				float surface = Math.max((float) Math.sqrt(dx * dx + dy * dy + dz * dz) - r[i], 0);
+				all[i] = r[i] > 0 ? surface * surface : dx * dx + dy * dy + dz * dz;
+			}
+			Arrays.sort(all);
+			int[] nearest = new int[8];
+			float[] distances = new float[8];
+			Assert.assertEquals(8, tree.nearest(qx, qy, qz, Float.POSITIVE_INFINITY, nearest, distances));
+			for (int k = 0; k < 8; k++) {
+				Assert.assertEquals(all[k], distances[k], 0f);
+			}
+			Assert.assertEquals(all[0] <= 1 ? 1 : 0, tree.nearest(qx, qy, qz, 1, new int[1], null));
+			// a short distances array receives the nearest ones only
+			float[] two = new float[2];
+			Assert.assertEquals(8, tree.nearest(qx, qy, qz, Float.POSITIVE_INFINITY, new int[8], two));
+			Assert.assertEquals(all[1], two[1], 0f);
+		}
+		Assert.assertEquals(0, new Octree(Aabb3f.of(0, 0, 0, 1, 1, 1)).nearest(Vec3f.ZERO, new int[4]));
+	}
+
+	@Test
+	public void testNestedQueries() {
+		Random random = new Random(4);
+		float[] x = new float[N], y = new float[N], z = new float[N], r = new float[N];
+		int[] ids = new int[N];
+		Octree tree = randomTree(random, x, y, z, r, ids);
+		int expected = tree.queryBox(-20, -20, -20, 20, 20, 20, i -> {
+		});
+		int[] outer = new int[1];
+		int count = tree.queryBox(-20, -20, -20, 20, 20, 20, i -> {
+			outer[0]++;
+			Vec3f p = tree.getPosition(i);
+			tree.querySphere(p.getX() + 30, p.getY(), p.getZ(), 10, j -> {
+			});
+			tree.nearest(Vec3f.of(-p.getX(), p.getY(), 40), new int[3]);
+		});
+		Assert.assertEquals(expected, count);
+		Assert.assertEquals(expected, outer[0]);
+		Assert.assertTrue(count > 1);
+	}
+
+	@Test
+	public void testClear() {
+		Octree tree = new Octree(Aabb3f.of(0, 0, 0, 10, 10, 10));
+		int a = tree.insert(Vec3f.of(1, 1, 1));
+		tree.insert(Vec3f.of(9, 9, 9));
+		tree.clear();
+		Assert.assertEquals(0, tree.size());
+		Assert.assertFalse(tree.contains(a));
+		Assert.assertEquals(Aabb3f.of(0, 0, 0, 10, 10, 10), tree.bounds());
+		Assert.assertEquals(0, tree.insert(Vec3f.of(2, 2, 2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMoveUnknown() {
+		new Octree(Aabb3f.of(0, 0, 0, 1, 1, 1)).move(3, 0, 0, 0);
+	}
+
+}
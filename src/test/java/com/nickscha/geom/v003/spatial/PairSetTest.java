@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.spatial.PairSet;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class PairSetTest {
+
+	@Test
+	public void testUnordered() {
+		PairSet set = new PairSet();
+		Assert.assertTrue(set.add(3, 1));
+		Assert.assertFalse(set.add(1, 3));
+		Assert.assertTrue(set.contains(1, 3));
+		Assert.assertTrue(set.contains(3, 1));
+		Assert.assertEquals(1, PairSet.first(PairSet.key(3, 1)));
+		Assert.assertEquals(3, PairSet.second(PairSet.key(3, 1)));
+		set.forEach((a, b) -> {
+			Assert.assertEquals(1, a);
+			Assert.assertEquals(3, b);
+		});
+		Assert.assertTrue(set.remove(3, 1));
+		Assert.assertFalse(set.remove(3, 1));
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertFalse(set.contains(-1, 2));
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(5);
+		PairSet set = new PairSet(4);
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 200000; i++) {
+			int a = random.nextInt(300), b = random.nextInt(300);
+			long key = PairSet.key(a, b);
+			switch (random.nextInt(3)) {
+			case 0:
+				Assert.assertEquals(expected.add(key), set.add(a, b));
+				break;
+			case 1:
+				Assert.assertEquals(expected.remove(key), set.remove(b, a));
+				break;
+			default:
+				Assert.assertEquals(expected.contains(key), set.contains(a, b));
+			}
+			Assert.assertEquals(expected.size(), set.size());
+		}
+		Set<Long> actual = new HashSet<>();
+		for (long key : set.toArray()) {
+			actual.add(key);
+		}
+		Assert.assertEquals(expected, actual);
+		set.clear();
+		Assert.assertEquals(0, set.size());
+		Assert.assertFalse(set.contains(0, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegative() {
+		new PairSet().add(-1, 0);
+	}
+
+}
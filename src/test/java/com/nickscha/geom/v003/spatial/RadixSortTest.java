@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.spatial.RadixSort;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class RadixSortTest {
+
+	private static void assertSorted(long[] original, long[] sorted, int[] order, int count) {
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(original[order[i]], sorted[i]);
+			if (i > 0) {
+				Assert.assertTrue(Long.compareUnsigned(sorted[i - 1], sorted[i]) <= 0);
+				// stable
+				if (sorted[i - 1] == sorted[i]) {
+					Assert.assertTrue(order[i - 1] < order[i]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSort() {
+		Random random = new Random(1);
+		for (int bits : new int[] { 4, 21, 63, 64 }) {
+			int n = 1000;
+			long[] keys = new long[n + 10];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = bits == 64 ? random.nextLong() : random.nextLong() >>> 64 - bits;
+			}
+			long[] original = keys.clone();
+			int[] order = RadixSort.sort(keys, n);
+			Assert.assertEquals(n, order.length);
+			assertSorted(original, keys, order, n);
+			// keys beyond count are untouched
+			Assert.assertEquals(original[n + 3], keys[n + 3]);
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		Random random = new Random(2);
+		int n = 300000;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = random.nextInt(1 << 20) | (long) random.nextInt(4) << 40;
+		}
+		long[] sequential = keys.clone(), parallel = keys.clone();
+		int[] a = RadixSort.sort(sequential, n, null);
+		int[] b = RadixSort.sort(parallel, n, new ForkJoinPool(4));
+		Assert.assertArrayEquals(sequential, parallel);
+		Assert.assertArrayEquals(a, b);
+		assertSorted(keys, parallel, b, n);
+	}
+
+	@Test
+	public void testReorder() {
+		long[] keys = { 3, 1, 2, 1 };
+		int[] order = RadixSort.sort(keys, 4);
+		Assert.assertArrayEquals(new int[] { 1, 3, 2, 0 }, order);
+		Assert.assertArrayEquals(new float[] { 1, 1.5f, 3, 3.5f, 2, 2.5f, 0, 0.5f },
+				RadixSort.reorder(new float[] { 0, 0.5f, 1, 1.5f, 2, 2.5f, 3, 3.5f }, 2, order), 0);
+		Assert.assertArrayEquals(new double[] { 1, 3, 2, 0 }, RadixSort.reorder(new double[] { 0, 1, 2, 3 }, 1, order), 0);
+		Assert.assertArrayEquals(new int[] { 10, 30, 20, 0 }, RadixSort.reorder(new int[] { 0, 10, 20, 30 }, 1, order));
+		Assert.assertEquals(0, RadixSort.sort(new long[0], 0).length);
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.SpatialHashGrid;
+import com.nickscha.geom.vec.Vec2f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class SpatialHashGridTest {
+
+	private static float[] positions(Random random, int points, float size) {
+		float[] positions = new float[points * 3];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = (random.nextFloat() - 0.5f) * size;
+		}
+		return positions;
+	}
+
+	private static float distanceSquared(float[] p, int i, float x, float y, float z) {
+		float dx = p[i * 3] - x, dy = p[i * 3 + 1] - y, dz = p[i * 3 + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	@Test
+	public void testQueryRadius() {
+		Random random = new Random(1);
+		float[] p = positions(random, 5000, 100);
+		// small fixed table forces many cells into the same bucket
+		for (SpatialHashGrid grid : new SpatialHashGrid[] { new SpatialHashGrid(4), new SpatialHashGrid(4, 16) }) {
+			grid.rebuild(p, 5000);
+			for (int q = 0; q < 50; q++) {
+				float x = (random.nextFloat() - 0.5f) * 100, y = (random.nextFloat() - 0.5f) * 100,
+						z = (random.nextFloat() - 0.5f) * 100, r = random.nextFloat() * 10;
+				BitSet found = new BitSet();
+				int count = grid.queryRadius(x, y, z, r, i -> {
+					Assert.assertFalse(found.get(i));
+					found.set(i);
+				});
+				BitSet expected = new BitSet();
+				for (int i = 0; i < 5000; i++) {
+					if (distanceSquared(p, i, x, y, z) <= r * r) {
+						expected.set(i);
+					}
+				}
+				Assert.assertEquals(expected, found);
+				Assert.assertEquals(expected.cardinality(), count);
+			}
+		}
+	}
+
+	@Test
+	public void testQueryBox() {
+		Random random = new Random(2);
+		float[] p = positions(random, 3000, 50);
+		SpatialHashGrid grid = new SpatialHashGrid(2).rebuild(p, 3000);
+		Aabb3f box = Aabb3f.of(-10, -5, 0, 20, 5, 3);
+		BitSet found = new BitSet();
+		int count = grid.queryBox(box, found::set);
+		BitSet expected = new BitSet();
+		for (int i = 0; i < 3000; i++) {
+			if (box.contains(p[i * 3], p[i * 3 + 1], p[i * 3 + 2])) {
+				expected.set(i);
+			}
+		}
+		Assert.assertEquals(expected, found);
+		Assert.assertEquals(expected.cardinality(), count);
+		// box larger than the table
+		Assert.assertEquals(3000, grid.queryBox(-100, -100, -100, 100, 100, 100, i -> {
+		}));
+	}
+
+	@Test
+	public void testForEachPair() {
+		Random random = new Random(3);
+		int n = 1500;
+		float[] p = positions(random, n, 40);
+		for (float radius : new float[] { 1.5f, 6f }) {
+			SpatialHashGrid grid = new SpatialHashGrid(2, 64).rebuild(p, n);
+			Set<Long> pairs = new HashSet<>();
+			long count = grid.forEachPair(radius, (a, b) -> {
+				Assert.assertNotEquals(a, b);
+				Assert.assertTrue(pairs.add((long) Math.min(a, b) << 32 | Math.max(a, b)));
+			});
+			long expected = 0;
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					if (distanceSquared(p, i, p[j * 3], p[j * 3 + 1], p[j * 3 + 2]) <= radius * radius) {
+						Assert.assertTrue(pairs.contains((long) i << 32 | j));
+						expected++;
+					}
+				}
+			}
+			Assert.assertEquals(expected, count);
+			Assert.assertEquals(expected, pairs.size());
+		}
+	}
+
+	@Test
+	public void testParallelRebuild() {
+		Random random = new Random(4);
+		int n = 100000;
+		float[] p = positions(random, n, 200);
+		SpatialHashGrid sequential = new SpatialHashGrid(3).rebuild(p, n);
+		SpatialHashGrid parallel = new SpatialHashGrid(3).rebuild(p, n, ForkJoinPool.commonPool());
+		for (int q = 0; q < 20; q++) {
+			float x = p[q * 3], y = p[q * 3 + 1], z = p[q * 3 + 2];
+			BitSet a = new BitSet(), b = new BitSet();
+			sequential.queryRadius(x, y, z, 5, a::set);
+			parallel.queryRadius(x, y, z, 5, b::set);
+			Assert.assertEquals(a, b);
+			Assert.assertTrue(a.get(q));
+		}
+	}
+
+	@Test
+	public void testRebuildReuse() {
+		SpatialHashGrid grid = new SpatialHashGrid(1);
+		Assert.assertEquals(0, grid.rebuild(new float[0], 0).queryRadius(0, 0, 0, 10, i -> {
+		}));
+		grid.rebuild(new float[] { 0, 0, 0, 5, 5, 5, 0.5f, 0, 0 }, 3);
+		Assert.assertEquals(3, grid.size());
+		Assert.assertEquals(2, grid.forEachPair(0.5f, (a, b) -> {
+		}) + 1);
+		grid.rebuild(new float[] { 9, 9, 9 }, 1);
+		Assert.assertEquals(1, grid.size());
+		Assert.assertEquals(0, grid.queryRadius(0, 0, 0, 1, i -> Assert.fail()));
+	}
+
+	@Test
+	public void testPlanar() {
+		Vec2f[] points = { Vec2f.of(0, 0), Vec2f.of(1, 0), Vec2f.of(0, 3), Vec2f.of(-0.5f, -0.5f) };
+		SpatialHashGrid grid = new SpatialHashGrid(1).rebuild(points);
+		BitSet found = new BitSet();
+		Assert.assertEquals(3, grid.queryRadius(0, 0, 1, found::set));
+		Assert.assertFalse(found.get(2));
+		Assert.assertEquals(2, grid.forEachPair(1, (a, b) -> {
+		}));
+		Assert.assertEquals(0, grid.queryBox(-1, -1, 1, 1, 1, 2, i -> Assert.fail()));
+	}
+
+	@Test
+	public void testHugeRange() {
+		float[] p = positions(new Random(5), 100, 1e6f);
+		p[0] = Float.MAX_VALUE;
+		p[1] = -Float.MAX_VALUE;
+		for (SpatialHashGrid grid : new SpatialHashGrid[] { new SpatialHashGrid(1), new SpatialHashGrid(1, 64) }) {
+			grid.rebuild(p, 100);
+			Assert.assertEquals(100, grid.queryRadius(0, 0, 0, Float.POSITIVE_INFINITY, i -> {
+			}));
+			Assert.assertEquals(99, grid.queryRadius(0, 0, 0, 1e7f, i -> {
+			}));
+			Assert.assertEquals(100, grid.queryBox(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+					Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+					i -> {
+					}));
+			Assert.assertEquals(1, grid.queryBox(1e30f, -Float.MAX_VALUE, -1e7f, Float.MAX_VALUE, -1e30f, 1e7f, i -> {
+			}));
+			Assert.assertEquals(100 * 99 / 2, grid.forEachPair(Float.POSITIVE_INFINITY, (i, j) -> {
+			}));
+		}
+	}
+
+	@Test
+	public void testNestedQueries() {
+		Random random = new Random(6);
+		float[] p = positions(random, 2000, 50);
+		SpatialHashGrid grid = new SpatialHashGrid(2).rebuild(p, 2000);
+		int[] expected = new int[1];
+		grid.queryRadius(0, 0, 0, 8, i -> expected[0]++);
+		int[] outer = new int[1];
+		int count = grid.queryRadius(0, 0, 0, 8, i -> {
+			outer[0]++;
+			// the inner query covers other cells and must not disturb the outer one
+			grid.queryRadius(p[i * 3] + 20, p[i * 3 + 1], p[i * 3 + 2], 6, j -> {
+			});
+		});
+		Assert.assertEquals(expected[0], count);
+		Assert.assertEquals(expected[0], outer[0]);
+		Assert.assertTrue(count > 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCellSize() {
+		new SpatialHashGrid(0);
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.spatial;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.bounds.Aabb3f;
+import com.nickscha.geom.spatial.PairSet;
+import com.nickscha.geom.spatial.SweepAndPrune;
+import com.nickscha.geom.vec.Vec3f;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class SweepAndPruneTest {
+
+	private static boolean overlaps(float[] a, float[] b) {
+		return a[0] < b[3] && b[0] < a[3] && a[1] < b[4] && b[1] < a[4] && a[2] < b[5] && b[2] < a[5];
+	}
+
+	private static Set<Long> expected(List<Integer> ids, float[][] boxes) {
+		Set<Long> pairs = new HashSet<>();
+		for (int i = 0; i < ids.size(); i++) {
+			for (int j = i + 1; j < ids.size(); j++) {
+				if (overlaps(boxes[ids.get(i)], boxes[ids.get(j)])) {
+					pairs.add(PairSet.key(ids.get(i), ids.get(j)));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private static Set<Long> actual(SweepAndPrune sap) {
+		Set<Long> pairs = new HashSet<>();
+		sap.forEachPair((a, b) -> Assert.assertTrue(pairs.add(PairSet.key(a, b))));
+		Assert.assertEquals(pairs.size(), sap.getPairCount());
+		return pairs;
+	}
+
+	private static float[] randomBox(Random random, float world) {
+		float x = random.nextFloat() * world, y = random.nextFloat() * world, z = random.nextFloat() * world;
+		float size = random.nextFloat() * 2;
+		// integer grid positions produce touching boxes
+		if (random.nextInt(4) == 0) {
+			x = (int) x;
+			size = 1;
+		}
+		return new float[] { x, y, z, x + size, y + size * 0.5f, z + size };
+	}
+
+	private static int add(SweepAndPrune sap, float[] box) {
+		return sap.add(box[0], box[1], box[2], box[3], box[4], box[5]);
+	}
+
+	private static void run(boolean parallel) {
+		Random random = new Random(parallel ? 2 : 1);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		SweepAndPrune sap = new SweepAndPrune();
+		float[][] boxes = new float[2000][];
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			float[] box = randomBox(random, 20);
+			int id = add(sap, box);
+			boxes[id] = box;
+			ids.add(id);
+		}
+		Assert.assertEquals(0, sap.getPairCount());
+		if (parallel) {
+			sap.update(pool);
+		} else {
+			sap.update();
+		}
+		Assert.assertEquals(expected(ids, boxes), actual(sap));
+
+		for (int frame = 0; frame < 60; frame++) {
+			for (int id : ids) {
+				float[] box = boxes[id];
+				float dx = (float) random.nextGaussian() * 0.2f, dy = (float) random.nextGaussian() * 0.2f;
+				box[0] += dx;
+				box[3] += dx;
+				box[1] += dy;
+				box[4] += dy;
+				if (random.nextInt(10) == 0) {
+					box[5] = box[2] + random.nextFloat();
+				}
+				sap.setBounds(id, box[0], box[1], box[2], box[3], box[4], box[5]);
+			}
+			// add and remove between updates
+			for (int k = 0; k < 5; k++) {
+				int removed = ids.remove(random.nextInt(ids.size()));
+				Assert.assertTrue(sap.remove(removed));
+				Assert.assertFalse(sap.contains(removed));
+				float[] box = randomBox(random, 20);
+				int id = add(sap, box);
+				boxes[id] = box;
+				ids.add(id);
+			}
+			if (parallel && frame % 2 == 0) {
+				sap.update(pool);
+			} else {
+				sap.update();
+			}
+			Assert.assertEquals(ids.size(), sap.size());
+			Assert.assertEquals("frame " + frame, expected(ids, boxes), actual(sap));
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testIncremental() {
+		run(false);
+	}
+
+	@Test
+	public void testParallel() {
+		run(true);
+	}
+
+	@Test
+	public void testLarge() {
+		Random random = new Random(9);
+		SweepAndPrune sap = new SweepAndPrune();
+		float[][] boxes = new float[20000][];
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < boxes.length; i++) {
+			boxes[i] = randomBox(random, 100);
+			ids.add(add(sap, boxes[i]));
+		}
+		Set<Long> expected = expected(ids, boxes);
+		sap.update(new ForkJoinPool(4));
+		Assert.assertEquals(expected, actual(sap));
+		sap.update(null);
+		Assert.assertEquals(expected, actual(sap));
+	}
+
+	@Test
+	public void testTouching() {
+		SweepAndPrune sap = new SweepAndPrune();
+		int a = sap.add(Aabb3f.of(0, 0, 0, 1, 1, 1));
+		int b = sap.add(Vec3f.of(1, 0, 0), Vec3f.of(2, 1, 1));
+		sap.update();
+		Assert.assertFalse(sap.overlaps(a, b));
+		sap.setBounds(b, Aabb3f.of(0.9f, 0, 0, 2, 1, 1));
+		Assert.assertFalse(sap.overlaps(a, b));
+		sap.update();
+		Assert.assertTrue(sap.overlaps(a, b));
+		Assert.assertEquals(Aabb3f.of(0.9f, 0, 0, 2, 1, 1), sap.getBounds(b));
+		sap.setBounds(b, 1, 0, 0, 2, 1, 1);
+		sap.update();
+		Assert.assertFalse(sap.overlaps(a, b));
+		Assert.assertTrue(sap.remove(a));
+		Assert.assertFalse(sap.remove(a));
+		// removed handles are not reused before the next update
+		int c = sap.add(Aabb3f.of(0, 0, 0, 1, 1, 1));
+		Assert.assertNotEquals(a, c);
+		Assert.assertTrue(sap.remove(c));
+		sap.update();
+		// handles are reused after the update
+		int d = sap.add(Aabb3f.of(1.5f, 0.5f, 0.5f, 3, 3, 3));
+		Assert.assertTrue(d == a || d == c);
+		sap.update();
+		Assert.assertTrue(sap.overlaps(d, b));
+		sap.clear();
+		Assert.assertEquals(0, sap.size());
+		Assert.assertEquals(0, sap.getPairCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBounds() {
+		new SweepAndPrune().add(1, 0, 0, 0, 1, 1);
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec2h;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec2hTest {
+
+	@Test
+	public void testInit() {
+		Vec2h result = Vec2h.of(0.5f, -2);
+		Assert.assertEquals(Vec2h.fromBits((short) 0x3800, (short) 0xC000), result);
+		Assert.assertEquals(0x3800, result.getBitsX());
+		Assert.assertEquals(Vec2f.of(0.5f, -2), result.vec2f());
+		Assert.assertEquals(result, Vec2h.of(Vec2f.of(0.5f, -2)));
+		Assert.assertEquals(Vec2h.ZERO, Vec2h.of(0, 0));
+		Assert.assertNotEquals(Vec2h.ZERO, Vec2h.of(-0f, 0));
+	}
+
+	@Test
+	public void testRounding() {
+		Vec2h result = Vec2h.of(0.1f, 70000);
+		Assert.assertEquals(0.0999755859375f, result.getX(), 0);
+		Assert.assertEquals(Float.POSITIVE_INFINITY, result.getY(), 0);
+	}
+
+	@Test
+	public void testBytes() {
+		Vec2h vector = Vec2h.of(1.5f, -0.25f);
+		byte[] data = vector.toBytes();
+		Assert.assertEquals(Vec2h.BYTES, data.length);
+		Assert.assertEquals(vector, Vec2h.fromBytes(data));
+		Assert.assertEquals(vector, Vec2h.fromBytes(vector.toBytes(new byte[7], 3), 3));
+	}
+
+	@Test
+	public void testToString() {
+		Assert.assertEquals("vec2h[x=1.0, y=0.5]", Vec2h.of(1, 0.5f).toString());
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec2d;
+import com.nickscha.geom.vec.Vec2f;
+import com.nickscha.geom.vec.Vec2i;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec2iTest {
+
+	@Test
+	public void testFloorRound() {
+		Assert.assertEquals(Vec2i.of(-1, 0), Vec2i.floor(Vec2f.of(-0.5f, 0.5f)));
+		Assert.assertEquals(Vec2i.of(0, 1), Vec2i.round(Vec2f.of(-0.5f, 0.5f)));
+		Assert.assertEquals(Vec2i.of(-1, 0), Vec2i.floor(Vec2d.of(-0.5, 0.5)));
+		Assert.assertEquals(Vec2i.of(3, -3), Vec2i.round(Vec2d.of(2.7, -2.7)));
+		Assert.assertEquals(Vec2i.of(0, Integer.MIN_VALUE), Vec2i.round(Vec2d.of(0.49999999999999994, -1e20)));
+	}
+
+	@Test
+	public void testKeys() {
+		int[] values = { 0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE };
+		for (int x : values) {
+			for (int y : values) {
+				Vec2i v = Vec2i.of(x, y);
+				Assert.assertEquals(v, Vec2i.fromKey(v.toKey()));
+				Assert.assertEquals(x, Vec2i.keyX(Vec2i.key(x, y)));
+			}
+		}
+		Assert.assertNotEquals(Vec2i.key(-1, 0), Vec2i.key(0, -1));
+	}
+
+	@Test
+	public void testFloorKeys() {
+		float[] points = { -0.25f, 1.75f, 3, -3 };
+		long[] keys = Vec2i.floorKeys(points, 0, 2, 0.5f, new long[2]);
+		Assert.assertEquals(Vec2i.of(-1, 3), Vec2i.fromKey(keys[0]));
+		Assert.assertEquals(Vec2i.of(6, -6), Vec2i.fromKey(keys[1]));
+	}
+
+	@Test
+	public void testArithmetic() {
+		Vec2i a = Vec2i.of(3, -4);
+		Assert.assertEquals(25, a.lengthSquared());
+		Assert.assertEquals(Vec2i.of(4, -3), a.add(Vec2i.ONE));
+		Assert.assertEquals(Vec2f.of(3, -4), a.vec2f());
+		Assert.assertEquals(a, Vec2i.fromBytes(a.toBytes()));
+	}
+
+}
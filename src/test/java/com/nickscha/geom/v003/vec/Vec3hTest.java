@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec3h;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec3hTest {
+
+	@Test
+	public void testInit() {
+		Vec3h result = Vec3h.of(Vec3f.of(1, 2, -3));
+		Assert.assertEquals(Vec3h.fromBits((short) 0x3C00, (short) 0x4000, (short) 0xC200), result);
+		Assert.assertEquals(Vec3f.of(1, 2, -3), result.vec3f());
+		Assert.assertEquals(-3, result.getZ(), 0);
+		Assert.assertEquals((short) 0xC200, result.getBitsZ());
+	}
+
+	@Test
+	public void testNormalPrecision() {
+		Vec3f normal = Vec3f.of(0.3f, -0.5f, 0.8f).normalize();
+		Vec3f result = Vec3h.of(normal).vec3f();
+		Assert.assertEquals(normal.getX(), result.getX(), 0x1p-12f);
+		Assert.assertEquals(normal.getY(), result.getY(), 0x1p-12f);
+		Assert.assertEquals(normal.getZ(), result.getZ(), 0x1p-12f);
+	}
+
+	@Test
+	public void testBytes() {
+		Vec3h vector = Vec3h.of(1.5f, -0.25f, 1000);
+		byte[] data = vector.toBytes();
+		Assert.assertEquals(Vec3h.BYTES, data.length);
+		Assert.assertEquals(vector, Vec3h.fromBytes(data));
+		Assert.assertEquals(vector.hashCode(), Vec3h.fromBytes(data).hashCode());
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec3d;
+import com.nickscha.geom.vec.Vec3f;
+import com.nickscha.geom.vec.Vec3i;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec3iTest {
+
+	@Test
+	public void testInit() {
+		Assert.assertEquals(Vec3i.of(2, 2, 2), new Vec3i(2));
+		Assert.assertEquals(Vec3i.ZERO, Vec3i.of(0));
+		Assert.assertEquals(Vec3i.of(1, 2, 3), Vec3i.of(1, 2, 3));
+		Assert.assertNotEquals(Vec3i.of(1, 2, 3), Vec3i.of(1, 2, 4));
+		Assert.assertEquals("vec3i[x=1, y=-2, z=3]", Vec3i.of(1, -2, 3).toString());
+	}
+
+	@Test
+	public void testFloorRound() {
+		Assert.assertEquals(Vec3i.of(-2, 1, 0), Vec3i.floor(Vec3f.of(-1.5f, 1.5f, -0f)));
+		Assert.assertEquals(Vec3i.of(-1, 2, 0), Vec3i.round(Vec3f.of(-1.5f, 1.5f, -0f)));
+		Assert.assertEquals(Vec3i.of(-2, 1, 0), Vec3i.floor(Vec3d.of(-1.5, 1.5, Double.NaN)));
+		Assert.assertEquals(Vec3i.of(-1, 2, 0), Vec3i.round(Vec3d.of(-1.5, 1.5, Double.NaN)));
+		Assert.assertEquals(Integer.MAX_VALUE, Vec3i.round(Vec3d.of(1e20, 0, 0)).getX());
+		Assert.assertEquals(Vec3i.of(0, 0, 1), Vec3i.round(Vec3d.of(0.49999999999999994, -0.5, 0.5)));
+		Assert.assertEquals(Integer.MIN_VALUE, Vec3i.floor(Vec3f.of(-1e20f, 0, 0)).getX());
+	}
+
+	@Test
+	public void testArithmetic() {
+		Vec3i a = Vec3i.of(1, -2, 3), b = Vec3i.of(4, 5, -6);
+		Assert.assertEquals(Vec3i.of(5, 3, -3), a.add(b));
+		Assert.assertEquals(Vec3i.of(2, -1, 4), a.add(1));
+		Assert.assertEquals(Vec3i.of(-3, -7, 9), a.sub(b));
+		Assert.assertEquals(Vec3i.of(0, -3, 2), a.sub(1));
+		Assert.assertEquals(Vec3i.of(4, -10, -18), a.mul(b));
+		Assert.assertEquals(Vec3i.of(2, -4, 6), a.mul(2));
+		Assert.assertEquals(Vec3i.of(1, -2, -6), a.min(b));
+		Assert.assertEquals(Vec3i.of(4, 5, 3), a.max(b));
+		Assert.assertEquals(Vec3i.of(-1, 2, -3), a.negate());
+		Assert.assertEquals(14, a.lengthSquared());
+		Assert.assertEquals(3L * Integer.MAX_VALUE * Integer.MAX_VALUE, Vec3i.of(Integer.MAX_VALUE).lengthSquared());
+		Assert.assertEquals(19, a.lengthManhattan(b));
+		Assert.assertEquals(Vec3f.of(1, -2, 3), a.vec3f());
+		Assert.assertEquals(Vec3d.of(1, -2, 3), a.vec3d());
+	}
+
+	@Test
+	public void testKeys() {
+		int[] values = { 0, 1, -1, 12345, -54321, Vec3i.MIN_KEY_VALUE, Vec3i.MAX_KEY_VALUE };
+		Set<Long> keys = new HashSet<>();
+		for (int x : values) {
+			for (int y : values) {
+				for (int z : values) {
+					Vec3i v = Vec3i.of(x, y, z);
+					long key = v.toKey();
+					Assert.assertEquals(v, Vec3i.fromKey(key));
+					Assert.assertEquals(z, Vec3i.keyZ(key));
+					Assert.assertTrue(keys.add(key));
+				}
+			}
+		}
+		Assert.assertEquals(0, Vec3i.ZERO.toKey());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyRange() {
+		Vec3i.of(0, Vec3i.MAX_KEY_VALUE + 1, 0).toKey();
+	}
+
+	@Test
+	public void testFloorKeys() {
+		float[] points = { 9, 9, 9, 0.3f, -0.1f, 2.5f, -0.0f, 0.99f, -2.5f };
+		long[] keys = Vec3i.floorKeys(points, 1, 2, 0.5f, new long[2]);
+		Assert.assertEquals(Vec3i.of(0, -1, 5), Vec3i.fromKey(keys[0]));
+		Assert.assertEquals(Vec3i.of(0, 1, -5), Vec3i.fromKey(keys[1]));
+		double[] doubles = { 0.75, 1.5, -0.25 };
+		Assert.assertEquals(Vec3i.key(3, 6, -1), Vec3i.floorKeys(doubles, 0, 1, 0.25, new long[1])[0]);
+	}
+
+	@Test
+	public void testBytes() {
+		Vec3i v = Vec3i.of(Integer.MIN_VALUE, -1, 7);
+		Assert.assertEquals(v, Vec3i.fromBytes(v.toBytes()));
+		Assert.assertEquals(Vec3i.BYTES, v.toBytes().length);
+	}
+
+}
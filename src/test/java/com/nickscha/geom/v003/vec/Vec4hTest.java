@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec4f;
+import com.nickscha.geom.vec.Vec4h;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec4hTest {
+
+	@Test
+	public void testColour() {
+		Vec4f colour = Vec4f.of(1, 0.5f, 0.25f, 0.75f);
+		Vec4h result = Vec4h.of(colour);
+		Assert.assertEquals(colour, result.vec4f());
+		Assert.assertEquals(0.75f, result.getW(), 0);
+		Assert.assertEquals(0x3A00, result.getBitsW());
+	}
+
+	@Test
+	public void testBytes() {
+		Vec4h vector = Vec4h.of(1.5f, -0.25f, 1000, Float.NEGATIVE_INFINITY);
+		byte[] data = vector.toBytes();
+		Assert.assertEquals(Vec4h.BYTES, data.length);
+		Assert.assertEquals(vector, Vec4h.fromBytes(data));
+		Assert.assertEquals("vec4h[x=1.5, y=-0.25, z=1000.0, w=-Infinity]", vector.toString());
+	}
+
+}
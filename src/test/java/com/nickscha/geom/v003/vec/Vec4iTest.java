@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.vec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec4d;
+import com.nickscha.geom.vec.Vec4f;
+import com.nickscha.geom.vec.Vec4i;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class Vec4iTest {
+
+	@Test
+	public void testFloorRound() {
+		Assert.assertEquals(Vec4i.of(-1, 0, 1, 2), Vec4i.floor(Vec4f.of(-0.5f, 0.5f, 1.5f, 2)));
+		Assert.assertEquals(Vec4i.of(0, 1, 2, 2), Vec4i.round(Vec4d.of(-0.5, 0.5, 1.5, 2)));
+		Assert.assertEquals(Vec4i.of(0, 0, 0, 0), Vec4i.round(Vec4d.of(0.49999999999999994, -0.49999999999999994, 0, Double.NaN)));
+	}
+
+	@Test
+	public void testKeys() {
+		int[] values = { 0, 1, -1, Vec4i.MIN_KEY_VALUE, Vec4i.MAX_KEY_VALUE };
+		for (int x : values) {
+			for (int w : values) {
+				Vec4i v = Vec4i.of(x, w, -1, x);
+				Assert.assertEquals(v, Vec4i.fromKey(v.toKey()));
+			}
+		}
+		Assert.assertEquals(-32768, Vec4i.MIN_KEY_VALUE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyRange() {
+		Vec4i.key(0, 0, 0, 40000);
+	}
+
+	@Test
+	public void testBytes() {
+		Vec4i v = Vec4i.of(1, -2, 3, Integer.MAX_VALUE);
+		Assert.assertEquals(v, Vec4i.fromBytes(v.toBytes()));
+		Assert.assertEquals(Vec4f.of(1, -2, 3, Integer.MAX_VALUE), v.vec4f());
+		Assert.assertEquals("vec4i[x=1, y=-2, z=3, w=2147483647]", v.toString());
+	}
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2017 nickscha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nickscha.geom.v003.voxel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.nickscha.geom.vec.Vec3i;
+import com.nickscha.geom.voxel.SparseVoxelGrid;
+
+/**
+ * @author nickscha
+ * @since 0.0.3
+ * @version 0.0.3
+ *
+ */
+public class SparseVoxelGridTest {
+
+	private static Set<Long> voxels(SparseVoxelGrid grid) {
+		Set<Long> keys = new HashSet<>();
+		grid.forEach((x, y, z) -> Assert.assertTrue(keys.add(Vec3i.key(x, y, z))));
+		Assert.assertEquals(grid.size(), keys.size());
+		return keys;
+	}
+
+	@Test
+	public void testSetClear() {
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, false);
+		Assert.assertTrue(grid.isEmpty());
+		Assert.assertTrue(grid.set(0, 0, 0));
+		Assert.assertFalse(grid.set(0, 0, 0));
+		Assert.assertTrue(grid.set(-1, -8, 7));
+		Assert.assertTrue(grid.set(-9, 8, -8));
+		Assert.assertEquals(3, grid.size());
+		Assert.assertEquals(3, grid.getBrickCount());
+		Assert.assertTrue(grid.contains(-1, -8, 7));
+		Assert.assertFalse(grid.contains(-1, -8, 6));
+		Assert.assertFalse(grid.contains(Integer.MAX_VALUE, 0, 0));
+		Assert.assertTrue(grid.clear(-1, -8, 7));
+		Assert.assertFalse(grid.clear(-1, -8, 7));
+		Assert.assertFalse(grid.contains(-1, -8, 7));
+		Assert.assertEquals(2, grid.size());
+	}
+
+	@Test
+	public void testValues() {
+		SparseVoxelGrid grid = new SparseVoxelGrid(0.5f, true);
+		grid.set(3, -4, 5, 42);
+		Assert.assertEquals(42, grid.get(3, -4, 5));
+		Assert.assertEquals(0, grid.get(3, -4, 6));
+		grid.set(3, -4, 5, 7);
+		Assert.assertEquals(7, grid.get(3, -4, 5));
+		Assert.assertEquals(1, grid.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoValues() {
+		new SparseVoxelGrid(1, false).set(0, 0, 0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfRange() {
+		new SparseVoxelGrid(1, false).set(1 << 23, 0, 0);
+	}
+
+	@Test
+	public void testInsert() {
+		Random random = new Random(7);
+		float[] xyz = new float[3 * 50000];
+		for (int i = 0; i < xyz.length; i++) {
+			xyz[i] = (random.nextFloat() - 0.5f) * 40;
+		}
+		SparseVoxelGrid grid = new SparseVoxelGrid(0.75f, false);
+		long added = grid.insert(xyz, 0, xyz.length / 3);
+
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < xyz.length; i += 3) {
+			expected.add(Vec3i.key((int) Math.floor(xyz[i] / 0.75f), (int) Math.floor(xyz[i + 1] / 0.75f),
+					(int) Math.floor(xyz[i + 2] / 0.75f)));
+		}
+		Assert.assertEquals(expected.size(), added);
+		Assert.assertEquals(expected, voxels(grid));
+		Assert.assertEquals(0, grid.insert(xyz, 100, 1000));
+	}
+
+	@Test
+	public void testInsertValues() {
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, true);
+		grid.insert(new float[] { 0.5f, 0.5f, 0.5f, 0.7f, 0.2f, 0.1f, -0.5f, 0, 0 }, 0, 3, new int[] { 1, 2, 3 });
+		Assert.assertEquals(2, grid.size());
+		Assert.assertEquals(2, grid.get(0, 0, 0));
+		Assert.assertEquals(3, grid.get(-1, 0, 0));
+	}
+
+	@Test
+	public void testVoxelizeTriangle() {
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, false);
+		float[] positions = { 0.5f, 0.5f, 0.5f, 10.5f, 0.5f, 0.5f, 0.5f, 10.5f, 0.5f };
+		grid.voxelize(positions, new int[] { 0, 1, 2 }, null);
+		// the hypotenuse x + y = 11 touches the corners of the voxels on it
+		for (int x = 0; x <= 10; x++) {
+			for (int y = 0; y <= 10; y++) {
+				Assert.assertEquals(x + "," + y, x + y <= 11, grid.contains(x, y, 0));
+			}
+		}
+		Assert.assertEquals(76, grid.size());
+	}
+
+	@Test
+	public void testVoxelizeParallel() {
+		// a tessellated sphere
+		int rings = 40, segments = 80;
+		float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+		int p = 0;
+		for (int r = 0; r <= rings; r++) {
+			double theta = Math.PI * r / rings;
+			for (int s = 0; s <= segments; s++) {
+				double phi = 2 * Math.PI * s / segments;
+				positions[p++] = (float) (Math.sin(theta) * Math.cos(phi) * 20);
+				positions[p++] = (float) (Math.cos(theta) * 20);
+				positions[p++] = (float) (Math.sin(theta) * Math.sin(phi) * 20);
+			}
+		}
+		int[] indices = new int[rings * segments * 6];
+		int i = 0;
+		for (int r = 0; r < rings; r++) {
+			for (int s = 0; s < segments; s++) {
+				int a = r * (segments + 1) + s, b = a + segments + 1;
+				indices[i++] = a;
+				indices[i++] = b;
+				indices[i++] = a + 1;
+				indices[i++] = a + 1;
+				indices[i++] = b;
+				indices[i++] = b + 1;
+			}
+		}
+		SparseVoxelGrid sequential = new SparseVoxelGrid(0.5f, false);
+		sequential.voxelize(positions, indices, null);
+		SparseVoxelGrid parallel = new SparseVoxelGrid(0.5f, false);
+		parallel.voxelize(positions, indices, new ForkJoinPool(4));
+		Assert.assertEquals(voxels(sequential), voxels(parallel));
+
+		// every point sampled on the surface lies in a set voxel
+		Random random = new Random(1);
+		for (int t = 0; t < indices.length; t += 3) {
+			for (int k = 0; k < 4; k++) {
+				float u = random.nextFloat(), v = random.nextFloat();
+				if (u + v > 1) {
+					u = 1 - u;
+					v = 1 - v;
+				}
+				float[] point = new float[3];
+				for (int c = 0; c < 3; c++) {
+					float a = positions[indices[t] * 3 + c], b = positions[indices[t + 1] * 3 + c];
+					float d = positions[indices[t + 2] * 3 + c];
+					point[c] = a + (b - a) * u + (d - a) * v;
+				}
+				Assert.assertTrue(sequential.contains(sequential.voxel(point[0]), sequential.voxel(point[1]),
+						sequential.voxel(point[2])));
+			}
+		}
+		// a shell, not a solid: the centre is empty
+		Assert.assertFalse(sequential.contains(0, 0, 0));
+	}
+
+	@Test
+	public void testForEachInBox() {
+		Random random = new Random(3);
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, false);
+		for (int i = 0; i < 5000; i++) {
+			grid.set(random.nextInt(100) - 50, random.nextInt(100) - 50, random.nextInt(100) - 50);
+		}
+		Set<Long> all = voxels(grid);
+		for (int[] box : new int[][] { { -10, -20, -5, 13, 7, 30 }, { Integer.MIN_VALUE, Integer.MIN_VALUE,
+				Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0 }, { 5, 5, 5, 4, 4, 4 } }) {
+			Set<Long> expected = new HashSet<>();
+			for (long key : all) {
+				int x = Vec3i.keyX(key), y = Vec3i.keyY(key), z = Vec3i.keyZ(key);
+				if (x >= box[0] && y >= box[1] && z >= box[2] && x <= box[3] && y <= box[4] && z <= box[5]) {
+					expected.add(key);
+				}
+			}
+			Set<Long> found = new HashSet<>();
+			int visited = grid.forEachInBox(box[0], box[1], box[2], box[3], box[4], box[5],
+					(x, y, z) -> found.add(Vec3i.key(x, y, z)));
+			Assert.assertEquals(expected, found);
+			Assert.assertEquals(expected.size(), visited);
+		}
+	}
+
+	@Test
+	public void testNeighbours() {
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, false);
+		for (int x = 6; x <= 8; x++) {
+			for (int y = -1; y <= 1; y++) {
+				for (int z = -1; z <= 1; z++) {
+					grid.set(x, y, z);
+				}
+			}
+		}
+		Assert.assertEquals(6, grid.forEachNeighbour(7, 0, 0, 6, (x, y, z) -> Assert.assertTrue(grid.contains(x, y, z))));
+		Assert.assertEquals(18, grid.forEachNeighbour(7, 0, 0, 18, (x, y, z) -> {
+		}));
+		Assert.assertEquals(26, grid.forEachNeighbour(7, 0, 0, 26, (x, y, z) -> {
+		}));
+		Assert.assertEquals(3, grid.forEachNeighbour(8, 1, 1, 6, (x, y, z) -> {
+		}));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConnectivity() {
+		new SparseVoxelGrid(1, false).forEachNeighbour(0, 0, 0, 8, (x, y, z) -> {
+		});
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		SparseVoxelGrid grid = new SparseVoxelGrid(0.25f, true);
+		Random random = new Random(5);
+		for (int i = 0; i < 2000; i++) {
+			grid.set(random.nextInt(64) - 32, random.nextInt(16), random.nextInt(64) - 32, random.nextInt(3));
+		}
+		grid.set(100, 100, 100);
+		grid.clear(100, 100, 100);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		grid.write(out);
+		SparseVoxelGrid read = SparseVoxelGrid.read(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals(grid.getVoxelSize(), read.getVoxelSize(), 0);
+		Assert.assertTrue(read.hasValues());
+		Assert.assertEquals(voxels(grid), voxels(read));
+		Assert.assertEquals(grid.getBrickCount() - 1, read.getBrickCount());
+		grid.forEach((x, y, z) -> Assert.assertEquals(grid.get(x, y, z), read.get(x, y, z)));
+	}
+
+	@Test
+	public void testSolidBrickIsSmall() throws IOException {
+		SparseVoxelGrid grid = new SparseVoxelGrid(1, false);
+		grid.forEachInBox(0, 0, 0, 7, 7, 7, (x, y, z) -> {
+		});
+		for (int x = 0; x < 8; x++) {
+			for (int y = 0; y < 8; y++) {
+				for (int z = 0; z < 8; z++) {
+					grid.set(x, y, z);
+				}
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		grid.write(out);
+		// header, key and two runs
+		Assert.assertEquals(13 + 8 + 6, out.size());
+		Assert.assertEquals(512, SparseVoxelGrid.read(new ByteArrayInputStream(out.toByteArray())).size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAGrid() throws IOException {
+		SparseVoxelGrid.read(new ByteArrayInputStream(new byte[16]));
+	}
+
+}